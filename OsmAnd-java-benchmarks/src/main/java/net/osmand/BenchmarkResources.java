@@ -0,0 +1,54 @@
+package net.osmand;
+
+import net.osmand.util.Algorithms;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Locates data used by benchmarks: the test resources of OsmAnd-java
+ * (overridden with -Dosmand.benchmark.resources=...).
+ */
+public class BenchmarkResources {
+
+	public static final String RESOURCES_PROPERTY = "osmand.benchmark.resources";
+	private static final String DEFAULT_RESOURCES = "../OsmAnd-java/src/test/resources";
+
+	public static File getResourcesDir() {
+		return new File(System.getProperty(RESOURCES_PROPERTY, DEFAULT_RESOURCES));
+	}
+
+	public static File getResource(String name) throws IOException {
+		File file = new File(getResourcesDir(), name);
+		if (!file.exists()) {
+			throw new IOException("Benchmark resource is missing (run collectTestResources of OsmAnd-java): "
+					+ file.getAbsolutePath());
+		}
+		return file;
+	}
+
+	/**
+	 * Returns obf file, unpacks file.obf.gz into temporary file if needed.
+	 */
+	public static File getObfFile(File file) throws IOException {
+		if (!file.getName().endsWith(".gz")) {
+			return file;
+		}
+		File obf = File.createTempFile(file.getName().substring(0, file.getName().length() - 3), ".obf");
+		obf.deleteOnExit();
+		InputStream in = new GZIPInputStream(new FileInputStream(file));
+		OutputStream out = new FileOutputStream(obf);
+		try {
+			Algorithms.streamCopy(in, out);
+		} finally {
+			out.close();
+			in.close();
+		}
+		return obf;
+	}
+}
@@ -0,0 +1,105 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads and writes gpx track: either file from test resources or generated track of given size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GPXUtilitiesBenchmark {
+
+	// gpx file name in test resources, empty to generate track of trackPoints points
+	@Param({""})
+	public String gpx;
+
+	@Param({"10000"})
+	public int trackPoints;
+
+	private GPXFile gpxFile;
+	private byte[] gpxContent;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		if (gpx.length() > 0) {
+			File file = BenchmarkResources.getResource(gpx);
+			gpxFile = GPXUtilities.loadGPXFile(file);
+		} else {
+			gpxFile = generateTrack(trackPoints);
+		}
+		if (gpxFile.error != null) {
+			throw new IOException(gpxFile.error);
+		}
+		StringWriter writer = new StringWriter();
+		Exception e = GPXUtilities.writeGpx(writer, gpxFile, null);
+		if (e != null) {
+			throw new IOException(e);
+		}
+		gpxContent = writer.toString().getBytes("UTF-8");
+	}
+
+	private static GPXFile generateTrack(int points) {
+		GPXFile file = new GPXFile("OsmAnd");
+		Track track = new Track();
+		TrkSegment segment = new TrkSegment();
+		Random rnd = new Random(1);
+		double lat = 52.37;
+		double lon = 4.89;
+		long time = 1600000000000L;
+		double ele = 10;
+		for (int i = 0; i < points; i++) {
+			lat += (rnd.nextDouble() - 0.5) * 0.0002;
+			lon += (rnd.nextDouble() - 0.5) * 0.0002;
+			ele += rnd.nextDouble() - 0.5;
+			time += 1000;
+			segment.points.add(new WptPt(lat, lon, time, ele, rnd.nextDouble() * 15, 5));
+		}
+		track.segments.add(segment);
+		file.tracks.add(track);
+		for (int i = 0; i < points / 1000; i++) {
+			WptPt wpt = new WptPt(segment.points.get(i * 1000));
+			wpt.name = "Point " + i;
+			file.addPoint(wpt);
+		}
+		return file;
+	}
+
+	@Benchmark
+	public GPXFile loadGpx() {
+		return GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpxContent));
+	}
+
+	@Benchmark
+	public String writeGpx() {
+		StringWriter writer = new StringWriter(gpxContent.length);
+		GPXUtilities.writeGpx(writer, gpxFile, null);
+		return writer.toString();
+	}
+}
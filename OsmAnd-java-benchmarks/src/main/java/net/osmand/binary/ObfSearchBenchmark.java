@@ -0,0 +1,125 @@
+package net.osmand.binary;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.MapRoot;
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+import net.osmand.osm.PoiCategory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads map objects and POIs of the whole test obf file (bbox of its map roots / poi regions).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ObfSearchBenchmark {
+
+	// file name in test resources, *.obf.gz files are unpacked
+	@Param({"Routing_test.obf"})
+	public String obf;
+
+	@Param({"15"})
+	public int zoom;
+
+	@Param({"false"})
+	public boolean memoryMapped;
+
+	private BinaryMapIndexReader reader;
+	private int[] mapBbox;
+	private int[] poiBbox;
+
+	private static final SearchPoiTypeFilter ACCEPT_ALL_POI = new SearchPoiTypeFilter() {
+		@Override
+		public boolean accept(PoiCategory type, String subcategory) {
+			return true;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return false;
+		}
+	};
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File file = BenchmarkResources.getObfFile(BenchmarkResources.getResource(obf));
+		if (memoryMapped) {
+			reader = new BinaryMapIndexReader(new MappedObfFile(file), true);
+		} else {
+			reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		}
+		for (MapIndex mapIndex : reader.getMapIndexes()) {
+			for (MapRoot root : mapIndex.getRoots()) {
+				if (root.getMinZoom() <= zoom && root.getMaxZoom() >= zoom) {
+					mapBbox = union(mapBbox, root.getLeft(), root.getTop(), root.getRight(), root.getBottom());
+				}
+			}
+		}
+		for (PoiRegion poiRegion : reader.getPoiIndexes()) {
+			poiBbox = union(poiBbox, poiRegion.getLeft31(), poiRegion.getTop31(), poiRegion.getRight31(),
+					poiRegion.getBottom31());
+		}
+	}
+
+	private static int[] union(int[] bbox, int left, int top, int right, int bottom) {
+		if (bbox == null) {
+			return new int[] { left, top, right, bottom };
+		}
+		bbox[0] = Math.min(bbox[0], left);
+		bbox[1] = Math.min(bbox[1], top);
+		bbox[2] = Math.max(bbox[2], right);
+		bbox[3] = Math.max(bbox[3], bottom);
+		return bbox;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public List<BinaryMapDataObject> searchMapIndex() throws IOException {
+		if (mapBbox == null) {
+			return null;
+		}
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(mapBbox[0], mapBbox[2],
+				mapBbox[1], mapBbox[3], zoom, null);
+		return reader.searchMapIndex(req);
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoi() throws IOException {
+		if (poiBbox == null) {
+			return null;
+		}
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(poiBbox[0], poiBbox[2],
+				poiBbox[1], poiBbox[3], zoom, ACCEPT_ALL_POI, null);
+		return reader.searchPoi(req);
+	}
+}
@@ -0,0 +1,162 @@
+package net.osmand.router;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.Algorithms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes all entries of test_routing.json (the same as RouteTestingTest) with RoutePlannerFrontEnd.searchRoute.
+ * One operation calculates every selected entry from a fresh routing context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RouteSearchBenchmark {
+
+	private static final String ROUTING_OBF = "Routing_test.obf";
+
+	// comma separated test names, empty for all not ignored entries
+	@Param({""})
+	public String entries;
+
+	@Param({"false"})
+	public boolean useContractionHierarchy;
+
+	private final List<RouteEntry> routeEntries = new ArrayList<RouteEntry>();
+	private final Map<String, BinaryMapIndexReader> readers = new HashMap<String, BinaryMapIndexReader>();
+
+	private static class RouteEntry {
+		String testName;
+		LatLon start;
+		LatLon end;
+		List<LatLon> intermediates = new ArrayList<LatLon>();
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		BinaryMapIndexReader[] readers;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File json = BenchmarkResources.getResource("test_routing.json");
+		String content = Algorithms.readFromInputStream(new FileInputStream(json)).toString();
+		List<String> selected = Algorithms.isEmpty(entries) ? null : Arrays.asList(entries.split(","));
+		JSONArray arr = new JSONArray(content);
+		for (int i = 0; i < arr.length(); i++) {
+			JSONObject o = arr.getJSONObject(i);
+			RouteEntry e = new RouteEntry();
+			e.testName = o.optString("testName");
+			if (selected != null ? !selected.contains(e.testName) : o.optBoolean("ignore")) {
+				continue;
+			}
+			e.start = parseLatLon(o.optJSONObject("startPoint"));
+			e.end = parseLatLon(o.optJSONObject("endPoint"));
+			for (int k = 1; k <= 3; k++) {
+				LatLon l = parseLatLon(o.optJSONObject("transitPoint" + k));
+				if (l != null) {
+					e.intermediates.add(l);
+				}
+			}
+			JSONObject params = o.optJSONObject("params");
+			if (params != null) {
+				Iterator<String> it = params.keys();
+				while (it.hasNext()) {
+					String key = it.next();
+					e.params.put(key, params.getString(key));
+				}
+			}
+			if (e.start == null || e.end == null) {
+				continue;
+			}
+			BinaryMapIndexReader routing = getReader(ROUTING_OBF);
+			if (e.params.containsKey("map")) {
+				e.readers = new BinaryMapIndexReader[] { getReader(e.params.get("map")), routing };
+			} else {
+				e.readers = new BinaryMapIndexReader[] { routing };
+			}
+			routeEntries.add(e);
+		}
+		if (routeEntries.isEmpty()) {
+			throw new IllegalStateException("No routing entries selected: " + entries);
+		}
+	}
+
+	private static LatLon parseLatLon(JSONObject o) {
+		if (o == null) {
+			return null;
+		}
+		return new LatLon(o.getDouble("latitude"), o.getDouble("longitude"));
+	}
+
+	private BinaryMapIndexReader getReader(String name) throws IOException {
+		BinaryMapIndexReader reader = readers.get(name);
+		if (reader == null) {
+			File file = BenchmarkResources.getResource(name);
+			reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+			readers.put(name, reader);
+		}
+		return reader;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader reader : readers.values()) {
+			reader.close();
+		}
+		readers.clear();
+		routeEntries.clear();
+	}
+
+	@Benchmark
+	public void searchRoute(Blackhole bh) throws IOException, InterruptedException {
+		RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
+		for (RouteEntry e : routeEntries) {
+			RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+					RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+			String vehicle = e.params.containsKey("vehicle") ? e.params.get("vehicle") : "car";
+			RoutingConfiguration config = builder.build(vehicle, memoryLimits, e.params);
+			if (e.params.containsKey("heuristicCoefficient")) {
+				config.heuristicCoefficient = Float.parseFloat(e.params.get("heuristicCoefficient"));
+			}
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			fe.setUseContractionHierarchy(useContractionHierarchy);
+			RoutingContext ctx = fe.buildRoutingContext(config, null, e.readers,
+					RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			ctx.leftSideNavigation = false;
+			bh.consume(fe.searchRoute(ctx, e.start, e.end, e.intermediates));
+		}
+	}
+}
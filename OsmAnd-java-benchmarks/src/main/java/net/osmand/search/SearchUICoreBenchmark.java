@@ -0,0 +1,165 @@
+package net.osmand.search;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+import net.osmand.util.Algorithms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs phrases of search/*.json test files (the same as SearchUICoreTest) against their obf files.
+ * One operation searches every phrase of selected files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchUICoreBenchmark {
+
+	// comma separated json file names without extension, empty for all
+	@Param({""})
+	public String files;
+
+	private SearchUICore core;
+	private final List<SearchQuery> queries = new ArrayList<SearchQuery>();
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+
+	private static class SearchQuery {
+		String text;
+		SearchSettings settings;
+	}
+
+	private static final ResultMatcher<SearchResult> ACCEPT_ALL = new ResultMatcher<SearchResult>() {
+		@Override
+		public boolean publish(SearchResult object) {
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+	};
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		MapPoiTypes.setDefault(new MapPoiTypes(BenchmarkResources.getResource("poi_types.xml").getPath()));
+		core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		core.init();
+		List<String> selected = Algorithms.isEmpty(files) ? null : Arrays.asList(files.split(","));
+		File[] jsonFiles = BenchmarkResources.getResource("search").listFiles();
+		if (jsonFiles != null) {
+			Arrays.sort(jsonFiles);
+			for (File file : jsonFiles) {
+				String fileName = file.getName();
+				if (!fileName.endsWith(".json")) {
+					continue;
+				}
+				String name = fileName.substring(0, fileName.length() - ".json".length());
+				if (selected == null || selected.contains(name)) {
+					addQueries(file, name);
+				}
+			}
+		}
+		if (queries.isEmpty()) {
+			throw new IllegalStateException("No search phrases selected: " + files);
+		}
+	}
+
+	private void addQueries(File file, String name) throws IOException {
+		JSONObject json = new JSONObject(Algorithms.getFileAsString(file));
+		JSONObject settingsJson = json.getJSONObject("settings");
+		if (settingsJson.optBoolean("disabled", false)) {
+			return;
+		}
+		SearchSettings settings = SearchSettings.parseJSON(settingsJson);
+		if (settingsJson.optBoolean("useData", true)) {
+			File obf = new File(file.getParentFile(), name + ".obf");
+			if (!obf.exists()) {
+				obf = new File(file.getParentFile(), name + ".obf.gz");
+				if (!obf.exists()) {
+					return;
+				}
+				obf = BenchmarkResources.getObfFile(obf);
+			}
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+			readers.add(reader);
+			settings.setOfflineIndexes(Collections.singletonList(reader));
+		}
+		List<String> phrases = new ArrayList<String>();
+		String singlePhrase = json.optString("phrase", null);
+		if (singlePhrase != null) {
+			phrases.add(singlePhrase);
+		}
+		JSONArray phrasesJson = json.optJSONArray("phrases");
+		if (phrasesJson != null) {
+			for (int i = 0; i < phrasesJson.length(); i++) {
+				phrases.add(phrasesJson.optString(i));
+			}
+		}
+		for (String text : phrases) {
+			// POI_TYPE: phrases select category in 2 steps, they are covered by plain phrases
+			if (!Algorithms.isEmpty(text) && !text.startsWith("POI_TYPE:")) {
+				SearchQuery q = new SearchQuery();
+				q.text = text;
+				q.settings = settings;
+				queries.add(q);
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader reader : readers) {
+			reader.close();
+		}
+		readers.clear();
+		queries.clear();
+	}
+
+	@Benchmark
+	public void search(Blackhole bh) {
+		for (SearchQuery q : queries) {
+			SearchPhrase phrase = SearchPhrase.emptyPhrase(q.settings).generateNewPhrase(q.text, q.settings);
+			SearchResultMatcher matcher = new SearchResultMatcher(ACCEPT_ALL, phrase, 1, new AtomicInteger(1), -1);
+			core.searchInternal(phrase, matcher);
+			SearchResultCollection collection = new SearchResultCollection(phrase);
+			collection.addSearchResults(matcher.getRequestResults(), true, true);
+			bh.consume(collection.getCurrentSearchResults());
+		}
+	}
+}
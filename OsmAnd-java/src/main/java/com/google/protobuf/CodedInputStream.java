@@ -33,6 +33,7 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +69,16 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream reading from memory mapped windows of one file.
+   * Window i covers file bytes [i * windowSize, (i + 1) * windowSize), the stream
+   * keeps its own position, so the windows must not be shared with other streams
+   * (pass {@link ByteBuffer#duplicate()} views).
+   */
+  public static CodedInputStream newInstance(ByteBuffer[] windows, int windowSize, long length) {
+    return new CodedInputStream(windows, windowSize, length);
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -539,6 +550,11 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  // osmand change: memory mapped source
+  private ByteBuffer[] windows;
+  private int windowSize;
+  private long mappedLength;
+  private long mappedPointer;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -586,6 +602,36 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+	// osmand change
+	private CodedInputStream(final ByteBuffer[] windows, int windowSize, long length) {
+		buffer = new byte[BUFFER_SIZE];
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.windows = windows;
+		this.windowSize = windowSize;
+		this.mappedLength = length;
+		this.mappedPointer = 0;
+		input = null;
+	}
+
+	// osmand change
+	private void readMapped(byte[] dst, int off, int len) throws IOException {
+		if (mappedPointer + len > mappedLength) {
+			throw InvalidProtocolBufferException.truncatedMessage();
+		}
+		while (len > 0) {
+			ByteBuffer window = windows[(int) (mappedPointer / windowSize)];
+			int inWindow = (int) (mappedPointer % windowSize);
+			int n = Math.min(len, window.limit() - inWindow);
+			window.position(inWindow);
+			window.get(dst, off, n);
+			mappedPointer += n;
+			off += n;
+			len -= n;
+		}
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -761,6 +807,16 @@ public final class CodedInputStream {
     	} else {
     		bufferSize = -1;
     	}
+    } else if (windows != null) {
+    	// osmand change
+    	totalBytesRetired = (int) mappedPointer;
+    	long remain = mappedLength - mappedPointer;
+    	bufferSize = (int) Math.min(remain, buffer.length);
+    	if (bufferSize > 0) {
+    		readMapped(buffer, 0, bufferSize);
+    	} else {
+    		bufferSize = -1;
+    	}
     } else {
     	bufferSize = (input == null) ? -1 : input.read(buffer);
     }
@@ -882,6 +938,9 @@ public final class CodedInputStream {
         	if(raf != null) {
         		raf.readFully(chunk, pos, chunk.length - pos);
         		n = chunk.length - pos;
+        	} else if (windows != null) {
+        		readMapped(chunk, pos, chunk.length - pos);
+        		n = chunk.length - pos;
         	} else {
         		n = (input == null) ? -1 :
         	    input.read(chunk, pos, chunk.length - pos);
@@ -949,6 +1008,14 @@ public final class CodedInputStream {
       	 if (n <= 0) {
              throw InvalidProtocolBufferException.truncatedMessage();
          }
+      } else if (windows != null) {
+         bufferPos = 0;
+         bufferSize = 0;
+         if (mappedPointer + size - pos > mappedLength) {
+             throw InvalidProtocolBufferException.truncatedMessage();
+         }
+         mappedPointer += size - pos;
+         totalBytesRetired = (int) mappedPointer;
       } else {
       // Keep refilling the buffer until we get to the point we wanted to skip
       // to.  This has the side effect of ensuring the limits are updated
@@ -975,7 +1042,11 @@ public final class CodedInputStream {
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  if (windows != null) {
+			  mappedPointer = pointer;
+		  } else {
+			  raf.seek(pointer);
+		  }
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
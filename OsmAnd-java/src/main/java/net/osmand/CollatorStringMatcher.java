@@ -15,6 +15,7 @@ public class CollatorStringMatcher implements StringMatcher {
 	private final Collator collator;
 	private final StringMatcherMode mode;
 	private final String part;
+	private final NormalizedName normalizedPart;
 	
 	public static enum StringMatcherMode {
 		// tests only first word as base starts with part
@@ -44,7 +45,7 @@ public class CollatorStringMatcher implements StringMatcher {
 		}
 		this.part = part;
 		this.mode = mode;
-		
+		this.normalizedPart = NormalizedName.of(part);
 	}
 
 	public Collator getCollator() {
@@ -53,7 +54,130 @@ public class CollatorStringMatcher implements StringMatcher {
 	
 	@Override
 	public boolean matches(String name) {
-		return cmatches(collator, name, part, mode);
+		if (normalizedPart.getKey() == null) {
+			return cmatches(collator, name, part, mode);
+		}
+		return matches(NormalizedName.of(name));
+	}
+
+	/**
+	 * Same as {@link #matches(String)} but name is prepared once (see {@link net.osmand.data.MapObject#getNormalizedName(String)}).
+	 */
+	public boolean matches(NormalizedName name) {
+		if (!normalizedPart.isComparable(name)) {
+			return cmatches(collator, name.getName(), part, mode);
+		}
+		String text = name.getText();
+		char[] base = name.getKey();
+		char[] p = normalizedPart.getKey();
+		switch (mode) {
+		case CHECK_CONTAINS:
+			// ccontains works with original name
+			char[] nameKey = name.getNameKey();
+			if (nameKey == null) {
+				return cmatches(collator, name.getName(), part, mode);
+			}
+			return kcontains(nameKey, p);
+		case CHECK_EQUALS_FROM_SPACE:
+			return kstartsWith(text, base, p, true, true, true);
+		case CHECK_STARTS_FROM_SPACE:
+			return kstartsWith(text, base, p, true, true, false);
+		case CHECK_STARTS_FROM_SPACE_NOT_BEGINNING:
+			return kstartsWith(text, base, p, false, true, false);
+		case CHECK_ONLY_STARTS_WITH:
+			return kstartsWith(text, base, p, true, false, false);
+		case CHECK_EQUALS:
+			return kstartsWith(text, base, p, false, false, true);
+		}
+		return false;
+	}
+
+	// collator equals for keys: window [pos, pos + len) of base and part without ignorable chars
+	private static boolean kequals(char[] base, int pos, int len, char[] part) {
+		int i = pos;
+		int end = pos + len;
+		int j = 0;
+		while (true) {
+			while (i < end && base[i] == NormalizedName.IGNORABLE) {
+				i++;
+			}
+			while (j < part.length && part[j] == NormalizedName.IGNORABLE) {
+				j++;
+			}
+			if (i == end || j == part.length) {
+				return i == end && j == part.length;
+			}
+			if (base[i++] != part[j++]) {
+				return false;
+			}
+		}
+	}
+
+	// same as ccontains for keys
+	private static boolean kcontains(char[] base, char[] part) {
+		if (base.length <= part.length) {
+			return kequals(base, 0, base.length, part);
+		}
+		for (int pos = 0; pos <= base.length - part.length + 1; pos++) {
+			// ccontains checks all windows up to double length of part
+			int end = Math.min(pos + part.length * 2, base.length);
+			int i = pos;
+			int j = 0;
+			boolean match = true;
+			while (true) {
+				while (j < part.length && part[j] == NormalizedName.IGNORABLE) {
+					j++;
+				}
+				if (j == part.length) {
+					break;
+				}
+				while (i < end && base[i] == NormalizedName.IGNORABLE) {
+					i++;
+				}
+				if (i == end || base[i] != part[j]) {
+					match = false;
+					break;
+				}
+				i++;
+				j++;
+			}
+			if (match) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// same as cstartsWith for keys of simplified strings
+	private static boolean kstartsWith(String searchIn, char[] key, char[] theStart,
+			boolean checkBeginning, boolean checkSpaces, boolean equals) {
+		int searchInLength = key.length;
+		int startLength = theStart.length;
+		if (startLength == 0) {
+			return true;
+		}
+		if (startLength > searchInLength) {
+			return false;
+		}
+		if (checkBeginning && kequals(key, 0, startLength, theStart)) {
+			if (!equals || startLength == searchInLength || isSpace(searchIn.charAt(startLength))) {
+				return true;
+			}
+		}
+		if (checkSpaces) {
+			for (int i = 1; i <= searchInLength - startLength; i++) {
+				if (isSpace(searchIn.charAt(i - 1)) && !isSpace(searchIn.charAt(i))
+						&& kequals(key, i, startLength, theStart)) {
+					if (!equals || i + startLength == searchInLength || isSpace(searchIn.charAt(i + startLength))) {
+						return true;
+					}
+				}
+			}
+		}
+		if (!checkBeginning && !checkSpaces && equals) {
+			return kequals(key, 0, searchInLength, theStart);
+		}
+		return false;
 	}
 	
 	
@@ -181,7 +305,7 @@ public class CollatorStringMatcher implements StringMatcher {
 		return false;
 	}
 	
-	private static String simplifyStringAndAlignChars(String fullText) {
+	static String simplifyStringAndAlignChars(String fullText) {
 		fullText = fullText.toLowerCase(Locale.getDefault());
 		fullText = alignChars(fullText);
 		return fullText;
@@ -195,7 +319,7 @@ public class CollatorStringMatcher implements StringMatcher {
 		return fullText;
 	}
 
-	private static boolean isSpace(char c){
+	static boolean isSpace(char c){
 		return !Character.isLetter(c) && !Character.isDigit(c);
 	}
 	
@@ -0,0 +1,428 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.Author;
+import net.osmand.GPXUtilities.Bounds;
+import net.osmand.GPXUtilities.Copyright;
+import net.osmand.GPXUtilities.GPXExtensions;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.Metadata;
+import net.osmand.GPXUtilities.Route;
+import net.osmand.GPXUtilities.RouteSegment;
+import net.osmand.GPXUtilities.RouteType;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Binary copy of parsed gpx (see {@link #FILE_EXT}) which is read much faster than xml. Cache is valid while
+ * size and modification time of gpx are the same as when cache was written. Only data stored by
+ * {@link GPXUtilities#loadGPXFile(File)} without custom extensions reader is kept.
+ */
+public class GPXBinaryCache {
+
+	private static final Log LOG = PlatformUtil.getLog(GPXBinaryCache.class);
+
+	public static final String FILE_EXT = ".gpxcache";
+	public static final int VERSION = 1;
+
+	private static final int POINT_EXTRA_DATA = 1;
+	private static final int POINT_HEADING = 2;
+
+	public static File getDefaultFile(File gpx) {
+		return new File(gpx.getParentFile(), gpx.getName() + FILE_EXT);
+	}
+
+	/**
+	 * Reads gpx from cache if it is valid, otherwise parses gpx and writes cache.
+	 */
+	public static GPXFile loadGPXFile(File gpx, File cache, boolean packPoints) {
+		if (cache.exists()) {
+			try {
+				GPXFile gpxFile = read(cache, gpx, packPoints);
+				if (gpxFile != null) {
+					return gpxFile;
+				}
+			} catch (IOException e) {
+				LOG.warn("Failed to read " + cache.getName() + ": " + e.getMessage());
+			}
+		}
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(gpx, null, packPoints);
+		if (gpxFile.error == null) {
+			try {
+				write(gpxFile, gpx, cache);
+			} catch (IOException e) {
+				LOG.warn("Failed to write " + cache.getName() + ": " + e.getMessage());
+			}
+		}
+		return gpxFile;
+	}
+
+	public static void write(GPXFile gpxFile, File gpx, File cache) throws IOException {
+		File tmp = new File(cache.getParentFile(), cache.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(VERSION);
+			out.writeLong(gpx.length());
+			out.writeLong(gpx.lastModified());
+			writeString(out, gpxFile.author);
+			writeMetadata(out, gpxFile.metadata);
+			writeExtensions(out, gpxFile);
+			writePoints(out, gpxFile.getPoints());
+			writeVarint(out, gpxFile.routes.size());
+			for (Route route : gpxFile.routes) {
+				writeString(out, route.name);
+				writeString(out, route.desc);
+				writeExtensions(out, route);
+				writePoints(out, route.points);
+			}
+			List<Track> tracks = new ArrayList<>();
+			for (Track track : gpxFile.tracks) {
+				if (!track.generalTrack) {
+					tracks.add(track);
+				}
+			}
+			writeVarint(out, tracks.size());
+			for (Track track : tracks) {
+				writeString(out, track.name);
+				writeString(out, track.desc);
+				writeExtensions(out, track);
+				writeVarint(out, track.segments.size());
+				for (TrkSegment segment : track.segments) {
+					writeSegment(out, segment);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(cache)) {
+			cache.delete();
+			if (!tmp.renameTo(cache)) {
+				tmp.delete();
+				throw new IOException("Failed to rename " + tmp.getName());
+			}
+		}
+	}
+
+	/**
+	 * @return null if cache was written for another version of gpx
+	 */
+	public static GPXFile read(File cache, File gpx, boolean packPoints) throws IOException {
+		byte[] bytes = new byte[(int) cache.length()];
+		RandomAccessFile raf = new RandomAccessFile(cache, "r");
+		try {
+			raf.readFully(bytes);
+		} finally {
+			raf.close();
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (in.readInt() != VERSION || in.readLong() != gpx.length() || in.readLong() != gpx.lastModified()) {
+			return null;
+		}
+		GPXFile gpxFile = new GPXFile(readString(in));
+		gpxFile.metadata = readMetadata(in);
+		readExtensions(in, gpxFile);
+		List<WptPt> points = new ArrayList<>();
+		readPoints(in, points);
+		gpxFile.addPoints(points);
+		int routes = readVarint(in);
+		for (int i = 0; i < routes; i++) {
+			Route route = new Route();
+			route.name = readString(in);
+			route.desc = readString(in);
+			readExtensions(in, route);
+			readPoints(in, route.points);
+			gpxFile.routes.add(route);
+		}
+		int tracks = readVarint(in);
+		for (int i = 0; i < tracks; i++) {
+			Track track = new Track();
+			track.name = readString(in);
+			track.desc = readString(in);
+			readExtensions(in, track);
+			int segments = readVarint(in);
+			for (int j = 0; j < segments; j++) {
+				track.segments.add(readSegment(in, packPoints));
+			}
+			gpxFile.tracks.add(track);
+		}
+		gpxFile.addGeneralTrack();
+		GPXUtilities.createArtificialPrimeMeridianPoints(gpxFile);
+		gpxFile.path = gpx.getAbsolutePath();
+		gpxFile.modifiedTime = gpx.lastModified();
+		return gpxFile;
+	}
+
+	private static void writeMetadata(DataOutputStream out, Metadata metadata) throws IOException {
+		writeString(out, metadata.name);
+		writeString(out, metadata.desc);
+		writeString(out, metadata.link);
+		writeString(out, metadata.keywords);
+		out.writeLong(metadata.time);
+		out.writeBoolean(metadata.author != null);
+		if (metadata.author != null) {
+			writeString(out, metadata.author.name);
+			writeString(out, metadata.author.email);
+			writeString(out, metadata.author.link);
+			writeExtensions(out, metadata.author);
+		}
+		out.writeBoolean(metadata.copyright != null);
+		if (metadata.copyright != null) {
+			writeString(out, metadata.copyright.author);
+			writeString(out, metadata.copyright.year);
+			writeString(out, metadata.copyright.license);
+			writeExtensions(out, metadata.copyright);
+		}
+		out.writeBoolean(metadata.bounds != null);
+		if (metadata.bounds != null) {
+			out.writeDouble(metadata.bounds.minlat);
+			out.writeDouble(metadata.bounds.minlon);
+			out.writeDouble(metadata.bounds.maxlat);
+			out.writeDouble(metadata.bounds.maxlon);
+			writeExtensions(out, metadata.bounds);
+		}
+		writeExtensions(out, metadata);
+	}
+
+	private static Metadata readMetadata(DataInputStream in) throws IOException {
+		Metadata metadata = new Metadata();
+		metadata.name = readString(in);
+		metadata.desc = readString(in);
+		metadata.link = readString(in);
+		metadata.keywords = readString(in);
+		metadata.time = in.readLong();
+		if (in.readBoolean()) {
+			Author author = new Author();
+			author.name = readString(in);
+			author.email = readString(in);
+			author.link = readString(in);
+			readExtensions(in, author);
+			metadata.author = author;
+		}
+		if (in.readBoolean()) {
+			Copyright copyright = new Copyright();
+			copyright.author = readString(in);
+			copyright.year = readString(in);
+			copyright.license = readString(in);
+			readExtensions(in, copyright);
+			metadata.copyright = copyright;
+		}
+		if (in.readBoolean()) {
+			Bounds bounds = new Bounds();
+			bounds.minlat = in.readDouble();
+			bounds.minlon = in.readDouble();
+			bounds.maxlat = in.readDouble();
+			bounds.maxlon = in.readDouble();
+			readExtensions(in, bounds);
+			metadata.bounds = bounds;
+		}
+		readExtensions(in, metadata);
+		return metadata;
+	}
+
+	private static void writeSegment(DataOutputStream out, TrkSegment segment) throws IOException {
+		writeString(out, segment.name);
+		writeExtensions(out, segment);
+		writeVarint(out, segment.routeSegments.size());
+		for (RouteSegment s : segment.routeSegments) {
+			writeString(out, s.id);
+			writeString(out, s.length);
+			writeString(out, s.segmentTime);
+			writeString(out, s.speed);
+			writeString(out, s.turnType);
+			writeString(out, s.turnAngle);
+			writeString(out, s.skipTurn);
+			writeString(out, s.types);
+			writeString(out, s.pointTypes);
+			writeString(out, s.names);
+		}
+		writeVarint(out, segment.routeTypes.size());
+		for (RouteType t : segment.routeTypes) {
+			writeString(out, t.tag);
+			writeString(out, t.value);
+		}
+		writePoints(out, segment.points);
+	}
+
+	private static TrkSegment readSegment(DataInputStream in, boolean packPoints) throws IOException {
+		TrkSegment segment = new TrkSegment();
+		segment.name = readString(in);
+		readExtensions(in, segment);
+		int routeSegments = readVarint(in);
+		for (int i = 0; i < routeSegments; i++) {
+			RouteSegment s = new RouteSegment();
+			s.id = readString(in);
+			s.length = readString(in);
+			s.segmentTime = readString(in);
+			s.speed = readString(in);
+			s.turnType = readString(in);
+			s.turnAngle = readString(in);
+			s.skipTurn = readString(in);
+			s.types = readString(in);
+			s.pointTypes = readString(in);
+			s.names = readString(in);
+			segment.routeSegments.add(s);
+		}
+		int routeTypes = readVarint(in);
+		for (int i = 0; i < routeTypes; i++) {
+			RouteType t = new RouteType();
+			t.tag = readString(in);
+			t.value = readString(in);
+			segment.routeTypes.add(t);
+		}
+		if (packPoints) {
+			segment.packPoints();
+		}
+		readPoints(in, segment.points);
+		return segment;
+	}
+
+	private static void writePoints(DataOutputStream out, List<WptPt> points) throws IOException {
+		List<WptPt> list = new ArrayList<>(points.size());
+		for (WptPt p : points) {
+			// artificial points are created again on reading
+			if (Math.abs(p.lon) != GPXUtilities.PRIME_MERIDIAN) {
+				list.add(p);
+			}
+		}
+		writeVarint(out, list.size());
+		long time = 0;
+		for (WptPt p : list) {
+			boolean extra = p.name != null || p.link != null || p.category != null || p.desc != null
+					|| p.comment != null || !p.getExtensionsToRead().isEmpty();
+			boolean heading = !Float.isNaN(p.heading);
+			out.writeByte((extra ? POINT_EXTRA_DATA : 0) | (heading ? POINT_HEADING : 0));
+			out.writeDouble(p.lat);
+			out.writeDouble(p.lon);
+			writeVarlong(out, p.time - time);
+			time = p.time;
+			out.writeDouble(p.ele);
+			out.writeDouble(p.speed);
+			out.writeDouble(p.hdop);
+			if (heading) {
+				out.writeFloat(p.heading);
+			}
+			if (extra) {
+				writeString(out, p.name);
+				writeString(out, p.link);
+				writeString(out, p.category);
+				writeString(out, p.desc);
+				writeString(out, p.comment);
+				writeExtensions(out, p);
+			}
+		}
+	}
+
+	private static void readPoints(DataInputStream in, Collection<WptPt> points) throws IOException {
+		int size = readVarint(in);
+		long time = 0;
+		for (int i = 0; i < size; i++) {
+			int flags = in.readByte();
+			WptPt p = new WptPt();
+			p.lat = in.readDouble();
+			p.lon = in.readDouble();
+			time += readVarlong(in);
+			p.time = time;
+			p.ele = in.readDouble();
+			p.speed = in.readDouble();
+			p.hdop = in.readDouble();
+			if ((flags & POINT_HEADING) != 0) {
+				p.heading = in.readFloat();
+			}
+			if ((flags & POINT_EXTRA_DATA) != 0) {
+				p.name = readString(in);
+				p.link = readString(in);
+				p.category = readString(in);
+				p.desc = readString(in);
+				p.comment = readString(in);
+				readExtensions(in, p);
+			}
+			points.add(p);
+		}
+	}
+
+	private static void writeExtensions(DataOutputStream out, GPXExtensions e) throws IOException {
+		Map<String, String> extensions = e.getExtensionsToRead();
+		writeVarint(out, extensions.size());
+		for (Entry<String, String> entry : extensions.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private static void readExtensions(DataInputStream in, GPXExtensions e) throws IOException {
+		int size = readVarint(in);
+		if (size > 0) {
+			Map<String, String> extensions = e.getExtensionsToWrite();
+			for (int i = 0; i < size; i++) {
+				extensions.put(readString(in), readString(in));
+			}
+		}
+	}
+
+	// length + 1 is written, 0 for null
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			writeVarint(out, 0);
+		} else {
+			byte[] bytes = s.getBytes("UTF-8");
+			writeVarint(out, bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readVarint(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeVarint(DataOutputStream out, int v) throws IOException {
+		writeVarlong(out, v & 0xffffffffL);
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException {
+		return (int) readVarlong(in);
+	}
+
+	// zigzag encoded, so small negative values are short as well
+	private static void writeVarlong(DataOutputStream out, long v) throws IOException {
+		long z = (v << 1) ^ (v >> 63);
+		while ((z & ~0x7fL) != 0) {
+			out.writeByte((int) ((z & 0x7f) | 0x80));
+			z >>>= 7;
+		}
+		out.writeByte((int) z);
+	}
+
+	private static long readVarlong(DataInputStream in) throws IOException {
+		long z = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			z |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (z >>> 1) ^ -(z & 1);
+	}
+}
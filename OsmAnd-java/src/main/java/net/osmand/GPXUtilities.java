@@ -31,6 +31,7 @@ import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -43,9 +44,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class GPXUtilities {
 
@@ -463,6 +469,323 @@ public class GPXUtilities {
 			splitSegment(metric, secondaryMetric, metricLimit, splitSegments, this, joinSegments);
 			return convert(splitSegments);
 		}
+
+		/**
+		 * Replaces points with {@link PackedTrkPoints} to reduce memory used by long tracks.
+		 */
+		public void packPoints() {
+			if (!(points instanceof PackedTrkPoints)) {
+				points = new PackedTrkPoints(points);
+			}
+		}
+
+		public boolean isPacked() {
+			return points instanceof PackedTrkPoints;
+		}
+	}
+
+	/**
+	 * Compact list of track points stored by columns: coordinates as int E7, time as int offset from the first
+	 * time, elevation, speed, hdop and distance as floats, so point takes about 30 bytes instead of WptPt object.
+	 * Data which doesn't fit in columns (name, description, colors, extensions) is kept in separate WptPt.
+	 * <p>
+	 * {@link #get(int)} creates new point on each call, so changes of returned point are not stored
+	 * until it is passed to {@link #set(int, WptPt)}. Values could be read without creating points
+	 * by {@link #getLatitude(int)}, {@link #getTime(int)}, etc.
+	 */
+	public static class PackedTrkPoints extends AbstractList<WptPt> implements RandomAccess {
+
+		private static final double E7 = 1e7;
+		private static final int NO_TIME = Integer.MIN_VALUE;
+		private static final byte FIRST_POINT = 1;
+		private static final byte LAST_POINT = 2;
+		private static final byte PRIME_MERIDIAN_POINT = 4;
+
+		private int size = 0;
+		private int[] lat;
+		private int[] lon;
+		private long baseTime = 0;
+		// offsets from baseTime, replaced by times when offset doesn't fit int
+		private int[] timeOffsets;
+		private long[] times;
+		private float[] ele;
+		private float[] speed;
+		private float[] hdop;
+		private float[] distance;
+		private byte[] flags;
+		// created for the first point which has such data
+		private float[] heading;
+		private WptPt[] extra;
+
+		public PackedTrkPoints() {
+			this(16);
+		}
+
+		public PackedTrkPoints(int capacity) {
+			lat = new int[capacity];
+			lon = new int[capacity];
+			timeOffsets = new int[capacity];
+			ele = new float[capacity];
+			speed = new float[capacity];
+			hdop = new float[capacity];
+			distance = new float[capacity];
+			flags = new byte[capacity];
+		}
+
+		public PackedTrkPoints(Collection<WptPt> points) {
+			this(points.size());
+			addAll(points);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public WptPt get(int index) {
+			checkIndex(index);
+			WptPt p = new WptPt(getLatitude(index), getLongitude(index), getTime(index), ele[index], speed[index],
+					hdop[index], heading == null ? Float.NaN : heading[index]);
+			p.distance = distance[index];
+			p.firstPoint = (flags[index] & FIRST_POINT) != 0;
+			p.lastPoint = (flags[index] & LAST_POINT) != 0;
+			if (extra != null && extra[index] != null) {
+				copyExtraData(extra[index], p);
+			}
+			return p;
+		}
+
+		@Override
+		public WptPt set(int index, WptPt point) {
+			WptPt old = get(index);
+			write(index, point);
+			return old;
+		}
+
+		@Override
+		public void add(int index, WptPt point) {
+			if (index < 0 || index > size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			if (size == lat.length) {
+				grow(Math.max(16, size + (size >> 1)));
+			}
+			move(index, index + 1, size - index);
+			size++;
+			modCount++;
+			write(index, point);
+		}
+
+		@Override
+		public WptPt remove(int index) {
+			WptPt old = get(index);
+			move(index + 1, index, size - index - 1);
+			size--;
+			modCount++;
+			if (extra != null) {
+				extra[size] = null;
+			}
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			if (extra != null) {
+				Arrays.fill(extra, 0, size, null);
+			}
+			size = 0;
+			modCount++;
+		}
+
+		public void trimToSize() {
+			if (size < lat.length) {
+				grow(size);
+			}
+		}
+
+		public double getLatitude(int index) {
+			checkIndex(index);
+			return lat[index] / E7;
+		}
+
+		public double getLongitude(int index) {
+			checkIndex(index);
+			if ((flags[index] & PRIME_MERIDIAN_POINT) != 0) {
+				return lon[index] < 0 ? -PRIME_MERIDIAN : PRIME_MERIDIAN;
+			}
+			return lon[index] / E7;
+		}
+
+		public long getTime(int index) {
+			checkIndex(index);
+			if (times != null) {
+				return times[index];
+			}
+			int offset = timeOffsets[index];
+			return offset == NO_TIME ? 0 : baseTime + offset;
+		}
+
+		public double getElevation(int index) {
+			checkIndex(index);
+			return ele[index];
+		}
+
+		public double getSpeed(int index) {
+			checkIndex(index);
+			return speed[index];
+		}
+
+		public double getHdop(int index) {
+			checkIndex(index);
+			return hdop[index];
+		}
+
+		public double getDistance(int index) {
+			checkIndex(index);
+			return distance[index];
+		}
+
+		public void setDistance(int index, double dist) {
+			checkIndex(index);
+			distance[index] = (float) dist;
+		}
+
+		public boolean isFirstPoint(int index) {
+			checkIndex(index);
+			return (flags[index] & FIRST_POINT) != 0;
+		}
+
+		public boolean isLastPoint(int index) {
+			checkIndex(index);
+			return (flags[index] & LAST_POINT) != 0;
+		}
+
+		private void checkIndex(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+		}
+
+		private void write(int index, WptPt p) {
+			lat[index] = (int) Math.round(p.lat * E7);
+			lon[index] = (int) Math.round(p.lon * E7);
+			byte f = 0;
+			if (p.firstPoint) {
+				f |= FIRST_POINT;
+			}
+			if (p.lastPoint) {
+				f |= LAST_POINT;
+			}
+			// artificial points are recognized by exact longitude
+			if (Math.abs(p.lon) == PRIME_MERIDIAN) {
+				f |= PRIME_MERIDIAN_POINT;
+			}
+			flags[index] = f;
+			writeTime(index, p.time);
+			ele[index] = (float) p.ele;
+			speed[index] = (float) p.speed;
+			hdop[index] = (float) p.hdop;
+			distance[index] = (float) p.distance;
+			if (heading == null && !Float.isNaN(p.heading)) {
+				heading = new float[lat.length];
+				Arrays.fill(heading, Float.NaN);
+			}
+			if (heading != null) {
+				heading[index] = p.heading;
+			}
+			boolean hasExtra = hasExtraData(p);
+			if (extra == null && hasExtra) {
+				extra = new WptPt[lat.length];
+			}
+			if (extra != null) {
+				WptPt e = null;
+				if (hasExtra) {
+					e = new WptPt();
+					copyExtraData(p, e);
+				}
+				extra[index] = e;
+			}
+		}
+
+		private void writeTime(int index, long time) {
+			if (times == null) {
+				if (time == 0) {
+					timeOffsets[index] = NO_TIME;
+					return;
+				}
+				if (baseTime == 0) {
+					baseTime = time;
+				}
+				long offset = time - baseTime;
+				if (offset > NO_TIME && offset <= Integer.MAX_VALUE) {
+					timeOffsets[index] = (int) offset;
+					return;
+				}
+				long[] t = new long[lat.length];
+				for (int i = 0; i < size; i++) {
+					t[i] = getTime(i);
+				}
+				times = t;
+				timeOffsets = null;
+			}
+			times[index] = time;
+		}
+
+		private static boolean hasExtraData(WptPt p) {
+			return p.name != null || p.link != null || p.category != null || p.desc != null || p.comment != null
+					|| p.deleted || p.speedColor != 0 || p.altitudeColor != 0 || p.slopeColor != 0
+					|| p.colourARGB != 0 || !p.getExtensionsToRead().isEmpty() || p.getExtensionsWriter() != null;
+		}
+
+		private static void copyExtraData(WptPt from, WptPt to) {
+			to.name = from.name;
+			to.link = from.link;
+			to.category = from.category;
+			to.desc = from.desc;
+			to.comment = from.comment;
+			to.deleted = from.deleted;
+			to.speedColor = from.speedColor;
+			to.altitudeColor = from.altitudeColor;
+			to.slopeColor = from.slopeColor;
+			to.colourARGB = from.colourARGB;
+			to.copyExtensions(from);
+			to.setExtensionsWriter(from.getExtensionsWriter());
+		}
+
+		private void move(int from, int to, int length) {
+			if (length <= 0) {
+				return;
+			}
+			Object[] columns = {lat, lon, timeOffsets, times, ele, speed, hdop, distance, flags, heading, extra};
+			for (Object column : columns) {
+				if (column != null) {
+					System.arraycopy(column, from, column, to, length);
+				}
+			}
+		}
+
+		private void grow(int capacity) {
+			lat = Arrays.copyOf(lat, capacity);
+			lon = Arrays.copyOf(lon, capacity);
+			if (timeOffsets != null) {
+				timeOffsets = Arrays.copyOf(timeOffsets, capacity);
+			}
+			if (times != null) {
+				times = Arrays.copyOf(times, capacity);
+			}
+			ele = Arrays.copyOf(ele, capacity);
+			speed = Arrays.copyOf(speed, capacity);
+			hdop = Arrays.copyOf(hdop, capacity);
+			distance = Arrays.copyOf(distance, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			if (heading != null) {
+				heading = Arrays.copyOf(heading, capacity);
+			}
+			if (extra != null) {
+				extra = Arrays.copyOf(extra, capacity);
+			}
+		}
 	}
 
 	public static class Track extends GPXExtensions {
@@ -775,209 +1098,375 @@ public class GPXUtilities {
 			}
 		}
 
+		// accumulated while points are added
+		private final float[] calculations = new float[1];
+		private long startTimeOfSingleSegment = 0;
+		private long endTimeOfSingleSegment = 0;
+		private float distanceOfSingleSegment = 0;
+		private float distanceMovingOfSingleSegment = 0;
+		private long timeMovingOfSingleSegment = 0;
+		private float totalElevation = 0;
+		private int elevationPoints = 0;
+		private int speedCount = 0;
+		private int timeDiff = 0;
+		private double totalSpeedSum = 0;
+		// same as hasElevationData, hasSpeedData without condition on distance, used to merge analyses
+		private boolean anyElevationData = false;
+		private boolean anySpeedData = false;
+		// speed of some point is derived from distance before any point with speed
+		private boolean speedDerived = false;
+
 		public static GPXTrackAnalysis segment(long filetimestamp, TrkSegment segment) {
 			return new GPXTrackAnalysis().prepareInformation(filetimestamp, new SplitSegment(segment));
 		}
 
 		public GPXTrackAnalysis prepareInformation(long filestamp, SplitSegment... splitSegments) {
-			float[] calculations = new float[1];
-
-			long startTimeOfSingleSegment = 0;
-			long endTimeOfSingleSegment = 0;
+			startAnalysis();
+			for (SplitSegment s : splitSegments) {
+				addSegment(s);
+			}
+			finishAnalysis(filestamp);
+			return this;
+		}
 
-			float distanceOfSingleSegment = 0;
-			float distanceMovingOfSingleSegment = 0;
-			long timeMovingOfSingleSegment = 0;
+		/**
+		 * Same as {@link #prepareInformation(long, SplitSegment...)} but segments are analysed in parallel
+		 * by executor and partial results are merged in order of segments.
+		 */
+		public GPXTrackAnalysis prepareInformation(long filestamp, ExecutorService executor, SplitSegment... splitSegments) {
+			boolean parallel = executor != null && splitSegments.length > 1;
+			for (SplitSegment s : splitSegments) {
+				// points of general segment depend on previous segments
+				parallel &= !s.segment.generalSegment;
+			}
+			if (!parallel) {
+				return prepareInformation(filestamp, splitSegments);
+			}
+			startAnalysis();
+			List<Future<GPXTrackAnalysis>> futures = new ArrayList<>();
+			for (final SplitSegment s : splitSegments) {
+				futures.add(executor.submit(new Callable<GPXTrackAnalysis>() {
+					@Override
+					public GPXTrackAnalysis call() {
+						// speed and time difference of previous segments are not known yet, they are fixed on merge
+						GPXTrackAnalysis partial = new GPXTrackAnalysis();
+						partial.startAnalysis();
+						partial.addSegment(s);
+						return partial;
+					}
+				}));
+			}
+			try {
+				for (int i = 0; i < futures.size(); i++) {
+					GPXTrackAnalysis partial = futures.get(i).get();
+					if (hasSpeedInTrack && partial.speedDerived) {
+						// speeds derived from distance are not used as track has speed
+						partial = new GPXTrackAnalysis();
+						partial.startAnalysis();
+						partial.hasSpeedInTrack = true;
+						partial.addSegment(splitSegments[i]);
+					}
+					if (!partial.elevationData.isEmpty()) {
+						// time of the first point is taken from previous points
+						partial.elevationData.get(0).time = timeDiff;
+						partial.speedData.get(0).time = timeDiff;
+					}
+					merge(partial);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			} finally {
+				for (Future<GPXTrackAnalysis> f : futures) {
+					f.cancel(false);
+				}
+			}
+			finishAnalysis(filestamp);
+			return this;
+		}
 
-			float totalElevation = 0;
-			int elevationPoints = 0;
-			int speedCount = 0;
-			int timeDiff = 0;
-			double totalSpeedSum = 0;
+		private void startAnalysis() {
 			points = 0;
-
 			elevationData = new ArrayList<>();
 			speedData = new ArrayList<>();
+		}
 
-			for (final SplitSegment s : splitSegments) {
-				final int numberOfPoints = s.getNumberOfPoints();
-				float segmentDistance = 0f;
-				metricEnd += s.metricEnd;
-				secondaryMetricEnd += s.secondaryMetricEnd;
-				points += numberOfPoints;
-				for (int j = 0; j < numberOfPoints; j++) {
-					WptPt point = s.get(j);
-					if (j == 0 && locationStart == null) {
-						locationStart = point;
-					}
-					if (j == numberOfPoints - 1) {
-						locationEnd = point;
-					}
-					long time = point.time;
-					if (time != 0) {
-						if (s.metricEnd == 0) {
-							if (s.segment.generalSegment) {
-								if (point.firstPoint) {
-									startTimeOfSingleSegment = time;
-								} else if (point.lastPoint) {
-									endTimeOfSingleSegment = time;
-								}
-								if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
-									timeSpanWithoutGaps += endTimeOfSingleSegment - startTimeOfSingleSegment;
-									startTimeOfSingleSegment = 0;
-									endTimeOfSingleSegment = 0;
-								}
-							}
-						}
-						startTime = Math.min(startTime, time);
-						endTime = Math.max(endTime, time);
-					}
+		private void addSegment(final SplitSegment s) {
+			final int numberOfPoints = s.getNumberOfPoints();
+			float segmentDistance = 0f;
+			metricEnd += s.metricEnd;
+			secondaryMetricEnd += s.secondaryMetricEnd;
+			points += numberOfPoints;
+			// points of packed segment are read into these points alternately
+			WptPt[] buffers = {new WptPt(), new WptPt()};
+			WptPt prev = null;
+			for (int j = 0; j < numberOfPoints; j++) {
+				WptPt buffer = buffers[j % 2];
+				WptPt point = s.read(j, buffer);
+				segmentDistance = addPoint(point, prev, segmentDistance, s.segment.generalSegment, s.metricEnd == 0,
+						j == numberOfPoints - 1);
+				if (j > 0) {
+					s.setDistance(j, segmentDistance);
+				}
+				if (j == 0 && locationStart == null) {
+					locationStart = point == buffer ? s.get(j) : point;
+				}
+				if (j == numberOfPoints - 1) {
+					locationEnd = point == buffer ? s.get(j) : point;
+				}
+				prev = point;
+			}
 
-					if (left == 0 && right == 0) {
-						left = point.getLongitude();
-						right = point.getLongitude();
-						top = point.getLatitude();
-						bottom = point.getLatitude();
-					} else {
-						left = Math.min(left, point.getLongitude());
-						right = Math.max(right, point.getLongitude());
-						top = Math.max(top, point.getLatitude());
-						bottom = Math.min(bottom, point.getLatitude());
+			final WptPt diffsPoint = new WptPt();
+			ElevationDiffsCalculator elevationDiffsCalc = new ElevationDiffsCalculator(0, numberOfPoints) {
+				@Override
+				public WptPt getPoint(int index) {
+					return s.read(index, diffsPoint);
+				}
+			};
+			elevationDiffsCalc.calculateElevationDiffs();
+			diffElevationUp += elevationDiffsCalc.diffElevationUp;
+			diffElevationDown += elevationDiffsCalc.diffElevationDown;
+		}
+
+		// returns distance from start of segment to point
+		private float addPoint(WptPt point, WptPt prev, float segmentDistance, boolean generalSegment,
+				boolean checkSingleSegmentTime, boolean lastInSegment) {
+			long time = point.time;
+			if (time != 0) {
+				if (checkSingleSegmentTime) {
+					if (generalSegment) {
+						if (point.firstPoint) {
+							startTimeOfSingleSegment = time;
+						} else if (point.lastPoint) {
+							endTimeOfSingleSegment = time;
+						}
+						if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
+							timeSpanWithoutGaps += endTimeOfSingleSegment - startTimeOfSingleSegment;
+							startTimeOfSingleSegment = 0;
+							endTimeOfSingleSegment = 0;
+						}
 					}
+				}
+				startTime = Math.min(startTime, time);
+				endTime = Math.max(endTime, time);
+			}
 
-					double elevation = point.ele;
-					Elevation elevation1 = new Elevation();
-					if (!Double.isNaN(elevation)) {
-						totalElevation += elevation;
-						elevationPoints++;
-						minElevation = Math.min(elevation, minElevation);
-						maxElevation = Math.max(elevation, maxElevation);
+			if (left == 0 && right == 0) {
+				left = point.getLongitude();
+				right = point.getLongitude();
+				top = point.getLatitude();
+				bottom = point.getLatitude();
+			} else {
+				left = Math.min(left, point.getLongitude());
+				right = Math.max(right, point.getLongitude());
+				top = Math.max(top, point.getLatitude());
+				bottom = Math.min(bottom, point.getLatitude());
+			}
 
-						elevation1.elevation = (float) elevation;
-					} else {
-						elevation1.elevation = Float.NaN;
-					}
+			double elevation = point.ele;
+			Elevation elevation1 = new Elevation();
+			if (!Double.isNaN(elevation)) {
+				totalElevation += elevation;
+				elevationPoints++;
+				minElevation = Math.min(elevation, minElevation);
+				maxElevation = Math.max(elevation, maxElevation);
 
-					float speed = (float) point.speed;
-					if (speed > 0) {
-						hasSpeedInTrack = true;
-					}
+				elevation1.elevation = (float) elevation;
+			} else {
+				elevation1.elevation = Float.NaN;
+			}
 
-					double hdop = point.hdop;
-					if (hdop > 0) {
-						if (Double.isNaN(minHdop) || hdop < minHdop) {
-							minHdop = hdop;
-						}
-						if (Double.isNaN(maxHdop) || hdop > maxHdop) {
-							maxHdop = hdop;
-						}
-					}
+			float speed = (float) point.speed;
+			if (speed > 0) {
+				hasSpeedInTrack = true;
+			}
 
-					if (j > 0) {
-						WptPt prev = s.get(j - 1);
-
-						// Old complete summation approach for elevation gain/loss
-						//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
-						//	double diff = point.ele - prev.ele;
-						//	if (diff > 0) {
-						//		diffElevationUp += diff;
-						//	} else {
-						//		diffElevationDown -= diff;
-						//	}
-						//}
-
-						// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
-						// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
-						// a little more exact, also seems slightly faster:
-						net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
-						totalDistance += calculations[0];
-						segmentDistance += calculations[0];
-						point.distance = segmentDistance;
-
-						// In case points are reversed and => time is decreasing
-						long timeDiffMillis = Math.max(0, point.time - prev.time);
-						timeDiff = (int) ((timeDiffMillis) / 1000);
-
-						//Last resort: Derive speed values from displacement if track does not originally contain speed
-						if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
-							speed = calculations[0] / timeDiff;
-						}
+			double hdop = point.hdop;
+			if (hdop > 0) {
+				if (Double.isNaN(minHdop) || hdop < minHdop) {
+					minHdop = hdop;
+				}
+				if (Double.isNaN(maxHdop) || hdop > maxHdop) {
+					maxHdop = hdop;
+				}
+			}
 
-						// Motion detection:
-						//   speed > 0  uses GPS chipset's motion detection
-						//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
-						boolean timeSpecified = point.time != 0 && prev.time != 0;
-						if (speed > 0 && timeSpecified && calculations[0] > timeDiffMillis / 10000f) {
-							timeMoving = timeMoving + timeDiffMillis;
-							totalDistanceMoving += calculations[0];
-							if (s.segment.generalSegment && !point.firstPoint) {
-								timeMovingOfSingleSegment += timeDiffMillis;
-								distanceMovingOfSingleSegment += calculations[0];
-							}
-						}
+			if (prev != null) {
+				// Old complete summation approach for elevation gain/loss
+				//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
+				//	double diff = point.ele - prev.ele;
+				//	if (diff > 0) {
+				//		diffElevationUp += diff;
+				//	} else {
+				//		diffElevationDown -= diff;
+				//	}
+				//}
+
+				// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
+				// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
+				// a little more exact, also seems slightly faster:
+				net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+				totalDistance += calculations[0];
+				segmentDistance += calculations[0];
+				point.distance = segmentDistance;
+
+				// In case points are reversed and => time is decreasing
+				long timeDiffMillis = Math.max(0, point.time - prev.time);
+				timeDiff = (int) ((timeDiffMillis) / 1000);
+
+				//Last resort: Derive speed values from displacement if track does not originally contain speed
+				if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
+					speed = calculations[0] / timeDiff;
+					speedDerived = true;
+				}
 
-						//Next few lines for Issue 3222 heuristic testing only
-						//	if (speed > 0 && point.time != 0 && prev.time != 0) {
-						//		timeMoving0 = timeMoving0 + (point.time - prev.time);
-						//		totalDistanceMoving0 += calculations[0];
-						//	}
+				// Motion detection:
+				//   speed > 0  uses GPS chipset's motion detection
+				//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
+				boolean timeSpecified = point.time != 0 && prev.time != 0;
+				if (speed > 0 && timeSpecified && calculations[0] > timeDiffMillis / 10000f) {
+					timeMoving = timeMoving + timeDiffMillis;
+					totalDistanceMoving += calculations[0];
+					if (generalSegment && !point.firstPoint) {
+						timeMovingOfSingleSegment += timeDiffMillis;
+						distanceMovingOfSingleSegment += calculations[0];
 					}
+				}
 
-					elevation1.time = timeDiff;
-					elevation1.distance = (j > 0) ? calculations[0] : 0;
-					elevationData.add(elevation1);
-					if (!hasElevationData && !Float.isNaN(elevation1.elevation) && totalDistance > 0) {
-						hasElevationData = true;
-					}
+				//Next few lines for Issue 3222 heuristic testing only
+				//	if (speed > 0 && point.time != 0 && prev.time != 0) {
+				//		timeMoving0 = timeMoving0 + (point.time - prev.time);
+				//		totalDistanceMoving0 += calculations[0];
+				//	}
+			}
 
-					minSpeed = Math.min(speed, minSpeed);
-					if (speed > 0) {
-						totalSpeedSum += speed;
-						maxSpeed = Math.max(speed, maxSpeed);
-						speedCount++;
-					}
+			elevation1.time = timeDiff;
+			elevation1.distance = (prev != null) ? calculations[0] : 0;
+			elevationData.add(elevation1);
+			if (!Float.isNaN(elevation1.elevation)) {
+				anyElevationData = true;
+				if (!hasElevationData && totalDistance > 0) {
+					hasElevationData = true;
+				}
+			}
 
-					Speed speed1 = new Speed();
-					speed1.speed = speed;
-					speed1.time = timeDiff;
-					speed1.distance = elevation1.distance;
-					speedData.add(speed1);
-					if (!hasSpeedData && speed1.speed > 0 && totalDistance > 0) {
-						hasSpeedData = true;
-					}
-					if (s.segment.generalSegment) {
-						distanceOfSingleSegment += calculations[0];
-						if (point.firstPoint) {
-							distanceOfSingleSegment = 0;
-							timeMovingOfSingleSegment = 0;
-							distanceMovingOfSingleSegment = 0;
-							if (j > 0) {
-								elevation1.firstPoint = true;
-								speed1.firstPoint = true;
-							}
-						}
-						if (point.lastPoint) {
-							totalDistanceWithoutGaps += distanceOfSingleSegment;
-							timeMovingWithoutGaps += timeMovingOfSingleSegment;
-							totalDistanceMovingWithoutGaps += distanceMovingOfSingleSegment;
-							if (j < numberOfPoints - 1) {
-								elevation1.lastPoint = true;
-								speed1.lastPoint = true;
-							}
-						}
+			minSpeed = Math.min(speed, minSpeed);
+			if (speed > 0) {
+				totalSpeedSum += speed;
+				maxSpeed = Math.max(speed, maxSpeed);
+				speedCount++;
+			}
+
+			Speed speed1 = new Speed();
+			speed1.speed = speed;
+			speed1.time = timeDiff;
+			speed1.distance = elevation1.distance;
+			speedData.add(speed1);
+			if (speed1.speed > 0) {
+				anySpeedData = true;
+				if (!hasSpeedData && totalDistance > 0) {
+					hasSpeedData = true;
+				}
+			}
+			if (generalSegment) {
+				distanceOfSingleSegment += calculations[0];
+				if (point.firstPoint) {
+					distanceOfSingleSegment = 0;
+					timeMovingOfSingleSegment = 0;
+					distanceMovingOfSingleSegment = 0;
+					if (prev != null) {
+						elevation1.firstPoint = true;
+						speed1.firstPoint = true;
 					}
 				}
-
-				ElevationDiffsCalculator elevationDiffsCalc = new ElevationDiffsCalculator(0, numberOfPoints) {
-					@Override
-					public WptPt getPoint(int index) {
-						return s.get(index);
+				if (point.lastPoint) {
+					totalDistanceWithoutGaps += distanceOfSingleSegment;
+					timeMovingWithoutGaps += timeMovingOfSingleSegment;
+					totalDistanceMovingWithoutGaps += distanceMovingOfSingleSegment;
+					if (!lastInSegment) {
+						elevation1.lastPoint = true;
+						speed1.lastPoint = true;
 					}
-				};
-				elevationDiffsCalc.calculateElevationDiffs();
-				diffElevationUp += elevationDiffsCalc.diffElevationUp;
-				diffElevationDown += elevationDiffsCalc.diffElevationDown;
+				}
+			}
+			return segmentDistance;
+		}
+
+		// appends analysis of following points (not of general segment)
+		private void merge(GPXTrackAnalysis a) {
+			hasElevationData |= a.hasElevationData || (totalDistance > 0 && a.anyElevationData);
+			hasSpeedData |= a.hasSpeedData || (totalDistance > 0 && a.anySpeedData);
+			anyElevationData |= a.anyElevationData;
+			anySpeedData |= a.anySpeedData;
+			hasSpeedInTrack |= a.hasSpeedInTrack;
+			totalTracks += a.totalTracks;
+			points += a.points;
+			metricEnd += a.metricEnd;
+			secondaryMetricEnd += a.secondaryMetricEnd;
+			totalDistance += a.totalDistance;
+			totalDistanceWithoutGaps += a.totalDistanceWithoutGaps;
+			timeSpanWithoutGaps += a.timeSpanWithoutGaps;
+			timeMoving += a.timeMoving;
+			timeMovingWithoutGaps += a.timeMovingWithoutGaps;
+			totalDistanceMoving += a.totalDistanceMoving;
+			totalDistanceMovingWithoutGaps += a.totalDistanceMovingWithoutGaps;
+			diffElevationUp += a.diffElevationUp;
+			diffElevationDown += a.diffElevationDown;
+			startTime = Math.min(startTime, a.startTime);
+			endTime = Math.max(endTime, a.endTime);
+			minElevation = Math.min(minElevation, a.minElevation);
+			maxElevation = Math.max(maxElevation, a.maxElevation);
+			minSpeed = Math.min(minSpeed, a.minSpeed);
+			maxSpeed = Math.max(maxSpeed, a.maxSpeed);
+			if (Double.isNaN(minHdop) || a.minHdop < minHdop) {
+				minHdop = a.minHdop;
+			}
+			if (Double.isNaN(maxHdop) || a.maxHdop > maxHdop) {
+				maxHdop = a.maxHdop;
+			}
+			if (locationStart == null) {
+				locationStart = a.locationStart;
+			}
+			if (a.locationEnd != null) {
+				locationEnd = a.locationEnd;
+			}
+			if (left == 0 && right == 0) {
+				left = a.left;
+				right = a.right;
+				top = a.top;
+				bottom = a.bottom;
+			} else if (a.left != 0 || a.right != 0) {
+				left = Math.min(left, a.left);
+				right = Math.max(right, a.right);
+				top = Math.max(top, a.top);
+				bottom = Math.min(bottom, a.bottom);
+			}
+			totalElevation += a.totalElevation;
+			elevationPoints += a.elevationPoints;
+			speedCount += a.speedCount;
+			totalSpeedSum += a.totalSpeedSum;
+			if (a.points > 1) {
+				timeDiff = a.timeDiff;
+			}
+			if (elevationData.isEmpty()) {
+				elevationData = a.elevationData;
+				speedData = a.speedData;
+			} else {
+				elevationData.addAll(a.elevationData);
+				speedData.addAll(a.speedData);
 			}
+		}
+
+		private void finishAnalysis(long filestamp) {
 			if (totalDistance < 0) {
 				hasElevationData = false;
 				hasSpeedData = false;
@@ -1012,7 +1501,6 @@ public class GPXUtilities {
 			} else {
 				avgSpeed = -1;
 			}
-			return this;
 		}
 
 		public abstract static class ElevationDiffsCalculator {
@@ -1030,7 +1518,7 @@ public class GPXUtilities {
 				this.startIndex = startIndex;
 				this.numberOfPoints = numberOfPoints;
 				WptPt lastPoint = getPoint(startIndex + numberOfPoints - 1);
-				this.windowLength = lastPoint.time == 0 ? CALCULATED_GPX_WINDOW_LENGTH : Math.max(20d, lastPoint.distance / numberOfPoints * 4);
+				this.windowLength = getWindowLength(lastPoint, numberOfPoints);
 			}
 
 			public ElevationDiffsCalculator(double windowLength, int startIndex, int numberOfPoints) {
@@ -1038,6 +1526,10 @@ public class GPXUtilities {
 				this.windowLength = windowLength;
 			}
 
+			static double getWindowLength(WptPt lastPoint, int numberOfPoints) {
+				return lastPoint.time == 0 ? CALCULATED_GPX_WINDOW_LENGTH : Math.max(20d, lastPoint.distance / numberOfPoints * 4);
+			}
+
 			public abstract WptPt getPoint(int index);
 
 			public double getDiffElevationUp() {
@@ -1049,47 +1541,83 @@ public class GPXUtilities {
 			}
 
 			public void calculateElevationDiffs() {
-				WptPt initialPoint = getPoint(startIndex);
-				double eleSumm = initialPoint.ele;
-				double prevEle = initialPoint.ele;
-				int pointsCount = Double.isNaN(eleSumm) ? 0 : 1;
-				double eleAvg = Double.NaN;
-				double nextWindowPos = initialPoint.distance + windowLength;
-				int pointIndex = startIndex + 1;
-				while (pointIndex < numberOfPoints + startIndex) {
-					WptPt point = getPoint(pointIndex);
-					if (point.distance > nextWindowPos) {
-						eleAvg = calcAvg(eleSumm, pointsCount, eleAvg);
-						if (!Double.isNaN(point.ele)) {
-							eleSumm = point.ele;
-							prevEle = point.ele;
-							pointsCount = 1;
-						} else if (!Double.isNaN(prevEle)) {
-							eleSumm = prevEle;
-							pointsCount = 1;
-						} else {
-							eleSumm = Double.NaN;
-							pointsCount = 0;
-						}
-						while (nextWindowPos < point.distance) {
-							nextWindowPos += windowLength;
-						}
+				ElevationDiffsAccumulator acc = new ElevationDiffsAccumulator(getPoint(startIndex), windowLength);
+				for (int pointIndex = startIndex + 1; pointIndex < numberOfPoints + startIndex; pointIndex++) {
+					acc.addPoint(getPoint(pointIndex));
+				}
+				diffElevationUp += acc.getDiffElevationUp();
+				diffElevationDown += acc.getDiffElevationDown();
+			}
+		}
+
+		// averages elevation by windows of distance, points are passed one by one
+		private static class ElevationDiffsAccumulator {
+
+			private double windowLength;
+			private double eleSumm;
+			private double prevEle;
+			private int pointsCount;
+			private double eleAvg = Double.NaN;
+			private double nextWindowPos;
+
+			private double diffElevationUp = 0;
+			private double diffElevationDown = 0;
+
+			ElevationDiffsAccumulator(WptPt initialPoint, double windowLength) {
+				this.windowLength = windowLength;
+				eleSumm = initialPoint.ele;
+				prevEle = initialPoint.ele;
+				pointsCount = Double.isNaN(eleSumm) ? 0 : 1;
+				nextWindowPos = initialPoint.distance + windowLength;
+			}
+
+			void setWindowLength(double windowLength) {
+				this.windowLength = windowLength;
+			}
+
+			void addPoint(WptPt point) {
+				if (point.distance > nextWindowPos) {
+					eleAvg = calcAvg(eleSumm, pointsCount, eleAvg);
+					if (!Double.isNaN(point.ele)) {
+						eleSumm = point.ele;
+						prevEle = point.ele;
+						pointsCount = 1;
+					} else if (!Double.isNaN(prevEle)) {
+						eleSumm = prevEle;
+						pointsCount = 1;
 					} else {
-						if (!Double.isNaN(point.ele)) {
-							eleSumm += point.ele;
-							prevEle = point.ele;
-							pointsCount++;
-						} else if (!Double.isNaN(prevEle)) {
-							eleSumm += prevEle;
-							pointsCount++;
-						}
+						eleSumm = Double.NaN;
+						pointsCount = 0;
+					}
+					while (nextWindowPos < point.distance) {
+						nextWindowPos += windowLength;
+					}
+				} else {
+					if (!Double.isNaN(point.ele)) {
+						eleSumm += point.ele;
+						prevEle = point.ele;
+						pointsCount++;
+					} else if (!Double.isNaN(prevEle)) {
+						eleSumm += prevEle;
+						pointsCount++;
 					}
-					pointIndex++;
 				}
-				if (pointsCount > 1) {
-					calcAvg(eleSumm, pointsCount, eleAvg);
+			}
+
+			// including last window which is not finished
+			double getDiffElevationUp() {
+				return Math.round(diffElevationUp + Math.max(0, getLastWindowDiff()) + 0.3f);
+			}
+
+			double getDiffElevationDown() {
+				return diffElevationDown + Math.max(0, -getLastWindowDiff());
+			}
+
+			private double getLastWindowDiff() {
+				if (pointsCount > 1 && !Double.isNaN(eleSumm) && !Double.isNaN(eleAvg)) {
+					return eleSumm / pointsCount - eleAvg;
 				}
-				diffElevationUp = Math.round(diffElevationUp + 0.3f);
+				return 0;
 			}
 
 			private double calcAvg(double eleSumm, int pointsCount, double eleAvg) {
@@ -1110,6 +1638,104 @@ public class GPXUtilities {
 		}
 	}
 
+	/**
+	 * Keeps analysis of track which is being recorded: each added point is processed once instead of analysing
+	 * the whole track again. Result is the same as {@link GPXFile#getAnalysis(long)} of track with these segments
+	 * except elevation gain and loss: length of averaging window depends on the whole segment, so it is estimated
+	 * by points added so far. Whether the window is fixed or distance based is decided by the first point of segment,
+	 * so gaps in recorded time don't switch it.
+	 */
+	public static class IncrementalTrackAnalysis {
+
+		private final GPXTrackAnalysis analysis = new GPXTrackAnalysis();
+		private boolean segmentStarted = false;
+		// first point of segment is analysed with the second one, as segments of one point are skipped
+		private WptPt firstPoint;
+		private WptPt prev;
+		private float segmentDistance;
+		private int segmentPoints;
+		private GPXTrackAnalysis.ElevationDiffsAccumulator elevationDiffs;
+		private boolean segmentTimed;
+
+		public IncrementalTrackAnalysis() {
+			analysis.startAnalysis();
+		}
+
+		public void startSegment() {
+			finishSegment();
+			analysis.totalTracks++;
+			segmentStarted = true;
+		}
+
+		public void addPoint(WptPt point) {
+			if (!segmentStarted) {
+				startSegment();
+			}
+			if (prev == null && firstPoint == null) {
+				firstPoint = point;
+				return;
+			}
+			if (firstPoint != null) {
+				processPoint(firstPoint);
+				firstPoint = null;
+			}
+			processPoint(point);
+		}
+
+		private void processPoint(WptPt point) {
+			if (analysis.locationStart == null) {
+				analysis.locationStart = point;
+			}
+			analysis.locationEnd = point;
+			analysis.points++;
+			segmentDistance = analysis.addPoint(point, prev, segmentDistance, false, true, false);
+			segmentPoints++;
+			if (elevationDiffs == null) {
+				point.distance = 0;
+				segmentTimed = point.time != 0;
+				elevationDiffs = new GPXTrackAnalysis.ElevationDiffsAccumulator(point, getWindowLength(point));
+			} else {
+				elevationDiffs.setWindowLength(getWindowLength(point));
+				elevationDiffs.addPoint(point);
+			}
+			prev = point;
+		}
+
+		private double getWindowLength(WptPt point) {
+			return segmentTimed ? Math.max(20d, point.distance / segmentPoints * 4)
+					: GPXTrackAnalysis.ElevationDiffsCalculator.CALCULATED_GPX_WINDOW_LENGTH;
+		}
+
+		private void finishSegment() {
+			if (elevationDiffs != null) {
+				analysis.diffElevationUp += elevationDiffs.getDiffElevationUp();
+				analysis.diffElevationDown += elevationDiffs.getDiffElevationDown();
+			}
+			elevationDiffs = null;
+			firstPoint = null;
+			prev = null;
+			segmentDistance = 0;
+			segmentPoints = 0;
+		}
+
+		/**
+		 * Returned analysis is a snapshot, it isn't changed by points added later.
+		 */
+		public GPXTrackAnalysis getAnalysis(long filestamp) {
+			GPXTrackAnalysis result = new GPXTrackAnalysis();
+			result.startAnalysis();
+			result.merge(analysis);
+			result.elevationData = new ArrayList<>(analysis.elevationData);
+			result.speedData = new ArrayList<>(analysis.speedData);
+			if (elevationDiffs != null) {
+				result.diffElevationUp += elevationDiffs.getDiffElevationUp();
+				result.diffElevationDown += elevationDiffs.getDiffElevationDown();
+			}
+			result.finishAnalysis(filestamp);
+			return result;
+		}
+	}
+
 	private static class SplitSegment {
 		TrkSegment segment;
 		double startCoeff = 0;
@@ -1163,6 +1789,36 @@ public class GPXUtilities {
 			return segment.points.get(ind);
 		}
 
+		// reads point of packed segment into given point without creating new one, other points are returned as is
+		public WptPt read(int j, WptPt point) {
+			if (!(segment.points instanceof PackedTrkPoints) || isApproximated(j)) {
+				return get(j);
+			}
+			PackedTrkPoints packed = (PackedTrkPoints) segment.points;
+			int ind = j + startPointInd;
+			point.lat = packed.getLatitude(ind);
+			point.lon = packed.getLongitude(ind);
+			point.time = packed.getTime(ind);
+			point.ele = packed.getElevation(ind);
+			point.speed = packed.getSpeed(ind);
+			point.hdop = packed.getHdop(ind);
+			point.distance = packed.getDistance(ind);
+			point.firstPoint = packed.isFirstPoint(ind);
+			point.lastPoint = packed.isLastPoint(ind);
+			return point;
+		}
+
+		// stores distance of point which is not approximated, points of packed segment are not kept
+		public void setDistance(int j, double distance) {
+			if (segment.points instanceof PackedTrkPoints && !isApproximated(j)) {
+				((PackedTrkPoints) segment.points).setDistance(j + startPointInd, distance);
+			}
+		}
+
+		private boolean isApproximated(int j) {
+			return (j == 0 && startCoeff != 0) || (j == getNumberOfPoints() - 1 && endCoeff != 1);
+		}
+
 
 		private WptPt approx(WptPt w1, WptPt w2, double cf) {
 			long time = value(w1.time, w2.time, 0, cf);
@@ -1413,6 +2069,20 @@ public class GPXUtilities {
 			return generalTrack != null;
 		}
 
+		/**
+		 * Packs points of all track segments, see {@link TrkSegment#packPoints()}.
+		 */
+		public void packPoints() {
+			for (Track track : tracks) {
+				for (TrkSegment segment : track.segments) {
+					segment.packPoints();
+				}
+			}
+			if (generalSegment != null) {
+				generalSegment.packPoints();
+			}
+		}
+
 		public void addGeneralTrack() {
 			Track generalTrack = getGeneralTrack();
 			if (generalTrack != null && !tracks.contains(generalTrack)) {
@@ -1443,14 +2113,19 @@ public class GPXUtilities {
 			TrkSegment segment = new TrkSegment();
 			for (Track track : tracks) {
 				for (TrkSegment s : track.segments) {
-					if (s.points.size() > 0) {
-						List<WptPt> waypoints = new ArrayList<>(s.points.size());
-						for (WptPt wptPt : s.points) {
-							waypoints.add(new WptPt(wptPt));
-						}
-						waypoints.get(0).firstPoint = true;
-						waypoints.get(waypoints.size() - 1).lastPoint = true;
-						segment.points.addAll(waypoints);
+					if (s.isPacked()) {
+						segment.packPoints();
+					}
+				}
+			}
+			for (Track track : tracks) {
+				for (TrkSegment s : track.segments) {
+					int size = s.points.size();
+					for (int i = 0; i < size; i++) {
+						WptPt wptPt = new WptPt(s.points.get(i));
+						wptPt.firstPoint = i == 0;
+						wptPt.lastPoint = i == size - 1;
+						segment.points.add(wptPt);
 					}
 				}
 			}
@@ -1465,13 +2140,21 @@ public class GPXUtilities {
 		}
 
 		public GPXTrackAnalysis getAnalysis(long fileTimestamp, Double fromDistance, Double toDistance) {
+			return getAnalysis(fileTimestamp, fromDistance, toDistance, null);
+		}
+
+		/**
+		 * @param executor analyses segments in parallel, if not null
+		 */
+		public GPXTrackAnalysis getAnalysis(long fileTimestamp, Double fromDistance, Double toDistance,
+				ExecutorService executor) {
 			GPXTrackAnalysis analysis = new GPXTrackAnalysis();
 			analysis.name = path;
 			analysis.wptPoints = points.size();
 			analysis.wptCategoryNames = getWaypointCategories(true);
 
 			List<SplitSegment> segments = getSplitSegments(analysis, fromDistance, toDistance);
-			analysis.prepareInformation(fileTimestamp, segments.toArray(new SplitSegment[0]));
+			analysis.prepareInformation(fileTimestamp, executor, segments.toArray(new SplitSegment[0]));
 			return analysis;
 		}
 
@@ -2077,30 +2760,21 @@ public class GPXUtilities {
 			progress.startWork(file.getItemsToWriteSize());
 		}
 		try {
-			XmlSerializer serializer = PlatformUtil.newSerializer();
-			serializer.setOutput(output);
-			serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true); //$NON-NLS-1$
-			serializer.startDocument("UTF-8", true); //$NON-NLS-1$
-			serializer.startTag(null, "gpx"); //$NON-NLS-1$
-			serializer.attribute(null, "version", "1.1"); //$NON-NLS-1$ //$NON-NLS-2$
-			if (file.author != null) {
-				serializer.attribute(null, "creator", file.author); //$NON-NLS-1$
-			}
-			serializer.attribute(null, "xmlns", "http://www.topografix.com/GPX/1/1"); //$NON-NLS-1$ //$NON-NLS-2$
-			serializer.attribute(null, "xmlns:osmand", "https://osmand.net");
-			serializer.attribute(null, "xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
-			serializer.attribute(null, "xsi:schemaLocation",
-					"http://www.topografix.com/GPX/1/1 http://www.topografix.com/GPX/1/1/gpx.xsd");
-
-			writeMetadata(serializer, file, progress);
-			writePoints(serializer, file, progress);
-			writeRoutes(serializer, file, progress);
-			writeTracks(serializer, file, progress);
-			writeExtensions(serializer, file, progress);
-
-			serializer.endTag(null, "gpx"); //$NON-NLS-1$
-			serializer.endDocument();
-			serializer.flush();
+			GPXStreamWriter writer = new GPXStreamWriter(output, file, progress);
+			for (Track track : file.tracks) {
+				if (!track.generalTrack) {
+					writer.startTrack(track);
+					for (TrkSegment segment : track.segments) {
+						writer.startSegment(segment);
+						for (WptPt p : segment.points) {
+							writer.writeTrackPoint(p);
+						}
+						writer.endSegment(segment);
+					}
+					writer.endTrack(track);
+				}
+			}
+			writer.finish();
 		} catch (Exception e) {
 			log.error("Error saving gpx", e); //$NON-NLS-1$
 			return e;
@@ -2108,6 +2782,88 @@ public class GPXUtilities {
 		return null;
 	}
 
+	// writes gpx header, metadata, waypoints and routes
+	private static XmlSerializer startGpx(Writer output, GPXFile file, IProgress progress) throws IOException {
+		XmlSerializer serializer = PlatformUtil.newSerializer();
+		serializer.setOutput(output);
+		serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true); //$NON-NLS-1$
+		serializer.startDocument("UTF-8", true); //$NON-NLS-1$
+		serializer.startTag(null, "gpx"); //$NON-NLS-1$
+		serializer.attribute(null, "version", "1.1"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (file.author != null) {
+			serializer.attribute(null, "creator", file.author); //$NON-NLS-1$
+		}
+		serializer.attribute(null, "xmlns", "http://www.topografix.com/GPX/1/1"); //$NON-NLS-1$ //$NON-NLS-2$
+		serializer.attribute(null, "xmlns:osmand", "https://osmand.net");
+		serializer.attribute(null, "xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
+		serializer.attribute(null, "xsi:schemaLocation",
+				"http://www.topografix.com/GPX/1/1 http://www.topografix.com/GPX/1/1/gpx.xsd");
+
+		writeMetadata(serializer, file, progress);
+		writePoints(serializer, file, progress);
+		writeRoutes(serializer, file, progress);
+		return serializer;
+	}
+
+	private static void endGpx(XmlSerializer serializer, GPXFile file, IProgress progress) throws IOException {
+		writeExtensions(serializer, file, progress);
+		serializer.endTag(null, "gpx"); //$NON-NLS-1$
+		serializer.endDocument();
+		serializer.flush();
+	}
+
+	/**
+	 * Writes tracks of gpx point by point, so they don't need to be kept in memory. Metadata, waypoints and
+	 * routes of file are written on creation, tracks of file are ignored and extensions of file are written by {@link #finish()}.
+	 */
+	public static class GPXStreamWriter {
+
+		private final XmlSerializer serializer;
+		private final GPXFile file;
+		private final IProgress progress;
+
+		public GPXStreamWriter(Writer output, GPXFile file, IProgress progress) throws IOException {
+			this.file = file;
+			this.progress = progress;
+			this.serializer = startGpx(output, file, progress);
+		}
+
+		public void startTrack(Track track) throws IOException {
+			serializer.startTag(null, "trk"); //$NON-NLS-1$
+			writeNotNullText(serializer, "name", track.name);
+			writeNotNullText(serializer, "desc", track.desc);
+		}
+
+		public void startSegment(TrkSegment segment) throws IOException {
+			serializer.startTag(null, "trkseg"); //$NON-NLS-1$
+			writeNotNullText(serializer, "name", segment.name);
+		}
+
+		public void writeTrackPoint(WptPt p) throws IOException {
+			boolean artificial = Math.abs(p.lon) == PRIME_MERIDIAN;
+			if (!artificial) {
+				serializer.startTag(null, "trkpt"); //$NON-NLS-1$
+				writeWpt(serializer, p, progress);
+				serializer.endTag(null, "trkpt"); //$NON-NLS-1$
+			}
+		}
+
+		public void endSegment(TrkSegment segment) throws IOException {
+			assignRouteExtensionWriter(segment);
+			writeExtensions(serializer, segment, null);
+			serializer.endTag(null, "trkseg"); //$NON-NLS-1$
+		}
+
+		public void endTrack(Track track) throws IOException {
+			writeExtensions(serializer, track, null);
+			serializer.endTag(null, "trk"); //$NON-NLS-1$
+		}
+
+		public void finish() throws IOException {
+			endGpx(serializer, file, progress);
+		}
+	}
+
 	private static void writeMetadata(XmlSerializer serializer, GPXFile file, IProgress progress) throws IOException {
 		String defName = file.metadata.name;
 		String trackName = !Algorithms.isEmpty(defName) ? defName : getFilename(file.path);
@@ -2166,33 +2922,6 @@ public class GPXUtilities {
 		}
 	}
 
-	private static void writeTracks(XmlSerializer serializer, GPXFile file, IProgress progress) throws IOException {
-		for (Track track : file.tracks) {
-			if (!track.generalTrack) {
-				serializer.startTag(null, "trk"); //$NON-NLS-1$
-				writeNotNullText(serializer, "name", track.name);
-				writeNotNullText(serializer, "desc", track.desc);
-				for (TrkSegment segment : track.segments) {
-					serializer.startTag(null, "trkseg"); //$NON-NLS-1$
-					writeNotNullText(serializer, "name", segment.name);
-					for (WptPt p : segment.points) {
-						boolean artificial = Math.abs(p.lon) == PRIME_MERIDIAN;
-						if (!artificial) {
-							serializer.startTag(null, "trkpt"); //$NON-NLS-1$
-							writeWpt(serializer, p, progress);
-							serializer.endTag(null, "trkpt"); //$NON-NLS-1$
-						}
-					}
-					assignRouteExtensionWriter(segment);
-					writeExtensions(serializer, segment, null);
-					serializer.endTag(null, "trkseg"); //$NON-NLS-1$
-				}
-				writeExtensions(serializer, track, null);
-				serializer.endTag(null, "trk"); //$NON-NLS-1$
-			}
-		}
-	}
-
 	private static void assignRouteExtensionWriter(final TrkSegment segment) {
 		if (segment.hasRoute() && segment.getExtensionsWriter() == null) {
 			segment.setExtensionsWriter(new GPXExtensionsWriter() {
@@ -2451,10 +3180,17 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(File file, GPXExtensionsReader extensionsReader) {
+		return loadGPXFile(file, extensionsReader, false);
+	}
+
+	/**
+	 * @param packPoints store track points in {@link PackedTrkPoints}
+	 */
+	public static GPXFile loadGPXFile(File file, GPXExtensionsReader extensionsReader, boolean packPoints) {
 		FileInputStream fis = null;
 		try {
 			fis = new FileInputStream(file);
-			GPXFile gpxFile = loadGPXFile(fis, extensionsReader);
+			GPXFile gpxFile = loadGPXFile(fis, extensionsReader, packPoints);
 			gpxFile.path = file.getAbsolutePath();
 			gpxFile.modifiedTime = file.lastModified();
 
@@ -2476,350 +3212,497 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader) {
+		return loadGPXFile(stream, extensionsReader, false);
+	}
+
+	public static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader, boolean packPoints) {
 		GPXFile gpxFile = new GPXFile(null);
 		try {
-			XmlPullParser parser = PlatformUtil.newXMLPullParser();
-			parser.setInput(getUTF8Reader(stream));
-			Track routeTrack = new Track();
-			TrkSegment routeTrackSegment = new TrkSegment();
-			routeTrack.segments.add(routeTrackSegment);
-			Stack<GPXExtensions> parserState = new Stack<>();
-			TrkSegment firstSegment = null;
-			boolean extensionReadMode = false;
-			boolean routePointExtension = false;
-			List<RouteSegment> routeSegments = new ArrayList<>();
-			List<RouteType> routeTypes = new ArrayList<>();
-			boolean routeExtension = false;
-			boolean typesExtension = false;
-			parserState.push(gpxFile);
-			int tok;
-			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
-				if (tok == XmlPullParser.START_TAG) {
-					GPXExtensions parse = parserState.peek();
-					String tag = parser.getName();
-					if (extensionReadMode && parse != null && !routePointExtension) {
-						String tagName = tag.toLowerCase();
-						if (routeExtension && tagName.equals("segment")) {
-							RouteSegment segment = parseRouteSegmentAttributes(parser);
-							routeSegments.add(segment);
-						} else if (typesExtension && tagName.equals("type")) {
-							RouteType type = parseRouteTypeAttributes(parser);
-							routeTypes.add(type);
-						}
-						switch (tagName) {
-							case "routepointextension":
-								routePointExtension = true;
-								if (parse instanceof WptPt) {
-									parse.getExtensionsToWrite().put("offset", routeTrackSegment.points.size() + "");
-								}
-								break;
-							case "route":
-								routeExtension = true;
-								break;
-							case "types":
-								typesExtension = true;
-								break;
-
-							default:
-								if (extensionsReader == null || !extensionsReader.readExtensions(gpxFile, parser)) {
-									Map<String, String> values = readTextMap(parser, tag);
-									if (values.size() > 0) {
-										for (Entry<String, String> entry : values.entrySet()) {
-											String t = entry.getKey().toLowerCase();
-											String value = entry.getValue();
-											parse.getExtensionsToWrite().put(t, value);
-											if (tag.equals("speed") && parse instanceof WptPt) {
-												try {
-													((WptPt) parse).speed = Float.parseFloat(value);
-												} catch (NumberFormatException e) {
-													log.debug(e.getMessage(), e);
-												}
+			parseGPX(stream, gpxFile, extensionsReader, new GPXFileBuilder(packPoints));
+			gpxFile.addGeneralTrack();
+		} catch (Exception e) {
+			gpxFile.error = e;
+			log.error("Error reading gpx", e); //$NON-NLS-1$
+		}
+
+		createArtificialPrimeMeridianPoints(gpxFile);
+
+		return gpxFile;
+	}
+
+	/**
+	 * Receives objects of gpx as they are parsed by {@link #streamGPXFile(InputStream, GPXStreamHandler)}.
+	 * Points are passed when they are completely read (with extensions). Containers (file, tracks, segments, routes)
+	 * don't keep points, so big files are processed with constant memory. Name and description of track
+	 * are available in {@link #endTrack(Track)}.
+	 */
+	public static class GPXStreamHandler {
+
+		public void startTrack(Track track) {
+		}
+
+		public void startSegment(Track track, TrkSegment segment) {
+		}
+
+		public void trackPoint(Track track, TrkSegment segment, WptPt point) {
+		}
+
+		public void endSegment(Track track, TrkSegment segment) {
+		}
+
+		public void endTrack(Track track) {
+		}
+
+		public void wayPoint(GPXFile file, WptPt point) {
+		}
+
+		public void routePoint(Route route, WptPt point) {
+		}
+
+		public boolean isCancelled() {
+			return false;
+		}
+	}
+
+	private static class GPXFileBuilder extends GPXStreamHandler {
+
+		private final boolean packPoints;
+
+		GPXFileBuilder(boolean packPoints) {
+			this.packPoints = packPoints;
+		}
+
+		@Override
+		public void startSegment(Track track, TrkSegment segment) {
+			if (packPoints) {
+				segment.packPoints();
+			}
+		}
+
+		@Override
+		public void trackPoint(Track track, TrkSegment segment, WptPt point) {
+			segment.points.add(point);
+		}
+
+		@Override
+		public void wayPoint(GPXFile file, WptPt point) {
+			file.points.add(point);
+		}
+
+		@Override
+		public void routePoint(Route route, WptPt point) {
+			route.points.add(point);
+		}
+	}
+
+	// point which is passed to handler on its end tag
+	private static class PendingPoint {
+		final WptPt point;
+		final Object container;
+		final TrkSegment segment;
+
+		PendingPoint(WptPt point, Object container, TrkSegment segment) {
+			this.point = point;
+			this.container = container;
+			this.segment = segment;
+		}
+	}
+
+	public static GPXFile streamGPXFile(InputStream stream, GPXStreamHandler handler) {
+		return streamGPXFile(stream, null, handler);
+	}
+
+	/**
+	 * Parses gpx passing points to handler, returned file contains metadata, extensions and tracks,
+	 * segments and routes without points. When handler is cancelled parsing stops and error of file
+	 * is {@link InterruptedException}.
+	 */
+	public static GPXFile streamGPXFile(InputStream stream, GPXExtensionsReader extensionsReader,
+			GPXStreamHandler handler) {
+		GPXFile gpxFile = new GPXFile(null);
+		try {
+			parseGPX(stream, gpxFile, extensionsReader, handler);
+		} catch (Exception e) {
+			gpxFile.error = e;
+			log.error("Error reading gpx", e); //$NON-NLS-1$
+		}
+		return gpxFile;
+	}
+
+	private static void parseGPX(InputStream stream, GPXFile gpxFile, GPXExtensionsReader extensionsReader,
+			GPXStreamHandler handler) throws IOException, XmlPullParserException {
+		XmlPullParser parser = PlatformUtil.newXMLPullParser();
+		parser.setInput(getUTF8Reader(stream));
+		Track routeTrack = new Track();
+		TrkSegment routeTrackSegment = new TrkSegment();
+		routeTrack.segments.add(routeTrackSegment);
+		Stack<GPXExtensions> parserState = new Stack<>();
+		TrkSegment firstSegment = null;
+		boolean extensionReadMode = false;
+		boolean routePointExtension = false;
+		List<RouteSegment> routeSegments = new ArrayList<>();
+		List<RouteType> routeTypes = new ArrayList<>();
+		boolean routeExtension = false;
+		boolean typesExtension = false;
+		Stack<PendingPoint> pendingPoints = new Stack<>();
+		Track currentTrack = null;
+		TrkSegment implicitSegment = null;
+		parserState.push(gpxFile);
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (handler.isCancelled()) {
+				gpxFile.error = new InterruptedException("Reading of gpx is cancelled");
+				return;
+			}
+			if (tok == XmlPullParser.START_TAG) {
+				GPXExtensions parse = parserState.peek();
+				String tag = parser.getName();
+				if (extensionReadMode && parse != null && !routePointExtension) {
+					String tagName = tag.toLowerCase();
+					if (routeExtension && tagName.equals("segment")) {
+						RouteSegment segment = parseRouteSegmentAttributes(parser);
+						routeSegments.add(segment);
+					} else if (typesExtension && tagName.equals("type")) {
+						RouteType type = parseRouteTypeAttributes(parser);
+						routeTypes.add(type);
+					}
+					switch (tagName) {
+						case "routepointextension":
+							routePointExtension = true;
+							if (parse instanceof WptPt) {
+								parse.getExtensionsToWrite().put("offset", routeTrackSegment.points.size() + "");
+							}
+							break;
+						case "route":
+							routeExtension = true;
+							break;
+						case "types":
+							typesExtension = true;
+							break;
+
+						default:
+							if (extensionsReader == null || !extensionsReader.readExtensions(gpxFile, parser)) {
+								Map<String, String> values = readTextMap(parser, tag);
+								if (values.size() > 0) {
+									for (Entry<String, String> entry : values.entrySet()) {
+										String t = entry.getKey().toLowerCase();
+										String value = entry.getValue();
+										parse.getExtensionsToWrite().put(t, value);
+										if (tag.equals("speed") && parse instanceof WptPt) {
+											try {
+												((WptPt) parse).speed = Float.parseFloat(value);
+											} catch (NumberFormatException e) {
+												log.debug(e.getMessage(), e);
 											}
 										}
 									}
 								}
-								break;
+							}
+							break;
+					}
+				} else if (parse != null && tag.equals("extensions")) {
+					extensionReadMode = true;
+				} else if (routePointExtension) {
+					if (tag.equals("rpt")) {
+						WptPt wptPt = parseWptAttributes(parser);
+						routeTrackSegment.points.add(wptPt);
+						parserState.push(wptPt);
+					}
+				} else {
+					if (parse instanceof GPXFile) {
+						if (tag.equals("gpx")) {
+							((GPXFile) parse).author = parser.getAttributeValue("", "creator");
+						}
+						if (tag.equals("metadata")) {
+							Metadata metadata = new Metadata();
+							((GPXFile) parse).metadata = metadata;
+							parserState.push(metadata);
+						}
+						if (tag.equals("trk")) {
+							Track track = new Track();
+							((GPXFile) parse).tracks.add(track);
+							parserState.push(track);
+							currentTrack = track;
+							handler.startTrack(track);
 						}
-					} else if (parse != null && tag.equals("extensions")) {
-						extensionReadMode = true;
-					} else if (routePointExtension) {
-						if (tag.equals("rpt")) {
+						if (tag.equals("rte")) {
+							Route route = new Route();
+							((GPXFile) parse).routes.add(route);
+							parserState.push(route);
+						}
+						if (tag.equals("wpt")) {
 							WptPt wptPt = parseWptAttributes(parser);
-							routeTrackSegment.points.add(wptPt);
+							pendingPoints.push(new PendingPoint(wptPt, parse, null));
 							parserState.push(wptPt);
 						}
-					} else {
-						if (parse instanceof GPXFile) {
-							if (tag.equals("gpx")) {
-								((GPXFile) parse).author = parser.getAttributeValue("", "creator");
-							}
-							if (tag.equals("metadata")) {
-								Metadata metadata = new Metadata();
-								((GPXFile) parse).metadata = metadata;
-								parserState.push(metadata);
-							}
-							if (tag.equals("trk")) {
-								Track track = new Track();
-								((GPXFile) parse).tracks.add(track);
-								parserState.push(track);
-							}
-							if (tag.equals("rte")) {
-								Route route = new Route();
-								((GPXFile) parse).routes.add(route);
-								parserState.push(route);
-							}
-							if (tag.equals("wpt")) {
-								WptPt wptPt = parseWptAttributes(parser);
-								((GPXFile) parse).points.add(wptPt);
-								parserState.push(wptPt);
-							}
-						} else if (parse instanceof Metadata) {
-							if (tag.equals("name")) {
-								((Metadata) parse).name = readText(parser, "name");
-							}
-							if (tag.equals("desc")) {
-								((Metadata) parse).desc = readText(parser, "desc");
-							}
-							if (tag.equals("author")) {
-								Author author = new Author();
-								author.name = parser.getText();
-								((Metadata) parse).author = author;
-								parserState.push(author);
-							}
-							if (tag.equals("copyright")) {
-								Copyright copyright = new Copyright();
-								copyright.license = parser.getText();
-								copyright.author = parser.getAttributeValue("", "author");
-								((Metadata) parse).copyright = copyright;
-								parserState.push(copyright);
-							}
-							if (tag.equals("link")) {
-								((Metadata) parse).link = parser.getAttributeValue("", "href");
-							}
-							if (tag.equals("time")) {
-								String text = readText(parser, "time");
-								((Metadata) parse).time = parseTime(text);
-							}
-							if (tag.equals("keywords")) {
-								((Metadata) parse).keywords = readText(parser, "keywords");
-							}
-							if (tag.equals("bounds")) {
-								Bounds bounds = parseBoundsAttributes(parser);
-								((Metadata) parse).bounds = bounds;
-								parserState.push(bounds);
+					} else if (parse instanceof Metadata) {
+						if (tag.equals("name")) {
+							((Metadata) parse).name = readText(parser, "name");
+						}
+						if (tag.equals("desc")) {
+							((Metadata) parse).desc = readText(parser, "desc");
+						}
+						if (tag.equals("author")) {
+							Author author = new Author();
+							author.name = parser.getText();
+							((Metadata) parse).author = author;
+							parserState.push(author);
+						}
+						if (tag.equals("copyright")) {
+							Copyright copyright = new Copyright();
+							copyright.license = parser.getText();
+							copyright.author = parser.getAttributeValue("", "author");
+							((Metadata) parse).copyright = copyright;
+							parserState.push(copyright);
+						}
+						if (tag.equals("link")) {
+							((Metadata) parse).link = parser.getAttributeValue("", "href");
+						}
+						if (tag.equals("time")) {
+							String text = readText(parser, "time");
+							((Metadata) parse).time = parseTime(text);
+						}
+						if (tag.equals("keywords")) {
+							((Metadata) parse).keywords = readText(parser, "keywords");
+						}
+						if (tag.equals("bounds")) {
+							Bounds bounds = parseBoundsAttributes(parser);
+							((Metadata) parse).bounds = bounds;
+							parserState.push(bounds);
+						}
+					} else if (parse instanceof Author) {
+						if (tag.equals("name")) {
+							((Author) parse).name = readText(parser, "name");
+						}
+						if (tag.equals("email")) {
+							String id = parser.getAttributeValue("", "id");
+							String domain = parser.getAttributeValue("", "domain");
+							if (!Algorithms.isEmpty(id) && !Algorithms.isEmpty(domain)) {
+								((Author) parse).email = id + "@" + domain;
 							}
-						} else if (parse instanceof Author) {
-							if (tag.equals("name")) {
-								((Author) parse).name = readText(parser, "name");
+						}
+						if (tag.equals("link")) {
+							((Author) parse).link = parser.getAttributeValue("", "href");
+						}
+					} else if (parse instanceof Copyright) {
+						if (tag.equals("year")) {
+							((Copyright) parse).year = readText(parser, "year");
+						}
+						if (tag.equals("license")) {
+							((Copyright) parse).license = readText(parser, "license");
+						}
+					} else if (parse instanceof Route) {
+						if (tag.equals("name")) {
+							((Route) parse).name = readText(parser, "name");
+						}
+						if (tag.equals("desc")) {
+							((Route) parse).desc = readText(parser, "desc");
+						}
+						if (tag.equals("rtept")) {
+							WptPt wptPt = parseWptAttributes(parser);
+							pendingPoints.push(new PendingPoint(wptPt, parse, null));
+							parserState.push(wptPt);
+						}
+					} else if (parse instanceof Track) {
+						if (tag.equals("name")) {
+							((Track) parse).name = readText(parser, "name");
+						} else if (tag.equals("desc")) {
+							((Track) parse).desc = readText(parser, "desc");
+						} else if (tag.equals("trkseg")) {
+							TrkSegment trkSeg = new TrkSegment();
+							((Track) parse).segments.add(trkSeg);
+							parserState.push(trkSeg);
+							handler.startSegment((Track) parse, trkSeg);
+						} else if (tag.equals("trkpt") || tag.equals("rpt")) {
+							WptPt wptPt = parseWptAttributes(parser);
+							int size = ((Track) parse).segments.size();
+							if (size == 0) {
+								implicitSegment = new TrkSegment();
+								((Track) parse).segments.add(implicitSegment);
+								handler.startSegment((Track) parse, implicitSegment);
+								size++;
 							}
-							if (tag.equals("email")) {
-								String id = parser.getAttributeValue("", "id");
-								String domain = parser.getAttributeValue("", "domain");
-								if (!Algorithms.isEmpty(id) && !Algorithms.isEmpty(domain)) {
-									((Author) parse).email = id + "@" + domain;
+							pendingPoints.push(new PendingPoint(wptPt, parse, ((Track) parse).segments.get(size - 1)));
+							parserState.push(wptPt);
+						}
+					} else if (parse instanceof TrkSegment) {
+						if (tag.equals("name")) {
+							((TrkSegment) parse).name = readText(parser, "name");
+						} else if (tag.equals("trkpt") || tag.equals("rpt")) {
+							WptPt wptPt = parseWptAttributes(parser);
+							pendingPoints.push(new PendingPoint(wptPt, currentTrack, (TrkSegment) parse));
+							parserState.push(wptPt);
+						}
+						if (tag.equals("csvattributes")) {
+							String segmentPoints = readText(parser, "csvattributes");
+							String[] pointsArr = segmentPoints.split("\n");
+							for (int i = 0; i < pointsArr.length; i++) {
+								String[] pointAttrs = pointsArr[i].split(",");
+								try {
+									int arrLength = pointsArr.length;
+									if (arrLength > 1) {
+										WptPt wptPt = new WptPt();
+										wptPt.lon = Double.parseDouble(pointAttrs[0]);
+										wptPt.lat = Double.parseDouble(pointAttrs[1]);
+										if (arrLength > 2) {
+											wptPt.ele = Double.parseDouble(pointAttrs[2]);
+										}
+										handler.trackPoint(currentTrack, (TrkSegment) parse, wptPt);
+									}
+								} catch (NumberFormatException e) {
 								}
 							}
-							if (tag.equals("link")) {
-								((Author) parse).link = parser.getAttributeValue("", "href");
-							}
-						} else if (parse instanceof Copyright) {
-							if (tag.equals("year")) {
-								((Copyright) parse).year = readText(parser, "year");
-							}
-							if (tag.equals("license")) {
-								((Copyright) parse).license = readText(parser, "license");
-							}
-						} else if (parse instanceof Route) {
-							if (tag.equals("name")) {
-								((Route) parse).name = readText(parser, "name");
-							}
-							if (tag.equals("desc")) {
-								((Route) parse).desc = readText(parser, "desc");
-							}
-							if (tag.equals("rtept")) {
-								WptPt wptPt = parseWptAttributes(parser);
-								((Route) parse).points.add(wptPt);
-								parserState.push(wptPt);
-							}
-						} else if (parse instanceof Track) {
-							if (tag.equals("name")) {
-								((Track) parse).name = readText(parser, "name");
-							} else if (tag.equals("desc")) {
-								((Track) parse).desc = readText(parser, "desc");
-							} else if (tag.equals("trkseg")) {
-								TrkSegment trkSeg = new TrkSegment();
-								((Track) parse).segments.add(trkSeg);
-								parserState.push(trkSeg);
-							} else if (tag.equals("trkpt") || tag.equals("rpt")) {
-								WptPt wptPt = parseWptAttributes(parser);
-								int size = ((Track) parse).segments.size();
-								if (size == 0) {
-									((Track) parse).segments.add(new TrkSegment());
-									size++;
+						}
+						// main object to parse
+					} else if (parse instanceof WptPt) {
+						if (tag.equals("name")) {
+							((WptPt) parse).name = readText(parser, "name");
+						} else if (tag.equals("desc")) {
+							((WptPt) parse).desc = readText(parser, "desc");
+						} else if (tag.equals("cmt")) {
+							((WptPt) parse).comment = readText(parser, "cmt");
+						} else if (tag.equals("speed")) {
+							try {
+								String value = readText(parser, "speed");
+								if (!Algorithms.isEmpty(value)) {
+									((WptPt) parse).speed = Float.parseFloat(value);
+									parse.getExtensionsToWrite().put("speed", value);
 								}
-								((Track) parse).segments.get(size - 1).points.add(wptPt);
-								parserState.push(wptPt);
+							} catch (NumberFormatException e) {
 							}
-						} else if (parse instanceof TrkSegment) {
-							if (tag.equals("name")) {
-								((TrkSegment) parse).name = readText(parser, "name");
-							} else if (tag.equals("trkpt") || tag.equals("rpt")) {
-								WptPt wptPt = parseWptAttributes(parser);
-								((TrkSegment) parse).points.add(wptPt);
-								parserState.push(wptPt);
+						} else if (tag.equals("link")) {
+							((WptPt) parse).link = parser.getAttributeValue("", "href");
+						} else if (tag.equals("category")) {
+							((WptPt) parse).category = readText(parser, "category");
+						} else if (tag.equals("type")) {
+							if (((WptPt) parse).category == null) {
+								((WptPt) parse).category = readText(parser, "type");
 							}
-							if (tag.equals("csvattributes")) {
-								String segmentPoints = readText(parser, "csvattributes");
-								String[] pointsArr = segmentPoints.split("\n");
-								for (int i = 0; i < pointsArr.length; i++) {
-									String[] pointAttrs = pointsArr[i].split(",");
-									try {
-										int arrLength = pointsArr.length;
-										if (arrLength > 1) {
-											WptPt wptPt = new WptPt();
-											wptPt.lon = Double.parseDouble(pointAttrs[0]);
-											wptPt.lat = Double.parseDouble(pointAttrs[1]);
-											((TrkSegment) parse).points.add(wptPt);
-											if (arrLength > 2) {
-												wptPt.ele = Double.parseDouble(pointAttrs[2]);
-											}
-										}
-									} catch (NumberFormatException e) {
-									}
+						} else if (tag.equals("ele")) {
+							String text = readText(parser, "ele");
+							if (text != null) {
+								try {
+									((WptPt) parse).ele = Float.parseFloat(text);
+								} catch (NumberFormatException e) {
 								}
 							}
-							// main object to parse
-						} else if (parse instanceof WptPt) {
-							if (tag.equals("name")) {
-								((WptPt) parse).name = readText(parser, "name");
-							} else if (tag.equals("desc")) {
-								((WptPt) parse).desc = readText(parser, "desc");
-							} else if (tag.equals("cmt")) {
-								((WptPt) parse).comment = readText(parser, "cmt");
-							} else if (tag.equals("speed")) {
+						} else if (tag.equals("hdop")) {
+							String text = readText(parser, "hdop");
+							if (text != null) {
 								try {
-									String value = readText(parser, "speed");
-									if (!Algorithms.isEmpty(value)) {
-										((WptPt) parse).speed = Float.parseFloat(value);
-										parse.getExtensionsToWrite().put("speed", value);
-									}
+									((WptPt) parse).hdop = Float.parseFloat(text);
 								} catch (NumberFormatException e) {
 								}
-							} else if (tag.equals("link")) {
-								((WptPt) parse).link = parser.getAttributeValue("", "href");
-							} else if (tag.equals("category")) {
-								((WptPt) parse).category = readText(parser, "category");
-							} else if (tag.equals("type")) {
-								if (((WptPt) parse).category == null) {
-									((WptPt) parse).category = readText(parser, "type");
-								}
-							} else if (tag.equals("ele")) {
-								String text = readText(parser, "ele");
-								if (text != null) {
-									try {
-										((WptPt) parse).ele = Float.parseFloat(text);
-									} catch (NumberFormatException e) {
-									}
-								}
-							} else if (tag.equals("hdop")) {
-								String text = readText(parser, "hdop");
-								if (text != null) {
-									try {
-										((WptPt) parse).hdop = Float.parseFloat(text);
-									} catch (NumberFormatException e) {
-									}
-								}
-							} else if (tag.equals("time")) {
-								String text = readText(parser, "time");
-								((WptPt) parse).time = parseTime(text);
 							}
+						} else if (tag.equals("time")) {
+							String text = readText(parser, "time");
+							((WptPt) parse).time = parseTime(text);
 						}
 					}
+				}
 
-				} else if (tok == XmlPullParser.END_TAG) {
-					Object parse = parserState.peek();
-					String tag = parser.getName();
+			} else if (tok == XmlPullParser.END_TAG) {
+				Object parse = parserState.peek();
+				String tag = parser.getName();
 
-					if (tag.equalsIgnoreCase("routepointextension")) {
-						routePointExtension = false;
-					}
-					if (parse != null && tag.equals("extensions")) {
-						extensionReadMode = false;
+				if (tag.equalsIgnoreCase("routepointextension")) {
+					routePointExtension = false;
+				}
+				if (parse != null && tag.equals("extensions")) {
+					extensionReadMode = false;
+				}
+				if (extensionReadMode && tag.equals("route")) {
+					routeExtension = false;
+					continue;
+				}
+				if (extensionReadMode && tag.equals("types")) {
+					typesExtension = false;
+					continue;
+				}
+
+				if (tag.equals("metadata")) {
+					Object pop = parserState.pop();
+					assert pop instanceof Metadata;
+				} else if (tag.equals("author")) {
+					if (parse instanceof Author) {
+						parserState.pop();
 					}
-					if (extensionReadMode && tag.equals("route")) {
-						routeExtension = false;
-						continue;
+				} else if (tag.equals("copyright")) {
+					if (parse instanceof Copyright) {
+						parserState.pop();
 					}
-					if (extensionReadMode && tag.equals("types")) {
-						typesExtension = false;
-						continue;
+				} else if (tag.equals("bounds")) {
+					if (parse instanceof Bounds) {
+						parserState.pop();
 					}
-
-					if (tag.equals("metadata")) {
-						Object pop = parserState.pop();
-						assert pop instanceof Metadata;
-					} else if (tag.equals("author")) {
-						if (parse instanceof Author) {
-							parserState.pop();
-						}
-					} else if (tag.equals("copyright")) {
-						if (parse instanceof Copyright) {
-							parserState.pop();
-						}
-					} else if (tag.equals("bounds")) {
-						if (parse instanceof Bounds) {
-							parserState.pop();
+				} else if (tag.equals("trkpt")) {
+					Object pop = parserState.pop();
+					assert pop instanceof WptPt;
+					publishPendingPoint(pendingPoints, pop, handler);
+				} else if (tag.equals("wpt")) {
+					Object pop = parserState.pop();
+					assert pop instanceof WptPt;
+					publishPendingPoint(pendingPoints, pop, handler);
+				} else if (tag.equals("rtept")) {
+					Object pop = parserState.pop();
+					assert pop instanceof WptPt;
+					publishPendingPoint(pendingPoints, pop, handler);
+				} else if (tag.equals("trk")) {
+					Object pop = parserState.pop();
+					assert pop instanceof Track;
+					if (pop instanceof Track) {
+						if (implicitSegment != null) {
+							handler.endSegment((Track) pop, implicitSegment);
+							implicitSegment = null;
 						}
-					} else if (tag.equals("trkpt")) {
-						Object pop = parserState.pop();
-						assert pop instanceof WptPt;
-					} else if (tag.equals("wpt")) {
-						Object pop = parserState.pop();
-						assert pop instanceof WptPt;
-					} else if (tag.equals("rtept")) {
-						Object pop = parserState.pop();
-						assert pop instanceof WptPt;
-					} else if (tag.equals("trk")) {
-						Object pop = parserState.pop();
-						assert pop instanceof Track;
-					} else if (tag.equals("rte")) {
-						Object pop = parserState.pop();
-						assert pop instanceof Route;
-					} else if (tag.equals("trkseg")) {
-						Object pop = parserState.pop();
-						if (pop instanceof TrkSegment) {
-							TrkSegment segment = (TrkSegment) pop;
-							segment.routeSegments = routeSegments;
-							segment.routeTypes = routeTypes;
-							routeSegments = new ArrayList<>();
-							routeTypes = new ArrayList<>();
-							if (firstSegment == null) {
-								firstSegment = segment;
-							}
+						handler.endTrack((Track) pop);
+					}
+					currentTrack = null;
+				} else if (tag.equals("rte")) {
+					Object pop = parserState.pop();
+					assert pop instanceof Route;
+				} else if (tag.equals("trkseg")) {
+					Object pop = parserState.pop();
+					if (pop instanceof TrkSegment) {
+						TrkSegment segment = (TrkSegment) pop;
+						segment.routeSegments = routeSegments;
+						segment.routeTypes = routeTypes;
+						routeSegments = new ArrayList<>();
+						routeTypes = new ArrayList<>();
+						if (firstSegment == null) {
+							firstSegment = segment;
 						}
-						assert pop instanceof TrkSegment;
-					} else if (tag.equals("rpt")) {
-						Object pop = parserState.pop();
-						assert pop instanceof WptPt;
+						handler.endSegment(currentTrack, segment);
 					}
+					assert pop instanceof TrkSegment;
+				} else if (tag.equals("rpt")) {
+					Object pop = parserState.pop();
+					assert pop instanceof WptPt;
+					publishPendingPoint(pendingPoints, pop, handler);
 				}
 			}
-			if (!routeTrackSegment.points.isEmpty()) {
-				gpxFile.tracks.add(routeTrack);
-			}
-			if (!routeSegments.isEmpty() && !routeTypes.isEmpty() && firstSegment != null) {
-				firstSegment.routeSegments = routeSegments;
-				firstSegment.routeTypes = routeTypes;
-			}
-			gpxFile.addGeneralTrack();
-		} catch (Exception e) {
-			gpxFile.error = e;
-			log.error("Error reading gpx", e); //$NON-NLS-1$
 		}
+		if (!routeTrackSegment.points.isEmpty()) {
+			gpxFile.tracks.add(routeTrack);
+		}
+		if (!routeSegments.isEmpty() && !routeTypes.isEmpty() && firstSegment != null) {
+			firstSegment.routeSegments = routeSegments;
+			firstSegment.routeTypes = routeTypes;
+		}
+	}
 
-		createArtificialPrimeMeridianPoints(gpxFile);
-
-		return gpxFile;
+	private static void publishPendingPoint(Stack<PendingPoint> pendingPoints, Object point, GPXStreamHandler handler) {
+		if (pendingPoints.isEmpty() || pendingPoints.peek().point != point) {
+			return;
+		}
+		PendingPoint p = pendingPoints.pop();
+		if (p.segment != null) {
+			handler.trackPoint((Track) p.container, p.segment, p.point);
+		} else if (p.container instanceof Route) {
+			handler.routePoint((Route) p.container, p.point);
+		} else if (p.container instanceof GPXFile) {
+			handler.wayPoint((GPXFile) p.container, p.point);
+		}
 	}
 
 	private static Reader getUTF8Reader(InputStream f) throws IOException {
@@ -46,6 +46,7 @@ public class IndexConstants {
 	public static final String OSMAND_SETTINGS_FILE_EXT = ".osf";
 	
 	public static final String ROUTING_FILE_EXT = ".xml";
+	public static final String ROUTE_HIERARCHY_EXT = ".route.ch";
 
 	public static final String RENDERER_INDEX_EXT = ".render.xml"; //$NON-NLS-1$
 
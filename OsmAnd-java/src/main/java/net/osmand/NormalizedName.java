@@ -0,0 +1,195 @@
+package net.osmand;
+
+import java.text.CollationElementIterator;
+import java.text.RuleBasedCollator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Name prepared once for {@link CollatorStringMatcher}: simplified text (lower case, ß as ss) and its key
+ * where every char is replaced by representative of its primary collation weight
+ * ({@link OsmAndCollator#primaryCollator()}) or {@link #IGNORABLE}, so keys could be compared char by char
+ * instead of collator calls. Key is null if text contains chars which expand to several weights or are part of
+ * collator contraction (like "aa" in Danish), then collator is used.
+ */
+public final class NormalizedName {
+
+	// key char of chars without primary weight (spaces and punctuation for some collators)
+	public static final char IGNORABLE = '\ufffe';
+
+	private final String name;
+	private final String text;
+	private final char[] key;
+	private final Folding folding;
+	private static final char[] NOT_FOLDABLE_KEY = new char[0];
+	// lazily computed
+	private volatile char[] nameKey;
+
+	private NormalizedName(String name, String text, char[] key, Folding folding) {
+		this.name = name;
+		this.text = text;
+		this.key = key;
+		this.folding = folding;
+	}
+
+	public static NormalizedName of(String name) {
+		String text = CollatorStringMatcher.simplifyStringAndAlignChars(name);
+		Folding f = getFolding();
+		return new NormalizedName(name, text, f.fold(text), f);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public char[] getKey() {
+		return key;
+	}
+
+	/**
+	 * Key of original name (not simplified), used by contains check.
+	 */
+	char[] getNameKey() {
+		if (text.equals(name)) {
+			return key;
+		}
+		char[] k = nameKey;
+		if (k == null) {
+			k = folding.fold(name);
+			nameKey = k == null ? NOT_FOLDABLE_KEY : k;
+		}
+		return k == NOT_FOLDABLE_KEY ? null : k;
+	}
+
+	boolean isComparable(NormalizedName other) {
+		return key != null && other.key != null && folding == other.folding;
+	}
+
+	private static volatile Folding currentFolding;
+
+	private static Folding getFolding() {
+		Folding f = currentFolding;
+		Locale l = Locale.getDefault();
+		if (f == null || !f.locale.equals(l)) {
+			f = new Folding(l, OsmAndCollator.primaryInstance());
+			currentFolding = f;
+		}
+		return f;
+	}
+
+	private static class Folding {
+		private static final char UNKNOWN = 0;
+		private static final char NOT_FOLDABLE = '\uffff';
+		private static final int UNMAPPED_PRIMARY = 0x7fff;
+
+		private final Locale locale;
+		private final java.text.Collator collator;
+		// char -> representative char with the same primary weight, filled lazily (char writes are atomic)
+		private final char[] table = new char[1 << 16];
+		private final Map<Integer, Character> representatives = new HashMap<Integer, Character>();
+
+		Folding(Locale locale, java.text.Collator collator) {
+			this.locale = locale;
+			this.collator = collator;
+			if (collator instanceof RuleBasedCollator) {
+				markContractions((RuleBasedCollator) collator);
+			}
+		}
+
+		// contracted chars are ordered together (Danish "aa" as "å"), so they can't be folded one by one.
+		// Contractions are written in rules as adjacent chars, longer ones are expected to have contracted prefix
+		private void markContractions(RuleBasedCollator collator) {
+			String rules = collator.getRules();
+			for (int i = 0; i + 1 < rules.length(); i++) {
+				char c1 = rules.charAt(i);
+				char c2 = rules.charAt(i + 1);
+				if (!isRuleSyntax(c1) && !isRuleSyntax(c2)
+						&& !getPrimaryOrders(collator, "" + c1 + c2).equals(getPrimaryOrders(collator, String.valueOf(c1), String.valueOf(c2)))) {
+					table[c1] = NOT_FOLDABLE;
+					table[c2] = NOT_FOLDABLE;
+				}
+			}
+		}
+
+		private static boolean isRuleSyntax(char c) {
+			return c == '<' || c == ';' || c == ',' || c == '=' || c == '&' || c == '@' || c == '/' || c == '\''
+					|| Character.isWhitespace(c);
+		}
+
+		private static List<Integer> getPrimaryOrders(RuleBasedCollator collator, String... parts) {
+			List<Integer> orders = new ArrayList<Integer>();
+			for (String p : parts) {
+				CollationElementIterator it = collator.getCollationElementIterator(p);
+				int o;
+				while ((o = it.next()) != CollationElementIterator.NULLORDER) {
+					int primary = CollationElementIterator.primaryOrder(o);
+					if (primary != 0) {
+						orders.add(primary);
+					}
+				}
+			}
+			return orders;
+		}
+
+		char[] fold(String text) {
+			char[] key = new char[text.length()];
+			for (int i = 0; i < key.length; i++) {
+				char c = text.charAt(i);
+				char k = table[c];
+				if (k == UNKNOWN) {
+					k = computeFold(c);
+				}
+				if (k == NOT_FOLDABLE) {
+					return null;
+				}
+				key[i] = k;
+			}
+			return key;
+		}
+
+		private synchronized char computeFold(char c) {
+			if (table[c] != UNKNOWN) {
+				return table[c];
+			}
+			char k = NOT_FOLDABLE;
+			if (c != UNKNOWN && c != IGNORABLE && c != NOT_FOLDABLE && !Character.isSurrogate(c)
+					&& collator instanceof RuleBasedCollator) {
+				CollationElementIterator it = ((RuleBasedCollator) collator).getCollationElementIterator(String.valueOf(c));
+				int weights = 0;
+				int primary = 0;
+				int o;
+				while ((o = it.next()) != CollationElementIterator.NULLORDER) {
+					int p = CollationElementIterator.primaryOrder(o);
+					if (p != 0) {
+						if (weights == 1 && primary == UNMAPPED_PRIMARY) {
+							// char unknown to collator rules is ordered by its code
+							primary = (primary << 16) | p;
+						} else {
+							primary = p;
+							weights++;
+						}
+					}
+				}
+				if (weights == 0) {
+					k = IGNORABLE;
+				} else if (weights == 1) {
+					Character r = representatives.get(primary);
+					if (r == null) {
+						r = c;
+						representatives.put(primary, r);
+					}
+					k = r;
+				}
+			}
+			table[c] = k;
+			return k;
+		}
+	}
+}
@@ -115,14 +115,26 @@ public class TspAnt {
         if (keepEndPoint) {
             l.add(end);
         }
-        n = l.size() ;
+        double[][] distances = new double[l.size()][l.size()];
+        for (int i = 0; i < l.size(); i++) {
+            for (int j = 1; j < l.size(); j++) {
+                distances[i][j] = MapUtils.getDistance(l.get(i), l.get(j));
+            }
+        }
+        return readGraph(distances, keepEndPoint);
+    }
+
+    // Same as above with given costs between points (i.e. route times from RouteMatrix),
+    // first point is start, last point is end if keepEndPoint.
+    public TspAnt readGraph(double[][] costs, boolean keepEndPoint) {
+        n = costs.length;
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
+				double d = Math.rint(costs[i][j]) + 0.1;
 				maxIWeight = Math.max(d, maxIWeight);
 				graph[i][j] = d;
 			}
@@ -276,6 +276,68 @@ public class BinaryMapAddressReaderAdapter {
 		}
 	}
 
+	void collectCityNames(AddressRegion reg, int type, NameNgramIndex.SectionBuilder builder, List<City> cities,
+			TIntArrayList cityOffsets) throws IOException {
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case CitiesIndex.CITIES_FIELD_NUMBER:
+				int fp = codedIS.getTotalBytesRead();
+				int length = codedIS.readRawVarint32();
+				int oldLimit = codedIS.pushLimit(length);
+				City c = readCityHeader(null, null, fp, reg.attributeTagsTable);
+				codedIS.popLimit(oldLimit);
+				if (c != null) {
+					int entry = builder.addEntry(fp, 0, type, 0);
+					builder.addName(entry, c.getName());
+					for (String n : c.getOtherNames()) {
+						builder.addName(entry, n);
+					}
+					cities.add(c);
+					cityOffsets.add(fp);
+				}
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	void collectStreetNames(AddressRegion reg, City city, int cityOffset, NameNgramIndex.SectionBuilder builder)
+			throws IOException {
+		int x = MapUtils.get31TileNumberX(city.getLocation().getLongitude());
+		int y = MapUtils.get31TileNumberY(city.getLocation().getLatitude());
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.CityBlockIndex.STREETS_FIELD_NUMBER:
+				// street is not registered in city to keep memory low while building index
+				Street s = new Street(city);
+				int offset = codedIS.getTotalBytesRead();
+				int length = codedIS.readRawVarint32();
+				int oldLimit = codedIS.pushLimit(length);
+				readStreet(s, null, false, x >> 7, y >> 7, null, reg.attributeTagsTable);
+				codedIS.popLimit(oldLimit);
+				int entry = builder.addEntry(offset, cityOffset, STREET_TYPE, 0);
+				builder.addName(entry, s.getName());
+				for (String n : s.getOtherNames()) {
+					builder.addName(entry, n);
+				}
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	interface CityMatcher {
 		boolean matches(City city);
 	}
@@ -613,6 +675,29 @@ public class BinaryMapAddressReaderAdapter {
 			}
 		};
 		long time = System.currentTimeMillis();
+		if (req.isSubstringSearch() && map.getNameNgramIndex() != null) {
+			NameNgramIndex.Section section = map.getNameNgramIndex().getSection(NameNgramIndex.ADDRESS_SECTION,
+					reg.filePointer);
+			int[] entries = section == null ? null : section.query(req.nameQuery, req.substringSearchTypos);
+			if (entries != null) {
+				TIntArrayList[] refs = new TIntArrayList[5];
+				TIntArrayList[] refsContainer = new TIntArrayList[5];
+				for (int i = 0; i < refs.length; i++) {
+					refs[i] = new TIntArrayList();
+					refsContainer[i] = new TIntArrayList();
+				}
+				for (int e : entries) {
+					refs[section.getB(e)].add(section.getOffset(e));
+					refsContainer[section.getB(e)].add(section.getA(e));
+				}
+				StringMatcher ngramMatcher = NameNgramIndex.createMatcher(req.nameQuery, req.substringSearchTypos);
+				readAddressRefs(reg, req, typeFilter, refs, refsContainer, ngramMatcher,
+						new DefaultCityMatcher(ngramMatcher));
+				LOG.info("Whole address search by name (substring) is done in " + (System.currentTimeMillis() - time)
+						+ "ms. Found " + req.getSearchResults().size());
+				return;
+			}
+		}
 		int indexOffset = 0;
 		while (true) {
 			if (req.isCancelled()) {
@@ -670,80 +755,7 @@ public class BinaryMapAddressReaderAdapter {
 						return;
 					}
 				}
-				if (typeFilter == null) {
-					typeFilter = TYPES;
-				}
-				for (int i = 0; i < typeFilter.size() && !req.isCancelled(); i++) {
-					TIntArrayList list = refs[typeFilter.get(i)];
-					TIntArrayList listContainer = refsContainer[typeFilter.get(i)];
-					
-					if (typeFilter.get(i) == STREET_TYPE) {
-						TIntLongHashMap mp = new TIntLongHashMap();
-						for (int j = 0; j < list.size(); j++) {
-							mp.put(list.get(j), listContainer.get(j));
-						}
-						list.sort();
-						for (int j = 0; j < list.size() && !req.isCancelled(); j ++) {
-							int offset = list.get(j);
-							if (j > 0 &&  offset == list.get(j - 1)) {
-								continue;
-							}
-							City obj;
-							{
-								int contOffset = (int) mp.get(offset);
-								codedIS.seek(contOffset);
-								int len = codedIS.readRawVarint32();
-								int old = codedIS.pushLimit(len);
-								obj = readCityHeader(req, null, contOffset, reg.attributeTagsTable);
-								codedIS.popLimit(old);
-							}
-							if (obj != null) {
-								codedIS.seek(offset);
-								int len = codedIS.readRawVarint32();
-								int old = codedIS.pushLimit(len);
-								LatLon l = obj.getLocation();
-								Street s = new Street(obj);
-								s.setFileOffset(offset);
-								readStreet(s, null, false, MapUtils.get31TileNumberX(l.getLongitude()) >> 7,
-										MapUtils.get31TileNumberY(l.getLatitude()) >> 7, obj.isPostcode() ? obj.getName() : null,
-										reg.attributeTagsTable);
-								publishRawData(req, s);
-								boolean matches = stringMatcher.matches(s.getName());
-								if (!matches) {
-									for (String n : s.getOtherNames()) {
-										matches = stringMatcher.matches(n);
-										if (matches) {
-											break;
-										}
-									}
-								}
-								if (matches) {
-									req.publish(s);
-								}
-								codedIS.popLimit(old);
-							}
-						}
-					} else {
-						list.sort();
-						TIntSet published = new TIntHashSet();
-						for (int j = 0; j < list.size() && !req.isCancelled(); j++) {
-							int offset = list.get(j);
-							if (j > 0 && offset == list.get(j - 1)) {
-								continue;
-							}
-							codedIS.seek(offset);
-							int len = codedIS.readRawVarint32();
-							int old = codedIS.pushLimit(len);
-							City obj = readCityHeader(req, cityPostcodeMatcher, list.get(j), reg.attributeTagsTable);
-							publishRawData(req, obj);
-							if (obj != null && !published.contains(offset)) {
-								req.publish(obj);
-								published.add(offset);
-							}
-							codedIS.popLimit(old);
-						}
-					}
-				}
+				readAddressRefs(reg, req, typeFilter, refs, refsContainer, stringMatcher, cityPostcodeMatcher);
 				LOG.info("Whole address search by name is done in " + (System.currentTimeMillis() - time) + "ms. Found "
 						+ req.getSearchResults().size());
 				return;
@@ -755,6 +767,85 @@ public class BinaryMapAddressReaderAdapter {
 
 	}
 
+	private void readAddressRefs(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter,
+			TIntArrayList[] refs, TIntArrayList[] refsContainer, StringMatcher stringMatcher,
+			CityMatcher cityPostcodeMatcher) throws IOException {
+		if (typeFilter == null) {
+			typeFilter = TYPES;
+		}
+		for (int i = 0; i < typeFilter.size() && !req.isCancelled(); i++) {
+			TIntArrayList list = refs[typeFilter.get(i)];
+			TIntArrayList listContainer = refsContainer[typeFilter.get(i)];
+			
+			if (typeFilter.get(i) == STREET_TYPE) {
+				TIntLongHashMap mp = new TIntLongHashMap();
+				for (int j = 0; j < list.size(); j++) {
+					mp.put(list.get(j), listContainer.get(j));
+				}
+				list.sort();
+				for (int j = 0; j < list.size() && !req.isCancelled(); j ++) {
+					int offset = list.get(j);
+					if (j > 0 &&  offset == list.get(j - 1)) {
+						continue;
+					}
+					City obj;
+					{
+						int contOffset = (int) mp.get(offset);
+						codedIS.seek(contOffset);
+						int len = codedIS.readRawVarint32();
+						int old = codedIS.pushLimit(len);
+						obj = readCityHeader(req, null, contOffset, reg.attributeTagsTable);
+						codedIS.popLimit(old);
+					}
+					if (obj != null) {
+						codedIS.seek(offset);
+						int len = codedIS.readRawVarint32();
+						int old = codedIS.pushLimit(len);
+						LatLon l = obj.getLocation();
+						Street s = new Street(obj);
+						s.setFileOffset(offset);
+						readStreet(s, null, false, MapUtils.get31TileNumberX(l.getLongitude()) >> 7,
+								MapUtils.get31TileNumberY(l.getLatitude()) >> 7, obj.isPostcode() ? obj.getName() : null,
+								reg.attributeTagsTable);
+						publishRawData(req, s);
+						boolean matches = stringMatcher.matches(s.getName());
+						if (!matches) {
+							for (String n : s.getOtherNames()) {
+								matches = stringMatcher.matches(n);
+								if (matches) {
+									break;
+								}
+							}
+						}
+						if (matches) {
+							req.publish(s);
+						}
+						codedIS.popLimit(old);
+					}
+				}
+			} else {
+				list.sort();
+				TIntSet published = new TIntHashSet();
+				for (int j = 0; j < list.size() && !req.isCancelled(); j++) {
+					int offset = list.get(j);
+					if (j > 0 && offset == list.get(j - 1)) {
+						continue;
+					}
+					codedIS.seek(offset);
+					int len = codedIS.readRawVarint32();
+					int old = codedIS.pushLimit(len);
+					City obj = readCityHeader(req, cityPostcodeMatcher, list.get(j), reg.attributeTagsTable);
+					publishRawData(req, obj);
+					if (obj != null && !published.contains(offset)) {
+						req.publish(obj);
+						published.add(offset);
+					}
+					codedIS.popLimit(old);
+				}
+			}
+		}
+	}
+
 	private void readAddressNameData(SearchRequest<MapObject> req, TIntArrayList[] refs,
 			TIntArrayList[] refsContainer, int fp) throws IOException {
 		TIntArrayList toAdd = null;
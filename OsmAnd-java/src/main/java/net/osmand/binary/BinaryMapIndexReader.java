@@ -102,6 +102,8 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	// not null only for memory mapped readers (raf is null then)
+	private final MappedObfFile mappedFile;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -114,6 +116,8 @@ public class BinaryMapIndexReader {
 	/*private*/ List<RouteRegion> routingIndexes = new ArrayList<RouteRegion>();
 	/*private*/ List<BinaryIndexPart> indexes = new ArrayList<BinaryIndexPart>();
 	TLongObjectHashMap<IncompleteTransportRoute> incompleteTransportRoutes = null;
+	// optional sidecar for substring search by name
+	/*private*/ NameNgramIndex nameNgramIndex = null;
 	
 	protected CodedInputStream codedIS;
 
@@ -127,6 +131,7 @@ public class BinaryMapIndexReader {
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
 		this.raf = raf;
+		this.mappedFile = null;
 		this.file = file;
 		codedIS = CodedInputStream.newInstance(raf);
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
@@ -139,6 +144,7 @@ public class BinaryMapIndexReader {
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
 		this.raf = raf;
+		this.mappedFile = null;
 		this.file = file;
 		codedIS = CodedInputStream.newInstance(raf);
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
@@ -151,11 +157,39 @@ public class BinaryMapIndexReader {
 		}
 	}
 
+	/**
+	 * Memory mapped reader: search methods read through the shared read-only mapping,
+	 * use {@link #createCursor()} to get an independent reader for another thread.
+	 */
+	public BinaryMapIndexReader(final MappedObfFile mappedFile, boolean init) throws IOException {
+		this.raf = null;
+		this.mappedFile = mappedFile;
+		this.file = mappedFile.getFile();
+		codedIS = mappedFile.newCodedInputStream();
+		transportAdapter = new BinaryMapTransportReaderAdapter(this);
+		addressAdapter = new BinaryMapAddressReaderAdapter(this);
+		poiAdapter = new BinaryMapPoiReaderAdapter(this);
+		routeAdapter = new BinaryMapRouteReaderAdapter(this);
+		if (init) {
+			init();
+		}
+	}
+
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
+		this(raf, null, referenceToSameFile);
+	}
+
+	private BinaryMapIndexReader(final RandomAccessFile raf, final MappedObfFile mappedFile,
+			BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
+		this.mappedFile = mappedFile;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
+		if (mappedFile != null) {
+			codedIS = mappedFile.newCodedInputStream();
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+			codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
+		}
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
@@ -169,6 +203,7 @@ public class BinaryMapIndexReader {
 		routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
 		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
 		basemap = referenceToSameFile.basemap;
+		nameNgramIndex = referenceToSameFile.nameNgramIndex;
 		calculateCenterPointForRegions();
 	}
 
@@ -390,6 +425,22 @@ public class BinaryMapIndexReader {
 	}
 
 
+	/**
+	 * Creates reader with own read position over the same memory mapped file,
+	 * index structures are shared with this reader and no file is opened.
+	 */
+	public BinaryMapIndexReader createCursor() throws IOException {
+		if (mappedFile == null) {
+			throw new IllegalStateException("Reader is not memory mapped " + file.getName());
+		}
+		return new BinaryMapIndexReader(null, mappedFile, this);
+	}
+
+	public boolean isMemoryMapped() {
+		return mappedFile != null;
+	}
+
+	// null for memory mapped readers
 	public RandomAccessFile getRaf() {
 		return raf;
 	}
@@ -398,6 +449,14 @@ public class BinaryMapIndexReader {
 		return file;
 	}
 
+	public NameNgramIndex getNameNgramIndex() {
+		return nameNgramIndex;
+	}
+
+	public void setNameNgramIndex(NameNgramIndex nameNgramIndex) {
+		this.nameNgramIndex = nameNgramIndex;
+	}
+
 	public String getCountryName() {
 		List<String> rg = getRegionNames();
 		if(rg.size() > 0) {
@@ -871,6 +930,23 @@ public class BinaryMapIndexReader {
 	}
 	
 	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex) throws IOException {
+		searchMapIndex(req, filterMapIndex, null, null);
+		return req.getSearchResults();
+	}
+
+	/**
+	 * Batch variant of search: objects of every map data block are decoded into reusable buffer
+	 * and block is published to matcher instead of creating object per each map object.
+	 * Buffer content is valid only during {@link ResultMatcher#publish(Object)} call, result of publish is ignored.
+	 * Request filter and bounds are applied same way, request result list is not filled.
+	 */
+	public void searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapDataBlockBuffer buffer,
+			ResultMatcher<MapDataBlockBuffer> matcher) throws IOException {
+		searchMapIndex(req, null, buffer, matcher);
+	}
+
+	private void searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex,
+			MapDataBlockBuffer buffer, ResultMatcher<MapDataBlockBuffer> matcher) throws IOException {
 		req.numberOfVisitedObjects = 0;
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
@@ -921,12 +997,19 @@ public class BinaryMapIndexReader {
 						}
 					});
 					for (MapTree tree : foundSubtrees) {
-						if (!req.isCancelled()) {
+						if (!req.isCancelled() && (matcher == null || !matcher.isCancelled())) {
 							codedIS.seek(tree.mapDataBlock);
 							int length = codedIS.readRawVarint32();
 							int oldLimit = codedIS.pushLimit(length);
-							readMapDataBlocks(req, tree, mapIndex);
+							if (buffer != null) {
+								readMapDataBlock(req, tree, mapIndex, buffer);
+							} else {
+								readMapDataBlocks(req, tree, mapIndex);
+							}
 							codedIS.popLimit(oldLimit);
+							if (buffer != null && buffer.size() > 0) {
+								matcher.publish(buffer);
+							}
 						}
 					}
 					foundSubtrees.clear();
@@ -938,7 +1021,6 @@ public class BinaryMapIndexReader {
 			log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
 		}
-		return req.getSearchResults();
 	}
 
 	
@@ -1017,6 +1099,47 @@ public class BinaryMapIndexReader {
 
 	}
 
+	private void readMapDataBlock(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root,
+			MapDataBlockBuffer buffer) throws IOException {
+		buffer.clear(root);
+		long baseId = 0;
+		while (true) {
+			if (req.isCancelled()) {
+				return;
+			}
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case MapDataBlock.BASEID_FIELD_NUMBER:
+				baseId = codedIS.readUInt64();
+				break;
+			case MapDataBlock.DATAOBJECTS_FIELD_NUMBER:
+				int length = codedIS.readRawVarint32();
+				int oldLimit = codedIS.pushLimit(length);
+				readMapDataObject(tree, req, root, buffer, baseId);
+				codedIS.popLimit(oldLimit);
+				break;
+			case MapDataBlock.STRINGTABLE_FIELD_NUMBER:
+				length = codedIS.readRawVarint32();
+				oldLimit = codedIS.pushLimit(length);
+				if (buffer.size() > 0) {
+					for (String s : readStringTable()) {
+						buffer.addString(s);
+					}
+				} else {
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				}
+				codedIS.popLimit(oldLimit);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	protected void searchMapTreeBounds(MapTree current, MapTree parent,
 			SearchRequest<BinaryMapDataObject> req, List<MapTree> foundSubtrees) throws IOException {
 		int init = 0;
@@ -1298,6 +1421,144 @@ public class BinaryMapIndexReader {
 		return dataObject;
 	}
 
+	// same as readMapDataObject but data is appended to buffer, object is finished only if it is accepted
+	private void readMapDataObject(MapTree tree, SearchRequest<BinaryMapDataObject> req, MapIndex root,
+			MapDataBlockBuffer buffer, long baseId) throws IOException {
+		int tag = WireFormat.getTagFieldNumber(codedIS.readTag());
+		boolean area = OsmandOdb.MapData.AREACOORDINATES_FIELD_NUMBER == tag;
+		if (!area && OsmandOdb.MapData.COORDINATES_FIELD_NUMBER != tag) {
+			throw new IllegalArgumentException();
+		}
+		TIntArrayList coordinates = buffer.getCoordinatesBuffer();
+		int size = codedIS.readRawVarint32();
+		int old = codedIS.pushLimit(size);
+		int px = tree.left & MASK_TO_READ;
+		int py = tree.top & MASK_TO_READ;
+		boolean contains = false;
+		int minX = Integer.MAX_VALUE;
+		int maxX = 0;
+		int minY = Integer.MAX_VALUE;
+		int maxY = 0;
+		req.numberOfVisitedObjects++;
+		while (codedIS.getBytesUntilLimit() > 0) {
+			int x = (codedIS.readSInt32() << SHIFT_COORDINATES) + px;
+			int y = (codedIS.readSInt32() << SHIFT_COORDINATES) + py;
+			coordinates.add(x);
+			coordinates.add(y);
+			px = x;
+			py = y;
+			if (!contains && req.left <= x && req.right >= x && req.top <= y && req.bottom >= y) {
+				contains = true;
+			}
+			if (!contains) {
+				minX = Math.min(minX, x);
+				maxX = Math.max(maxX, x);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+			}
+		}
+		if (!contains) {
+			if (maxX >= req.left && minX <= req.right && minY <= req.bottom && maxY >= req.top) {
+				contains = true;
+			}
+		}
+		codedIS.popLimit(old);
+		if (!contains) {
+			buffer.discardObject();
+			codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+			return;
+		}
+
+		long id = 0;
+		int labelX = 0, labelY = 0;
+		boolean loop = true;
+		while (loop) {
+			int t = codedIS.readTag();
+			tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				loop = false;
+				break;
+			case OsmandOdb.MapData.POLYGONINNERCOORDINATES_FIELD_NUMBER:
+				px = tree.left & MASK_TO_READ;
+				py = tree.top & MASK_TO_READ;
+				size = codedIS.readRawVarint32();
+				old = codedIS.pushLimit(size);
+				while (codedIS.getBytesUntilLimit() > 0) {
+					int x = (codedIS.readSInt32() << SHIFT_COORDINATES) + px;
+					int y = (codedIS.readSInt32() << SHIFT_COORDINATES) + py;
+					buffer.addInnerPolygonPoint(x, y);
+					px = x;
+					py = y;
+				}
+				codedIS.popLimit(old);
+				buffer.finishInnerPolygon();
+				break;
+			case OsmandOdb.MapData.ADDITIONALTYPES_FIELD_NUMBER:
+				TIntArrayList additionalTypes = buffer.getAdditionalTypesBuffer();
+				int sizeL = codedIS.readRawVarint32();
+				old = codedIS.pushLimit(sizeL);
+				while (codedIS.getBytesUntilLimit() > 0) {
+					additionalTypes.add(codedIS.readRawVarint32());
+				}
+				codedIS.popLimit(old);
+				break;
+			case OsmandOdb.MapData.TYPES_FIELD_NUMBER:
+				req.cacheTypes.clear();
+				sizeL = codedIS.readRawVarint32();
+				old = codedIS.pushLimit(sizeL);
+				while (codedIS.getBytesUntilLimit() > 0) {
+					req.cacheTypes.add(codedIS.readRawVarint32());
+				}
+				codedIS.popLimit(old);
+				if (req.searchFilter != null && !req.searchFilter.accept(req.cacheTypes, root)) {
+					buffer.discardObject();
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+					return;
+				}
+				TIntArrayList types = buffer.getTypesBuffer();
+				for (int i = 0; i < req.cacheTypes.size(); i++) {
+					types.add(req.cacheTypes.getQuick(i));
+				}
+				req.numberOfAcceptedObjects++;
+				break;
+			case OsmandOdb.MapData.ID_FIELD_NUMBER:
+				id = codedIS.readSInt64();
+				break;
+			case OsmandOdb.MapData.STRINGNAMES_FIELD_NUMBER:
+				sizeL = codedIS.readRawVarint32();
+				old = codedIS.pushLimit(sizeL);
+				while (codedIS.getBytesUntilLimit() > 0) {
+					int stag = codedIS.readRawVarint32();
+					int pId = codedIS.readRawVarint32();
+					buffer.addName(stag, pId);
+				}
+				codedIS.popLimit(old);
+				break;
+			case OsmandOdb.MapData.LABELCOORDINATES_FIELD_NUMBER:
+				sizeL = codedIS.readRawVarint32();
+				old = codedIS.pushLimit(sizeL);
+				int i = 0;
+				while (codedIS.getBytesUntilLimit() > 0) {
+					if (i == 0) {
+						labelX = codedIS.readSInt32();
+					} else if (i == 1) {
+						labelY = codedIS.readSInt32();
+					} else {
+						codedIS.readRawVarint32();
+					}
+					i++;
+				}
+				codedIS.popLimit(old);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+		buffer.finishObject(id + baseId, area, labelX, labelY);
+	}
+
 	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
 		for (AddressRegion reg : addressIndexes) {
 			if (reg.indexNameOffset != -1) {
@@ -1315,6 +1576,36 @@ public class BinaryMapIndexReader {
 		return searchAddressDataByName(req, null);
 	}
 
+	void collectAddressNames(AddressRegion reg, NameNgramIndex.SectionBuilder builder) throws IOException {
+		for (CitiesBlock block : reg.cities) {
+			List<City> cities = new ArrayList<City>();
+			TIntArrayList cityOffsets = new TIntArrayList();
+			codedIS.seek(block.filePointer);
+			int old = codedIS.pushLimit(block.length);
+			addressAdapter.collectCityNames(reg, block.type, builder, cities, cityOffsets);
+			codedIS.popLimit(old);
+			// streets of postcodes duplicate streets of cities
+			if (block.type != BinaryMapAddressReaderAdapter.POSTCODES_TYPE) {
+				for (int i = 0; i < cities.size(); i++) {
+					City c = cities.get(i);
+					codedIS.seek(c.getFileOffset());
+					int size = codedIS.readRawVarint32();
+					old = codedIS.pushLimit(size);
+					addressAdapter.collectStreetNames(reg, c, cityOffsets.get(i), builder);
+					codedIS.popLimit(old);
+				}
+			}
+		}
+	}
+
+	void collectPoiNames(PoiRegion poiIndex, NameNgramIndex.SectionBuilder builder) throws IOException {
+		poiAdapter.initCategories(poiIndex);
+		codedIS.seek(poiIndex.filePointer);
+		int old = codedIS.pushLimit(poiIndex.length);
+		poiAdapter.collectPoiNames(poiIndex, builder);
+		codedIS.popLimit(old);
+	}
+
 	public void initCategories(PoiRegion poiIndex) throws IOException {
 		poiAdapter.initCategories(poiIndex);
 	}
@@ -1619,7 +1910,9 @@ public class BinaryMapIndexReader {
 
 	public void close() throws IOException {
 		if (codedIS != null) {
-			raf.close();
+			if (raf != null) {
+				raf.close();
+			}
 			codedIS = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
@@ -1705,6 +1998,8 @@ public class BinaryMapIndexReader {
 
 		String nameQuery = null;
 		StringMatcherMode matcherMode = StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+		// substring search with typos by NameNgramIndex (if reader has it), -1 - search by name index of file
+		int substringSearchTypos = -1;
 		SearchFilter searchFilter = null;
 
 		SearchPoiTypeFilter poiTypeFilter = null;
@@ -1790,6 +2085,18 @@ public class BinaryMapIndexReader {
 			this.limit = limit;
 		}
 
+		/**
+		 * Name query is matched as substring of every word with up to maxTypos typos,
+		 * works only for readers with {@link NameNgramIndex} and queries containing words of 3+ letters.
+		 */
+		public void setSubstringSearch(int maxTypos) {
+			this.substringSearchTypos = maxTypos;
+		}
+
+		public boolean isSubstringSearch() {
+			return substringSearchTypos >= 0;
+		}
+
 		public boolean isCancelled() {
 			if (this.interrupted) {
 				return interrupted;
@@ -4,6 +4,7 @@ package net.osmand.binary;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
@@ -21,6 +22,7 @@ import net.osmand.CollatorStringMatcher;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.Location;
 import net.osmand.PlatformUtil;
+import net.osmand.StringMatcher;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndex.OsmAndPoiNameIndexData;
 import net.osmand.data.Amenity;
@@ -285,11 +287,14 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	public void initCategories(PoiRegion region) throws IOException {
-		if (region.categories.isEmpty()) {
-			codedIS.seek(region.filePointer);
-			int oldLimit = codedIS.pushLimit(region.length);
-			readPoiIndex(region, true);
-			codedIS.popLimit(oldLimit);
+		// region is shared by cursors of the same file, readers of categories come through here
+		synchronized (region) {
+			if (region.categories.isEmpty()) {
+				codedIS.seek(region.filePointer);
+				int oldLimit = codedIS.pushLimit(region.length);
+				readPoiIndex(region, true);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
@@ -304,6 +309,17 @@ public class BinaryMapPoiReaderAdapter {
 				StringMatcherMode.CHECK_STARTS_FROM_SPACE);
 		long time = System.currentTimeMillis();
 		int indexOffset = codedIS.getTotalBytesRead();
+		if (req.isSubstringSearch() && map.getNameNgramIndex() != null) {
+			NameNgramIndex.Section section = map.getNameNgramIndex().getSection(NameNgramIndex.POI_SECTION,
+					region.filePointer);
+			int[] entries = section == null ? null : section.query(req.nameQuery, req.substringSearchTypos);
+			if (entries != null) {
+				searchPoiByNgrams(section, entries, indexOffset, req, region);
+				LOG.info("Whole poi by name (substring) search is done in " + (System.currentTimeMillis() - time) +
+						"ms. Found " + req.getSearchResults().size());
+				return;
+			}
+		}
 		while (true) {
 			if (req.isCancelled()) {
 				return;
@@ -372,6 +388,115 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	private void searchPoiByNgrams(NameNgramIndex.Section section, int[] entries, int indexOffset,
+			final SearchRequest<Amenity> req, PoiRegion region) throws IOException {
+		StringMatcher matcher = NameNgramIndex.createMatcher(req.nameQuery, req.substringSearchTypos);
+		List<int[]> boxes = new ArrayList<int[]>();
+		for (int e : entries) {
+			int x31 = section.getA(e);
+			int y31 = section.getB(e);
+			if (intersectsBox(req, x31, y31, section.getC(e))) {
+				boxes.add(new int[] { section.getOffset(e), Math.abs(req.x - x31) + Math.abs(req.y - y31) });
+			}
+		}
+		Collections.sort(boxes, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] o1, int[] o2) {
+				return Algorithms.compare(o1[1], o2[1]);
+			}
+		});
+		for (int[] box : boxes) {
+			codedIS.seek(box[0] + indexOffset);
+			int len = readInt();
+			int oldLim = codedIS.pushLimit(len);
+			readPoiData(matcher, req, region);
+			codedIS.popLimit(oldLim);
+			if (req.isCancelled() || req.limitExceeded()) {
+				break;
+			}
+		}
+		codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+	}
+
+	// box of zoom with top left corner (x31, y31) intersects requested area
+	private static boolean intersectsBox(SearchRequest<?> req, int x31, int y31, int zoom) {
+		int size = (int) Math.min(Integer.MAX_VALUE, 1L << (31 - zoom));
+		return req.intersects(x31, y31, x31 + (size - 1), y31 + (size - 1));
+	}
+
+	void collectPoiNames(PoiRegion region, NameNgramIndex.SectionBuilder builder) throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, -1, null, null);
+		int indexOffset = codedIS.getTotalBytesRead();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
+				int offset = codedIS.getTotalBytesRead() - indexOffset;
+				int len = readInt();
+				int oldLim = codedIS.pushLimit(len);
+				collectPoiBoxNames(offset, req, region, builder);
+				codedIS.popLimit(oldLim);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void collectPoiBoxNames(int offset, SearchRequest<Amenity> req, PoiRegion region,
+			NameNgramIndex.SectionBuilder builder) throws IOException {
+		int x = 0;
+		int y = 0;
+		int zoom = 0;
+		int entry = -1;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiBoxData.X_FIELD_NUMBER:
+				x = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.ZOOM_FIELD_NUMBER:
+				zoom = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.Y_FIELD_NUMBER:
+				y = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.POIDATA_FIELD_NUMBER:
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				Amenity am = readPoiPoint(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, x, y, zoom, req, region, false);
+				codedIS.popLimit(oldLim);
+				if (am != null) {
+					if (entry == -1) {
+						entry = builder.addEntry(offset, x << (31 - zoom), y << (31 - zoom), zoom);
+					}
+					builder.addName(entry, am.getName());
+					builder.addName(entry, am.getEnName(true));
+					for (String s : am.getOtherNames()) {
+						builder.addName(entry, s);
+					}
+					for (String key : am.getAdditionalInfoKeys()) {
+						if (key.contains("_name") || key.equals("brand")) {
+							builder.addName(entry, am.getAdditionalInfo(key));
+						}
+					}
+				}
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	private TIntLongHashMap readPoiNameIndex(Collator instance, String query, SearchRequest<Amenity> req) throws IOException {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		List<TIntArrayList> listOffsets = null;
@@ -563,7 +688,7 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
-	private void readPoiData(CollatorStringMatcher matcher, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
+	private void readPoiData(StringMatcher matcher, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		int x = 0;
 		int y = 0;
 		int zoom = 0;
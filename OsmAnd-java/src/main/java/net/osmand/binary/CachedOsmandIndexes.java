@@ -28,32 +28,49 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class CachedOsmandIndexes {
 
 	private OsmAndStoredIndex storedIndex;
 	private OsmAndStoredIndex.Builder storedIndexBuilder;
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
+	// entries of stored index by name and size of file
+	private Map<String, FileIndex> storedFileIndexes = new HashMap<String, FileIndex>();
 	private boolean hasChanged = false;
 	public static final String INDEXES_DEFAULT_FILENAME = "indexes.cache";
 
 	public static final int VERSION = 2;
 
 	public FileIndex addToCache(BinaryMapIndexReader reader, File f) {
-		hasChanged = true;
-		if (storedIndexBuilder == null) {
-			storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
-			storedIndexBuilder.setVersion(VERSION);
-			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
-			if (storedIndex != null) {
-				for (FileIndex ex : storedIndex.getFileIndexList()) {
-					if (!ex.getFileName().equals(f.getName())) {
-						storedIndexBuilder.addFileIndex(ex);
+		FileIndex fi = buildFileIndex(reader, f);
+		synchronized (this) {
+			hasChanged = true;
+			if (storedIndexBuilder == null) {
+				storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
+				storedIndexBuilder.setVersion(VERSION);
+				storedIndexBuilder.setDateCreated(System.currentTimeMillis());
+				if (storedIndex != null) {
+					for (FileIndex ex : storedIndex.getFileIndexList()) {
+						if (!ex.getFileName().equals(f.getName())) {
+							storedIndexBuilder.addFileIndex(ex);
+						}
 					}
 				}
 			}
+			storedIndexBuilder.addFileIndex(fi);
 		}
+		return fi;
+	}
 
+	private FileIndex buildFileIndex(BinaryMapIndexReader reader, File f) {
 		FileIndex.Builder fileIndex = OsmandIndex.FileIndex.newBuilder();
 		long d = reader.getDateCreated();
 		fileIndex.setDateModified(d == 0 ? f.lastModified() : d);
@@ -158,9 +175,7 @@ public class CachedOsmandIndexes {
 			fileIndex.addRoutingIndex(routing);
 		}
 
-		FileIndex fi = fileIndex.build();
-		storedIndexBuilder.addFileIndex(fi);
-		return fi;
+		return fileIndex.build();
 	}
 
 	private void addRouteSubregion(RoutingPart.Builder routing, RouteSubregion sub, boolean base) {
@@ -177,33 +192,151 @@ public class CachedOsmandIndexes {
 	}
 
 	public BinaryMapIndexReader getReader(File f, boolean useStoredIndex) throws IOException {
-		FileIndex found = useStoredIndex ? getFileIndex(f, false) : null;
+		return getReader(f, useStoredIndex ? getFileIndex(f, false) : null);
+	}
+
+	protected BinaryMapIndexReader getReader(File f, FileIndex found) throws IOException {
 		BinaryMapIndexReader reader = null;
+		boolean initialized = false;
 		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
-		if (found == null) {
-			long val = System.currentTimeMillis();
-			reader = new BinaryMapIndexReader(mf, f);
-			found = addToCache(reader, f);
-			if (log.isDebugEnabled()) {
-				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		try {
+			if (found == null) {
+				long val = System.currentTimeMillis();
+				reader = new BinaryMapIndexReader(mf, f);
+				addToCache(reader, f);
+				if (log.isDebugEnabled()) {
+					log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+			} else {
+				reader = initReaderFromFileIndex(found, mf, f);
+			}
+			initialized = true;
+		} finally {
+			if (!initialized) {
+				if (reader != null) {
+					reader.close();
+				}
+				mf.close();
 			}
-		} else {
-			reader = initReaderFromFileIndex(found, mf, f);
 		}
 		return reader;
 	}
 
+	/**
+	 * Result of opening file by {@link #getReaders(List, boolean, ExecutorService)}.
+	 */
+	public static class ReaderLoadResult {
+		public final File file;
+		// null if file couldn't be read
+		public BinaryMapIndexReader reader;
+		public Throwable error;
+		// reader was initialized from stored index and not by reading file
+		public boolean fromStoredIndex;
+		public long timeMs;
+
+		public ReaderLoadResult(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public String toString() {
+			return file.getName() + " " + timeMs + " ms" + (fromStoredIndex ? " (cached)" : "")
+					+ (error != null ? " " + error.getMessage() : "");
+		}
+	}
+
+	/**
+	 * Opens and initializes readers of all files on executor (owned by caller, null to open on current thread),
+	 * files missing in stored index are added to it. Failure of one file doesn't stop others and is kept in result.
+	 * If waiting is interrupted, readers opened so far are closed and IllegalStateException is thrown.
+	 * @return results in order of files
+	 */
+	public List<ReaderLoadResult> getReaders(List<File> files, final boolean useStoredIndex, ExecutorService executor) {
+		final List<ReaderLoadResult> results = new ArrayList<ReaderLoadResult>(files.size());
+		final AtomicBoolean aborted = new AtomicBoolean();
+		List<Future<?>> futures = new ArrayList<Future<?>>(files.size());
+		for (File f : files) {
+			final ReaderLoadResult res = new ReaderLoadResult(f);
+			results.add(res);
+			Runnable task = new Runnable() {
+				@Override
+				public void run() {
+					long time = System.currentTimeMillis();
+					BinaryMapIndexReader reader = null;
+					try {
+						FileIndex found = useStoredIndex ? getFileIndex(res.file, false) : null;
+						res.fromStoredIndex = found != null;
+						reader = getReader(res.file, found);
+					} catch (Throwable e) {
+						res.error = e;
+					}
+					res.timeMs = System.currentTimeMillis() - time;
+					synchronized (results) {
+						if (aborted.get()) {
+							closeReader(reader);
+						} else {
+							res.reader = reader;
+						}
+					}
+				}
+			};
+			if (executor == null) {
+				task.run();
+			} else {
+				futures.add(executor.submit(task));
+			}
+		}
+		try {
+			// results are published by Future.get()
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			abort(results, futures, aborted);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			abort(results, futures, aborted);
+			throw new IllegalStateException(e.getCause());
+		}
+		if (log.isDebugEnabled()) {
+			for (ReaderLoadResult res : results) {
+				log.debug("Open " + res);
+			}
+		}
+		return results;
+	}
+
+
+	// readers opened before abort are closed here, readers of running tasks are closed by tasks
+	private void abort(List<ReaderLoadResult> results, List<Future<?>> futures, AtomicBoolean aborted) {
+		synchronized (results) {
+			aborted.set(true);
+			for (ReaderLoadResult res : results) {
+				closeReader(res.reader);
+				res.reader = null;
+			}
+		}
+		for (Future<?> f : futures) {
+			f.cancel(false);
+		}
+	}
+
+	private void closeReader(BinaryMapIndexReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				log.error("Error closing " + reader.getFile(), e);
+			}
+		}
+	}
 
 	public FileIndex getFileIndex(File f, boolean init) throws IOException {
 		FileIndex found = null;
-		if (storedIndex != null) {
-			for (int i = 0; i < storedIndex.getFileIndexCount(); i++) {
-				FileIndex fi = storedIndex.getFileIndex(i);
-				if (f.length() == fi.getSize() && f.getName().equals(fi.getFileName())) {
-					// f.lastModified() == fi.getDateModified()
-					found = fi;
-					break;
-				}
+		synchronized (this) {
+			if (storedIndex != null) {
+				found = storedFileIndexes.get(getFileIndexKey(f.getName(), f.length()));
 			}
 		}
 		if (found == null && init) {
@@ -220,8 +353,30 @@ public class CachedOsmandIndexes {
  		return found;
 	}
 
+	private static String getFileIndexKey(String fileName, long size) {
+		return fileName + ":" + size;
+	}
+
+	public BinaryMapIndexReader getMappedReader(File f, boolean useStoredIndex) throws IOException {
+		FileIndex found = useStoredIndex ? getFileIndex(f, false) : null;
+		MappedObfFile mf = new MappedObfFile(f);
+		if (found == null) {
+			long val = System.currentTimeMillis();
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, true);
+			addToCache(reader, f);
+			if (log.isDebugEnabled()) {
+				log.debug("Initializing mapped db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			return reader;
+		}
+		return initReaderFromFileIndex(found, new BinaryMapIndexReader(mf, false));
+	}
+
 	public BinaryMapIndexReader initReaderFromFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
-		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
+		return initReaderFromFileIndex(found, new BinaryMapIndexReader(mf, f, false));
+	}
+
+	private BinaryMapIndexReader initReaderFromFileIndex(FileIndex found, BinaryMapIndexReader reader) throws IOException {
 		reader.version = found.getVersion();
 		reader.dateCreated = found.getDateModified();
 
@@ -329,7 +484,7 @@ public class CachedOsmandIndexes {
 	}
 	
 
-	public void readFromFile(File f, int version) throws IOException {
+	public synchronized void readFromFile(File f, int version) throws IOException {
 		long time = System.currentTimeMillis();
 		FileInputStream is = new FileInputStream(f);
 		try {
@@ -341,10 +496,20 @@ public class CachedOsmandIndexes {
 		} finally {
 			is.close();
 		}
+		storedFileIndexes.clear();
+		if (storedIndex != null) {
+			for (FileIndex fi : storedIndex.getFileIndexList()) {
+				String key = getFileIndexKey(fi.getFileName(), fi.getSize());
+				// first matching entry is used
+				if (!storedFileIndexes.containsKey(key)) {
+					storedFileIndexes.put(key, fi);
+				}
+			}
+		}
 		log.info("Initialize cache " + (System.currentTimeMillis() - time));
 	}
 
-	public void writeToFile(File f) throws IOException {
+	public synchronized void writeToFile(File f) throws IOException {
 		if (hasChanged) {
 			FileOutputStream outputStream = new FileOutputStream(f);
 			try {
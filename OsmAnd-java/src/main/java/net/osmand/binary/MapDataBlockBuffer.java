@@ -0,0 +1,261 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Objects of one map data block decoded into primitive buffers, filled by
+ * {@link BinaryMapIndexReader#searchMapIndex(BinaryMapIndexReader.SearchRequest, MapDataBlockBuffer, net.osmand.ResultMatcher)}.
+ * Buffers are reused for the next block, so data should be copied (for example by {@link #toObject(int)})
+ * if it is needed after block is published. Objects are accessed by index in block: coordinates of all objects
+ * are kept in one array and per object arrays keep offsets into it.
+ */
+public class MapDataBlockBuffer {
+
+	private MapIndex mapIndex;
+	private int size = 0;
+
+	private final TLongArrayList ids = new TLongArrayList();
+	private final TIntArrayList flags = new TIntArrayList();
+	private final TIntArrayList labels = new TIntArrayList();
+	// x, y pairs of all objects and start of object in pairs (size + 1 values)
+	private final TIntArrayList coordinates = new TIntArrayList();
+	private final TIntArrayList coordinatesStart = new TIntArrayList();
+	// inner polygons: start of object in polygons, start of polygon in pairs
+	private final TIntArrayList innerPolygonsStart = new TIntArrayList();
+	private final TIntArrayList innerCoordinatesStart = new TIntArrayList();
+	private final TIntArrayList innerCoordinates = new TIntArrayList();
+	private final TIntArrayList types = new TIntArrayList();
+	private final TIntArrayList typesStart = new TIntArrayList();
+	private final TIntArrayList additionalTypes = new TIntArrayList();
+	private final TIntArrayList additionalTypesStart = new TIntArrayList();
+	// name tag and index in string table, in order of object
+	private final TIntArrayList nameTags = new TIntArrayList();
+	private final TIntArrayList nameIndexes = new TIntArrayList();
+	private final TIntArrayList namesStart = new TIntArrayList();
+	private final List<String> stringTable = new ArrayList<String>();
+
+	private static final int AREA = 1;
+
+	public MapDataBlockBuffer() {
+		clear(null);
+	}
+
+	void clear(MapIndex mapIndex) {
+		this.mapIndex = mapIndex;
+		size = 0;
+		ids.resetQuick();
+		flags.resetQuick();
+		labels.resetQuick();
+		coordinates.resetQuick();
+		coordinatesStart.resetQuick();
+		coordinatesStart.add(0);
+		innerPolygonsStart.resetQuick();
+		innerPolygonsStart.add(0);
+		innerCoordinatesStart.resetQuick();
+		innerCoordinatesStart.add(0);
+		innerCoordinates.resetQuick();
+		types.resetQuick();
+		typesStart.resetQuick();
+		typesStart.add(0);
+		additionalTypes.resetQuick();
+		additionalTypesStart.resetQuick();
+		additionalTypesStart.add(0);
+		nameTags.resetQuick();
+		nameIndexes.resetQuick();
+		namesStart.resetQuick();
+		namesStart.add(0);
+		stringTable.clear();
+	}
+
+	// object is written directly to buffers: coordinates, types, etc. of not finished object are after last start
+
+	TIntArrayList getCoordinatesBuffer() {
+		return coordinates;
+	}
+
+	void addInnerPolygonPoint(int x, int y) {
+		innerCoordinates.add(x);
+		innerCoordinates.add(y);
+	}
+
+	void finishInnerPolygon() {
+		innerCoordinatesStart.add(innerCoordinates.size() / 2);
+	}
+
+	TIntArrayList getTypesBuffer() {
+		return types;
+	}
+
+	TIntArrayList getAdditionalTypesBuffer() {
+		return additionalTypes;
+	}
+
+	void addName(int tag, int stringIndex) {
+		nameTags.add(tag);
+		nameIndexes.add(stringIndex);
+	}
+
+	void finishObject(long id, boolean area, int labelX, int labelY) {
+		ids.add(id);
+		flags.add(area ? AREA : 0);
+		labels.add(labelX);
+		labels.add(labelY);
+		coordinatesStart.add(coordinates.size() / 2);
+		innerPolygonsStart.add(innerCoordinatesStart.size() - 1);
+		typesStart.add(types.size());
+		additionalTypesStart.add(additionalTypes.size());
+		namesStart.add(nameTags.size());
+		size++;
+	}
+
+	// drops data of not finished object
+	void discardObject() {
+		truncate(coordinates, coordinatesStart.get(size) * 2);
+		int polygons = innerPolygonsStart.get(size);
+		truncate(innerCoordinatesStart, polygons + 1);
+		truncate(innerCoordinates, innerCoordinatesStart.get(polygons) * 2);
+		truncate(types, typesStart.get(size));
+		truncate(additionalTypes, additionalTypesStart.get(size));
+		truncate(nameTags, namesStart.get(size));
+		truncate(nameIndexes, namesStart.get(size));
+	}
+
+	private static void truncate(TIntArrayList list, int size) {
+		if (list.size() > size) {
+			list.remove(size, list.size() - size);
+		}
+	}
+
+	void addString(String s) {
+		stringTable.add(s);
+	}
+
+	public MapIndex getMapIndex() {
+		return mapIndex;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getId(int obj) {
+		return ids.get(obj);
+	}
+
+	public boolean isArea(int obj) {
+		return (flags.get(obj) & AREA) != 0;
+	}
+
+	public int getPointsLength(int obj) {
+		return coordinatesStart.get(obj + 1) - coordinatesStart.get(obj);
+	}
+
+	public int getPoint31XTile(int obj, int ind) {
+		return coordinates.get(2 * (coordinatesStart.get(obj) + ind));
+	}
+
+	public int getPoint31YTile(int obj, int ind) {
+		return coordinates.get(2 * (coordinatesStart.get(obj) + ind) + 1);
+	}
+
+	public int getInnerPolygonsCount(int obj) {
+		return innerPolygonsStart.get(obj + 1) - innerPolygonsStart.get(obj);
+	}
+
+	public int getInnerPolygonPointsLength(int obj, int polygon) {
+		int p = innerPolygonsStart.get(obj) + polygon;
+		return innerCoordinatesStart.get(p + 1) - innerCoordinatesStart.get(p);
+	}
+
+	public int getInnerPolygonPoint31XTile(int obj, int polygon, int ind) {
+		int p = innerPolygonsStart.get(obj) + polygon;
+		return innerCoordinates.get(2 * (innerCoordinatesStart.get(p) + ind));
+	}
+
+	public int getInnerPolygonPoint31YTile(int obj, int polygon, int ind) {
+		int p = innerPolygonsStart.get(obj) + polygon;
+		return innerCoordinates.get(2 * (innerCoordinatesStart.get(p) + ind) + 1);
+	}
+
+	public int getTypesLength(int obj) {
+		return typesStart.get(obj + 1) - typesStart.get(obj);
+	}
+
+	public int getType(int obj, int ind) {
+		return types.get(typesStart.get(obj) + ind);
+	}
+
+	public int getAdditionalTypesLength(int obj) {
+		return additionalTypesStart.get(obj + 1) - additionalTypesStart.get(obj);
+	}
+
+	public int getAdditionalType(int obj, int ind) {
+		return additionalTypes.get(additionalTypesStart.get(obj) + ind);
+	}
+
+	public TagValuePair decodeType(int type) {
+		return mapIndex.decodeType(type);
+	}
+
+	public int getNamesLength(int obj) {
+		return namesStart.get(obj + 1) - namesStart.get(obj);
+	}
+
+	public int getNameTag(int obj, int ind) {
+		return nameTags.get(namesStart.get(obj) + ind);
+	}
+
+	public String getName(int obj, int ind) {
+		int i = nameIndexes.get(namesStart.get(obj) + ind);
+		return i < stringTable.size() ? stringTable.get(i) : null;
+	}
+
+	/**
+	 * Label shift as stored in file, see {@link BinaryMapDataObject#getLabelX()}.
+	 */
+	public int getLabelX(int obj) {
+		return labels.get(2 * obj);
+	}
+
+	public int getLabelY(int obj) {
+		return labels.get(2 * obj + 1);
+	}
+
+	public BinaryMapDataObject toObject(int obj) {
+		BinaryMapDataObject o = new BinaryMapDataObject();
+		o.id = getId(obj);
+		o.area = isArea(obj);
+		o.mapIndex = mapIndex;
+		o.labelX = getLabelX(obj);
+		o.labelY = getLabelY(obj);
+		int start = coordinatesStart.get(obj) * 2;
+		o.coordinates = coordinates.toArray(start, coordinatesStart.get(obj + 1) * 2 - start);
+		o.polygonInnerCoordinates = new int[getInnerPolygonsCount(obj)][];
+		for (int p = 0; p < o.polygonInnerCoordinates.length; p++) {
+			int ind = innerPolygonsStart.get(obj) + p;
+			int s = innerCoordinatesStart.get(ind) * 2;
+			o.polygonInnerCoordinates[p] = innerCoordinates.toArray(s, innerCoordinatesStart.get(ind + 1) * 2 - s);
+		}
+		o.types = types.toArray(typesStart.get(obj), getTypesLength(obj));
+		o.additionalTypes = additionalTypes.toArray(additionalTypesStart.get(obj), getAdditionalTypesLength(obj));
+		int names = getNamesLength(obj);
+		if (names > 0) {
+			o.objectNames = new TIntObjectHashMap<String>();
+			o.namesOrder = new TIntArrayList();
+			for (int i = 0; i < names; i++) {
+				int tag = getNameTag(obj, i);
+				o.objectNames.put(tag, getName(obj, i));
+				o.namesOrder.add(tag);
+			}
+		}
+		return o;
+	}
+}
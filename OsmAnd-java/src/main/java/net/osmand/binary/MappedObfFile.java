@@ -0,0 +1,63 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of an .obf file split into windows smaller than 2 GB.
+ * The mapping itself is immutable and can be shared between threads, every reader
+ * gets its own {@link CodedInputStream} over duplicated windows (see {@link #newCodedInputStream()}),
+ * so no file handle is kept open and no seek is shared between readers.
+ */
+public class MappedObfFile {
+
+	public static final int WINDOW_SIZE = 1 << 30;
+
+	private final File file;
+	private final long length;
+	private final ByteBuffer[] windows;
+
+	public MappedObfFile(File file) throws IOException {
+		this.file = file;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			length = channel.size();
+			int count = (int) ((length + WINDOW_SIZE - 1) / WINDOW_SIZE);
+			windows = new ByteBuffer[Math.max(count, 1)];
+			for (int i = 0; i < windows.length; i++) {
+				long start = (long) i * WINDOW_SIZE;
+				long size = Math.min(WINDOW_SIZE, length - start);
+				MappedByteBuffer mb = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+				windows[i] = mb;
+			}
+		} finally {
+			// mapping stays valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public CodedInputStream newCodedInputStream() {
+		ByteBuffer[] cursor = new ByteBuffer[windows.length];
+		for (int i = 0; i < windows.length; i++) {
+			cursor[i] = windows[i].duplicate();
+		}
+		CodedInputStream codedIS = CodedInputStream.newInstance(cursor, WINDOW_SIZE, length);
+		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
+		return codedIS;
+	}
+}
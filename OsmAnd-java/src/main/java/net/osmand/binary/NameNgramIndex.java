@@ -0,0 +1,538 @@
+package net.osmand.binary;
+
+import net.osmand.PlatformUtil;
+import net.osmand.StringMatcher;
+import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Optional sidecar of .obf file (see {@link #FILE_EXT}) for substring and fuzzy search by name.
+ * For every poi and address region it maps trigrams of normalized names to sorted lists of entries:
+ * poi box data (offset relative to poi index, 31 coordinates of top left corner of box and its zoom) and address
+ * objects (absolute offset, offset of city container for streets and address type).
+ * Candidates are found by counting posting lists of query trigrams and then verified by {@link #createMatcher(String, int)}.
+ * Sidecar is validated by size and creation date of obf like {@link CachedOsmandIndexes}.
+ */
+public class NameNgramIndex {
+
+	private static final Log LOG = PlatformUtil.getLog(NameNgramIndex.class);
+
+	public static final String FILE_EXT = ".ngram";
+	public static final int VERSION = 2;
+	public static final int GRAM = 3;
+
+	public static final int POI_SECTION = 1;
+	public static final int ADDRESS_SECTION = 2;
+
+	private final long obfSize;
+	private final long obfDate;
+	private final List<Section> sections;
+
+	NameNgramIndex(long obfSize, long obfDate, List<Section> sections) {
+		this.obfSize = obfSize;
+		this.obfDate = obfDate;
+		this.sections = sections;
+	}
+
+	public static class Section {
+		final int kind;
+		final int filePointer;
+		// entries
+		final int[] offsets;
+		final int[] a;
+		final int[] b;
+		final int[] c;
+		// sorted trigrams and sorted entry indexes per trigram
+		final long[] grams;
+		final int[][] postings;
+
+		Section(int kind, int filePointer, int[] offsets, int[] a, int[] b, int[] c, long[] grams, int[][] postings) {
+			this.kind = kind;
+			this.filePointer = filePointer;
+			this.offsets = offsets;
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.grams = grams;
+			this.postings = postings;
+		}
+
+		public int getKind() {
+			return kind;
+		}
+
+		public int getFilePointer() {
+			return filePointer;
+		}
+
+		public int getEntriesCount() {
+			return offsets.length;
+		}
+
+		public int getOffset(int entry) {
+			return offsets[entry];
+		}
+
+		public int getA(int entry) {
+			return a[entry];
+		}
+
+		public int getB(int entry) {
+			return b[entry];
+		}
+
+		public int getC(int entry) {
+			return c[entry];
+		}
+
+		int[] getPosting(long gram) {
+			int i = Arrays.binarySearch(grams, gram);
+			return i < 0 ? null : postings[i];
+		}
+
+		/**
+		 * @return sorted entries which could contain every word of query with allowed number of typos,
+		 * null if query is too short to be resolved by trigrams
+		 */
+		public int[] query(String query, int maxTypos) {
+			int[] res = null;
+			for (String w : splitWords(normalize(query))) {
+				long[] wgrams = grams(w);
+				int threshold = wgrams.length - GRAM * allowedTypos(w, maxTypos);
+				if (threshold <= 0) {
+					continue;
+				}
+				TIntArrayList all = new TIntArrayList();
+				for (long g : wgrams) {
+					int[] p = getPosting(g);
+					if (p != null) {
+						all.add(p);
+					}
+				}
+				int[] cand = countAtLeast(all.toArray(), threshold);
+				res = res == null ? cand : intersect(res, cand);
+				if (res.length == 0) {
+					break;
+				}
+			}
+			return res;
+		}
+	}
+
+	public long getObfSize() {
+		return obfSize;
+	}
+
+	public long getObfDate() {
+		return obfDate;
+	}
+
+	public List<Section> getSections() {
+		return sections;
+	}
+
+	public Section getSection(int kind, int filePointer) {
+		for (Section s : sections) {
+			if (s.kind == kind && s.filePointer == filePointer) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	public boolean isValid(File obf, long dateCreated) {
+		return obf.length() == obfSize && dateCreated == obfDate;
+	}
+
+	static int allowedTypos(String word, int maxTypos) {
+		return Math.min(maxTypos, word.length() / (GRAM + 1));
+	}
+
+	/**
+	 * Lower case, removes diacritics (ß is ss) and replaces everything except letters and digits with single space.
+	 */
+	public static String normalize(String s) {
+		String d = Normalizer.normalize(s.toLowerCase(), Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(d.length());
+		for (int i = 0; i < d.length(); i++) {
+			char c = d.charAt(i);
+			if (Character.getType(c) == Character.NON_SPACING_MARK) {
+				continue;
+			}
+			String fold = foldLetter(c);
+			if (fold != null) {
+				sb.append(fold);
+			} else if (Character.isLetterOrDigit(c)) {
+				sb.append(c);
+			} else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+				sb.append(' ');
+			}
+		}
+		int l = sb.length();
+		if (l > 0 && sb.charAt(l - 1) == ' ') {
+			sb.setLength(l - 1);
+		}
+		return sb.toString();
+	}
+
+	// letters which are not decomposed by NFD
+	private static String foldLetter(char c) {
+		switch (c) {
+		case '\u00df':
+			return "ss";
+		case '\u00e6':
+			return "ae";
+		case '\u0153':
+			return "oe";
+		case '\u00f8':
+			return "o";
+		case '\u0142':
+			return "l";
+		case '\u0111':
+			return "d";
+		case '\u0131':
+			return "i";
+		default:
+			return null;
+		}
+	}
+
+	static List<String> splitWords(String normalized) {
+		List<String> words = new ArrayList<String>();
+		if (normalized.length() > 0) {
+			for (String w : normalized.split(" ")) {
+				words.add(w);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * @return distinct sorted trigrams of normalized word, empty for words shorter than trigram
+	 */
+	static long[] grams(String word) {
+		if (word.length() < GRAM) {
+			return new long[0];
+		}
+		long[] res = new long[word.length() - GRAM + 1];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = (((long) word.charAt(i)) << 32) | (((long) word.charAt(i + 1)) << 16) | word.charAt(i + 2);
+		}
+		Arrays.sort(res);
+		int k = 0;
+		for (int i = 0; i < res.length; i++) {
+			if (i == 0 || res[i] != res[i - 1]) {
+				res[k++] = res[i];
+			}
+		}
+		return Arrays.copyOf(res, k);
+	}
+
+	/**
+	 * @return sorted distinct values which appear in (unsorted) array at least threshold times
+	 */
+	static int[] countAtLeast(int[] values, int threshold) {
+		Arrays.sort(values);
+		TIntArrayList res = new TIntArrayList();
+		for (int i = 0; i < values.length;) {
+			int j = i + 1;
+			while (j < values.length && values[j] == values[i]) {
+				j++;
+			}
+			if (j - i >= threshold) {
+				res.add(values[i]);
+			}
+			i = j;
+		}
+		return res.toArray();
+	}
+
+	static int[] intersect(int[] s1, int[] s2) {
+		TIntArrayList res = new TIntArrayList(Math.min(s1.length, s2.length));
+		int i = 0, j = 0;
+		while (i < s1.length && j < s2.length) {
+			if (s1[i] < s2[j]) {
+				i++;
+			} else if (s1[i] > s2[j]) {
+				j++;
+			} else {
+				res.add(s1[i]);
+				i++;
+				j++;
+			}
+		}
+		return res.toArray();
+	}
+
+	/**
+	 * Minimal edit distance between pattern and any substring of text,
+	 * stops as soon as distance not greater than max is found.
+	 */
+	static int substringDistance(String pattern, String text, int max) {
+		int m = pattern.length();
+		int[] col = new int[m + 1];
+		for (int i = 0; i <= m; i++) {
+			col[i] = i;
+		}
+		int best = m;
+		for (int j = 0; j < text.length() && best > max; j++) {
+			char c = text.charAt(j);
+			int diag = col[0];
+			col[0] = 0;
+			for (int i = 1; i <= m; i++) {
+				int tmp = col[i];
+				int v = diag + (pattern.charAt(i - 1) == c ? 0 : 1);
+				v = Math.min(v, col[i] + 1);
+				v = Math.min(v, col[i - 1] + 1);
+				col[i] = v;
+				diag = tmp;
+			}
+			best = Math.min(best, col[m]);
+		}
+		return best;
+	}
+
+	/**
+	 * Matcher consistent with {@link Section#query(String, int)}: every word of query is contained
+	 * in normalized name with allowed number of typos.
+	 */
+	public static StringMatcher createMatcher(String query, int maxTypos) {
+		final List<String> words = splitWords(normalize(query));
+		final int[] typos = new int[words.size()];
+		for (int i = 0; i < typos.length; i++) {
+			typos[i] = allowedTypos(words.get(i), maxTypos);
+		}
+		return new StringMatcher() {
+
+			@Override
+			public boolean matches(String name) {
+				if (name == null || name.length() == 0) {
+					return false;
+				}
+				String n = normalize(name);
+				for (int i = 0; i < typos.length; i++) {
+					String w = words.get(i);
+					if (!n.contains(w) && (typos[i] == 0 || substringDistance(w, n, typos[i]) > typos[i])) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	static class SectionBuilder {
+		private final int kind;
+		private final int filePointer;
+		private final TIntArrayList offsets = new TIntArrayList();
+		private final TIntArrayList a = new TIntArrayList();
+		private final TIntArrayList b = new TIntArrayList();
+		private final TIntArrayList c = new TIntArrayList();
+		private final TLongObjectHashMap<TIntArrayList> postings = new TLongObjectHashMap<TIntArrayList>();
+
+		SectionBuilder(int kind, int filePointer) {
+			this.kind = kind;
+			this.filePointer = filePointer;
+		}
+
+		int addEntry(int offset, int a, int b, int c) {
+			offsets.add(offset);
+			this.a.add(a);
+			this.b.add(b);
+			this.c.add(c);
+			return offsets.size() - 1;
+		}
+
+		void addName(int entry, String name) {
+			if (name == null || name.length() == 0) {
+				return;
+			}
+			for (String w : splitWords(normalize(name))) {
+				for (long g : grams(w)) {
+					TIntArrayList l = postings.get(g);
+					if (l == null) {
+						l = new TIntArrayList();
+						postings.put(g, l);
+					}
+					// entries are added sequentially so posting list stays sorted
+					if (l.isEmpty() || l.get(l.size() - 1) != entry) {
+						l.add(entry);
+					}
+				}
+			}
+		}
+
+		Section build() {
+			long[] grams = postings.keys();
+			Arrays.sort(grams);
+			int[][] p = new int[grams.length][];
+			for (int i = 0; i < grams.length; i++) {
+				p[i] = postings.get(grams[i]).toArray();
+			}
+			return new Section(kind, filePointer, offsets.toArray(), a.toArray(), b.toArray(), c.toArray(), grams, p);
+		}
+	}
+
+	public static File getDefaultFile(File obf) {
+		return new File(obf.getParentFile(), obf.getName() + FILE_EXT);
+	}
+
+	/**
+	 * Reads sidecar if it is valid for reader's file, otherwise builds and writes it.
+	 * Index is attached to reader, reader must not be used concurrently while building.
+	 */
+	public static NameNgramIndex loadOrBuild(BinaryMapIndexReader reader, File sidecar) throws IOException {
+		File obf = reader.getFile();
+		NameNgramIndex index = null;
+		if (sidecar.exists()) {
+			try {
+				index = read(sidecar);
+			} catch (IOException e) {
+				LOG.warn("Failed to read " + sidecar.getName() + ": " + e.getMessage());
+			}
+			if (index != null && !index.isValid(obf, reader.getDateCreated())) {
+				index = null;
+			}
+		}
+		if (index == null) {
+			long time = System.currentTimeMillis();
+			index = build(reader);
+			write(index, sidecar);
+			LOG.info("Built name index " + sidecar.getName() + " in " + (System.currentTimeMillis() - time) + " ms");
+		}
+		reader.setNameNgramIndex(index);
+		return index;
+	}
+
+	public static NameNgramIndex build(BinaryMapIndexReader reader) throws IOException {
+		List<Section> sections = new ArrayList<Section>();
+		for (PoiRegion poiIndex : reader.getPoiIndexes()) {
+			SectionBuilder sb = new SectionBuilder(POI_SECTION, poiIndex.getFilePointer());
+			reader.collectPoiNames(poiIndex, sb);
+			sections.add(sb.build());
+		}
+		for (AddressRegion reg : reader.getAddressIndexes()) {
+			SectionBuilder sb = new SectionBuilder(ADDRESS_SECTION, reg.getFilePointer());
+			reader.collectAddressNames(reg, sb);
+			sections.add(sb.build());
+		}
+		return new NameNgramIndex(reader.getFile().length(), reader.getDateCreated(), sections);
+	}
+
+	public static void write(NameNgramIndex index, File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(VERSION);
+			out.writeLong(index.obfSize);
+			out.writeLong(index.obfDate);
+			out.writeInt(index.sections.size());
+			for (Section s : index.sections) {
+				out.writeInt(s.kind);
+				out.writeInt(s.filePointer);
+				out.writeInt(s.offsets.length);
+				for (int i = 0; i < s.offsets.length; i++) {
+					out.writeInt(s.offsets[i]);
+					out.writeInt(s.a[i]);
+					out.writeInt(s.b[i]);
+					out.writeInt(s.c[i]);
+				}
+				out.writeInt(s.grams.length);
+				for (int i = 0; i < s.grams.length; i++) {
+					out.writeLong(s.grams[i]);
+					int[] p = s.postings[i];
+					writeVarint(out, p.length);
+					int prev = 0;
+					for (int e : p) {
+						writeVarint(out, e - prev);
+						prev = e;
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static NameNgramIndex read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != VERSION) {
+				return null;
+			}
+			long size = in.readLong();
+			long date = in.readLong();
+			int cnt = in.readInt();
+			List<Section> sections = new ArrayList<Section>(cnt);
+			for (int k = 0; k < cnt; k++) {
+				int kind = in.readInt();
+				int filePointer = in.readInt();
+				int entries = in.readInt();
+				int[] offsets = new int[entries];
+				int[] a = new int[entries];
+				int[] b = new int[entries];
+				int[] c = new int[entries];
+				for (int i = 0; i < entries; i++) {
+					offsets[i] = in.readInt();
+					a[i] = in.readInt();
+					b[i] = in.readInt();
+					c[i] = in.readInt();
+				}
+				int gcnt = in.readInt();
+				TLongArrayList grams = new TLongArrayList(gcnt);
+				int[][] postings = new int[gcnt][];
+				for (int i = 0; i < gcnt; i++) {
+					grams.add(in.readLong());
+					int[] p = new int[readVarint(in)];
+					int prev = 0;
+					for (int j = 0; j < p.length; j++) {
+						prev += readVarint(in);
+						p[j] = prev;
+					}
+					postings[i] = p;
+				}
+				sections.add(new Section(kind, filePointer, offsets, a, b, c, grams.toArray(), postings));
+			}
+			return new NameNgramIndex(size, date, sections);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeVarint(DataOutputStream out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException {
+		int res = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.readUnsignedByte();
+			res |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return res;
+			}
+		}
+	}
+}
@@ -54,7 +54,14 @@ public class RouteDataObject {
 	}
 
 	public RouteDataObject(RouteDataObject copy) {
-		this.region = copy.region;
+		this(copy, copy.region);
+	}
+
+	/**
+	 * Copy bound to another region of the same file (type ids are the same for regions of one file).
+	 */
+	public RouteDataObject(RouteDataObject copy, RouteRegion region) {
+		this.region = region;
 		this.pointsX = copy.pointsX;
 		this.pointsY = copy.pointsY;
 		this.types = copy.types;
@@ -512,7 +519,7 @@ public class RouteDataObject {
 	}
 	
 	public void removePointType(int ind, int type) {
-		if (pointTypes != null || ind < pointTypes.length) {
+		if (pointTypes != null && ind < pointTypes.length && pointTypes[ind] != null) {
 			int[] typesArr = pointTypes[ind];
 
 			for (int i = 0; i < typesArr.length; i++) {
@@ -0,0 +1,454 @@
+package net.osmand.data;
+
+import net.osmand.ResultMatcher;
+import net.osmand.util.MapUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Thread safe variant of {@link DataTileManager}. Objects are kept in tiles of zoom, tiles are guarded by striped locks
+ * and keep objects in copy on write arrays, so range queries ({@link #visitObjects(int, int, int, int, ResultMatcher)},
+ * {@link #iterateObjects(int, int, int, int)}) don't copy objects and don't block writers.
+ * Every {@link #LEVEL_STEP} zooms above zoom of tiles there is level with count of objects in tile, so queries of
+ * large area descend only into not empty tiles.
+ * <p>
+ * When count of objects or their size in bytes exceeds limit, least recently used tiles are evicted.
+ * @param <T> - object to store in that manager
+ */
+public class ConcurrentDataTileManager<T> {
+
+	public interface ObjectWeigher<T> {
+		long getBytes(T object);
+	}
+
+	public static final int LEVEL_STEP = 3;
+	private static final int STRIPES_BITS = 4;
+	// share of limit which is left after eviction
+	private static final double EVICTION_RATIO = 0.9;
+	private static final Object[] EMPTY = new Object[0];
+
+	// last access of tile at the moment of eviction, it is changed by queries during sort
+	private static class EvictionCandidate implements Comparable<EvictionCandidate> {
+		final Tile tile;
+		final long lastAccess;
+
+		EvictionCandidate(Tile tile) {
+			this.tile = tile;
+			this.lastAccess = tile.lastAccess;
+		}
+
+		@Override
+		public int compareTo(EvictionCandidate o) {
+			return Long.compare(lastAccess, o.lastAccess);
+		}
+	}
+
+	private static class Tile {
+		final int x;
+		final int y;
+		// objects of tile of zoom, replaced on every change
+		volatile Object[] objects = EMPTY;
+		// count of objects of tiles of zoom inside tile of level
+		int count;
+		long bytes;
+		volatile long lastAccess;
+
+		Tile(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	private final int zoom;
+	// zooms of levels from zoom to top level
+	private final int[] levelZooms;
+	private final Object[] locks = new Object[1 << STRIPES_BITS];
+	// tiles of every level by stripe
+	private final TLongObjectHashMap<Tile>[][] tiles;
+
+	private final int maxObjects;
+	private final long maxBytes;
+	private final ObjectWeigher<T> weigher;
+	private final AtomicInteger objectsCount = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong accessCounter = new AtomicLong();
+	private final AtomicInteger evictedTiles = new AtomicInteger();
+	private final Object evictionLock = new Object();
+
+	public ConcurrentDataTileManager(int zoom) {
+		this(zoom, Integer.MAX_VALUE, Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * @param maxObjects max count of objects before eviction
+	 * @param maxBytes max size of objects before eviction (used only with weigher)
+	 * @param weigher size of object in bytes (could be null)
+	 */
+	public ConcurrentDataTileManager(int zoom, int maxObjects, long maxBytes, ObjectWeigher<T> weigher) {
+		if (zoom < 0 || zoom > 31) {
+			throw new IllegalArgumentException("Unsupported zoom " + zoom);
+		}
+		this.zoom = zoom;
+		this.maxObjects = maxObjects;
+		this.maxBytes = weigher == null ? Long.MAX_VALUE : maxBytes;
+		this.weigher = weigher;
+		int levels = zoom / LEVEL_STEP + 1;
+		levelZooms = new int[levels];
+		for (int l = 0; l < levels; l++) {
+			levelZooms[l] = zoom - l * LEVEL_STEP;
+		}
+		tiles = newTiles(levels, locks.length);
+		for (int s = 0; s < locks.length; s++) {
+			locks[s] = new Object();
+			for (int l = 0; l < levels; l++) {
+				tiles[l][s] = new TLongObjectHashMap<Tile>();
+			}
+		}
+	}
+
+	// maps of tiles are created as raw arrays, arrays of generic type can't be created
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static TLongObjectHashMap<Tile>[][] newTiles(int levels, int stripes) {
+		return new TLongObjectHashMap[levels][stripes];
+	}
+
+	public int getZoom() {
+		return zoom;
+	}
+
+	public boolean isEmpty() {
+		return getObjectsCount() == 0;
+	}
+
+	public int getObjectsCount() {
+		return objectsCount.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public int getEvictedTilesCount() {
+		return evictedTiles.get();
+	}
+
+	private long evTile(int level, int tileX, int tileY) {
+		return ((long) (tileX) << levelZooms[level]) + tileY;
+	}
+
+	private static int stripe(long key) {
+		int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+		return h >>> (32 - STRIPES_BITS);
+	}
+
+	private Tile getTile(int level, int tileX, int tileY) {
+		long key = evTile(level, tileX, tileY);
+		int s = stripe(key);
+		synchronized (locks[s]) {
+			return tiles[level][s].get(key);
+		}
+	}
+
+	public long evaluateTile(double latitude, double longitude) {
+		int tileX = (int) MapUtils.getTileNumberX(zoom, longitude);
+		int tileY = (int) MapUtils.getTileNumberY(zoom, latitude);
+		return evTile(0, tileX, tileY);
+	}
+
+	public long evaluateTileXY(int x31, int y31) {
+		return evTile(0, x31 >> (31 - zoom), y31 >> (31 - zoom));
+	}
+
+	public long registerObject(double latitude, double longitude, T object) {
+		int tileX = (int) MapUtils.getTileNumberX(zoom, longitude);
+		int tileY = (int) MapUtils.getTileNumberY(zoom, latitude);
+		return addObject(tileX, tileY, object);
+	}
+
+	public long registerObjectXY(int x31, int y31, T object) {
+		return addObject(x31 >> (31 - zoom), y31 >> (31 - zoom), object);
+	}
+
+	public boolean unregisterObject(double latitude, double longitude, T object) {
+		int tileX = (int) MapUtils.getTileNumberX(zoom, longitude);
+		int tileY = (int) MapUtils.getTileNumberY(zoom, latitude);
+		return removeObject(tileX, tileY, object);
+	}
+
+	public boolean unregisterObjectXY(int x31, int y31, T object) {
+		return removeObject(x31 >> (31 - zoom), y31 >> (31 - zoom), object);
+	}
+
+	private long addObject(int tileX, int tileY, T object) {
+		long objectBytes = weigher == null ? 0 : weigher.getBytes(object);
+		// counts of levels are increased before object is visible
+		updateLevelCounts(tileX, tileY, 1);
+		long key = evTile(0, tileX, tileY);
+		int s = stripe(key);
+		synchronized (locks[s]) {
+			Tile tile = tiles[0][s].get(key);
+			if (tile == null) {
+				tile = new Tile(tileX, tileY);
+				tiles[0][s].put(key, tile);
+			}
+			Object[] objects = Arrays.copyOf(tile.objects, tile.objects.length + 1);
+			objects[objects.length - 1] = object;
+			tile.objects = objects;
+			tile.count++;
+			tile.bytes += objectBytes;
+			tile.lastAccess = accessCounter.incrementAndGet();
+		}
+		int count = objectsCount.incrementAndGet();
+		long size = bytes.addAndGet(objectBytes);
+		if (count > maxObjects || size > maxBytes) {
+			evict();
+		}
+		return key;
+	}
+
+	private boolean removeObject(int tileX, int tileY, T object) {
+		long key = evTile(0, tileX, tileY);
+		int s = stripe(key);
+		long objectBytes;
+		synchronized (locks[s]) {
+			Tile tile = tiles[0][s].get(key);
+			if (tile == null) {
+				return false;
+			}
+			Object[] objects = tile.objects;
+			int ind = -1;
+			for (int i = 0; i < objects.length && ind == -1; i++) {
+				if (object == null ? objects[i] == null : object.equals(objects[i])) {
+					ind = i;
+				}
+			}
+			if (ind == -1) {
+				return false;
+			}
+			Object[] res = new Object[objects.length - 1];
+			System.arraycopy(objects, 0, res, 0, ind);
+			System.arraycopy(objects, ind + 1, res, ind, res.length - ind);
+			objectBytes = weigher == null ? 0 : weigher.getBytes(object);
+			tile.objects = res;
+			tile.count--;
+			tile.bytes -= objectBytes;
+			if (tile.count == 0) {
+				tiles[0][s].remove(key);
+			}
+		}
+		objectsCount.decrementAndGet();
+		bytes.addAndGet(-objectBytes);
+		updateLevelCounts(tileX, tileY, -1);
+		return true;
+	}
+
+	private void updateLevelCounts(int tileX, int tileY, int delta) {
+		for (int l = 1; l < levelZooms.length; l++) {
+			int shift = zoom - levelZooms[l];
+			int x = tileX >> shift;
+			int y = tileY >> shift;
+			long key = evTile(l, x, y);
+			int s = stripe(key);
+			synchronized (locks[s]) {
+				Tile tile = tiles[l][s].get(key);
+				if (tile == null) {
+					tile = new Tile(x, y);
+					tiles[l][s].put(key, tile);
+				}
+				tile.count += delta;
+				if (tile.count <= 0) {
+					tiles[l][s].remove(key);
+				}
+			}
+		}
+	}
+
+	private void evict() {
+		synchronized (evictionLock) {
+			if (objectsCount.get() <= maxObjects && bytes.get() <= maxBytes) {
+				return;
+			}
+			List<EvictionCandidate> all = new ArrayList<EvictionCandidate>();
+			for (int s = 0; s < locks.length; s++) {
+				synchronized (locks[s]) {
+					for (Tile tile : tiles[0][s].valueCollection()) {
+						all.add(new EvictionCandidate(tile));
+					}
+				}
+			}
+			Collections.sort(all);
+			long targetObjects = (long) (maxObjects * EVICTION_RATIO);
+			long targetBytes = (long) (maxBytes * EVICTION_RATIO);
+			for (EvictionCandidate c : all) {
+				if (objectsCount.get() <= targetObjects && bytes.get() <= targetBytes) {
+					break;
+				}
+				removeTile(c.tile);
+			}
+		}
+	}
+
+	private void removeTile(Tile tile) {
+		long key = evTile(0, tile.x, tile.y);
+		int s = stripe(key);
+		int count;
+		long tileBytes;
+		synchronized (locks[s]) {
+			if (tiles[0][s].get(key) != tile) {
+				return;
+			}
+			tiles[0][s].remove(key);
+			count = tile.count;
+			tileBytes = tile.bytes;
+			tile.objects = EMPTY;
+			tile.count = 0;
+		}
+		objectsCount.addAndGet(-count);
+		bytes.addAndGet(-tileBytes);
+		evictedTiles.incrementAndGet();
+		updateLevelCounts(tile.x, tile.y, -count);
+	}
+
+	/**
+	 * Publishes objects of tiles intersecting box until matcher is cancelled (objects registered or unregistered
+	 * during query could be visited or not).
+	 * @return false if query was cancelled
+	 */
+	public boolean visitObjects(int leftX31, int topY31, int rightX31, int bottomY31, ResultMatcher<T> matcher) {
+		int top = levelZooms.length - 1;
+		int shift = 31 - levelZooms[top];
+		for (int x = leftX31 >> shift; x <= rightX31 >> shift; x++) {
+			for (int y = topY31 >> shift; y <= bottomY31 >> shift; y++) {
+				if (!visitTile(top, x, y, leftX31, topY31, rightX31, bottomY31, matcher, null)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean visitTile(int level, int tileX, int tileY, int leftX31, int topY31, int rightX31, int bottomY31,
+							  ResultMatcher<T> matcher, List<Object[]> tilesObjects) {
+		Tile tile = getTile(level, tileX, tileY);
+		if (tile == null) {
+			return true;
+		}
+		if (level == 0) {
+			tile.lastAccess = accessCounter.incrementAndGet();
+			Object[] objects = tile.objects;
+			if (tilesObjects != null) {
+				tilesObjects.add(objects);
+				return true;
+			}
+			for (Object o : objects) {
+				if (matcher.isCancelled()) {
+					return false;
+				}
+				matcher.publish((T) o);
+			}
+			return true;
+		}
+		int step = levelZooms[level - 1] - levelZooms[level];
+		int shift = 31 - levelZooms[level - 1];
+		int minX = Math.max(tileX << step, leftX31 >> shift);
+		int maxX = Math.min(((tileX + 1) << step) - 1, rightX31 >> shift);
+		int minY = Math.max(tileY << step, topY31 >> shift);
+		int maxY = Math.min(((tileY + 1) << step) - 1, bottomY31 >> shift);
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				if (!visitTile(level - 1, x, y, leftX31, topY31, rightX31, bottomY31, matcher, tilesObjects)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Iterates over objects of tiles intersecting box, objects of every tile are taken as they are at the moment of call.
+	 */
+	public Iterator<T> iterateObjects(int leftX31, int topY31, int rightX31, int bottomY31) {
+		final List<Object[]> tilesObjects = new ArrayList<Object[]>();
+		int top = levelZooms.length - 1;
+		int shift = 31 - levelZooms[top];
+		for (int x = leftX31 >> shift; x <= rightX31 >> shift; x++) {
+			for (int y = topY31 >> shift; y <= bottomY31 >> shift; y++) {
+				visitTile(top, x, y, leftX31, topY31, rightX31, bottomY31, null, tilesObjects);
+			}
+		}
+		return new Iterator<T>() {
+			int tile = 0;
+			int ind = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (tile < tilesObjects.size() && ind >= tilesObjects.get(tile).length) {
+					tile++;
+					ind = 0;
+				}
+				return tile < tilesObjects.size();
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return (T) tilesObjects.get(tile)[ind++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	public List<T> getObjects(int leftX31, int topY31, int rightX31, int bottomY31, final List<T> result) {
+		visitObjects(leftX31, topY31, rightX31, bottomY31, new ResultMatcher<T>() {
+			@Override
+			public boolean publish(T object) {
+				result.add(object);
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		return result;
+	}
+
+	public List<T> getObjects(int leftX31, int topY31, int rightX31, int bottomY31) {
+		return getObjects(leftX31, topY31, rightX31, bottomY31, new ArrayList<T>());
+	}
+
+	/**
+	 * Removes all objects, objects registered at the same time could be lost partly.
+	 */
+	public void clear() {
+		for (int s = 0; s < locks.length; s++) {
+			synchronized (locks[s]) {
+				for (Tile tile : tiles[0][s].valueCollection()) {
+					objectsCount.addAndGet(-tile.count);
+					bytes.addAndGet(-tile.bytes);
+				}
+				for (int l = 0; l < levelZooms.length; l++) {
+					tiles[l][s].clear();
+				}
+			}
+		}
+	}
+}
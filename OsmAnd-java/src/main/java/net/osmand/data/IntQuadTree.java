@@ -0,0 +1,63 @@
+package net.osmand.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link PackedQuadTree} which keeps boxes of items as int values.
+ */
+public class IntQuadTree<T> extends PackedQuadTree<T> {
+
+	// left, top, right, bottom of items
+	private int[] boxes = new int[64];
+
+	public IntQuadTree(QuadRect r, int depth/* =8 */, float ratio /* = 0.55 */) {
+		super(r, depth, ratio);
+	}
+
+	/**
+	 * Inserts items and packs tree.
+	 * @param boxes left, top, right, bottom of every item
+	 */
+	public void insertAll(List<T> data, int[] boxes) {
+		if (boxes.length != data.size() * 4) {
+			throw new IllegalArgumentException("Boxes don't match items");
+		}
+		ensureCapacity(size + data.size());
+		System.arraycopy(boxes, 0, this.boxes, 4 * size, boxes.length);
+		insertStored(data);
+	}
+
+	@Override
+	protected void setBox(int item, double left, double top, double right, double bottom) {
+		boxes[4 * item] = (int) left;
+		boxes[4 * item + 1] = (int) top;
+		boxes[4 * item + 2] = (int) right;
+		boxes[4 * item + 3] = (int) bottom;
+	}
+
+	@Override
+	protected void resizeBoxes(int capacity) {
+		boxes = Arrays.copyOf(boxes, capacity * 4);
+	}
+
+	@Override
+	protected double getLeft(int item) {
+		return boxes[4 * item];
+	}
+
+	@Override
+	protected double getTop(int item) {
+		return boxes[4 * item + 1];
+	}
+
+	@Override
+	protected double getRight(int item) {
+		return boxes[4 * item + 2];
+	}
+
+	@Override
+	protected double getBottom(int item) {
+		return boxes[4 * item + 3];
+	}
+}
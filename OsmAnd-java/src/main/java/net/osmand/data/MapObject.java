@@ -2,6 +2,7 @@ package net.osmand.data;
 
 
 import net.osmand.Collator;
+import net.osmand.NormalizedName;
 import net.osmand.OsmAndCollator;
 import net.osmand.util.Algorithms;
 import net.osmand.util.TransliterationHelper;
@@ -13,6 +14,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -33,6 +35,8 @@ public abstract class MapObject implements Comparable<MapObject> {
 	
 	public static final byte WAY_MODULO_REMAINDER = 1;
 
+	private static final int MAX_NORMALIZED_NAMES = 16;
+
 	protected String name = null;
 	protected String enName = null;
 	/**
@@ -44,6 +48,8 @@ public abstract class MapObject implements Comparable<MapObject> {
 	protected int fileOffset = 0;
 	protected Long id = null;
 	private Object referenceFile = null;
+	// names prepared for search matching, copy on write
+	private volatile NormalizedName[] normalizedNames = null;
 
 
 	public void setId(Long id) {
@@ -124,6 +130,29 @@ public abstract class MapObject implements Comparable<MapObject> {
 		return l;
 	}
 
+	/**
+	 * Name (one of object names usually) prepared for {@link net.osmand.CollatorStringMatcher}, cached in the object.
+	 */
+	public NormalizedName getNormalizedName(String name) {
+		NormalizedName[] cache = normalizedNames;
+		if (cache != null) {
+			for (NormalizedName n : cache) {
+				if (n.getName().equals(name)) {
+					return n;
+				}
+			}
+		}
+		NormalizedName n = NormalizedName.of(name);
+		if (cache == null) {
+			normalizedNames = new NormalizedName[] { n };
+		} else if (cache.length < MAX_NORMALIZED_NAMES) {
+			NormalizedName[] ncache = Arrays.copyOf(cache, cache.length + 1);
+			ncache[cache.length] = n;
+			normalizedNames = ncache;
+		}
+		return n;
+	}
+
 	public void copyNames(String otherName, String otherEnName, Map<String, String> otherNames, boolean overwrite) {
 		if (!Algorithms.isEmpty(otherName) && (overwrite || Algorithms.isEmpty(name))) {
 			name = otherName;
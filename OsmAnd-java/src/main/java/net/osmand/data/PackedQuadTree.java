@@ -0,0 +1,319 @@
+package net.osmand.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Quad tree with same insert and {@link #queryInBox(QuadRect, List)} semantics as {@link QuadTree}, which keeps nodes
+ * and items in primitive arrays: no objects are allocated per node or inserted item and
+ * {@link #query(double, double, double, double, ItemVisitor)} doesn't allocate at all.
+ * Boxes of items are kept by subclasses ({@link FloatQuadTree}, {@link IntQuadTree}) in arrays of their type,
+ * tree reads and writes them by coordinate accessors.
+ * <p>
+ * Items of node are linked list in insertion order, {@link #pack()} (called by bulk insert) places items of every node
+ * next to each other in order of tree traversal.
+ */
+public abstract class PackedQuadTree<T> {
+
+	public interface ItemVisitor<T> {
+		/**
+		 * @return false to stop query
+		 */
+		boolean visit(T item);
+	}
+
+	private static final int NONE = -1;
+
+	private final float ratio;
+	private final int maxDepth;
+
+	// node bounds: left, top, right, bottom
+	private double[] nodeBounds = new double[16];
+	// 4 children of node, 0 if child is not created (root is never child)
+	private int[] nodeChildren = new int[16];
+	private int[] nodeFirst = new int[4];
+	private int[] nodeLast = new int[4];
+	private int nodesCount;
+
+	private Object[] items = new Object[16];
+	private int[] itemNext = new int[16];
+	protected int size;
+
+	// insert buffer of 4 child extents
+	private final double[] ext = new double[16];
+
+	protected PackedQuadTree(QuadRect r, int depth/* =8 */, float ratio /* = 0.55 */) {
+		this.ratio = ratio;
+		this.maxDepth = depth;
+		addNode(r.left, r.top, r.right, r.bottom);
+	}
+
+	private int addNode(double left, double top, double right, double bottom) {
+		int n = nodesCount++;
+		if (nodeFirst.length <= n) {
+			int cap = nodeFirst.length * 2;
+			nodeBounds = Arrays.copyOf(nodeBounds, cap * 4);
+			nodeChildren = Arrays.copyOf(nodeChildren, cap * 4);
+			nodeFirst = Arrays.copyOf(nodeFirst, cap);
+			nodeLast = Arrays.copyOf(nodeLast, cap);
+		}
+		nodeBounds[4 * n] = left;
+		nodeBounds[4 * n + 1] = top;
+		nodeBounds[4 * n + 2] = right;
+		nodeBounds[4 * n + 3] = bottom;
+		Arrays.fill(nodeChildren, 4 * n, 4 * n + 4, 0);
+		nodeFirst[n] = NONE;
+		nodeLast[n] = NONE;
+		return n;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	protected void ensureCapacity(int capacity) {
+		if (items.length < capacity) {
+			int cap = Math.max(capacity, items.length * 2);
+			items = Arrays.copyOf(items, cap);
+			itemNext = Arrays.copyOf(itemNext, cap);
+			resizeBoxes(cap);
+		}
+	}
+
+	protected abstract void resizeBoxes(int capacity);
+
+	// coordinates are converted to type of boxes
+	protected abstract void setBox(int item, double left, double top, double right, double bottom);
+
+	protected abstract double getLeft(int item);
+
+	protected abstract double getTop(int item);
+
+	protected abstract double getRight(int item);
+
+	protected abstract double getBottom(int item);
+
+	public void insert(T data, double left, double top, double right, double bottom) {
+		ensureCapacity(size + 1);
+		setBox(size, left, top, right, bottom);
+		insertItem(data);
+	}
+
+	public void insert(T data, double x, double y) {
+		insert(data, x, y, x, y);
+	}
+
+	// inserts items with boxes already stored from index size and packs tree
+	protected void insertStored(List<T> data) {
+		for (T item : data) {
+			insertItem(item);
+		}
+		pack();
+	}
+
+	// adds item with box already stored at index size
+	private void insertItem(T data) {
+		int item = size++;
+		items[item] = data;
+		itemNext[item] = NONE;
+		double left = getLeft(item);
+		double top = getTop(item);
+		double right = getRight(item);
+		double bottom = getBottom(item);
+		int n = 0;
+		int depth = 0;
+		while (++depth < maxDepth) {
+			splitBox(n);
+			int child = -1;
+			for (int i = 0; i < 4; ++i) {
+				if (contains(ext, 4 * i, left, top, right, bottom)) {
+					child = i;
+					break;
+				}
+			}
+			if (child == -1) {
+				break;
+			}
+			int c = nodeChildren[4 * n + child];
+			if (c == 0) {
+				c = addNode(ext[4 * child], ext[4 * child + 1], ext[4 * child + 2], ext[4 * child + 3]);
+				nodeChildren[4 * n + child] = c;
+			}
+			n = c;
+		}
+		if (nodeLast[n] == NONE) {
+			nodeFirst[n] = item;
+		} else {
+			itemNext[nodeLast[n]] = item;
+		}
+		nodeLast[n] = item;
+	}
+
+	// same as QuadTree.splitBox
+	private void splitBox(int n) {
+		double lx = nodeBounds[4 * n];
+		double ly = nodeBounds[4 * n + 1];
+		double hx = nodeBounds[4 * n + 2];
+		double hy = nodeBounds[4 * n + 3];
+		setExt(0, lx, ly, lx + (hx - lx) * ratio, ly + (hy - ly) * ratio);
+		setExt(1, lx + (hx - lx) * (1 - ratio), ly, hx, ly + (hy - ly) * ratio);
+		setExt(2, lx, ly + (hy - ly) * (1 - ratio), lx + (hx - lx) * ratio, hy);
+		setExt(3, lx + (hx - lx) * (1 - ratio), ly + (hy - ly) * (1 - ratio), hx, hy);
+	}
+
+	private void setExt(int i, double left, double top, double right, double bottom) {
+		ext[4 * i] = left;
+		ext[4 * i + 1] = top;
+		ext[4 * i + 2] = right;
+		ext[4 * i + 3] = bottom;
+	}
+
+	// same as QuadRect.contains
+	private static boolean contains(double[] r, int o, double left, double top, double right, double bottom) {
+		return Math.min(r[o], r[o + 2]) <= Math.min(left, right)
+				&& Math.max(r[o], r[o + 2]) >= Math.max(left, right)
+				&& Math.min(r[o + 1], r[o + 3]) <= Math.min(top, bottom)
+				&& Math.max(r[o + 1], r[o + 3]) >= Math.max(top, bottom);
+	}
+
+	// same as QuadRect.intersects
+	private static boolean intersects(double aLeft, double aTop, double aRight, double aBottom,
+									  double bLeft, double bTop, double bRight, double bBottom) {
+		return Math.min(aLeft, aRight) <= Math.max(bLeft, bRight)
+				&& Math.max(aLeft, aRight) >= Math.min(bLeft, bRight)
+				&& Math.min(aBottom, aTop) <= Math.max(bBottom, bTop)
+				&& Math.max(aBottom, aTop) >= Math.min(bBottom, bTop);
+	}
+
+	private boolean nodeIntersects(int n, double left, double top, double right, double bottom) {
+		return intersects(left, top, right, bottom, nodeBounds[4 * n], nodeBounds[4 * n + 1],
+				nodeBounds[4 * n + 2], nodeBounds[4 * n + 3]);
+	}
+
+	public void clear() {
+		Arrays.fill(items, 0, size, null);
+		size = 0;
+		nodesCount = 1;
+		Arrays.fill(nodeChildren, 0, 4, 0);
+		nodeFirst[0] = NONE;
+		nodeLast[0] = NONE;
+	}
+
+	/**
+	 * Same as {@link QuadTree#queryInBox(QuadRect, List)}: returns items of all nodes which intersect box
+	 * (could include items with boxes outside of box).
+	 */
+	public List<T> queryInBox(QuadRect box, List<T> result) {
+		result.clear();
+		queryNode(0, box.left, box.top, box.right, box.bottom, result);
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void queryNode(int n, double left, double top, double right, double bottom, List<T> result) {
+		if (nodeIntersects(n, left, top, right, bottom)) {
+			for (int item = nodeFirst[n]; item != NONE; item = itemNext[item]) {
+				result.add((T) items[item]);
+			}
+			for (int k = 0; k < 4; ++k) {
+				int c = nodeChildren[4 * n + k];
+				if (c != 0) {
+					queryNode(c, left, top, right, bottom, result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits items with boxes intersecting box (items are visited in order of {@link #queryInBox(QuadRect, List)}).
+	 * @return false if query was stopped by visitor
+	 */
+	public boolean query(double left, double top, double right, double bottom, ItemVisitor<T> visitor) {
+		return queryNode(0, left, top, right, bottom, visitor);
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean queryNode(int n, double left, double top, double right, double bottom, ItemVisitor<T> visitor) {
+		if (nodeIntersects(n, left, top, right, bottom)) {
+			for (int item = nodeFirst[n]; item != NONE; item = itemNext[item]) {
+				if (intersects(left, top, right, bottom, getLeft(item), getTop(item), getRight(item), getBottom(item))
+						&& !visitor.visit((T) items[item])) {
+					return false;
+				}
+			}
+			for (int k = 0; k < 4; ++k) {
+				int c = nodeChildren[4 * n + k];
+				if (c != 0 && !queryNode(c, left, top, right, bottom, visitor)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Places items of every node next to each other in order of tree traversal.
+	 */
+	public void pack() {
+		int[] oldItems = new int[size];
+		Object[] newItems = new Object[items.length];
+		int pos = 0;
+		int[] stack = new int[nodesCount];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int n = stack[--top];
+			int first = pos;
+			for (int item = nodeFirst[n]; item != NONE; item = itemNext[item]) {
+				newItems[pos] = items[item];
+				oldItems[pos++] = item;
+			}
+			if (pos > first) {
+				nodeFirst[n] = first;
+				nodeLast[n] = pos - 1;
+			}
+			// children in reverse order to visit them in query order
+			for (int k = 3; k >= 0; k--) {
+				int c = nodeChildren[4 * n + k];
+				if (c != 0) {
+					stack[top++] = c;
+				}
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			itemNext[i] = i + 1;
+		}
+		for (int n = 0; n < nodesCount; n++) {
+			if (nodeLast[n] != NONE) {
+				itemNext[nodeLast[n]] = NONE;
+			}
+		}
+		items = newItems;
+		reorderBoxes(oldItems, size);
+	}
+
+	// box of item i becomes box of old item oldItems[i], boxes are moved by cycles of permutation
+	private void reorderBoxes(int[] oldItems, int count) {
+		boolean[] moved = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			if (moved[i] || oldItems[i] == i) {
+				continue;
+			}
+			double left = getLeft(i);
+			double top = getTop(i);
+			double right = getRight(i);
+			double bottom = getBottom(i);
+			int j = i;
+			while (true) {
+				moved[j] = true;
+				int from = oldItems[j];
+				if (from == i) {
+					setBox(j, left, top, right, bottom);
+					break;
+				}
+				setBox(j, getLeft(from), getTop(from), getRight(from), getBottom(from));
+				j = from;
+			}
+		}
+	}
+}
@@ -69,6 +69,7 @@ public class OsmandRegions {
 
 
 	QuadTree<String> quadTree;
+	RegionBoundariesIndex boundariesIndex;
 	MapIndexFields mapIndexFields;
 	RegionTranslation translator;
 
@@ -312,7 +313,7 @@ public class OsmandRegions {
 		try {
 			List<BinaryMapDataObject> list = query(x, y);
 			for(BinaryMapDataObject o : list) {
-				if(contain(o, x, y)) {
+				if(isPointQueryIndexed() || contain(o, x, y)) {
 					String name = mapIndexFields.get(mapIndexFields.nameType, o);
 					if(name != null) {
 						return name;
@@ -341,6 +342,52 @@ public class OsmandRegions {
 		if (quadTree != null) {
 			return getCountries(tile31x, tile31x, tile31y, tile31y, true);
 		}
+		return queryPointNoInit(tile31x, tile31y);
+	}
+
+	/**
+	 * Batch variant of {@link #query(int, int)}, uses boundaries index if it is cached (see {@link #cacheRegionBoundaries()}).
+	 * @return objects containing point for every point
+	 */
+	public List<List<BinaryMapDataObject>> query(int[] tile31x, int[] tile31y) throws IOException {
+		if (isPointQueryIndexed()) {
+			return boundariesIndex.query(tile31x, tile31y);
+		}
+		List<List<BinaryMapDataObject>> result = new ArrayList<List<BinaryMapDataObject>>(tile31x.length);
+		for (int i = 0; i < tile31x.length; i++) {
+			result.add(query(tile31x[i], tile31y[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Batch variant of {@link #getCountryName(LatLon)} for points in 31 tile numbers.
+	 */
+	public String[] getCountryNames(int[] tile31x, int[] tile31y) throws IOException {
+		List<List<BinaryMapDataObject>> objects = query(tile31x, tile31y);
+		String[] names = new String[objects.size()];
+		for (int i = 0; i < names.length; i++) {
+			for (BinaryMapDataObject o : objects.get(i)) {
+				if (isPointQueryIndexed() || contain(o, tile31x[i], tile31y[i])) {
+					names[i] = mapIndexFields.get(mapIndexFields.nameType, o);
+					if (names[i] != null) {
+						break;
+					}
+				}
+			}
+		}
+		return names;
+	}
+
+	// objects returned by point query of boundaries index contain point
+	private boolean isPointQueryIndexed() {
+		return quadTree == null && boundariesIndex != null;
+	}
+
+	private List<BinaryMapDataObject> queryPointNoInit(int tile31x, int tile31y) throws IOException {
+		if (boundariesIndex != null) {
+			return boundariesIndex.query(tile31x, tile31y, new ArrayList<BinaryMapDataObject>());
+		}
 		return queryBboxNoInit(tile31x, tile31x, tile31y, tile31y, true);
 	}
 
@@ -587,6 +634,31 @@ public class OsmandRegions {
 		return countriesByDownloadName;
 	}
 
+	/**
+	 * Loads boundaries of all regions into memory, so point queries don't read file.
+	 */
+	public RegionBoundariesIndex cacheRegionBoundaries() throws IOException {
+		final List<BinaryMapDataObject> objects = new ArrayList<BinaryMapDataObject>();
+		iterateOverAllObjects(new ResultMatcher<BinaryMapDataObject>() {
+			@Override
+			public boolean publish(BinaryMapDataObject object) {
+				if (object.getPointsLength() < 1) {
+					return false;
+				}
+				initTypes(object);
+				objects.add(object);
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		boundariesIndex = new RegionBoundariesIndex(objects);
+		return boundariesIndex;
+	}
+
 	private synchronized void iterateOverAllObjects(final ResultMatcher<BinaryMapDataObject> resultMatcher) throws IOException {
 		BinaryMapIndexReader.SearchRequest<BinaryMapDataObject> sr = BinaryMapIndexReader.buildSearchRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE,
 				5, new BinaryMapIndexReader.SearchFilter() {
@@ -809,7 +881,7 @@ public class OsmandRegions {
 		Map<WorldRegion, BinaryMapDataObject> foundObjects = new LinkedHashMap<>();
 		List<BinaryMapDataObject> mapDataObjects;
 		try {
-			mapDataObjects = queryBboxNoInit(point31x, point31x, point31y, point31y, true);
+			mapDataObjects = queryPointNoInit(point31x, point31y);
 		} catch (IOException e) {
 			throw new IOException("Error while calling queryBbox");
 		}
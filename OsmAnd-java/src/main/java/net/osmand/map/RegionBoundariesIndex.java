@@ -0,0 +1,208 @@
+package net.osmand.map;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.util.MapAlgorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory index of region boundaries for point queries ({@link OsmandRegions#query(int, int)} without reading file).
+ * Outer polygons of regions are packed into arrays and registered in uniform grid cells by bounding box.
+ * Every polygon keeps its edges bucketed by horizontal bands, so point in polygon test
+ * (same ray casting as {@link OsmandRegions#contain(BinaryMapDataObject, int, int)}) checks only edges of one band.
+ * <p>
+ * Index is immutable and could be queried by several threads at the same time.
+ */
+public class RegionBoundariesIndex {
+
+	private static final int GRID_ZOOM = 8;
+	private static final int GRID_SHIFT = 31 - GRID_ZOOM;
+	private static final int GRID_SIZE = 1 << GRID_ZOOM;
+	private static final int EDGES_PER_BAND = 8;
+	private static final int MAX_BANDS = 1024;
+
+	private final BinaryMapDataObject[] objects;
+	// points of all polygons, polygon i is [pointsStart[i], pointsStart[i + 1])
+	private final int[] pointsStart;
+	private final int[] px;
+	private final int[] py;
+	private final int[] minX;
+	private final int[] maxX;
+	private final int[] minY;
+	private final int[] maxY;
+	// bands of polygon i are [bandsStart[i], bandsStart[i + 1]), band g has edges [bandEdgesStart[g], bandEdgesStart[g + 1])
+	private final int[] bandsStart;
+	private final long[] bandHeight;
+	private final int[] bandEdgesStart;
+	// edge is given by index of its end point
+	private final int[] bandEdges;
+	// polygons of cell c are [cellStart[c], cellStart[c + 1])
+	private final int[] cellStart;
+	private final int[] cellObjects;
+
+	public RegionBoundariesIndex(List<BinaryMapDataObject> polygons) {
+		List<BinaryMapDataObject> list = new ArrayList<BinaryMapDataObject>();
+		int points = 0;
+		for (BinaryMapDataObject o : polygons) {
+			if (o.getPointsLength() > 0) {
+				list.add(o);
+				points += o.getPointsLength();
+			}
+		}
+		int n = list.size();
+		objects = list.toArray(new BinaryMapDataObject[n]);
+		pointsStart = new int[n + 1];
+		px = new int[points];
+		py = new int[points];
+		minX = new int[n];
+		maxX = new int[n];
+		minY = new int[n];
+		maxY = new int[n];
+		bandsStart = new int[n + 1];
+		bandHeight = new long[n];
+		int p = 0;
+		int bands = 0;
+		for (int i = 0; i < n; i++) {
+			BinaryMapDataObject o = objects[i];
+			pointsStart[i] = p;
+			minX[i] = maxX[i] = o.getPoint31XTile(0);
+			minY[i] = maxY[i] = o.getPoint31YTile(0);
+			for (int k = 0; k < o.getPointsLength(); k++, p++) {
+				px[p] = o.getPoint31XTile(k);
+				py[p] = o.getPoint31YTile(k);
+				minX[i] = Math.min(minX[i], px[p]);
+				maxX[i] = Math.max(maxX[i], px[p]);
+				minY[i] = Math.min(minY[i], py[p]);
+				maxY[i] = Math.max(maxY[i], py[p]);
+			}
+			int b = Math.max(1, Math.min(MAX_BANDS, (o.getPointsLength() - 1) / EDGES_PER_BAND));
+			bandsStart[i] = bands;
+			bandHeight[i] = ((long) maxY[i] - minY[i]) / b + 1;
+			bands += b;
+		}
+		pointsStart[n] = p;
+		bandsStart[n] = bands;
+
+		// edge is in every band of its y range
+		bandEdgesStart = new int[bands + 1];
+		for (int i = 0; i < n; i++) {
+			for (int e = pointsStart[i] + 1; e < pointsStart[i + 1]; e++) {
+				int last = bandsStart[i] + band(i, Math.max(py[e - 1], py[e]));
+				for (int g = bandsStart[i] + band(i, Math.min(py[e - 1], py[e])); g <= last; g++) {
+					bandEdgesStart[g + 1]++;
+				}
+			}
+		}
+		toStarts(bandEdgesStart);
+		bandEdges = new int[bandEdgesStart[bands]];
+		int[] pos = bandEdgesStart.clone();
+		for (int i = 0; i < n; i++) {
+			for (int e = pointsStart[i] + 1; e < pointsStart[i + 1]; e++) {
+				int last = bandsStart[i] + band(i, Math.max(py[e - 1], py[e]));
+				for (int g = bandsStart[i] + band(i, Math.min(py[e - 1], py[e])); g <= last; g++) {
+					bandEdges[pos[g]++] = e;
+				}
+			}
+		}
+
+		cellStart = new int[GRID_SIZE * GRID_SIZE + 1];
+		for (int i = 0; i < n; i++) {
+			for (int cx = cell(minX[i]); cx <= cell(maxX[i]); cx++) {
+				for (int cy = cell(minY[i]); cy <= cell(maxY[i]); cy++) {
+					cellStart[cx * GRID_SIZE + cy + 1]++;
+				}
+			}
+		}
+		toStarts(cellStart);
+		cellObjects = new int[cellStart[cellStart.length - 1]];
+		pos = cellStart.clone();
+		for (int i = 0; i < n; i++) {
+			for (int cx = cell(minX[i]); cx <= cell(maxX[i]); cx++) {
+				for (int cy = cell(minY[i]); cy <= cell(maxY[i]); cy++) {
+					cellObjects[pos[cx * GRID_SIZE + cy]++] = i;
+				}
+			}
+		}
+	}
+
+	// counts of groups (count of group g at g + 1) to start indexes of groups
+	private static void toStarts(int[] counts) {
+		for (int j = 1; j < counts.length; j++) {
+			counts[j] += counts[j - 1];
+		}
+	}
+
+	private int band(int i, int y) {
+		return (int) (((long) y - minY[i]) / bandHeight[i]);
+	}
+
+	private static int cell(int c) {
+		return Math.max(0, Math.min(GRID_SIZE - 1, c >> GRID_SHIFT));
+	}
+
+	public int getPolygonsCount() {
+		return objects.length;
+	}
+
+	private boolean contain(int i, int tx, int ty) {
+		if (ty < minY[i] || ty > maxY[i] || tx < minX[i] || tx > maxX[i]) {
+			return false;
+		}
+		int b = bandsStart[i] + band(i, ty);
+		int t = 0;
+		for (int k = bandEdgesStart[b]; k < bandEdgesStart[b + 1]; k++) {
+			int e = bandEdges[k];
+			int fx = MapAlgorithms.ray_intersect_x(px[e - 1], py[e - 1], px[e], py[e], ty);
+			if (Integer.MIN_VALUE != fx && tx >= fx) {
+				t++;
+			}
+		}
+		return t % 2 == 1;
+	}
+
+	/**
+	 * Adds polygons containing point to result in order of index polygons.
+	 */
+	public List<BinaryMapDataObject> query(int tile31x, int tile31y, List<BinaryMapDataObject> result) {
+		int c = cell(tile31x) * GRID_SIZE + cell(tile31y);
+		for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+			int i = cellObjects[k];
+			if (contain(i, tile31x, tile31y)) {
+				result.add(objects[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Batch variant of {@link #query(int, int, List)}: points are processed grouped by grid cell.
+	 * @return polygons containing point for every point
+	 */
+	public List<List<BinaryMapDataObject>> query(int[] tile31x, int[] tile31y) {
+		int n = tile31x.length;
+		if (tile31y.length != n) {
+			throw new IllegalArgumentException("Arrays of coordinates have different length");
+		}
+		// counting sort of points by cell
+		int[] pointCells = new int[n];
+		int[] starts = new int[GRID_SIZE * GRID_SIZE + 1];
+		for (int j = 0; j < n; j++) {
+			pointCells[j] = cell(tile31x[j]) * GRID_SIZE + cell(tile31y[j]);
+			starts[pointCells[j] + 1]++;
+		}
+		toStarts(starts);
+		int[] order = new int[n];
+		for (int j = 0; j < n; j++) {
+			order[starts[pointCells[j]]++] = j;
+		}
+		List<List<BinaryMapDataObject>> result = new ArrayList<List<BinaryMapDataObject>>(n);
+		for (int j = 0; j < n; j++) {
+			result.add(null);
+		}
+		for (int j : order) {
+			result.set(j, query(tile31x[j], tile31y[j], new ArrayList<BinaryMapDataObject>(2)));
+		}
+		return result;
+	}
+}
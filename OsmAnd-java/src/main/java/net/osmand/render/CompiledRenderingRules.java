@@ -0,0 +1,275 @@
+package net.osmand.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled form of {@link RenderingRulesStorage} used by {@link RenderingRuleSearchRequest#search(int, boolean)}.
+ * For every state and tag/value it keeps input properties tested by rules which search could visit
+ * ((tag, value), (tag, 0) and (0, 0) rules with all children and referenced attributes), so search result
+ * depends only on these properties and on saved state of request. Results (properties written by search) are
+ * memoized by saved state, state, tag, value and values of tested properties and shared by all requests of
+ * this storage, including requests of different threads. Least recently used results and saved states are evicted
+ * when cache is full, results are kept in several LRU maps chosen by hash of key to reduce lock contention.
+ * <p>
+ * Storage rules shouldn't be changed after compilation.
+ */
+public class CompiledRenderingRules {
+
+	private static final int MAX_CACHED_RESULTS = 1 << 16;
+	private static final int MAX_SAVED_STATES = 1 << 10;
+	private static final int RESULT_STRIPES = 16;
+
+	private final RenderingRulesStorage storage;
+	private final ConcurrentHashMap<Long, Dispatch> dispatches = new ConcurrentHashMap<Long, Dispatch>();
+	private final LruMap<Key, Result>[] results;
+	private final LruMap<Key, Integer> savedStates = new LruMap<Key, Integer>(MAX_SAVED_STATES);
+	// ids of evicted saved states are not reused, so results of them are never returned for other state
+	private int nextSavedStateId;
+
+	public CompiledRenderingRules(RenderingRulesStorage storage) {
+		this(storage, MAX_CACHED_RESULTS);
+	}
+
+	public CompiledRenderingRules(RenderingRulesStorage storage, int maxCachedResults) {
+		this.storage = storage;
+		this.results = newResultStripes(Math.max(1, maxCachedResults / RESULT_STRIPES));
+	}
+
+	// stripes are created as raw array as array of generic maps can't be created
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static LruMap<Key, Result>[] newResultStripes(int capacity) {
+		LruMap<Key, Result>[] stripes = new LruMap[RESULT_STRIPES];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new LruMap<Key, Result>(capacity);
+		}
+		return stripes;
+	}
+
+	public RenderingRulesStorage getStorage() {
+		return storage;
+	}
+
+	// properties which rules of tag/value could test
+	static class Dispatch {
+		final int[] intProperties;
+		final int[] floatProperties;
+		// changed value of property doesn't prevent caching (it is a part of key or it isn't read)
+		final boolean[] keyed;
+		final boolean objectDependent;
+
+		Dispatch(int[] intProperties, int[] floatProperties, boolean[] keyed, boolean objectDependent) {
+			this.intProperties = intProperties;
+			this.floatProperties = floatProperties;
+			this.keyed = keyed;
+			this.objectDependent = objectDependent;
+		}
+	}
+
+	// properties written by search
+	static class Result {
+		final boolean found;
+		final int[] ids;
+		final int[] values;
+		final float[] fvalues;
+
+		Result(boolean found, int[] ids, int[] values, float[] fvalues) {
+			this.found = found;
+			this.ids = ids;
+			this.values = values;
+			this.fvalues = fvalues;
+		}
+	}
+
+	private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		LruMap(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	// first length values of key array, requests fill key of search in reused array
+	static class Key {
+		final int[] key;
+		int length;
+		int hash;
+
+		Key(int capacity) {
+			this.key = new int[capacity];
+		}
+
+		Key(int[] key) {
+			this.key = key;
+			setLength(key.length);
+		}
+
+		void setLength(int length) {
+			this.length = length;
+			int h = 1;
+			for (int i = 0; i < length; i++) {
+				h = 31 * h + key[i];
+			}
+			this.hash = h;
+		}
+
+		Key copy() {
+			return new Key(Arrays.copyOf(key, length));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key o = (Key) obj;
+			if (o.length != length || o.hash != hash) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (key[i] != o.key[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	Dispatch getDispatch(int state, int tagKey, int valueKey) {
+		Long k = ((long) state << 50) | ((long) tagKey << 25) | valueKey;
+		Dispatch d = dispatches.get(k);
+		if (d == null) {
+			d = compile(state, tagKey, valueKey);
+			dispatches.put(k, d);
+		}
+		return d;
+	}
+
+	private Dispatch compile(int state, int tagKey, int valueKey) {
+		RenderingRuleStorageProperties props = storage.PROPS;
+		RenderingRuleProperty[] all = props.getPoperties();
+		boolean[] tested = new boolean[all.length];
+		Map<RenderingRule, Boolean> visited = new IdentityHashMap<RenderingRule, Boolean>();
+		collect(storage.getRule(state, tagKey, valueKey), tested, visited);
+		collect(storage.getRule(state, tagKey, 0), tested, visited);
+		collect(storage.getRule(state, 0, 0), tested, visited);
+		boolean objectDependent = false;
+		List<Integer> ints = new ArrayList<Integer>();
+		List<Integer> floats = new ArrayList<Integer>();
+		boolean[] keyed = new boolean[all.length];
+		for (int i = 0; i < all.length; i++) {
+			// input properties which are not tested don't change result, output properties do
+			keyed[i] = all[i].isInputProperty();
+			if (tested[i]) {
+				objectDependent |= all[i].dependsOnObject();
+				if (all[i].isFloat()) {
+					floats.add(i);
+				} else {
+					ints.add(i);
+				}
+			}
+		}
+		// set by search before it is read
+		keyed[props.R_DISABLE.getId()] = true;
+		return new Dispatch(toArray(ints), toArray(floats), keyed, objectDependent);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] r = new int[list.size()];
+		for (int i = 0; i < r.length; i++) {
+			r[i] = list.get(i);
+		}
+		return r;
+	}
+
+	private void collect(RenderingRule rule, boolean[] tested, Map<RenderingRule, Boolean> visited) {
+		if (rule == null || visited.put(rule, Boolean.TRUE) != null) {
+			return;
+		}
+		RenderingRuleProperty[] properties = rule.getProperties();
+		for (int i = 0; i < properties.length; i++) {
+			if (properties[i].isInputProperty()) {
+				tested[properties[i].getId()] = true;
+			}
+			collect(rule.getAttrProp(i), tested, visited);
+		}
+		for (RenderingRule rr : rule.getIfElseChildren()) {
+			collect(rr, tested, visited);
+		}
+		for (RenderingRule rr : rule.getIfChildren()) {
+			collect(rr, tested, visited);
+		}
+	}
+
+	int getSavedStateId(int[] savedValues, float[] savedFvalues) {
+		int[] k = Arrays.copyOf(savedValues, savedValues.length + savedFvalues.length);
+		for (int i = 0; i < savedFvalues.length; i++) {
+			k[savedValues.length + i] = Float.floatToIntBits(savedFvalues[i]);
+		}
+		Key key = new Key(k);
+		synchronized (savedStates) {
+			Integer id = savedStates.get(key);
+			if (id == null) {
+				id = nextSavedStateId++;
+				savedStates.put(key, id);
+			}
+			return id;
+		}
+	}
+
+	private LruMap<Key, Result> getStripe(Key key) {
+		int h = key.hash;
+		return results[(h ^ (h >>> 16)) & (RESULT_STRIPES - 1)];
+	}
+
+	Result getResult(Key key) {
+		LruMap<Key, Result> stripe = getStripe(key);
+		synchronized (stripe) {
+			return stripe.get(key);
+		}
+	}
+
+	// key could be reused by caller, so it is copied
+	void putResult(Key key, Result result) {
+		LruMap<Key, Result> stripe = getStripe(key);
+		Key k = key.copy();
+		synchronized (stripe) {
+			stripe.put(k, result);
+		}
+	}
+
+	public int getCachedResultsCount() {
+		int count = 0;
+		for (LruMap<Key, Result> stripe : results) {
+			synchronized (stripe) {
+				count += stripe.size();
+			}
+		}
+		return count;
+	}
+
+	public void clearCache() {
+		for (LruMap<Key, Result> stripe : results) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+}
@@ -130,6 +130,11 @@ public class RenderingRuleProperty {
 		return type == INT_TYPE  || type == STRING_TYPE || type == COLOR_TYPE || type == BOOLEAN_TYPE; 
 	}
 	
+	// accept depends not only on values of request but on its object as well
+	boolean dependsOnObject() {
+		return false;
+	}
+
 	public boolean accept(int ruleValue, int renderingProperty, RenderingRuleSearchRequest req){
 		if(!isIntParse() || !input){
 			return false;
@@ -280,6 +285,11 @@ public class RenderingRuleProperty {
 	
 	public static RenderingRuleProperty createAdditionalStringProperty(String name) {
 		return new RenderingRuleProperty(name, STRING_TYPE, true) {
+			@Override
+			boolean dependsOnObject() {
+				return true;
+			}
+
 			@Override
 			public boolean accept(int ruleValue, int renderingProperty, RenderingRuleSearchRequest req) {
 				BinaryMapDataObject obj = req.getObject();
@@ -26,6 +26,17 @@ public class RenderingRuleSearchRequest {
 
 	private boolean searchResult = false;
 
+	private CompiledRenderingRules compiledRules;
+	private int savedStateId;
+	// properties changed since state was cleared
+	private final boolean[] changed;
+	private final int[] changedIds;
+	private int changedCount;
+	private int[] searchValues;
+	private float[] searchFvalues;
+	// reused key of compiled search
+	private CompiledRenderingRules.Key searchKey;
+
 	public RenderingRuleSearchRequest(RenderingRulesStorage storage) {
 		this.storage = storage;
 		this.ALL = storage.PROPS;
@@ -37,6 +48,8 @@ public class RenderingRuleSearchRequest {
 			}
 		}
 		fvalues = new float[props.length];
+		changed = new boolean[props.length];
+		changedIds = new int[props.length];
 		setBooleanFilter(storage.PROPS.R_TEST, true);
 		saveState();
 	}
@@ -46,6 +59,9 @@ public class RenderingRuleSearchRequest {
 		this.props = searchRequest.props;
 		this.values = new int[searchRequest.values.length];
 		this.fvalues = new float[searchRequest.fvalues.length];
+		this.changed = new boolean[searchRequest.values.length];
+		this.changedIds = new int[searchRequest.values.length];
+		this.compiledRules = searchRequest.compiledRules;
 		this.object = searchRequest.object;
 		this.searchResult = searchRequest.searchResult;
 		this.ALL = searchRequest.ALL;
@@ -58,6 +74,58 @@ public class RenderingRuleSearchRequest {
 		return storage;
 	}
 
+	// resets values and saved state to ones of request with same storage without allocations
+	void resetTo(RenderingRuleSearchRequest searchRequest) {
+		System.arraycopy(searchRequest.values, 0, values, 0, values.length);
+		System.arraycopy(searchRequest.fvalues, 0, fvalues, 0, fvalues.length);
+		System.arraycopy(searchRequest.values, 0, savedValues, 0, values.length);
+		System.arraycopy(searchRequest.fvalues, 0, savedFvalues, 0, fvalues.length);
+		object = null;
+		searchResult = false;
+		resetChanged();
+		compiledRules = searchRequest.compiledRules;
+		if (compiledRules != null) {
+			savedStateId = compiledRules.getSavedStateId(savedValues, savedFvalues);
+		}
+	}
+
+	/**
+	 * Search uses compiled rules and shares memoized results with other requests of compiled rules (null to disable).
+	 */
+	public void setCompiledRules(CompiledRenderingRules compiledRules) {
+		if (compiledRules != null && compiledRules.getStorage() != storage) {
+			throw new IllegalArgumentException("Rules are compiled for other storage");
+		}
+		this.compiledRules = compiledRules;
+		if (compiledRules != null) {
+			savedStateId = compiledRules.getSavedStateId(savedValues, savedFvalues);
+		}
+		resetChanged();
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != savedValues[i] || fvalues[i] != savedFvalues[i]) {
+				markChanged(i);
+			}
+		}
+	}
+
+	public CompiledRenderingRules getCompiledRules() {
+		return compiledRules;
+	}
+
+	private void markChanged(int id) {
+		if (!changed[id]) {
+			changed[id] = true;
+			changedIds[changedCount++] = id;
+		}
+	}
+
+	private void resetChanged() {
+		for (int i = 0; i < changedCount; i++) {
+			changed[changedIds[i]] = false;
+		}
+		changedCount = 0;
+	}
+
 	public BinaryMapDataObject getObject() {
 		return object;
 	}
@@ -65,21 +133,25 @@ public class RenderingRuleSearchRequest {
 	public void setStringFilter(RenderingRuleProperty p, String filter) {
 		assert p.isInputProperty();
 		values[p.getId()] = storage.getDictionaryValue(filter);
+		markChanged(p.getId());
 	}
 
 	public void setIntFilter(RenderingRuleProperty p, int filter) {
 		assert p.isInputProperty();
 		values[p.getId()] = filter;
+		markChanged(p.getId());
 	}
 	
 	public void setBooleanFilter(RenderingRuleProperty p, boolean filter) {
 		assert p.isInputProperty();
 		values[p.getId()] = filter ? RenderingRuleProperty.TRUE_VALUE : RenderingRuleProperty.FALSE_VALUE;
+		markChanged(p.getId());
 	}
 
 	public void setFloatFilter(RenderingRuleProperty p, float filter) {
 		assert p.isInputProperty();
 		fvalues[p.getId()] = filter;
+		markChanged(p.getId());
 	}
 
 	public void saveState() {
@@ -87,12 +159,17 @@ public class RenderingRuleSearchRequest {
 		savedFvalues = new float[fvalues.length];
 		System.arraycopy(values, 0, savedValues, 0, values.length);
 		System.arraycopy(fvalues, 0, savedFvalues, 0, fvalues.length);
+		if (compiledRules != null) {
+			savedStateId = compiledRules.getSavedStateId(savedValues, savedFvalues);
+		}
+		resetChanged();
 	}
 
 	public void clearState() {
 		System.arraycopy(savedValues, 0, values, 0, values.length);
 		System.arraycopy(savedFvalues, 0, fvalues, 0, fvalues.length);
 		object = null;
+		resetChanged();
 	}
 	
 	public void clearValue(RenderingRuleProperty p) {
@@ -130,7 +207,13 @@ public class RenderingRuleSearchRequest {
 		if (rule == null) {
 			return false;
 		}
-		searchResult = visitRule(rule, true);
+		if (compiledRules != null) {
+			startTrackingChanges();
+			searchResult = visitRule(rule, true);
+			finishTrackingChanges();
+		} else {
+			searchResult = visitRule(rule, true);
+		}
 		return searchResult;
 	}
 
@@ -139,6 +222,92 @@ public class RenderingRuleSearchRequest {
 	}
 	
 	public boolean search(int state, boolean loadOutput) {
+		if (compiledRules != null) {
+			return searchCompiled(state, loadOutput);
+		}
+		return searchRules(state, loadOutput);
+	}
+
+	private boolean searchCompiled(int state, boolean loadOutput) {
+		int tagKey = values[storage.PROPS.R_TAG.getId()];
+		int valueKey = values[storage.PROPS.R_VALUE.getId()];
+		CompiledRenderingRules.Dispatch dispatch = compiledRules.getDispatch(state, tagKey, valueKey);
+		// result is known only if other properties have saved values
+		boolean cacheable = !dispatch.objectDependent || object == null;
+		for (int i = 0; i < changedCount && cacheable; i++) {
+			cacheable = dispatch.keyed[changedIds[i]];
+		}
+		if (cacheable) {
+			if (searchKey == null) {
+				// tested properties are different properties
+				searchKey = new CompiledRenderingRules.Key(5 + values.length);
+			}
+			int[] k = searchKey.key;
+			k[0] = savedStateId;
+			k[1] = state;
+			k[2] = tagKey;
+			k[3] = valueKey;
+			k[4] = loadOutput ? 1 : 0;
+			int p = 5;
+			for (int id : dispatch.intProperties) {
+				k[p++] = values[id];
+			}
+			for (int id : dispatch.floatProperties) {
+				k[p++] = Float.floatToIntBits(fvalues[id]);
+			}
+			searchKey.setLength(p);
+			CompiledRenderingRules.Result result = compiledRules.getResult(searchKey);
+			if (result != null) {
+				for (int i = 0; i < result.ids.length; i++) {
+					int id = result.ids[i];
+					values[id] = result.values[i];
+					fvalues[id] = result.fvalues[i];
+					markChanged(id);
+				}
+				searchResult = result.found;
+				return result.found;
+			}
+		}
+		startTrackingChanges();
+		boolean found = searchRules(state, loadOutput);
+		int count = finishTrackingChanges();
+		if (cacheable) {
+			int[] ids = new int[count];
+			int[] vls = new int[count];
+			float[] fvls = new float[count];
+			for (int i = 0; i < count; i++) {
+				ids[i] = searchValues[i];
+				vls[i] = values[ids[i]];
+				fvls[i] = fvalues[ids[i]];
+			}
+			compiledRules.putResult(searchKey, new CompiledRenderingRules.Result(found, ids, vls, fvls));
+		}
+		return found;
+	}
+
+	private void startTrackingChanges() {
+		if (searchValues == null) {
+			searchValues = new int[values.length];
+			searchFvalues = new float[fvalues.length];
+		}
+		System.arraycopy(values, 0, searchValues, 0, values.length);
+		System.arraycopy(fvalues, 0, searchFvalues, 0, fvalues.length);
+	}
+
+	// marks changed properties, ids of them are stored in the beginning of searchValues
+	private int finishTrackingChanges() {
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != searchValues[i] || Float.floatToIntBits(fvalues[i]) != Float.floatToIntBits(searchFvalues[i])) {
+				// previous values are not needed anymore
+				searchValues[count++] = i;
+				markChanged(i);
+			}
+		}
+		return count;
+	}
+
+	private boolean searchRules(int state, boolean loadOutput) {
 		searchResult = false;
 		int tagKey = values[storage.PROPS.R_TAG.getId()];
 		int valueKey = values[storage.PROPS.R_VALUE.getId()];
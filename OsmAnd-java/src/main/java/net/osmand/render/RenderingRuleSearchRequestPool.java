@@ -0,0 +1,89 @@
+package net.osmand.render;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of search requests of one {@link RenderingRulesStorage#snapshot()} for rendering of tiles by several threads.
+ * Every request is reset to template state (custom properties like night mode, compiled rules) when it is taken,
+ * so rendering of tile doesn't copy storage and doesn't allocate request.
+ * <p>
+ * Request could be taken with {@link #acquire()} and returned with {@link #release(RenderingRuleSearchRequest)}
+ * or taken as request of current thread with {@link #getThreadRequest()}. Request shouldn't be used by several threads
+ * at the same time.
+ */
+public class RenderingRuleSearchRequestPool {
+
+	public static final int DEFAULT_MAX_IDLE = 16;
+
+	private final RenderingRulesStorage storage;
+	private final RenderingRuleSearchRequest template;
+	private final int maxIdle;
+	private final ConcurrentLinkedQueue<RenderingRuleSearchRequest> idle = new ConcurrentLinkedQueue<RenderingRuleSearchRequest>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final AtomicInteger created = new AtomicInteger();
+	private final ThreadLocal<RenderingRuleSearchRequest> threadRequests = new ThreadLocal<RenderingRuleSearchRequest>();
+
+	public RenderingRuleSearchRequestPool(RenderingRuleSearchRequest template) {
+		this(template, DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * @param template request of storage snapshot with values which every request should have
+	 * (copied, later changes of template are not visible)
+	 * @param maxIdle max number of released requests kept by pool
+	 */
+	public RenderingRuleSearchRequestPool(RenderingRuleSearchRequest template, int maxIdle) {
+		if (!template.getStorage().isFrozen()) {
+			throw new IllegalArgumentException("Pool requires snapshot of rendering rules storage");
+		}
+		this.storage = template.getStorage();
+		this.template = new RenderingRuleSearchRequest(template);
+		this.maxIdle = maxIdle;
+	}
+
+	public RenderingRulesStorage getStorage() {
+		return storage;
+	}
+
+	public RenderingRuleSearchRequest acquire() {
+		RenderingRuleSearchRequest req = idle.poll();
+		if (req == null) {
+			created.incrementAndGet();
+			return new RenderingRuleSearchRequest(template);
+		}
+		idleCount.decrementAndGet();
+		req.resetTo(template);
+		return req;
+	}
+
+	public void release(RenderingRuleSearchRequest req) {
+		if (req.getStorage() != storage) {
+			throw new IllegalArgumentException("Request doesn't belong to pool");
+		}
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(req);
+		} else {
+			idleCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns request of current thread reset to template state (same instance for every call of thread).
+	 */
+	public RenderingRuleSearchRequest getThreadRequest() {
+		RenderingRuleSearchRequest req = threadRequests.get();
+		if (req == null) {
+			created.incrementAndGet();
+			req = new RenderingRuleSearchRequest(template);
+			threadRequests.set(req);
+		} else {
+			req.resetTo(template);
+		}
+		return req;
+	}
+
+	public int getCreatedRequestsCount() {
+		return created.get();
+	}
+}
@@ -60,6 +60,12 @@ public class RenderingRulesStorage {
 
 	protected int internalVersion = 1;
 
+	// snapshot can't be changed and could be shared by threads, see snapshot()
+	private boolean frozen;
+	// values which are not in dictionary of snapshot
+	private Map<String, Integer> frozenDictionaryMap;
+	private List<String> frozenDictionary;
+
 	public interface RenderingRulesStorageResolver {
 		RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref) throws XmlPullParserException, IOException;
 	}
@@ -93,11 +99,43 @@ public class RenderingRulesStorage {
 		return storage;
 	}
 
+	/**
+	 * Returns immutable snapshot of storage which could be used by requests of different threads at the same time
+	 * (rules are shared with this storage and shouldn't be changed after snapshot is created).
+	 * Values missing in dictionary are added to snapshot under lock.
+	 */
+	public RenderingRulesStorage snapshot() {
+		if (frozen) {
+			return this;
+		}
+		RenderingRulesStorage storage = copy();
+		// properties of rules, not changed without parsing
+		storage.PROPS = PROPS;
+		storage.internalVersion = internalVersion;
+		storage.frozen = true;
+		storage.frozenDictionaryMap = new HashMap<String, Integer>();
+		storage.frozenDictionary = new ArrayList<String>();
+		return storage;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("Rendering rules snapshot can't be changed");
+		}
+	}
+
 	public int getInternalVersion() {
 		return internalVersion;
 	}
 
 	public int getDictionaryValue(String val) {
+		if (frozen) {
+			return getFrozenDictionaryValue(val);
+		}
 		if (dictionaryMap.containsKey(val)) {
 			return dictionaryMap.get(val);
 		}
@@ -108,7 +146,28 @@ public class RenderingRulesStorage {
 
 	}
 	
+	private int getFrozenDictionaryValue(String val) {
+		Integer i = dictionaryMap.get(val);
+		if (i != null) {
+			return i;
+		}
+		synchronized (frozenDictionaryMap) {
+			i = frozenDictionaryMap.get(val);
+			if (i == null) {
+				i = dictionary.size() + frozenDictionary.size();
+				frozenDictionaryMap.put(val, i);
+				frozenDictionary.add(val);
+			}
+			return i;
+		}
+	}
+
 	public String getStringValue(int i){
+		if (frozen && i >= dictionary.size()) {
+			synchronized (frozenDictionaryMap) {
+				return frozenDictionary.get(i - dictionary.size());
+			}
+		}
 		return dictionary.get(i);
 	}
 	
@@ -122,6 +181,7 @@ public class RenderingRulesStorage {
 
 	public void parseRulesFromXmlInputStream(InputStream is, RenderingRulesStorageResolver resolver) throws XmlPullParserException,
 			IOException {
+		checkNotFrozen();
 		XmlPullParser parser = PlatformUtil.newXMLPullParser();
 		RenderingRulesHandler handler = new RenderingRulesHandler(parser, resolver);
 		handler.parse(is);
@@ -449,6 +509,7 @@ public class RenderingRulesStorage {
 								 Map<String, String> attrs,
 								 int state,
 								 boolean addToBegin) throws XmlPullParserException {
+		checkNotFrozen();
 		if (renderingRule.isGroup()
 				&& (renderingRule.getIntPropertyValue(RenderingRuleStorageProperties.TAG) == -1
 				|| renderingRule.getIntPropertyValue(RenderingRuleStorageProperties.VALUE) == -1)) {
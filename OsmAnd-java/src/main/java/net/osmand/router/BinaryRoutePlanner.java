@@ -7,7 +7,8 @@ import java.text.MessageFormat;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
@@ -42,19 +43,6 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegment> {
-		final RoutingContext ctx;
-
-		public SegmentsComparator(RoutingContext ctx) {
-			this.ctx = ctx;
-		}
-
-		@Override
-		public int compare(RouteSegment o1, RouteSegment o2) {
-			return ctx.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd, o2.distanceFromStart, o2.distanceToEnd);
-		}
-	}
-
 	private static class NonHeuristicSegmentsComparator implements Comparator<RouteSegment> {
 		public NonHeuristicSegmentsComparator() {
 		}
@@ -73,11 +61,14 @@ public class BinaryRoutePlanner {
 			RouteSegment recalculationEnd ) throws InterruptedException, IOException {
 		// measure time
 		ctx.memoryOverhead = 1000;
+		if (ctx.config.parallelBidirectionalSearch && ctx.config.searchExecutor != null && ctx.planRouteIn2Directions()) {
+			return searchRouteInternalParallel(ctx, start, end, recalculationEnd);
+		}
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		RouteSegmentQueue graphDirectSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		RouteSegmentQueue graphReverseSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
 		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
@@ -92,7 +83,7 @@ public class BinaryRoutePlanner {
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
 		boolean onlyForward = ctx.getPlanRoadDirection() > 0;
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
-		PriorityQueue<RouteSegment> graphSegments = onlyForward ? graphReverseSegments : graphDirectSegments;
+		RouteSegmentQueue graphSegments = onlyForward ? graphReverseSegments : graphDirectSegments;
 		boolean forwardSearch = !onlyForward;
 		while (!graphSegments.isEmpty()) {
 			RouteSegment segment = graphSegments.poll();
@@ -182,8 +173,248 @@ public class BinaryRoutePlanner {
 		return finalSegment;
 	}
 
+	/**
+	 * Same A* as {@link #searchRouteInternal} but reverse graph is expanded by {@link RoutingConfiguration#searchExecutor}
+	 * while direct graph is expanded by caller thread, they meet through synchronized visited maps and both stop
+	 * as soon as one of them polls the final segment.
+	 * Tiles are shared through {@link RoutingContext#loadRouteSegment(int, int, long, boolean)} which is synchronized,
+	 * calls of {@link RouteSegmentVisitor} are serialized.
+	 */
+	private FinalRouteSegment searchRouteInternalParallel(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end, RouteSegment recalculationEnd) throws InterruptedException, IOException {
+		RouteSegmentQueue graphDirectSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		RouteSegmentQueue graphReverseSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		// visited segments are checked by the opposite search thread
+		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new SynchronizedVisitedSegments();
+		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new SynchronizedVisitedSegments();
+
+		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments,
+				visitedDirectSegments, visitedOppositeSegments);
+
+		ParallelSearchState state = new ParallelSearchState();
+		GraphSearchDirection direct = new GraphSearchDirection(ctx, state, false, start, graphDirectSegments,
+				visitedDirectSegments, visitedOppositeSegments);
+		GraphSearchDirection reverse = new GraphSearchDirection(ctx, state, true, end, graphReverseSegments,
+				visitedOppositeSegments, visitedDirectSegments);
+		direct.opposite = reverse;
+		reverse.opposite = direct;
+		RouteSegmentVisitor visitor = ctx.visitor;
+		if (visitor != null) {
+			ctx.visitor = new SynchronizedRouteSegmentVisitor(visitor);
+		}
+		try {
+			ctx.config.searchExecutor.execute(reverse);
+			try {
+				direct.run();
+			} finally {
+				state.stop = true;
+				reverse.awaitStopped();
+			}
+		} finally {
+			ctx.visitor = visitor;
+		}
+		// counters are confined to search threads till both of them are stopped
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedSegments += direct.visitedSegmentsCount + reverse.visitedSegmentsCount;
+			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
+			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
+			ctx.calculationProgress.directQueueSize += graphDirectSegments.size();
+			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
+		}
+		ctx.memoryOverhead = direct.memoryOverhead + reverse.memoryOverhead;
+		state.throwIfFailed();
+		if (state.finalSegment != null && RoutingContext.SHOW_GC_SIZE) {
+			log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
+			printMemoryConsumption("Memory occupied after calculation : ");
+		}
+		return state.finalSegment;
+	}
+
+	private static class SynchronizedVisitedSegments extends TLongObjectHashMap<RouteSegment> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized RouteSegment get(long key) {
+			return super.get(key);
+		}
+
+		@Override
+		public synchronized RouteSegment put(long key, RouteSegment value) {
+			return super.put(key, value);
+		}
+
+		@Override
+		public synchronized RouteSegment remove(long key) {
+			return super.remove(key);
+		}
+
+		@Override
+		public synchronized boolean containsKey(long key) {
+			return super.containsKey(key);
+		}
+
+		@Override
+		public synchronized int size() {
+			return super.size();
+		}
+
+		@Override
+		public synchronized boolean isEmpty() {
+			return super.isEmpty();
+		}
+
+		@Override
+		public synchronized void clear() {
+			super.clear();
+		}
+	}
+
+	private static class SynchronizedRouteSegmentVisitor implements RouteSegmentVisitor {
+		private final RouteSegmentVisitor visitor;
+
+		SynchronizedRouteSegmentVisitor(RouteSegmentVisitor visitor) {
+			this.visitor = visitor;
+		}
+
+		@Override
+		public synchronized void visitSegment(RouteSegment segment, int segmentEnd, boolean poll) {
+			visitor.visitSegment(segment, segmentEnd, poll);
+		}
+
+		@Override
+		public synchronized void visitApproximatedSegments(List<RouteSegmentResult> segment, GpxPoint start, GpxPoint target) {
+			visitor.visitApproximatedSegments(segment, start, target);
+		}
+	}
+
+	private static class ParallelSearchState {
+		volatile boolean stop;
+		FinalRouteSegment finalSegment;
+		Throwable failure;
+
+		synchronized void finish(FinalRouteSegment segment) {
+			if (finalSegment == null) {
+				finalSegment = segment;
+			}
+			stop = true;
+		}
+
+		synchronized void fail(Throwable t) {
+			if (failure == null) {
+				failure = t;
+			}
+			stop = true;
+		}
+
+		synchronized void throwIfFailed() throws InterruptedException, IOException {
+			if (failure instanceof InterruptedException) {
+				throw (InterruptedException) failure;
+			} else if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (failure != null) {
+				throw new IllegalStateException(failure);
+			}
+		}
+	}
+
+	private class GraphSearchDirection implements Runnable {
+		private final RoutingContext ctx;
+		private final ParallelSearchState state;
+		private final boolean reverseWaySearch;
+		private final RouteSegmentPoint pnt;
+		private final RouteSegmentQueue graphSegments;
+		private final TLongObjectHashMap<RouteSegment> visitedSegments;
+		private final TLongObjectHashMap<RouteSegment> oppositeSegments;
+		// run is claimed either by search thread or by caller if executor didn't start it
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final CountDownLatch stopped = new CountDownLatch(1);
+		private GraphSearchDirection opposite;
+		// estimation of own graph, read by opposite thread
+		private volatile int memoryOverhead;
+		private int visitedSegmentsCount;
+
+		GraphSearchDirection(RoutingContext ctx, ParallelSearchState state, boolean reverseWaySearch,
+				RouteSegmentPoint pnt, RouteSegmentQueue graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments,
+				TLongObjectHashMap<RouteSegment> oppositeSegments) {
+			this.ctx = ctx;
+			this.state = state;
+			this.reverseWaySearch = reverseWaySearch;
+			this.pnt = pnt;
+			this.graphSegments = graphSegments;
+			this.visitedSegments = visitedSegments;
+			this.oppositeSegments = oppositeSegments;
+		}
+
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				search();
+			} catch (Throwable t) {
+				state.fail(t);
+			} finally {
+				stopped.countDown();
+			}
+		}
+
+		void awaitStopped() {
+			if (!claimed.compareAndSet(false, true)) {
+				boolean interrupted = false;
+				while (true) {
+					try {
+						stopped.await();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		private void search() throws InterruptedException {
+			while (!state.stop && !graphSegments.isEmpty()) {
+				RouteSegment segment = graphSegments.poll();
+				memoryOverhead = visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD
+						+ graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+				ctx.memoryOverhead = memoryOverhead + opposite.memoryOverhead;
+				if (TRACE_ROUTING) {
+					printRoad(">", segment, reverseWaySearch);
+				}
+				if (segment instanceof FinalRouteSegment) {
+					state.finish((FinalRouteSegment) segment);
+					break;
+				}
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				visitedSegmentsCount++;
+				processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment, oppositeSegments, false);
+				// every direction writes only own queue size and distance fields of progress
+				updateCalculationProgress(ctx, graphSegments, reverseWaySearch);
+				checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, pnt, visitedSegments,
+						reverseWaySearch ? "Route is not found to selected target point."
+								: "Route is not found from selected start point.");
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+			// can't proceed - so no route
+			state.stop = true;
+		}
+	}
+
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			boolean reverseWaySearch, RouteSegmentQueue graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -281,7 +512,7 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
+			RouteSegment recalculationEnd, RouteSegmentQueue graphDirectSegments, RouteSegmentQueue graphReverseSegments, 
 			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true, false);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false, false);
@@ -343,23 +574,33 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
-		if (ctx.calculationProgress != null) {
-			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
-			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
-			if (graphDirectSegments.size() > 0 && ctx.getPlanRoadDirection() >= 0) {
-				RouteSegment peek = graphDirectSegments.peek();
-				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
-						ctx.calculationProgress.distanceFromBegin);
-				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
-			}
-			if (graphReverseSegments.size() > 0 && ctx.getPlanRoadDirection() <= 0) {
-				RouteSegment peek = graphReverseSegments.peek();
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentQueue graphDirectSegments,
+			RouteSegmentQueue graphReverseSegments) {
+		updateCalculationProgress(ctx, graphReverseSegments, true);
+		updateCalculationProgress(ctx, graphDirectSegments, false);
+	}
+
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentQueue graphSegments,
+			boolean reverseWaySearch) {
+		if (ctx.calculationProgress == null) {
+			return;
+		}
+		if (reverseWaySearch) {
+			ctx.calculationProgress.reverseSegmentQueueSize = graphSegments.size();
+			if (graphSegments.size() > 0 && ctx.getPlanRoadDirection() <= 0) {
+				RouteSegment peek = graphSegments.peek();
 				ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
 							ctx.calculationProgress.distanceFromEnd);
 				ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
 			}
+		} else {
+			ctx.calculationProgress.directSegmentQueueSize = graphSegments.size();
+			if (graphSegments.size() > 0 && ctx.getPlanRoadDirection() >= 0) {
+				RouteSegment peek = graphSegments.peek();
+				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
+						ctx.calculationProgress.distanceFromBegin);
+				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+			}
 		}
 	}
 
@@ -444,7 +685,7 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
+			RouteSegmentQueue graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
             RouteSegment startSegment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) {
 		if (ASSERT_CHECKS && !checkMovementAllowed(ctx, reverseWaySearch, startSegment)) {
 			throw new IllegalStateException();
@@ -571,7 +812,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment currentSegment, TLongObjectHashMap<RouteSegment> oppositeSegments) {
+			RouteSegmentQueue graphSegments, RouteSegment currentSegment, TLongObjectHashMap<RouteSegment> oppositeSegments) {
 		// check inverse direction for opposite
 		long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(), 
 				currentSegment.getSegmentEnd(), currentSegment.getSegmentStart());
@@ -626,8 +867,8 @@ public class BinaryRoutePlanner {
 				(parent == null || parent.getRoad().getRestrictionLength() == 0)) {
 			return false;
 		}
-		ctx.segmentsToVisitPrescripted.clear();
-		ctx.segmentsToVisitNotForbidden.clear();
+		ctx.getSegmentsToVisitPrescripted(reverseWay).clear();
+		ctx.getSegmentsToVisitNotForbidden(reverseWay).clear();
 		processRestriction(ctx, inputNext, reverseWay, 0, road);
 		if (parent != null) {
 			processRestriction(ctx, inputNext, reverseWay, road.id, parent.getRoad());
@@ -639,6 +880,8 @@ public class BinaryRoutePlanner {
 	protected void processRestriction(RoutingContext ctx, RouteSegment inputNext, boolean reverseWay, long viaId,
 			RouteDataObject road) {
 		boolean via = viaId != 0;
+		List<RouteSegment> segmentsToVisitPrescripted = ctx.getSegmentsToVisitPrescripted(reverseWay);
+		List<RouteSegment> segmentsToVisitNotForbidden = ctx.getSegmentsToVisitNotForbidden(reverseWay);
 		RouteSegment next = inputNext;
 		boolean exclusiveRestriction = false;
 		while (next != null) {
@@ -700,11 +943,11 @@ public class BinaryRoutePlanner {
 					|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON || type == MapRenderingTypes.RESTRICTION_NO_U_TURN) {
 				// next = next.next; continue;
 				if (via) {
-					ctx.segmentsToVisitPrescripted.remove(next);
+					segmentsToVisitPrescripted.remove(next);
 				}
 			} else if (type == -1) {
 				// case no restriction
-				ctx.segmentsToVisitNotForbidden.add(next);
+				segmentsToVisitNotForbidden.add(next);
 			} else {
 				if (!via) {
 					// case exclusive restriction (only_right, only_straight, ...)
@@ -713,21 +956,21 @@ public class BinaryRoutePlanner {
 					// 2. in case we are going forward we have one "in" and many "out"
 					if (!reverseWay) {
 						exclusiveRestriction = true;
-						ctx.segmentsToVisitNotForbidden.clear();
-						ctx.segmentsToVisitPrescripted.add(next);
+						segmentsToVisitNotForbidden.clear();
+						segmentsToVisitPrescripted.add(next);
 					} else {
-						ctx.segmentsToVisitNotForbidden.add(next);
+						segmentsToVisitNotForbidden.add(next);
 					}
 				}
 			}
 			next = next.next;
 		}
 		if (!via) {
-			ctx.segmentsToVisitPrescripted.addAll(ctx.segmentsToVisitNotForbidden);
+			segmentsToVisitPrescripted.addAll(segmentsToVisitNotForbidden);
 		}
 	}
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentQueue graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments,  RouteSegment currentSegment,
 			boolean reverseWaySearch, boolean doNotAddIntersections) {
 		RouteSegment nextCurrentSegment = null;
@@ -779,7 +1022,7 @@ public class BinaryRoutePlanner {
 		Iterator<RouteSegment> nextIterator = null;
 		boolean thereAreRestrictions = proccessRestrictions(ctx, currentSegment, connectedNextSegment, reverseWaySearch);
 		if (thereAreRestrictions) {
-			nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+			nextIterator = ctx.getSegmentsToVisitPrescripted(reverseWaySearch).iterator();
 			if (TRACE_ROUTING) {
 				println("  >> There are restrictions");
 			}
@@ -830,7 +1073,7 @@ public class BinaryRoutePlanner {
 		return nextCurrentSegment;
 	}
 
-	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments,
+	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, RouteSegmentQueue graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment, RouteSegment next) {
 		if (next != null) {
 			if (!checkMovementAllowed(ctx, reverseWaySearch, next)) {
@@ -915,6 +1158,9 @@ public class BinaryRoutePlanner {
 	}
 
 	
+	/**
+	 * Calls are never concurrent: with parallel bidirectional search they come from 2 threads but are serialized.
+	 */
 	public interface RouteSegmentVisitor {
 		
 		public void visitSegment(RouteSegment segment, int segmentEnd, boolean poll);
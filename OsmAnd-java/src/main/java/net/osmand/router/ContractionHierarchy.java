@@ -0,0 +1,665 @@
+package net.osmand.router;
+
+import net.osmand.IndexConstants;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Contraction hierarchy over the road graph of one .obf file for one routing profile.
+ * Nodes are road ends and points shared by several roads, an edge is either an original piece of road
+ * between 2 nodes or a shortcut replacing 2 edges through a node of lower rank.
+ * Turn costs and turn restrictions are not part of the graph, so the hierarchy only defines the path,
+ * route times are calculated by {@link RouteResultPreparation} as usual. Nodes of roads with turn restrictions
+ * are marked and route through them falls back to regular search, profiles with turn costs don't use hierarchy.
+ * <p>
+ * Built offline by {@link ContractionHierarchyBuilder} and stored in a sidecar file next to the .obf
+ * (see {@link #getSidecarFile(File, String)}), the sidecar is ignored as soon as the .obf or profile changes.
+ */
+public class ContractionHierarchy {
+
+	private static final Log log = PlatformUtil.getLog(ContractionHierarchy.class);
+
+	private static final int MAGIC = 0x4f434831;
+	public static final int VERSION = 2;
+	// hierarchies are as large as graph of file, only last used are kept
+	private static final int MAX_LOADED_HIERARCHIES = 4;
+
+	private static final Map<File, ContractionHierarchy> loadedHierarchies = new LinkedHashMap<File, ContractionHierarchy>(
+			MAX_LOADED_HIERARCHIES + 1, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, ContractionHierarchy> eldest) {
+			return size() > MAX_LOADED_HIERARCHIES;
+		}
+	};
+
+	private final long obfLength;
+	private final long obfDateCreated;
+	private final String profileKey;
+
+	// nodes are sorted by point key, so node is found by binary search
+	private final long[] nodeKeys;
+	private final int[] nodeRank;
+	// sorted nodes where turn restrictions apply
+	private final int[] restrictedNodes;
+
+	final int[] edgeFrom;
+	final int[] edgeTo;
+	final float[] edgeCost;
+	// children of shortcut edge or -1 for original edge
+	final int[] edgeFirst;
+	final int[] edgeSecond;
+	// original road piece (only for original edges)
+	final long[] edgeRoadId;
+	final int[] edgeSegStart;
+	final int[] edgeSegEnd;
+
+	// edges to nodes with higher rank (forward search) and from nodes with higher rank (backward search)
+	private int[] upStart;
+	private int[] upEdges;
+	private int[] downStart;
+	private int[] downEdges;
+
+	private long sidecarModified;
+
+	ContractionHierarchy(long obfLength, long obfDateCreated, String profileKey,
+			long[] nodeKeys, int[] nodeRank, int[] restrictedNodes,
+			int[] edgeFrom, int[] edgeTo, float[] edgeCost, int[] edgeFirst, int[] edgeSecond,
+			long[] edgeRoadId, int[] edgeSegStart, int[] edgeSegEnd) {
+		this.obfLength = obfLength;
+		this.obfDateCreated = obfDateCreated;
+		this.profileKey = profileKey;
+		this.nodeKeys = nodeKeys;
+		this.nodeRank = nodeRank;
+		this.restrictedNodes = restrictedNodes;
+		this.edgeFrom = edgeFrom;
+		this.edgeTo = edgeTo;
+		this.edgeCost = edgeCost;
+		this.edgeFirst = edgeFirst;
+		this.edgeSecond = edgeSecond;
+		this.edgeRoadId = edgeRoadId;
+		this.edgeSegStart = edgeSegStart;
+		this.edgeSegEnd = edgeSegEnd;
+		buildAdjacency();
+	}
+
+	private void buildAdjacency() {
+		int nodes = nodeKeys.length;
+		upStart = new int[nodes + 1];
+		downStart = new int[nodes + 1];
+		for (int e = 0; e < edgeFrom.length; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				upStart[edgeFrom[e] + 1]++;
+			} else {
+				downStart[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < nodes; i++) {
+			upStart[i + 1] += upStart[i];
+			downStart[i + 1] += downStart[i];
+		}
+		upEdges = new int[upStart[nodes]];
+		downEdges = new int[downStart[nodes]];
+		int[] upFill = Arrays.copyOf(upStart, nodes);
+		int[] downFill = Arrays.copyOf(downStart, nodes);
+		for (int e = 0; e < edgeFrom.length; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				upEdges[upFill[edgeFrom[e]]++] = e;
+			} else {
+				downEdges[downFill[edgeTo[e]]++] = e;
+			}
+		}
+	}
+
+	static long pointKey(int x31, int y31) {
+		return (((long) x31) << 31) + (long) y31;
+	}
+
+	static int getX31(long pointKey) {
+		return (int) (pointKey >> 31);
+	}
+
+	static int getY31(long pointKey) {
+		return (int) (pointKey & Integer.MAX_VALUE);
+	}
+
+	public int getNodesCount() {
+		return nodeKeys.length;
+	}
+
+	public int getEdgesCount() {
+		return edgeFrom.length;
+	}
+
+	public String getProfileKey() {
+		return profileKey;
+	}
+
+	public int getNode(int x31, int y31) {
+		int ind = Arrays.binarySearch(nodeKeys, pointKey(x31, y31));
+		return ind < 0 ? -1 : ind;
+	}
+
+	public boolean isRestricted(int node) {
+		return Arrays.binarySearch(restrictedNodes, node) >= 0;
+	}
+
+	public boolean isValidFor(File obf, long dateCreated, String profileKey) {
+		return obf.length() == obfLength && dateCreated == obfDateCreated && this.profileKey.equals(profileKey);
+	}
+
+	/**
+	 * Key of the routing profile with its parameters, hierarchy built for one key can't be used for another.
+	 */
+	public static String getProfileKey(RoutingConfiguration config) {
+		GeneralRouter.RouteAttributeContext speedContext = config.router.getObjContext(
+				GeneralRouter.RouteDataObjectAttribute.ROAD_SPEED);
+		String[] keys = speedContext.getParamKeys();
+		String[] values = speedContext.getParamValues();
+		String[] params = new String[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			params[i] = keys[i] + "=" + values[i];
+		}
+		Arrays.sort(params);
+		StringBuilder key = new StringBuilder(config.routerName);
+		for (String p : params) {
+			key.append(',').append(p);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Hierarchy is built from static edge costs of the profile, so it can't be used when turns have costs
+	 * or the route depends on avoided roads, time of conditional tags or direction points.
+	 */
+	public static boolean isApplicable(RoutingConfiguration config) {
+		GeneralRouter router = config.router;
+		return router.getLeftTurn() <= 0 && router.getRightTurn() <= 0 && router.getRoundaboutTurn() <= 0
+				&& router.getImpassableRoadIds().length == 0 && config.routeCalculationTime == 0
+				&& config.getDirectionPoints() == null;
+	}
+
+	public static File getSidecarFile(File obf, String routerName) {
+		return new File(obf.getParentFile(), obf.getName() + "." + routerName + IndexConstants.ROUTE_HIERARCHY_EXT);
+	}
+
+	/**
+	 * Returns hierarchy matching the file and routing configuration or null if it was not built (or outdated).
+	 */
+	public static ContractionHierarchy getHierarchy(BinaryMapIndexReader reader, RoutingConfiguration config) {
+		File obf = reader.getFile();
+		if (obf == null || !isApplicable(config)) {
+			return null;
+		}
+		File sidecar = getSidecarFile(obf, config.routerName);
+		synchronized (loadedHierarchies) {
+			ContractionHierarchy ch = loadedHierarchies.get(sidecar);
+			if (!sidecar.exists()) {
+				loadedHierarchies.remove(sidecar);
+				return null;
+			}
+			if (ch == null || ch.sidecarModified != sidecar.lastModified()) {
+				try {
+					ch = read(sidecar);
+					ch.sidecarModified = sidecar.lastModified();
+					loadedHierarchies.put(sidecar, ch);
+				} catch (IOException e) {
+					log.error("Error reading " + sidecar.getName(), e);
+					loadedHierarchies.remove(sidecar);
+					return null;
+				}
+			}
+			if (!ch.isValidFor(obf, reader.getDateCreated(), getProfileKey(config))) {
+				return null;
+			}
+			return ch;
+		}
+	}
+
+	public void write(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(obfLength);
+			out.writeLong(obfDateCreated);
+			out.writeUTF(profileKey);
+			out.writeInt(nodeKeys.length);
+			for (int i = 0; i < nodeKeys.length; i++) {
+				out.writeLong(nodeKeys[i]);
+				out.writeInt(nodeRank[i]);
+			}
+			out.writeInt(restrictedNodes.length);
+			for (int node : restrictedNodes) {
+				out.writeInt(node);
+			}
+			out.writeInt(edgeFrom.length);
+			for (int e = 0; e < edgeFrom.length; e++) {
+				out.writeInt(edgeFrom[e]);
+				out.writeInt(edgeTo[e]);
+				out.writeFloat(edgeCost[e]);
+				out.writeInt(edgeFirst[e]);
+				if (edgeFirst[e] >= 0) {
+					out.writeInt(edgeSecond[e]);
+				} else {
+					out.writeLong(edgeRoadId[e]);
+					out.writeInt(edgeSegStart[e]);
+					out.writeInt(edgeSegEnd[e]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ContractionHierarchy read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a route hierarchy file " + file.getName());
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported route hierarchy version " + version);
+			}
+			long obfLength = in.readLong();
+			long obfDateCreated = in.readLong();
+			String profileKey = in.readUTF();
+			int nodes = in.readInt();
+			long[] nodeKeys = new long[nodes];
+			int[] nodeRank = new int[nodes];
+			for (int i = 0; i < nodes; i++) {
+				nodeKeys[i] = in.readLong();
+				nodeRank[i] = in.readInt();
+			}
+			int[] restrictedNodes = new int[in.readInt()];
+			for (int i = 0; i < restrictedNodes.length; i++) {
+				restrictedNodes[i] = in.readInt();
+			}
+			int edges = in.readInt();
+			int[] edgeFrom = new int[edges];
+			int[] edgeTo = new int[edges];
+			float[] edgeCost = new float[edges];
+			int[] edgeFirst = new int[edges];
+			int[] edgeSecond = new int[edges];
+			long[] edgeRoadId = new long[edges];
+			int[] edgeSegStart = new int[edges];
+			int[] edgeSegEnd = new int[edges];
+			for (int e = 0; e < edges; e++) {
+				edgeFrom[e] = in.readInt();
+				edgeTo[e] = in.readInt();
+				edgeCost[e] = in.readFloat();
+				edgeFirst[e] = in.readInt();
+				if (edgeFirst[e] >= 0) {
+					edgeSecond[e] = in.readInt();
+				} else {
+					edgeSecond[e] = -1;
+					edgeRoadId[e] = in.readLong();
+					edgeSegStart[e] = in.readInt();
+					edgeSegEnd[e] = in.readInt();
+				}
+			}
+			return new ContractionHierarchy(obfLength, obfDateCreated, profileKey, nodeKeys, nodeRank, restrictedNodes,
+					edgeFrom, edgeTo, edgeCost, edgeFirst, edgeSecond, edgeRoadId, edgeSegStart, edgeSegEnd);
+		} finally {
+			in.close();
+		}
+	}
+
+	public static class HierarchyPath {
+		// index of source / target in arrays passed to search
+		public int source;
+		public int target;
+		public float cost;
+		// original edges from source to target
+		public TIntArrayList edges = new TIntArrayList();
+	}
+
+	private static class NodeState {
+		float cost;
+		int parentEdge = -1;
+		// index of source or target in search arrays (only for initial nodes)
+		int initial = -1;
+	}
+
+	/**
+	 * Bidirectional upward search between source and target nodes with their initial costs.
+	 * @return path unpacked to original edges or null if nodes are not connected
+	 */
+	public HierarchyPath searchPath(int[] sources, float[] sourceCosts, int[] targets, float[] targetCosts) {
+		TIntObjectHashMap<NodeState> forwardVisited = new TIntObjectHashMap<NodeState>();
+		TIntObjectHashMap<NodeState> backwardVisited = new TIntObjectHashMap<NodeState>();
+		NodeHeap forwardQueue = new NodeHeap();
+		NodeHeap backwardQueue = new NodeHeap();
+		initSearch(sources, sourceCosts, forwardVisited, forwardQueue);
+		initSearch(targets, targetCosts, backwardVisited, backwardQueue);
+
+		float best = Float.POSITIVE_INFINITY;
+		int meeting = -1;
+		boolean forward = false;
+		while (true) {
+			boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekCost() < best;
+			boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekCost() < best;
+			if (!forwardActive && !backwardActive) {
+				break;
+			}
+			// alternate directions while both are active
+			forward = forwardActive && (!backwardActive || !forward);
+			NodeHeap queue = forward ? forwardQueue : backwardQueue;
+			TIntObjectHashMap<NodeState> visited = forward ? forwardVisited : backwardVisited;
+			TIntObjectHashMap<NodeState> opposite = forward ? backwardVisited : forwardVisited;
+			float cost = queue.peekCost();
+			int node = queue.poll();
+			if (cost > visited.get(node).cost) {
+				// outdated entry
+				continue;
+			}
+			NodeState oppositeState = opposite.get(node);
+			if (oppositeState != null && cost + oppositeState.cost < best) {
+				best = cost + oppositeState.cost;
+				meeting = node;
+			}
+			int[] start = forward ? upStart : downStart;
+			int[] adj = forward ? upEdges : downEdges;
+			for (int i = start[node]; i < start[node + 1]; i++) {
+				int e = adj[i];
+				int next = forward ? edgeTo[e] : edgeFrom[e];
+				float nextCost = cost + edgeCost[e];
+				NodeState st = visited.get(next);
+				if (st == null) {
+					st = new NodeState();
+					visited.put(next, st);
+				} else if (st.cost <= nextCost) {
+					continue;
+				}
+				st.cost = nextCost;
+				st.parentEdge = e;
+				st.initial = -1;
+				queue.add(next, nextCost);
+			}
+		}
+		if (meeting == -1) {
+			return null;
+		}
+		HierarchyPath path = new HierarchyPath();
+		path.cost = best;
+		TIntArrayList forwardEdges = new TIntArrayList();
+		NodeState st = forwardVisited.get(meeting);
+		while (st.parentEdge != -1) {
+			forwardEdges.add(st.parentEdge);
+			st = forwardVisited.get(edgeFrom[st.parentEdge]);
+		}
+		path.source = st.initial;
+		for (int i = forwardEdges.size() - 1; i >= 0; i--) {
+			unpack(forwardEdges.get(i), path.edges);
+		}
+		st = backwardVisited.get(meeting);
+		while (st.parentEdge != -1) {
+			unpack(st.parentEdge, path.edges);
+			st = backwardVisited.get(edgeTo[st.parentEdge]);
+		}
+		path.target = st.initial;
+		return path;
+	}
+
+	private void initSearch(int[] nodes, float[] costs, TIntObjectHashMap<NodeState> visited, NodeHeap queue) {
+		for (int i = 0; i < nodes.length; i++) {
+			NodeState st = visited.get(nodes[i]);
+			if (st == null || costs[i] < st.cost) {
+				st = new NodeState();
+				st.cost = costs[i];
+				st.initial = i;
+				visited.put(nodes[i], st);
+				queue.add(nodes[i], costs[i]);
+			}
+		}
+	}
+
+	private void unpack(int edge, TIntArrayList out) {
+		TIntArrayList stack = new TIntArrayList();
+		stack.add(edge);
+		while (!stack.isEmpty()) {
+			int e = stack.removeAt(stack.size() - 1);
+			if (edgeFirst[e] < 0) {
+				out.add(e);
+			} else {
+				stack.add(edgeSecond[e]);
+				stack.add(edgeFirst[e]);
+			}
+		}
+	}
+
+	private static class AttachedNodes {
+		int size;
+		int[] nodes = new int[2];
+		float[] costs = new float[2];
+		int[] pointIndexes = new int[2];
+
+		void add(int node, float cost, int pointIndex) {
+			nodes[size] = node;
+			costs[size] = cost;
+			pointIndexes[size] = pointIndex;
+			size++;
+		}
+	}
+
+	/**
+	 * Finds route between 2 points using hierarchy, segments are not prepared yet.
+	 * @return null if points can't be attached to the hierarchy or route is not found
+	 */
+	List<RouteSegmentResult> searchRoute(RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end) {
+		if (start.getRoad().getId() == end.getRoad().getId()) {
+			// not a long distance query, the hierarchy doesn't handle points on the same road
+			return null;
+		}
+		AttachedNodes sources = attachPoint(ctx.getRouter(), start, true);
+		AttachedNodes targets = attachPoint(ctx.getRouter(), end, false);
+		if (sources.size == 0 || targets.size == 0) {
+			return null;
+		}
+		HierarchyPath path = searchPath(Arrays.copyOf(sources.nodes, sources.size), Arrays.copyOf(sources.costs, sources.size),
+				Arrays.copyOf(targets.nodes, targets.size), Arrays.copyOf(targets.costs, targets.size));
+		if (path == null) {
+			return null;
+		}
+		if (isRestricted(path)) {
+			log.info("Route hierarchy path passes turn restriction, fallback to regular search");
+			return null;
+		}
+		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
+		int j = start.getSegmentStart();
+		int startNodeInd = sources.pointIndexes[path.source];
+		// precise point is between j - 1 and j
+		result.add(new RouteSegmentResult(start.getRoad(), startNodeInd >= j ? j - 1 : j, startNodeInd));
+		for (int i = 0; i < path.edges.size(); i++) {
+			RouteSegmentResult res = loadEdge(ctx, path.edges.get(i));
+			if (res == null) {
+				log.warn("Route hierarchy doesn't match loaded roads, fallback to regular search");
+				return null;
+			}
+			result.add(res);
+		}
+		j = end.getSegmentStart();
+		int endNodeInd = targets.pointIndexes[path.target];
+		result.add(new RouteSegmentResult(end.getRoad(), endNodeInd, endNodeInd >= j ? j - 1 : j));
+		return result;
+	}
+
+	/**
+	 * Checks if any node of unpacked path has turn restrictions (restrictions are not encoded in the hierarchy).
+	 */
+	boolean isRestricted(HierarchyPath path) {
+		if (restrictedNodes.length == 0 || path.edges.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < path.edges.size(); i++) {
+			if (isRestricted(edgeFrom[path.edges.get(i)])) {
+				return true;
+			}
+		}
+		return isRestricted(edgeTo[path.edges.get(path.edges.size() - 1)]);
+	}
+
+	private AttachedNodes attachPoint(VehicleRouter router, RouteSegmentPoint p, boolean start) {
+		AttachedNodes res = new AttachedNodes();
+		RouteDataObject road = p.getRoad();
+		int oneway = router.isOneWay(road);
+		float speed = router.defineRoutingSpeed(road) * router.defineSpeedPriority(road);
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * router.defineSpeedPriority(road);
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		int j = p.getSegmentStart();
+		// moving along the road to higher point indexes from start or from lower indexes to end
+		boolean plusAllowed = start ? oneway >= 0 : oneway <= 0;
+		boolean minusAllowed = start ? oneway <= 0 : oneway >= 0;
+		if (plusAllowed) {
+			attachNearestNode(road, p, j, 1, speed, res);
+		}
+		if (minusAllowed) {
+			attachNearestNode(road, p, j - 1, -1, speed, res);
+		}
+		return res;
+	}
+
+	private void attachNearestNode(RouteDataObject road, RouteSegmentPoint p, int from, int dir, float speed,
+			AttachedNodes res) {
+		double dist = 0;
+		int px = p.preciseX;
+		int py = p.preciseY;
+		for (int k = from; k >= 0 && k < road.getPointsLength(); k += dir) {
+			int x = road.getPoint31XTile(k);
+			int y = road.getPoint31YTile(k);
+			dist += BinaryRoutePlanner.squareRootDist(px, py, x, y);
+			int node = getNode(x, y);
+			if (node >= 0) {
+				res.add(node, (float) (dist / speed), k);
+				return;
+			}
+			px = x;
+			py = y;
+		}
+	}
+
+	private RouteSegmentResult loadEdge(RoutingContext ctx, int e) {
+		int fx = getX31(nodeKeys[edgeFrom[e]]);
+		int fy = getY31(nodeKeys[edgeFrom[e]]);
+		RouteSegment s = ctx.loadRouteSegment(fx, fy, ctx.config.memoryLimitation);
+		while (s != null) {
+			RouteDataObject road = s.getRoad();
+			if (road.getId() == edgeRoadId[e]) {
+				// points could be inserted in loaded road (direction points), so check indexes by coordinates
+				int st = findPoint(road, fx, fy, edgeSegStart[e]);
+				int en = findPoint(road, getX31(nodeKeys[edgeTo[e]]), getY31(nodeKeys[edgeTo[e]]), edgeSegEnd[e]);
+				if (st >= 0 && en >= 0 && st != en) {
+					return new RouteSegmentResult(road, st, en);
+				}
+			}
+			s = s.getNext();
+		}
+		return null;
+	}
+
+	private static int findPoint(RouteDataObject road, int x31, int y31, int hint) {
+		if (hint < road.getPointsLength() && road.getPoint31XTile(hint) == x31 && road.getPoint31YTile(hint) == y31) {
+			return hint;
+		}
+		for (int i = 0; i < road.getPointsLength(); i++) {
+			if (road.getPoint31XTile(i) == x31 && road.getPoint31YTile(i) == y31) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Binary min heap of nodes by cost, entries are never decreased: outdated ones are skipped by the caller.
+	 */
+	static class NodeHeap {
+		private int[] nodes = new int[64];
+		private float[] costs = new float[64];
+		private int size;
+
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public float peekCost() {
+			return costs[0];
+		}
+
+		public void add(int node, float cost) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				costs = Arrays.copyOf(costs, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int p = (i - 1) >> 1;
+				if (costs[p] <= cost) {
+					break;
+				}
+				nodes[i] = nodes[p];
+				costs[i] = costs[p];
+				i = p;
+			}
+			nodes[i] = node;
+			costs[i] = cost;
+		}
+
+		public int poll() {
+			int res = nodes[0];
+			size--;
+			int node = nodes[size];
+			float cost = costs[size];
+			int i = 0;
+			while (true) {
+				int c = 2 * i + 1;
+				if (c >= size) {
+					break;
+				}
+				if (c + 1 < size && costs[c + 1] < costs[c]) {
+					c++;
+				}
+				if (cost <= costs[c]) {
+					break;
+				}
+				nodes[i] = nodes[c];
+				costs[i] = costs[c];
+				i = c;
+			}
+			nodes[i] = node;
+			costs[i] = cost;
+			return res;
+		}
+	}
+}
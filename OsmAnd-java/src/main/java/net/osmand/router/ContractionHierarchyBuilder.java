@@ -0,0 +1,429 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+import org.apache.commons.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Offline preprocessing of {@link ContractionHierarchy}: reads all route sections of the file,
+ * builds node graph with edge costs of the routing profile and contracts nodes ordered by edge difference.
+ */
+public class ContractionHierarchyBuilder {
+
+	private static final Log log = PlatformUtil.getLog(ContractionHierarchyBuilder.class);
+
+	// witness search is stopped after settling that many nodes, missed witness only adds a redundant shortcut
+	public int witnessSettledLimit = 500;
+
+	private final RoutingConfiguration config;
+	private final VehicleRouter router;
+
+	// sorted point keys of nodes, index in array is node id
+	private long[] nodeKeys;
+
+	private int edgesCount;
+	private int[] edgeFrom = new int[1024];
+	private int[] edgeTo = new int[1024];
+	private float[] edgeCost = new float[1024];
+	private int[] edgeFirst = new int[1024];
+	private int[] edgeSecond = new int[1024];
+	private long[] edgeRoadId = new long[1024];
+	private int[] edgeSegStart = new int[1024];
+	private int[] edgeSegEnd = new int[1024];
+
+	private TIntArrayList[] outEdges;
+	private TIntArrayList[] inEdges;
+	private final TIntHashSet restrictedNodes = new TIntHashSet();
+
+	// contraction state
+	private int[] rank;
+	private int[] contractedNeighbours;
+	private float[] witnessDist;
+	private final TIntArrayList witnessTouched = new TIntArrayList();
+
+	public ContractionHierarchyBuilder(RoutingConfiguration config) {
+		this.config = config;
+		this.router = config.router;
+	}
+
+	public ContractionHierarchy build(BinaryMapIndexReader reader) throws IOException {
+		long time = System.currentTimeMillis();
+		List<RouteDataObject> roads = loadRoads(reader);
+		buildGraph(roads);
+		log.info(String.format("Route graph: %d roads, %d nodes, %d edges in %d ms", roads.size(), nodeKeys.length,
+				edgesCount, System.currentTimeMillis() - time));
+		roads = null;
+		time = System.currentTimeMillis();
+		int originalEdges = edgesCount;
+		contract();
+		log.info(String.format("Contracted: %d shortcuts in %d ms", edgesCount - originalEdges,
+				System.currentTimeMillis() - time));
+		return createHierarchy(reader.getFile().length(), reader.getDateCreated(), ContractionHierarchy.getProfileKey(config));
+	}
+
+	ContractionHierarchy createHierarchy(long obfLength, long obfDateCreated, String profileKey) {
+		int n = edgesCount;
+		int[] restricted = restrictedNodes.toArray();
+		Arrays.sort(restricted);
+		return new ContractionHierarchy(obfLength, obfDateCreated, profileKey, nodeKeys, rank, restricted,
+				Arrays.copyOf(edgeFrom, n), Arrays.copyOf(edgeTo, n), Arrays.copyOf(edgeCost, n),
+				Arrays.copyOf(edgeFirst, n), Arrays.copyOf(edgeSecond, n), Arrays.copyOf(edgeRoadId, n),
+				Arrays.copyOf(edgeSegStart, n), Arrays.copyOf(edgeSegEnd, n));
+	}
+
+	private List<RouteDataObject> loadRoads(BinaryMapIndexReader reader) throws IOException {
+		TLongObjectHashMap<RouteDataObject> roads = new TLongObjectHashMap<RouteDataObject>();
+		for (RouteRegion reg : reader.getRoutingIndexes()) {
+			for (RouteSubregion sub : reg.getSubregions()) {
+				SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
+						Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+				List<RouteSubregion> leafs = reader.searchRouteIndexTree(request, Collections.singletonList(sub));
+				for (RouteSubregion leaf : leafs) {
+					for (RouteDataObject ro : reader.loadRouteIndexData(leaf)) {
+						if (ro != null && ro.getPointsLength() > 1 && router.acceptLine(ro)
+								&& !roads.containsKey(ro.getId())) {
+							roads.put(ro.getId(), ro);
+						}
+					}
+				}
+			}
+		}
+		return new ArrayList<RouteDataObject>(roads.valueCollection());
+	}
+
+	private void buildGraph(List<RouteDataObject> roads) {
+		// node is a road end or a point shared by several roads
+		TLongHashSet points = new TLongHashSet();
+		TLongHashSet nodes = new TLongHashSet();
+		for (RouteDataObject ro : roads) {
+			int last = ro.getPointsLength() - 1;
+			for (int i = 0; i <= last; i++) {
+				long key = ContractionHierarchy.pointKey(ro.getPoint31XTile(i), ro.getPoint31YTile(i));
+				if (!points.add(key) || i == 0 || i == last) {
+					nodes.add(key);
+				}
+			}
+		}
+		points = null;
+		long[] keys = nodes.toArray();
+		Arrays.sort(keys);
+		initNodes(keys);
+		// turns at nodes of roads with restrictions (or via roads of restrictions) are not checked by hierarchy
+		TLongHashSet restrictedRoads = new TLongHashSet();
+		if (router.restrictionsAware()) {
+			for (RouteDataObject ro : roads) {
+				for (int i = 0; i < ro.getRestrictionLength(); i++) {
+					restrictedRoads.add(ro.getId());
+					if (ro.getRestrictionVia(i) != 0) {
+						restrictedRoads.add(ro.getRestrictionVia(i));
+					}
+				}
+			}
+		}
+		TIntArrayList roadNodes = new TIntArrayList();
+		for (RouteDataObject ro : roads) {
+			roadNodes.clear();
+			for (int i = 0; i < ro.getPointsLength(); i++) {
+				int node = getNode(ro, i);
+				if (node >= 0) {
+					roadNodes.add(i);
+					if (restrictedRoads.contains(ro.getId())) {
+						restrictedNodes.add(node);
+					}
+				}
+			}
+			int oneway = router.isOneWay(ro);
+			for (int k = 1; k < roadNodes.size(); k++) {
+				int a = roadNodes.get(k - 1);
+				int b = roadNodes.get(k);
+				int na = getNode(ro, a);
+				int nb = getNode(ro, b);
+				if (na == nb) {
+					continue;
+				}
+				if (oneway >= 0) {
+					float cost = calculateCost(ro, a, b);
+					if (cost >= 0) {
+						addEdge(na, nb, cost, -1, -1, ro.getId(), a, b);
+					}
+				}
+				if (oneway <= 0) {
+					float cost = calculateCost(ro, b, a);
+					if (cost >= 0) {
+						addEdge(nb, na, cost, -1, -1, ro.getId(), b, a);
+					}
+				}
+			}
+		}
+	}
+
+	void initNodes(long[] sortedNodeKeys) {
+		nodeKeys = sortedNodeKeys;
+		outEdges = new TIntArrayList[nodeKeys.length];
+		inEdges = new TIntArrayList[nodeKeys.length];
+		for (int i = 0; i < nodeKeys.length; i++) {
+			outEdges[i] = new TIntArrayList(4);
+			inEdges[i] = new TIntArrayList(4);
+		}
+	}
+
+	void markRestricted(int node) {
+		restrictedNodes.add(node);
+	}
+
+	private int getNode(RouteDataObject ro, int point) {
+		int ind = Arrays.binarySearch(nodeKeys, ContractionHierarchy.pointKey(ro.getPoint31XTile(point), ro.getPoint31YTile(point)));
+		return ind < 0 ? -1 : ind;
+	}
+
+	// same segment cost as BinaryRoutePlanner.calculateRouteSegmentTime (without turns)
+	private float calculateCost(RouteDataObject road, int from, int to) {
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		int dir = to > from ? 1 : -1;
+		double cost = 0;
+		for (int prev = from, i = from + dir; prev != to; prev = i, i += dir) {
+			double obstacle = router.defineRoutingObstacle(road, i, prev > i);
+			if (obstacle < 0) {
+				return -1;
+			}
+			double heightObstacle = router.defineHeightObstacle(road, (short) i, (short) prev);
+			if (heightObstacle < 0) {
+				return -1;
+			}
+			cost += obstacle + heightObstacle + BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(prev),
+					road.getPoint31YTile(prev), road.getPoint31XTile(i), road.getPoint31YTile(i)) / speed;
+		}
+		return (float) cost;
+	}
+
+	void addEdge(int from, int to, float cost, int first, int second, long roadId, int segStart, int segEnd) {
+		TIntArrayList out = outEdges[from];
+		for (int i = 0; i < out.size(); i++) {
+			int e = out.get(i);
+			if (edgeTo[e] == to) {
+				if (edgeCost[e] <= cost) {
+					return;
+				}
+				// detach more expensive parallel edge, it stays in the table as it could be part of some shortcut
+				out.removeAt(i);
+				inEdges[to].remove(e);
+				break;
+			}
+		}
+		if (edgesCount == edgeFrom.length) {
+			int size = edgesCount * 2;
+			edgeFrom = Arrays.copyOf(edgeFrom, size);
+			edgeTo = Arrays.copyOf(edgeTo, size);
+			edgeCost = Arrays.copyOf(edgeCost, size);
+			edgeFirst = Arrays.copyOf(edgeFirst, size);
+			edgeSecond = Arrays.copyOf(edgeSecond, size);
+			edgeRoadId = Arrays.copyOf(edgeRoadId, size);
+			edgeSegStart = Arrays.copyOf(edgeSegStart, size);
+			edgeSegEnd = Arrays.copyOf(edgeSegEnd, size);
+		}
+		int e = edgesCount++;
+		edgeFrom[e] = from;
+		edgeTo[e] = to;
+		edgeCost[e] = cost;
+		edgeFirst[e] = first;
+		edgeSecond[e] = second;
+		edgeRoadId[e] = roadId;
+		edgeSegStart[e] = segStart;
+		edgeSegEnd[e] = segEnd;
+		out.add(e);
+		inEdges[to].add(e);
+	}
+
+	void contract() {
+		int nodes = nodeKeys.length;
+		rank = new int[nodes];
+		contractedNeighbours = new int[nodes];
+		witnessDist = new float[nodes];
+		Arrays.fill(rank, -1);
+		Arrays.fill(witnessDist, Float.POSITIVE_INFINITY);
+		ContractionHierarchy.NodeHeap queue = new ContractionHierarchy.NodeHeap();
+		for (int v = 0; v < nodes; v++) {
+			queue.add(v, priority(v));
+		}
+		int order = 0;
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			// lazy update: priority could be changed by contracted neighbours
+			float p = priority(v);
+			if (!queue.isEmpty() && p > queue.peekCost()) {
+				queue.add(v, p);
+				continue;
+			}
+			contractNode(v, false);
+			rank[v] = order++;
+			if (order % 100000 == 0) {
+				log.info("Contracted " + order + " nodes of " + nodes);
+			}
+		}
+		outEdges = null;
+		inEdges = null;
+		witnessDist = null;
+	}
+
+	private float priority(int v) {
+		int shortcuts = contractNode(v, true);
+		int degree = 0;
+		TIntArrayList in = inEdges[v];
+		for (int i = 0; i < in.size(); i++) {
+			if (rank[edgeFrom[in.get(i)]] < 0) {
+				degree++;
+			}
+		}
+		TIntArrayList out = outEdges[v];
+		for (int i = 0; i < out.size(); i++) {
+			if (rank[edgeTo[out.get(i)]] < 0) {
+				degree++;
+			}
+		}
+		return shortcuts - degree + contractedNeighbours[v];
+	}
+
+	/**
+	 * Adds shortcuts for all pairs of neighbours without witness path avoiding v.
+	 * @return number of needed shortcuts
+	 */
+	private int contractNode(int v, boolean simulate) {
+		int shortcuts = 0;
+		TIntArrayList in = inEdges[v];
+		TIntArrayList out = outEdges[v];
+		float maxOut = 0;
+		for (int j = 0; j < out.size(); j++) {
+			if (rank[edgeTo[out.get(j)]] < 0) {
+				maxOut = Math.max(maxOut, edgeCost[out.get(j)]);
+			}
+		}
+		// shortcuts are added to the lists while iterating
+		int inSize = in.size();
+		int outSize = out.size();
+		for (int i = 0; i < inSize; i++) {
+			int ein = in.get(i);
+			int u = edgeFrom[ein];
+			if (rank[u] >= 0) {
+				continue;
+			}
+			if (!simulate) {
+				contractedNeighbours[u]++;
+			}
+			float inCost = edgeCost[ein];
+			witnessSearch(u, v, inCost + maxOut);
+			for (int j = 0; j < outSize; j++) {
+				int eout = out.get(j);
+				int w = edgeTo[eout];
+				if (rank[w] >= 0 || w == u) {
+					continue;
+				}
+				float viaCost = inCost + edgeCost[eout];
+				if (witnessDist[w] > viaCost) {
+					shortcuts++;
+					if (!simulate) {
+						addEdge(u, w, viaCost, ein, eout, 0, 0, 0);
+					}
+				}
+			}
+			clearWitness();
+		}
+		if (!simulate) {
+			for (int j = 0; j < outSize; j++) {
+				int w = edgeTo[out.get(j)];
+				if (rank[w] < 0) {
+					contractedNeighbours[w]++;
+				}
+			}
+		}
+		return shortcuts;
+	}
+
+	private void witnessSearch(int source, int excluded, float maxCost) {
+		ContractionHierarchy.NodeHeap queue = new ContractionHierarchy.NodeHeap();
+		witnessDist[source] = 0;
+		witnessTouched.add(source);
+		queue.add(source, 0);
+		int settled = 0;
+		while (!queue.isEmpty() && settled < witnessSettledLimit) {
+			float cost = queue.peekCost();
+			int n = queue.poll();
+			if (cost > witnessDist[n]) {
+				continue;
+			}
+			if (cost > maxCost) {
+				break;
+			}
+			settled++;
+			TIntArrayList out = outEdges[n];
+			for (int i = 0; i < out.size(); i++) {
+				int e = out.get(i);
+				int next = edgeTo[e];
+				if (next == excluded || rank[next] >= 0) {
+					continue;
+				}
+				float nextCost = cost + edgeCost[e];
+				if (nextCost < witnessDist[next]) {
+					if (witnessDist[next] == Float.POSITIVE_INFINITY) {
+						witnessTouched.add(next);
+					}
+					witnessDist[next] = nextCost;
+					queue.add(next, nextCost);
+				}
+			}
+		}
+	}
+
+	private void clearWitness() {
+		for (int i = 0; i < witnessTouched.size(); i++) {
+			witnessDist[witnessTouched.get(i)] = Float.POSITIVE_INFINITY;
+		}
+		witnessTouched.clear();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: <file.obf> [routing profile, default car]");
+			return;
+		}
+		File obf = new File(args[0]);
+		String profile = args.length > 1 ? args[1] : "car";
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile,
+				new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3, RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT));
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		try {
+			ContractionHierarchy ch = new ContractionHierarchyBuilder(config).build(reader);
+			File sidecar = ContractionHierarchy.getSidecarFile(obf, config.routerName);
+			ch.write(sidecar);
+			System.out.println("Written " + sidecar.getAbsolutePath() + " : " + ch.getNodesCount() + " nodes, "
+					+ ch.getEdgesCount() + " edges");
+		} finally {
+			reader.close();
+		}
+	}
+}
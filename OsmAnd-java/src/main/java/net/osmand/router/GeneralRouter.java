@@ -11,7 +11,6 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -19,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TLongHashSet;
@@ -46,6 +46,10 @@ public class GeneralRouter implements VehicleRouter {
 	public static final String CHECK_ALLOW_PRIVATE_NEEDED = "check_allow_private_needed";
 
 	private static boolean USE_CACHE = true;
+	private static final Object NO_VALUE = new Object();
+	private static final int COMPILE_UNKNOWN = 0;
+	private static final int COMPILED = 1;
+	private static final int NOT_COMPILED = 2;
 	public static long TIMER = 0;
 
 	private final RouteAttributeContext[] objectAttributes;
@@ -61,7 +65,8 @@ public class GeneralRouter implements VehicleRouter {
 	private String filename = null;
 	private String profileName = "";
 
-	private Map<RouteRegion, Map<Integer, Integer>> regionConvert = new LinkedHashMap<RouteRegion, Map<Integer,Integer>>();
+	// region encoding type -> universal rule id + 1 (0 - not converted yet)
+	private Map<RouteRegion, int[]> regionConvert = new LinkedHashMap<RouteRegion, int[]>();
 	
 	// cached values
 	private boolean restrictionsAware = true;
@@ -81,7 +86,9 @@ public class GeneralRouter implements VehicleRouter {
 	
 	private GeneralRouterProfile profile;
 	
-	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;	
+	// cached values by region and types, index is 2 * attribute + (extra ? 1 : 0),
+	// one router is used by concurrent route searches so caches are lock-free for reading
+	ConcurrentHashMap<RouteRegion, TypeSetTable>[] evalCache;
 	
 	public enum RouteDataObjectAttribute {
 		ROAD_SPEED("speed"),
@@ -187,15 +194,20 @@ public class GeneralRouter implements VehicleRouter {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	private void initCaches() {
-		int l = RouteDataObjectAttribute.values().length;
-		evalCache = new Map[l];
+		int l = RouteDataObjectAttribute.values().length * 2;
+		evalCache = newEvalCache(l);
 		for (int i = 0; i < l; i++) {
-			evalCache[i] = new HashMap<>();
+			evalCache[i] = new ConcurrentHashMap<RouteRegion, TypeSetTable>();
 		}
 	}
 
+	// generic array creation is not allowed, array is filled with maps of the same type
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static ConcurrentHashMap<RouteRegion, TypeSetTable>[] newEvalCache(int size) {
+		return new ConcurrentHashMap[size];
+	}
+
 	public String getFilename() {
 		return filename;
 	}
@@ -335,18 +347,21 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Object parseValueFromTag(int id, String type) {
-		while (ruleToValue.size() <= id) {
-			ruleToValue.add(null);
-		}
-		Object res = ruleToValue.get(id);
-		if (res == null) {
-			String v = universalRulesById.get(id);
-			String value = v.substring(v.indexOf('$') + 1);
-			res = parseValue(value, type);
+		Object res;
+		synchronized (ruleToValue) {
+			while (ruleToValue.size() <= id) {
+				ruleToValue.add(null);
+			}
+			res = ruleToValue.get(id);
 			if (res == null) {
-				res = "";
+				String v = universalRulesById.get(id);
+				String value = v.substring(v.indexOf('$') + 1);
+				res = parseValue(value, type);
+				if (res == null) {
+					res = "";
+				}
+				ruleToValue.set(id, res);
 			}
-			ruleToValue.set(id, res);
 		}
 		if ("".equals(res)) {
 			return null;
@@ -452,8 +467,7 @@ public class GeneralRouter implements VehicleRouter {
 				int percentIncl = (int) (incl * 100);
 				percentIncl = (percentIncl + 2)/ 3 * 3 - 2; // 1, 4, 7, 10, .   
 				if(percentIncl >= 1) {
-					objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
-					sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					sum += objContext.evaluateFloat(road, diff > 0 ? percentIncl : -percentIncl, 0) * (diff > 0? diff : -diff );
 				}
 			}
 		}
@@ -532,46 +546,17 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val, boolean extra) {
-//		TIMER -= System.nanoTime();
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
 		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
+			ConcurrentHashMap<RouteRegion, TypeSetTable> ch = evalCache[2 * attr.ordinal() + (extra ? 1 : 0)];
+			TypeSetTable rM = ch.get(reg);
 			if (rM == null) {
-				rM = new HashMap<IntHolder, Float>();
-				ch.put(reg, rM);
-			}
-			rM.put(new IntHolder(types, extra), val);
-		}
-//		TIMER += System.nanoTime();
-	}
-	
-	class IntHolder {
-		private final int[] array;
-		private final boolean extra;
-
-		IntHolder(int[] ts, boolean extra) {
-			array = ts;
-			this.extra = extra;
-		}
-
-		@Override
-		public int hashCode() {
-			return Arrays.hashCode(array) + (extra ? 1 : 0);
-		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (array == other) {
-				return true;
-			}
-			if (!(other instanceof IntHolder)) {
-				return false;
-			}
-			if (((IntHolder) other).extra != this.extra) {
-				return false;
+				rM = new TypeSetTable();
+				TypeSetTable existing = ch.putIfAbsent(reg, rM);
+				if (existing != null) {
+					rM = existing;
+				}
 			}
-			// noinspection unchecked
-			return Arrays.equals(array, ((IntHolder) other).array);
+			rM.putIfAbsent(types, val);
 		}
 	}
 
@@ -580,17 +565,10 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-//		TIMER -= System.nanoTime();
 		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				return null;
-			}
-			Float vl = rM.get(new IntHolder(types, extra));
-			if(vl != null) {
-//				TIMER += System.nanoTime();
-				return vl;
+			TypeSetTable rM = evalCache[2 * attr.ordinal() + (extra ? 1 : 0)].get(reg);
+			if (rM != null) {
+				return (Float) rM.get(types);
 			}
 		}
 		return null;
@@ -748,6 +726,13 @@ public class GeneralRouter implements VehicleRouter {
 	public class RouteAttributeContext {
 		List<RouteAttributeEvalRule> rules = new ArrayList<RouteAttributeEvalRule>();
 		ParameterContext paramContext = null;
+		// compiled rules: result of evaluation by region and types (rules don't change after parsing and
+		// parameters are fixed per router), not used if rules depend on incline
+		private final ConcurrentHashMap<RouteRegion, TypeSetTable> decisionTables = new ConcurrentHashMap<RouteRegion, TypeSetTable>();
+		// same for evaluation with incline: region -> incline (percent) -> types
+		private final ConcurrentHashMap<RouteRegion, ConcurrentHashMap<Integer, TypeSetTable>> inclineTables =
+				new ConcurrentHashMap<RouteRegion, ConcurrentHashMap<Integer, TypeSetTable>>();
+		private volatile int compiledState = COMPILE_UNKNOWN;
 		
 		public RouteAttributeContext(){
 		}
@@ -782,7 +767,79 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private Object evaluate(RouteDataObject ro) {
-			return evaluate(convert(ro.region, ro.types));
+			return evaluate(ro.region, ro.types);
+		}
+
+		private Object evaluate(RouteRegion region, int[] types) {
+			if (!isCompiled()) {
+				return evaluateLocked(region, types);
+			}
+			TypeSetTable table = decisionTables.get(region);
+			if (table == null) {
+				table = new TypeSetTable();
+				TypeSetTable existing = decisionTables.putIfAbsent(region, table);
+				if (existing != null) {
+					table = existing;
+				}
+			}
+			Object o = table.get(types);
+			if (o == null) {
+				o = evaluateLocked(region, types);
+				o = table.putIfAbsent(types, o == null ? NO_VALUE : o);
+			}
+			return o == NO_VALUE ? null : o;
+		}
+
+		private Object evaluate(RouteRegion region, int[] types, int incline) {
+			ConcurrentHashMap<Integer, TypeSetTable> tables = inclineTables.get(region);
+			if (tables == null) {
+				tables = new ConcurrentHashMap<Integer, TypeSetTable>();
+				ConcurrentHashMap<Integer, TypeSetTable> existing = inclineTables.putIfAbsent(region, tables);
+				if (existing != null) {
+					tables = existing;
+				}
+			}
+			TypeSetTable table = tables.get(incline);
+			if (table == null) {
+				table = new TypeSetTable();
+				TypeSetTable existing = tables.putIfAbsent(incline, table);
+				if (existing != null) {
+					table = existing;
+				}
+			}
+			Object o = table.get(types);
+			if (o == null) {
+				synchronized (universalRules) {
+					// incline is read by rules only while lock is held
+					paramContext.incline = incline;
+					o = evaluate(convert(region, types));
+				}
+				o = table.putIfAbsent(types, o == null ? NO_VALUE : o);
+			}
+			return o == NO_VALUE ? null : o;
+		}
+
+		// conversion registers new tag values and rules read them, so evaluation holds lock of universal rules
+		private Object evaluateLocked(RouteRegion region, int[] types) {
+			synchronized (universalRules) {
+				return evaluate(convert(region, types));
+			}
+		}
+
+		private boolean isCompiled() {
+			int state = compiledState;
+			if (state == COMPILE_UNKNOWN) {
+				state = COMPILED;
+				for (RouteAttributeEvalRule r : rules) {
+					for (RouteAttributeExpression e : r.expressions) {
+						if (e.dependsOnIncline()) {
+							state = NOT_COMPILED;
+						}
+					}
+				}
+				compiledState = state;
+			}
+			return state == COMPILED;
 		}
 
 		public void printRules(PrintStream out) {
@@ -794,7 +851,11 @@ public class GeneralRouter implements VehicleRouter {
 		public RouteAttributeEvalRule registerNewRule(String selectValue, String selectType) {
 			RouteAttributeEvalRule ev = new RouteAttributeEvalRule();
 			ev.registerSelectValue(selectValue, selectType);
-			rules.add(ev);	
+			rules.add(ev);
+			// rules are still parsed
+			decisionTables.clear();
+			inclineTables.clear();
+			compiledState = COMPILE_UNKNOWN;
 			return ev;
 		}
 		
@@ -802,6 +863,12 @@ public class GeneralRouter implements VehicleRouter {
 			return rules.get(rules.size() - 1);
 		}
 
+		private Object evaluateLocked(BitSet types) {
+			synchronized (universalRules) {
+				return evaluate(types);
+			}
+		}
+
 		private Object evaluate(BitSet types) {
 			for (int k = 0; k < rules.size(); k++) {
 				RouteAttributeEvalRule r = rules.get(k);
@@ -841,7 +908,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(RouteRegion region, int[] types, int defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -849,7 +916,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(BitSet rawTypes, int defValue) {
-			Object o = evaluate(rawTypes);
+			Object o = evaluateLocked(rawTypes);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -864,8 +931,19 @@ public class GeneralRouter implements VehicleRouter {
 			return ((Number)o).floatValue();
 		}
 		
+		/**
+		 * Evaluates rules for road with incline in percents (results are cached by incline).
+		 */
+		public float evaluateFloat(RouteDataObject ro, int incline, float defValue) {
+			Object o = evaluate(ro.region, ro.types, incline);
+			if(!(o instanceof Number)) {
+				return defValue;
+			}
+			return ((Number)o).floatValue();
+		}
+
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
 			if(!(o instanceof Number)) {
 				return defValue;
 			}
@@ -873,7 +951,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public float evaluateFloat(BitSet rawTypes, float defValue) {
-			Object o = evaluate(rawTypes);
+			Object o = evaluateLocked(rawTypes);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -881,22 +959,30 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private BitSet convert(RouteRegion reg, int[] types) {
-			BitSet b = new BitSet(universalRules.size());
-			Map<Integer, Integer> map = regionConvert.get(reg);
-			if(map == null){
-				map = new HashMap<Integer, Integer>();
-				regionConvert.put(reg, map);
-			}
-			for(int k = 0; k < types.length; k++) {
-				Integer nid = map.get(types[k]);
-				if (nid == null) {
-					RouteTypeRule r = reg.quickGetEncodingRule(types[k]);
-					nid = registerTagValueAttribute(r.getTag(), r.getValue());
-					map.put(types[k], nid);
+			// universal rules are shared between routers built from the same profile
+			synchronized (universalRules) {
+				BitSet b = new BitSet(universalRules.size());
+				int[] map = regionConvert.get(reg);
+				if (map == null) {
+					map = new int[Math.max(reg.routeEncodingRules.size(), 16)];
+					regionConvert.put(reg, map);
 				}
-				b.set(nid);
+				for (int k = 0; k < types.length; k++) {
+					int type = types[k];
+					if (type >= map.length) {
+						map = Arrays.copyOf(map, Math.max(type + 1, map.length * 2));
+						regionConvert.put(reg, map);
+					}
+					int nid = map[type] - 1;
+					if (nid < 0) {
+						RouteTypeRule r = reg.quickGetEncodingRule(type);
+						nid = registerTagValueAttribute(r.getTag(), r.getValue());
+						map[type] = nid + 1;
+					}
+					b.set(nid);
+				}
+				return b;
 			}
-			return b;
 		}
 	}
 
@@ -922,6 +1008,15 @@ public class GeneralRouter implements VehicleRouter {
 				}
 			}
 		}
+		boolean dependsOnIncline() {
+			for (String v : values) {
+				if (v.equals(":incline")) {
+					return true;
+				}
+			}
+			return false;
+		}
+
 		// definition
 		private String[] values;
 		private int expressionType;
@@ -1106,7 +1201,7 @@ public class GeneralRouter implements VehicleRouter {
 			parameters.add(param);
 		}
 
-		public synchronized Object eval(BitSet types, ParameterContext paramContext) {
+		public Object eval(BitSet types, ParameterContext paramContext) {
 			if (matches(types, paramContext)) {
 				return calcSelectValue(types, paramContext);
 			}
@@ -1125,9 +1220,10 @@ public class GeneralRouter implements VehicleRouter {
 					return parseValueFromTag(value, selectType);
 				}
 			} else if (selectValue instanceof String && selectValue.toString().startsWith(":")) {
+				// rules are shared by routers built with different parameters
 				String p = ((String) selectValue).substring(1);
 				if (paramContext != null && paramContext.vars.containsKey(p)) {
-					selectValue = parseValue(paramContext.vars.get(p), selectType);
+					return parseValue(paramContext.vars.get(p), selectType);
 				} else {
 					return null;
 				}
@@ -24,8 +24,6 @@ public class PrecalculatedRouteDirection {
 	private static final int[] SHIFTS = new int[]{1 << (31 - 15), 1 << (31 - 13), 1 << (31 - 12), 
 		1 << (31 - 11), 1 << (31 - 7)};
 	
-	private List<Integer> cachedS = new ArrayList<Integer>();
-	
 	private long startPoint = 0;
 	private long endPoint = 0;
 //	private DataTileManager<Integer> indexedPoints = new DataTileManager<Integer>(17);
@@ -215,9 +213,10 @@ public class PrecalculatedRouteDirection {
 		return distToPoint;
 	}
 
+	// called by both threads of parallel bidirectional search, so found points are not kept in a field
 	public int getIndex(int x31, int y31) {
 		int ind = -1;
-		cachedS.clear();
+		List<Integer> cachedS = new ArrayList<Integer>();
 //		indexedPoints.getObjects(x31 - SHIFT, y31 - SHIFT, x31 + SHIFT, y31 + SHIFT, cachedS);
 		quadTree.queryInBox(new QuadRect(x31 - SHIFT, y31 - SHIFT, x31 + SHIFT, y31 + SHIFT), cachedS);
 		if (cachedS.size() == 0) {
@@ -248,6 +247,18 @@ public class PrecalculatedRouteDirection {
 		return ((long) x31) << 32l + ((long)y31);
 	}
 	
+	public int getPointsCount() {
+		return pointsX.length;
+	}
+
+	public int getPointX(int ind) {
+		return pointsX[ind];
+	}
+
+	public int getPointY(int ind) {
+		return pointsY[ind];
+	}
+
 	public void setFollowNext(boolean followNext) {
 		this.followNext = followNext;
 	}
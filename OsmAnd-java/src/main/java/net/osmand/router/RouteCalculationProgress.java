@@ -34,12 +34,16 @@ public class RouteCalculationProgress {
 	public long timeToLoadHeaders = 0;
 	public long timeToFindInitialSegments = 0;
 	public long timeToCalculate = 0;
+	public long timeToPrepareResult = 0;
 	
 	public int distinctLoadedTiles = 0;
 	public int maxLoadedTiles = 0;
 	public int loadedPrevUnloadedTiles = 0;
 	public int unloadedTiles = 0;
 	public int loadedTiles = 0;
+	public int maxEstimatedSize = 0;
+	public int tileCacheHits = 0;
+	public int tileCacheMisses = 0;
 	
 	public boolean isCancelled;
 	public boolean requestPrivateAccessRouting;
@@ -59,6 +63,7 @@ public class RouteCalculationProgress {
 		p.timeToLoadHeaders = cp.timeToLoadHeaders;
 		p.timeToFindInitialSegments = cp.timeToFindInitialSegments;
 		p.timeToLoad = cp.timeToLoad;
+		p.timeToPrepareResult = cp.timeToPrepareResult;
 		
 		p.visitedSegments = cp.visitedSegments;
 		p.directQueueSize = cp.directQueueSize;
@@ -70,6 +75,8 @@ public class RouteCalculationProgress {
 		p.distinctLoadedTiles = cp.distinctLoadedTiles;
 		p.maxLoadedTiles = cp.maxLoadedTiles;
 		p.loadedPrevUnloadedTiles = cp.loadedPrevUnloadedTiles;
+		p.tileCacheHits = cp.tileCacheHits;
+		p.tileCacheMisses = cp.tileCacheMisses;
 		cp.maxLoadedTiles = 0;
 		return p;
 	}
@@ -103,6 +110,8 @@ public class RouteCalculationProgress {
 		time.put("timeToLoadHeaders", timeToLoadHeaders);
 		float timeToFindInitialSegments = (float) ((this.timeToFindInitialSegments - firstPhase.timeToFindInitialSegments) / 1.0e9);
 		time.put("timeToFindInitialSegments", timeToFindInitialSegments);
+		float timeToPrepareResult = (float) ((this.timeToPrepareResult - firstPhase.timeToPrepareResult) / 1.0e9);
+		time.put("timeToPrepareResult", timeToPrepareResult);
 		float timeExtra = (float) ((this.timeNanoToCalcDeviation - firstPhase.timeNanoToCalcDeviation) / 1.0e9);
 		time.put("timeExtra", timeExtra);
 		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
@@ -0,0 +1,76 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+/**
+ * Travel time (seconds) and distance (meters) between every origin and destination
+ * (see {@link RoutePlannerFrontEnd#searchRouteMatrix}). Unreachable pairs have negative values.
+ */
+public class RouteMatrix {
+
+	public static final float UNREACHABLE = -1;
+
+	private final int origins;
+	private final int destinations;
+	private final float[] times;
+	private final float[] distances;
+
+	public RouteMatrix(int origins, int destinations) {
+		this.origins = origins;
+		this.destinations = destinations;
+		this.times = new float[origins * destinations];
+		this.distances = new float[origins * destinations];
+		Arrays.fill(times, UNREACHABLE);
+		Arrays.fill(distances, UNREACHABLE);
+	}
+
+	public int getOrigins() {
+		return origins;
+	}
+
+	public int getDestinations() {
+		return destinations;
+	}
+
+	public boolean isReachable(int origin, int destination) {
+		return times[origin * destinations + destination] >= 0;
+	}
+
+	public float getTime(int origin, int destination) {
+		return times[origin * destinations + destination];
+	}
+
+	public float getDistance(int origin, int destination) {
+		return distances[origin * destinations + destination];
+	}
+
+	void set(int origin, int destination, float time, float distance) {
+		times[origin * destinations + destination] = time;
+		distances[origin * destinations + destination] = distance;
+	}
+
+	/**
+	 * Times as cost matrix (for TspAnt / TspHeldKarp), unreachable pairs get given cost.
+	 */
+	public double[][] getTimeMatrix(double unreachableCost) {
+		double[][] res = new double[origins][destinations];
+		for (int i = 0; i < origins; i++) {
+			for (int j = 0; j < destinations; j++) {
+				res[i][j] = isReachable(i, j) ? getTime(i, j) : unreachableCost;
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < origins; i++) {
+			for (int j = 0; j < destinations; j++) {
+				sb.append(j == 0 ? "" : " ").append(String.format("%.0fs/%.0fm", getTime(i, j), getDistance(i, j)));
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,404 @@
+package net.osmand.router;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import static net.osmand.router.BinaryRoutePlanner.squareRootDist;
+
+/**
+ * One to many Dijkstra expansion from origin segment over the graph of routing context (see
+ * {@link RoutePlannerFrontEnd#searchRouteMatrix}). Graph is expanded point by point, vertex is
+ * (road, point, direction of movement), edge costs are the same as in {@link BinaryRoutePlanner} (routing speed,
+ * priority, obstacles, turn time), travel time and distance are accumulated along.
+ * Expansion stops when all targets are settled or cost exceeds {@link #costLimitRatio} of straight line estimate.
+ * Restrictions with via ways are not checked. Several searches could run in parallel over the same context:
+ * segments loaded by context are linked into shared chains, so chains are copied under the context lock.
+ */
+public class RouteMatrixSearch {
+
+	// cost is limited by ratio * (straight line time to farthest target with max speed) + COST_LIMIT_SLACK
+	private static final float COST_LIMIT_SLACK = 600;
+
+	public float costLimitRatio = 5;
+
+	private final RoutingContext ctx;
+	private final VehicleRouter router;
+
+	private final TLongObjectHashMap<List<Target>> targetsByRoad = new TLongObjectHashMap<List<Target>>();
+	private final List<Target> targets = new ArrayList<Target>();
+	private int settledTargets;
+	private double minPendingCost = Double.POSITIVE_INFINITY;
+	private int visitedSegments;
+	// segments of expanded point copied from shared chain of context
+	private final List<RouteSegment> adjacent = new ArrayList<RouteSegment>();
+
+	private static class Target {
+		final int index;
+		final RouteSegmentPoint point;
+		double cost = Double.POSITIVE_INFINITY;
+		double time;
+		double distance;
+		boolean settled;
+
+		Target(int index, RouteSegmentPoint point) {
+			this.index = index;
+			this.point = point;
+		}
+	}
+
+	private static class State implements Comparable<State> {
+		final RouteDataObject road;
+		// point reached and direction of movement along the road (+1 / -1)
+		final int point;
+		final int dir;
+		final double cost;
+		final double time;
+		final double distance;
+
+		State(RouteDataObject road, int point, int dir, double cost, double time, double distance) {
+			this.road = road;
+			this.point = point;
+			this.dir = dir;
+			this.cost = cost;
+			this.time = time;
+			this.distance = distance;
+		}
+
+		long getId() {
+			return (road.getId() << 11) + (point << 1) + (dir > 0 ? 1 : 0);
+		}
+
+		@Override
+		public int compareTo(State o) {
+			return Double.compare(cost, o.cost);
+		}
+	}
+
+	public RouteMatrixSearch(RoutingContext ctx) {
+		this.ctx = ctx;
+		this.router = ctx.getRouter();
+	}
+
+	/**
+	 * Calculates time and distance from origin to all targets and stores them in matrix row.
+	 * Null target points are skipped (stay unreachable).
+	 * @throws InterruptedException if calculation is cancelled, row is not filled then
+	 */
+	public void search(RouteSegmentPoint origin, List<RouteSegmentPoint> targetPoints, RouteMatrix matrix, int row)
+			throws InterruptedException {
+		init(targetPoints);
+		if (origin == null || targets.isEmpty()) {
+			return;
+		}
+		double costLimit = calculateCostLimit(origin);
+		PriorityQueue<State> queue = new PriorityQueue<State>();
+		TLongObjectHashMap<State> bestStates = new TLongObjectHashMap<State>();
+		TLongHashSet settled = new TLongHashSet();
+		initQueue(origin, queue, bestStates);
+		while (!queue.isEmpty() && settledTargets < targets.size()) {
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+			State s = queue.poll();
+			if (s.cost >= minPendingCost) {
+				settleTargets(s.cost);
+				if (settledTargets == targets.size()) {
+					break;
+				}
+			}
+			if (s.cost > costLimit) {
+				break;
+			}
+			if (!settled.add(s.getId())) {
+				continue;
+			}
+			visitedSegments++;
+			expand(s, queue, bestStates, settled);
+		}
+		for (Target t : targets) {
+			if (t.cost != Double.POSITIVE_INFINITY) {
+				matrix.set(row, t.index, (float) t.time, (float) t.distance);
+			}
+		}
+	}
+
+	public int getVisitedSegments() {
+		return visitedSegments;
+	}
+
+	private void init(List<RouteSegmentPoint> targetPoints) {
+		targets.clear();
+		targetsByRoad.clear();
+		settledTargets = 0;
+		minPendingCost = Double.POSITIVE_INFINITY;
+		visitedSegments = 0;
+		for (int i = 0; i < targetPoints.size(); i++) {
+			RouteSegmentPoint p = targetPoints.get(i);
+			if (p == null) {
+				continue;
+			}
+			Target t = new Target(i, p);
+			targets.add(t);
+			List<Target> l = targetsByRoad.get(p.getRoad().getId());
+			if (l == null) {
+				l = new ArrayList<Target>(1);
+				targetsByRoad.put(p.getRoad().getId(), l);
+			}
+			l.add(t);
+		}
+	}
+
+	private double calculateCostLimit(RouteSegmentPoint origin) {
+		double maxDist = 0;
+		for (Target t : targets) {
+			maxDist = Math.max(maxDist, squareRootDist(origin.preciseX, origin.preciseY, t.point.preciseX, t.point.preciseY));
+		}
+		return costLimitRatio * maxDist / router.getMaxSpeed() + COST_LIMIT_SLACK;
+	}
+
+	private void settleTargets(double cost) {
+		minPendingCost = Double.POSITIVE_INFINITY;
+		for (Target t : targets) {
+			if (t.settled || t.cost == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			if (t.cost <= cost) {
+				t.settled = true;
+				settledTargets++;
+			} else {
+				minPendingCost = Math.min(minPendingCost, t.cost);
+			}
+		}
+	}
+
+	private void initQueue(RouteSegmentPoint origin, PriorityQueue<State> queue, TLongObjectHashMap<State> bestStates) {
+		RouteDataObject road = origin.getRoad();
+		int js = origin.getSegmentStart();
+		int oneway = router.isOneWay(road);
+		if (oneway >= 0) {
+			checkTargetsOnSameSegment(origin, 1);
+			pushPartial(road, js - 1, js, 1, origin.preciseX, origin.preciseY, queue, bestStates);
+		}
+		if (oneway <= 0) {
+			checkTargetsOnSameSegment(origin, -1);
+			pushPartial(road, js, js - 1, -1, origin.preciseX, origin.preciseY, queue, bestStates);
+		}
+	}
+
+	// origin and target are projected to the same segment of the road
+	private void checkTargetsOnSameSegment(RouteSegmentPoint origin, int dir) {
+		List<Target> l = targetsByRoad.get(origin.getRoad().getId());
+		if (l == null) {
+			return;
+		}
+		RouteDataObject road = origin.getRoad();
+		int js = origin.getSegmentStart();
+		int bx = road.getPoint31XTile(js - 1);
+		int by = road.getPoint31YTile(js - 1);
+		for (Target t : l) {
+			if (t.point.getSegmentStart() != js) {
+				continue;
+			}
+			double o = squareRootDist(bx, by, origin.preciseX, origin.preciseY);
+			double d = squareRootDist(bx, by, t.point.preciseX, t.point.preciseY);
+			if ((d - o) * dir >= 0) {
+				double dist = Math.abs(d - o);
+				updateTarget(t, dist / routingSpeed(road), dist / vehicleSpeed(road), dist);
+			}
+		}
+	}
+
+	/**
+	 * Movement from (x, y) lying on segment [from, to] to point to, cost is proportional to passed part of segment.
+	 */
+	private void pushPartial(RouteDataObject road, int from, int to, int dir, int x, int y,
+			PriorityQueue<State> queue, TLongObjectHashMap<State> bestStates) {
+		double full = squareRootDist(road.getPoint31XTile(from), road.getPoint31YTile(from),
+				road.getPoint31XTile(to), road.getPoint31YTile(to));
+		double dist = squareRootDist(x, y, road.getPoint31XTile(to), road.getPoint31YTile(to));
+		double segmentCost = segmentCost(road, from, to);
+		if (segmentCost < 0) {
+			return;
+		}
+		double k = full == 0 ? 0 : Math.min(1, dist / full);
+		double obstacle = router.defineRoutingObstacle(road, to, from > to);
+		double cost = (segmentCost - obstacle) * k + obstacle;
+		double time = dist / vehicleSpeed(road) + Math.max(0, router.defineObstacle(road, to, from > to));
+		push(new State(road, to, dir, cost, time, dist), queue, bestStates);
+	}
+
+	private void push(State s, PriorityQueue<State> queue, TLongObjectHashMap<State> bestStates) {
+		long id = s.getId();
+		State best = bestStates.get(id);
+		if (best != null && best.cost <= s.cost) {
+			return;
+		}
+		bestStates.put(id, s);
+		queue.add(s);
+	}
+
+	private void expand(State s, PriorityQueue<State> queue, TLongObjectHashMap<State> bestStates, TLongHashSet settled) {
+		RouteDataObject road = s.road;
+		int x = road.getPoint31XTile(s.point);
+		int y = road.getPoint31YTile(s.point);
+		loadAdjacentSegments(x, y);
+		long onlyRoadId = findOnlyRestriction(road);
+		RouteSegment prev = null;
+		for (int i = 0; i < adjacent.size(); i++) {
+			RouteSegment next = adjacent.get(i);
+			RouteDataObject r2 = next.getRoad();
+			int p2 = next.getSegmentStart();
+			boolean sameRoad = r2.getId() == road.getId();
+			if (!sameRoad && isRestricted(road, r2, onlyRoadId)) {
+				continue;
+			}
+			int oneway = router.isOneWay(r2);
+			for (int dir = -1; dir <= 1; dir += 2) {
+				int np = p2 + dir;
+				if (np < 0 || np >= r2.getPointsLength()) {
+					continue;
+				}
+				if ((dir > 0 && oneway < 0) || (dir < 0 && oneway > 0)) {
+					continue;
+				}
+				if (sameRoad && p2 == s.point && dir == -s.dir) {
+					// u-turn on the same road
+					continue;
+				}
+				if (settled.contains((r2.getId() << 11) + (np << 1) + (dir > 0 ? 1 : 0))) {
+					continue;
+				}
+				double cost = s.cost;
+				double time = s.time;
+				if (!sameRoad) {
+					if (prev == null) {
+						prev = new RouteSegment(road, s.point - s.dir, s.point);
+					}
+					double turn = router.calculateTurnTime(new RouteSegment(r2, p2, np), dir > 0 ? r2.getPointsLength() - 1 : 0,
+							prev, s.point);
+					cost += turn;
+					time += turn;
+				}
+				checkTargets(r2, p2, dir, cost, time, s.distance);
+				double segmentCost = segmentCost(r2, p2, np);
+				if (segmentCost < 0) {
+					continue;
+				}
+				double dist = squareRootDist(r2.getPoint31XTile(p2), r2.getPoint31YTile(p2),
+						r2.getPoint31XTile(np), r2.getPoint31YTile(np));
+				double segmentTime = dist / vehicleSpeed(r2) + Math.max(0, router.defineObstacle(r2, np, p2 > np));
+				push(new State(r2, np, dir, cost + segmentCost, time + segmentTime, s.distance + dist), queue, bestStates);
+			}
+		}
+	}
+
+	private void loadAdjacentSegments(int x, int y) {
+		adjacent.clear();
+		// next links are rebuilt by every load of the same point (by other searches too)
+		synchronized (ctx) {
+			RouteSegment segments = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation);
+			for (RouteSegment next = segments; next != null; next = next.getNext()) {
+				adjacent.add(next);
+			}
+		}
+	}
+
+	// targets projected on segment started from point p and directed by dir
+	private void checkTargets(RouteDataObject road, int p, int dir, double cost, double time, double distance) {
+		List<Target> l = targetsByRoad.get(road.getId());
+		if (l == null) {
+			return;
+		}
+		for (Target t : l) {
+			int js = t.point.getSegmentStart();
+			if ((dir > 0 && js - 1 == p) || (dir < 0 && js == p)) {
+				double dist = squareRootDist(road.getPoint31XTile(p), road.getPoint31YTile(p),
+						t.point.preciseX, t.point.preciseY);
+				updateTarget(t, cost + dist / routingSpeed(road), time + dist / vehicleSpeed(road), distance + dist);
+			}
+		}
+	}
+
+	private void updateTarget(Target t, double cost, double time, double distance) {
+		if (!t.settled && cost < t.cost) {
+			t.cost = cost;
+			t.time = time;
+			t.distance = distance;
+			minPendingCost = Math.min(minPendingCost, cost);
+		}
+	}
+
+	private long findOnlyRestriction(RouteDataObject road) {
+		if (!router.restrictionsAware()) {
+			return 0;
+		}
+		for (int i = 0; i < road.getRestrictionLength(); i++) {
+			if (road.getRestrictionVia(i) == 0 && road.getRestrictionType(i) >= MapRenderingTypes.RESTRICTION_ONLY_RIGHT_TURN) {
+				long id = road.getRestrictionId(i);
+				for (int j = 0; j < adjacent.size(); j++) {
+					if (adjacent.get(j).getRoad().getId() == id) {
+						return id;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	private boolean isRestricted(RouteDataObject road, RouteDataObject r2, long onlyRoadId) {
+		if (!router.restrictionsAware()) {
+			return false;
+		}
+		if (onlyRoadId != 0) {
+			return r2.getId() != onlyRoadId;
+		}
+		for (int i = 0; i < road.getRestrictionLength(); i++) {
+			if (road.getRestrictionId(i) == r2.getId() && road.getRestrictionVia(i) == 0
+					&& road.getRestrictionType(i) <= MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// same as BinaryRoutePlanner.calculateRouteSegmentTime
+	private double segmentCost(RouteDataObject road, int from, int to) {
+		double dist = squareRootDist(road.getPoint31XTile(from), road.getPoint31YTile(from),
+				road.getPoint31XTile(to), road.getPoint31YTile(to));
+		double obstacle = router.defineRoutingObstacle(road, to, from > to);
+		if (obstacle < 0) {
+			return -1;
+		}
+		double heightObstacle = router.defineHeightObstacle(road, (short) to, (short) from);
+		if (heightObstacle < 0) {
+			return -1;
+		}
+		return obstacle + heightObstacle + dist / routingSpeed(road);
+	}
+
+	private float routingSpeed(RouteDataObject road) {
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		return speed;
+	}
+
+	private float vehicleSpeed(RouteDataObject road) {
+		float speed = router.defineVehicleSpeed(road);
+		return speed > 0 ? speed : router.getDefaultSpeed();
+	}
+}
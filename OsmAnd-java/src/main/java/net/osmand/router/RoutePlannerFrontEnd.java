@@ -8,6 +8,11 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 
@@ -32,6 +37,8 @@ public class RoutePlannerFrontEnd {
 	protected static final double GPS_POSSIBLE_ERROR = 7;
 	public boolean useSmartRouteRecalculation = true;
 	public boolean useNativeApproximation = true;
+	// use precalculated contraction hierarchies (see ContractionHierarchyBuilder) when they exist for the profile
+	public boolean useContractionHierarchy = false;
 
 	
 	public RoutePlannerFrontEnd() {
@@ -225,6 +232,65 @@ public class RoutePlannerFrontEnd {
 		return searchRoute(ctx, start, end, intermediates, null);
 	}
 
+	/**
+	 * Travel times and distances from every origin to every destination. Origins are expanded by one to many
+	 * Dijkstra (see {@link RouteMatrixSearch}) on given number of threads sharing routing context.
+	 * Points which are not attached to roads and unreachable destinations are marked as unreachable in the result.
+	 * @throws InterruptedException if calculation is cancelled by {@link RouteCalculationProgress#isCancelled}
+	 */
+	public RouteMatrix searchRouteMatrix(final RoutingContext ctx, List<LatLon> origins, List<LatLon> destinations,
+			int threads) throws IOException, InterruptedException {
+		final List<RouteSegmentPoint> originPoints = new ArrayList<RouteSegmentPoint>();
+		for (LatLon l : origins) {
+			originPoints.add(findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null, false));
+		}
+		final List<RouteSegmentPoint> destinationPoints = new ArrayList<RouteSegmentPoint>();
+		for (LatLon l : destinations) {
+			destinationPoints.add(findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null, false));
+		}
+		final RouteMatrix matrix = new RouteMatrix(origins.size(), destinations.size());
+		if (threads <= 1 || origins.size() <= 1) {
+			RouteMatrixSearch search = new RouteMatrixSearch(ctx);
+			for (int i = 0; i < originPoints.size(); i++) {
+				search.search(originPoints.get(i), destinationPoints, matrix, i);
+			}
+			return matrix;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, origins.size()));
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int i = 0; i < originPoints.size(); i++) {
+				final int row = i;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws InterruptedException {
+						// rows are disjoint, matrix is published by Future.get()
+						new RouteMatrixSearch(ctx).search(originPoints.get(row), destinationPoints, matrix, row);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> f : futures) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return matrix;
+	}
+
 	public void setUseFastRecalculation(boolean use) {
 		useSmartRouteRecalculation = use;
 	}
@@ -233,6 +299,10 @@ public class RoutePlannerFrontEnd {
 		this.useNativeApproximation = useNativeApproximation;
 	}
 
+	public void setUseContractionHierarchy(boolean useContractionHierarchy) {
+		this.useContractionHierarchy = useContractionHierarchy;
+	}
+
 	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
 		NativeLibrary nativeLib = gctx.ctx.nativeLib;
@@ -726,6 +796,22 @@ public class RoutePlannerFrontEnd {
 
 	public List<RouteSegmentResult> searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
 	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
+		RoutingMetrics.Sink metricsSink = ctx.config.metricsSink;
+		if (metricsSink == null) {
+			return searchRouteInternal(ctx, start, end, intermediates, routeDirection);
+		}
+		RoutingMetrics metrics = RoutingMetrics.start(ctx);
+		List<RouteSegmentResult> res = null;
+		try {
+			res = searchRouteInternal(ctx, start, end, intermediates, routeDirection);
+		} finally {
+			metricsSink.routeCalculated(metrics.finish(ctx, res));
+		}
+		return res;
+	}
+
+	private List<RouteSegmentResult> searchRouteInternal(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
+	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
 		if (ctx.calculationProgress == null) {
 			ctx.calculationProgress = new RouteCalculationProgress();
@@ -739,6 +825,15 @@ public class RoutePlannerFrontEnd {
 		if (needRequestPrivateAccessRouting(ctx, targets)) {
 			ctx.calculationProgress.requestPrivateAccessRouting = true;
 		}
+		if (useContractionHierarchy && intermediatesEmpty && routeDirection == null && ctx.nativeLib == null
+				&& ctx.calculationMode != RouteCalculationMode.BASE) {
+			List<RouteSegmentResult> res = searchRouteByHierarchy(ctx, start, end);
+			if (res != null) {
+				ctx.calculationProgress.timeToCalculate = (System.nanoTime() - timeToCalculate);
+				RouteResultPreparation.printResults(ctx, start, end, res);
+				return res;
+			}
+		}
 		double maxDistance = MapUtils.getDistance(start, end);
 		if (!intermediatesEmpty) {
 			LatLon b = start;
@@ -752,7 +847,7 @@ public class RoutePlannerFrontEnd {
 			ctx.calculationProgress.totalIterations++;
 			RoutingContext nctx = buildRoutingContext(ctx.config, ctx.nativeLib, ctx.getMaps(), RouteCalculationMode.BASE);
 			nctx.calculationProgress = ctx.calculationProgress;
-			List<RouteSegmentResult> ls = searchRoute(nctx, start, end, intermediates);
+			List<RouteSegmentResult> ls = searchRouteInternal(nctx, start, end, intermediates, null);
 			if (ls == null) {
 				return null;
 			}
@@ -800,6 +895,29 @@ public class RoutePlannerFrontEnd {
 		return res;
 	}
 
+	private List<RouteSegmentResult> searchRouteByHierarchy(final RoutingContext ctx, LatLon start, LatLon end) throws IOException {
+		RouteSegmentPoint s = findRouteSegment(start.getLatitude(), start.getLongitude(), ctx, null, ctx.startTransportStop);
+		RouteSegmentPoint e = findRouteSegment(end.getLatitude(), end.getLongitude(), ctx, null, ctx.targetTransportStop);
+		if (s == null || e == null) {
+			return null;
+		}
+		for (BinaryMapIndexReader reader : ctx.getMaps()) {
+			ContractionHierarchy ch = ContractionHierarchy.getHierarchy(reader, ctx.config);
+			if (ch == null) {
+				continue;
+			}
+			List<RouteSegmentResult> res = ch.searchRoute(ctx, s, e);
+			if (res != null) {
+				ctx.initStartAndTargetPoints(s, e);
+				res = new RouteResultPreparation().prepareResult(ctx, res, false);
+				makeStartEndPointsPrecise(res, start, end, null);
+				return res;
+			}
+		}
+		log.info("Route is not found by contraction hierarchy, use regular search");
+		return null;
+	}
+
 	protected void makeStartEndPointsPrecise(List<RouteSegmentResult> res, LatLon start, LatLon end, List<LatLon> intermediates) {
 		if (res.size() > 0) {
 			makeSegmentPointPrecise(res.get(0), start, true);
@@ -917,8 +1035,19 @@ public class RoutePlannerFrontEnd {
 			return runNativeRouting(ctx, recalculationEnd);
 		} else {
 			refreshProgressDistance(ctx);
-			// Split into 2 methods to let GC work in between
-			ctx.finalRouteSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, start, end, recalculationEnd);
+			RouteSubregionPrefetcher prefetcher = null;
+			if (ctx.config.prefetchExecutor != null && ctx.config.tileCache != null) {
+				prefetcher = new RouteSubregionPrefetcher(ctx, ctx.config.prefetchExecutor, ctx.config.prefetchQueueSize);
+				prefetcher.start(ctx.startX, ctx.startY, ctx.targetX, ctx.targetY, ctx.precalculatedRouteDirection);
+			}
+			try {
+				// Split into 2 methods to let GC work in between
+				ctx.finalRouteSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, start, end, recalculationEnd);
+			} finally {
+				if (prefetcher != null) {
+					prefetcher.stop();
+				}
+			}
 			// 4. Route is found : collect all segments and prepare result
 			return new RouteResultPreparation().prepareResult(ctx, ctx.finalRouteSegment);
 		}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -170,6 +171,7 @@ public class RouteResultPreparation {
 	}
 
 	List<RouteSegmentResult> prepareResult(RoutingContext ctx, List<RouteSegmentResult> result, boolean recalculation) throws IOException {
+		long now = System.nanoTime();
 		for (int i = 0; i < result.size(); i++) {
 			RouteDataObject road = result.get(i).getObject();
 			checkAndInitRouteRegion(ctx, road);
@@ -181,15 +183,36 @@ public class RouteResultPreparation {
 		combineWayPointsForAreaRouting(ctx, result);
 		validateAllPointsConnected(result);
 		splitRoadsAndAttachRoadSegments(ctx, result, recalculation);
+		Map<RouteDataObject, RouteDataObject> modifiedObjects = new IdentityHashMap<>();
 		for (int i = 0; i < result.size(); i++) {
-			filterMinorStops(result.get(i));
+			filterMinorStops(result.get(i), modifiedObjects);
+		}
+		// all segments of the same road should see stop signs removed by any of them
+		for (int i = 0; i < result.size(); i++) {
+			RouteDataObject modified = modifiedObjects.get(result.get(i).getObject());
+			if (modified != null) {
+				result.get(i).setObject(modified);
+			}
 		}
 		calculateTimeSpeed(ctx, result);
 		prepareTurnResults(ctx, result);
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.timeToPrepareResult += (System.nanoTime() - now);
+		}
 		return result;
 	}
 	
 	public RouteSegmentResult filterMinorStops(RouteSegmentResult seg) {
+		return filterMinorStops(seg, new IdentityHashMap<RouteDataObject, RouteDataObject>());
+	}
+
+	/**
+	 * Objects could be shared with other routes (see {@link RouteTileCache}), so stop signs are removed
+	 * from a copy with own point types which is stored in modifiedObjects by original object.
+	 */
+	private RouteSegmentResult filterMinorStops(RouteSegmentResult seg,
+			Map<RouteDataObject, RouteDataObject> modifiedObjects) {
+		RouteDataObject road = seg.getObject();
 		List<Integer> stops = null;
 		boolean plus = seg.getStartPointIndex() < seg.getEndPointIndex();
 		int next;
@@ -216,7 +239,14 @@ public class RouteResultPreparation {
 					int attStopPriority = highwaySpeakPriority(attached.getObject().getHighway());
 					int segStopPriority = highwaySpeakPriority(seg.getObject().getHighway());
 					if (segStopPriority < attStopPriority) {
-						seg.getObject().removePointType(stop, seg.getObject().region.stopSign);
+						RouteDataObject modified = modifiedObjects.get(road);
+						if (modified == null) {
+							modified = new RouteDataObject(road);
+							modified.pointTypes = road.pointTypes.clone();
+							modifiedObjects.put(road, modified);
+						}
+						modified.removePointType(stop, road.region.stopSign);
+						seg.setObject(modified);
 						break;
 					}
 				}
@@ -0,0 +1,234 @@
+package net.osmand.router;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of route segments for A* stored in plain arrays: queue slot ids index segment references
+ * and priorities f(x) = g(x) + heuristicCoefficient * h(x), binary heap keeps slot ids only.
+ * Only the frontier is kept here, {@link RouteSegment} objects are still created by {@link RoutingContext}.
+ * Adding segment which is already in the queue updates its priority (decrease key) instead of adding duplicate,
+ * so segment fields could be changed before {@link #add(RouteSegment)} without breaking heap order.
+ * (java.util.PriorityQueue used before kept such segment twice and the second poll was skipped as visited.)
+ * Slots of polled segments are reused, so the arrays only grow up to the maximum queue size.
+ * Slots of queued segments are found by identity hash table of the queue (segment itself doesn't keep queue state,
+ * so the same segment could be queued by direct and reverse queues).
+ */
+public class RouteSegmentQueue {
+
+	private final double heuristicCoefficient;
+
+	// slot id -> segment / priority / position in heap (-1 for free slot)
+	private RouteSegment[] segments;
+	private double[] priorities;
+	private int[] positions;
+	// heap of slot ids
+	private int[] heap;
+	private int size;
+	// free slot ids
+	private int[] freeSlots;
+	private int freeSize;
+	private int slots;
+	// open addressing identity hash table: queued segment -> slot
+	private RouteSegment[] indexKeys;
+	private int[] indexSlots;
+
+	public RouteSegmentQueue(double heuristicCoefficient) {
+		this(heuristicCoefficient, 64);
+	}
+
+	public RouteSegmentQueue(double heuristicCoefficient, int capacity) {
+		this.heuristicCoefficient = heuristicCoefficient;
+		capacity = Math.max(capacity, 4);
+		segments = new RouteSegment[capacity];
+		priorities = new double[capacity];
+		positions = new int[capacity];
+		heap = new int[capacity];
+		freeSlots = new int[capacity];
+		int indexCapacity = Integer.highestOneBit(capacity - 1) << 2;
+		indexKeys = new RouteSegment[indexCapacity];
+		indexSlots = new int[indexCapacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[heap[0]];
+	}
+
+	public double peekPriority() {
+		return size == 0 ? Double.POSITIVE_INFINITY : priorities[heap[0]];
+	}
+
+	/**
+	 * Adds segment with current distanceFromStart / distanceToEnd or updates its priority if it's already queued.
+	 */
+	public void add(RouteSegment segment) {
+		double priority = segment.distanceFromStart + heuristicCoefficient * segment.distanceToEnd;
+		int slot = findSlot(segment);
+		if (slot >= 0) {
+			double old = priorities[slot];
+			priorities[slot] = priority;
+			if (priority < old) {
+				siftUp(positions[slot]);
+			} else if (priority > old) {
+				siftDown(positions[slot]);
+			}
+			return;
+		}
+		slot = allocateSlot();
+		segments[slot] = segment;
+		priorities[slot] = priority;
+		putSlot(segment, slot);
+		heap[size] = slot;
+		positions[slot] = size;
+		size++;
+		siftUp(size - 1);
+	}
+
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		int slot = heap[0];
+		RouteSegment segment = segments[slot];
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		releaseSlot(slot);
+		removeSlot(segment);
+		return segment;
+	}
+
+	public void clear() {
+		Arrays.fill(segments, 0, slots, null);
+		Arrays.fill(indexKeys, null);
+		size = 0;
+		slots = 0;
+		freeSize = 0;
+	}
+
+	private int allocateSlot() {
+		if (freeSize > 0) {
+			return freeSlots[--freeSize];
+		}
+		if (slots == segments.length) {
+			int capacity = slots * 2;
+			segments = Arrays.copyOf(segments, capacity);
+			priorities = Arrays.copyOf(priorities, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			heap = Arrays.copyOf(heap, capacity);
+			freeSlots = Arrays.copyOf(freeSlots, capacity);
+		}
+		return slots++;
+	}
+
+	private int indexOf(RouteSegment segment) {
+		int mask = indexKeys.length - 1;
+		// spread identity hash as table size is power of 2
+		int h = System.identityHashCode(segment) * 0x9E3779B9;
+		int i = (h ^ (h >>> 16)) & mask;
+		while (indexKeys[i] != null && indexKeys[i] != segment) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private int findSlot(RouteSegment segment) {
+		int i = indexOf(segment);
+		return indexKeys[i] == null ? -1 : indexSlots[i];
+	}
+
+	private void putSlot(RouteSegment segment, int slot) {
+		// table is kept at most half full
+		if (2 * (size + 1) > indexKeys.length) {
+			RouteSegment[] oldKeys = indexKeys;
+			int[] oldSlots = indexSlots;
+			indexKeys = new RouteSegment[oldKeys.length * 2];
+			indexSlots = new int[oldKeys.length * 2];
+			for (int j = 0; j < oldKeys.length; j++) {
+				if (oldKeys[j] != null) {
+					int i = indexOf(oldKeys[j]);
+					indexKeys[i] = oldKeys[j];
+					indexSlots[i] = oldSlots[j];
+				}
+			}
+		}
+		int i = indexOf(segment);
+		indexKeys[i] = segment;
+		indexSlots[i] = slot;
+	}
+
+	private void removeSlot(RouteSegment segment) {
+		int mask = indexKeys.length - 1;
+		int i = indexOf(segment);
+		indexKeys[i] = null;
+		// shift following entries of the probe chain back to keep them reachable
+		int j = (i + 1) & mask;
+		while (indexKeys[j] != null) {
+			RouteSegment key = indexKeys[j];
+			int slot = indexSlots[j];
+			indexKeys[j] = null;
+			int k = indexOf(key);
+			indexKeys[k] = key;
+			indexSlots[k] = slot;
+			j = (j + 1) & mask;
+		}
+	}
+
+	private void releaseSlot(int slot) {
+		segments[slot] = null;
+		positions[slot] = -1;
+		freeSlots[freeSize++] = slot;
+	}
+
+	private void siftUp(int pos) {
+		int slot = heap[pos];
+		double priority = priorities[slot];
+		while (pos > 0) {
+			int parent = (pos - 1) >> 1;
+			int parentSlot = heap[parent];
+			if (priorities[parentSlot] <= priority) {
+				break;
+			}
+			heap[pos] = parentSlot;
+			positions[parentSlot] = pos;
+			pos = parent;
+		}
+		heap[pos] = slot;
+		positions[slot] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int slot = heap[pos];
+		double priority = priorities[slot];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && priorities[heap[child + 1]] < priorities[heap[child]]) {
+				child++;
+			}
+			int childSlot = heap[child];
+			if (priority <= priorities[childSlot]) {
+				break;
+			}
+			heap[pos] = childSlot;
+			positions[childSlot] = pos;
+			pos = child;
+		}
+		heap[pos] = slot;
+		positions[slot] = pos;
+	}
+}
@@ -0,0 +1,326 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Loads route subregions along expected route (straight line from start to target or precalculated route direction)
+ * on background threads, so search thread finds them in {@link RoutingConfiguration#tileCache} instead of reading file.
+ * Tiles of corridor are taken in order from both ends: when search requests data of corridor tile (see
+ * {@link RoutingContext#loadRouteSegment(int, int, long, boolean)}) next tiles after it are scheduled, at most
+ * queue size subregions are read at the same time.
+ * <p>
+ * Tile headers are read by search thread (route tree of file is shared by readers), subregion data is read by
+ * own copies of readers: cursors of memory mapped readers (see {@link BinaryMapIndexReader#createCursor()}) or
+ * readers of newly opened file. Prefetching stops with {@link #stop()} or when calculation is cancelled.
+ */
+public class RouteSubregionPrefetcher {
+
+	private static final Log log = PlatformUtil.getLog(RouteSubregionPrefetcher.class);
+
+	public static final int DEFAULT_QUEUE_SIZE = 8;
+	// tiles on each side of route line
+	private static final int CORRIDOR_WIDTH = 1;
+	// tiles scheduled ahead of last requested tile
+	private static final int LOOKAHEAD = 6;
+
+	private final RoutingContext ctx;
+	private final RouteTileCache tileCache;
+	private final ExecutorService executor;
+	private final int queueSize;
+
+	// tile ids of corridor (same as ids of routing context) in order from start to target
+	private final TLongArrayList corridor = new TLongArrayList();
+	private final TLongObjectHashMap<Integer> corridorIndexes = new TLongObjectHashMap<Integer>();
+	private boolean[] scheduled;
+	private int forward;
+	private int backward;
+
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger prefetchedTiles = new AtomicInteger();
+	// tasks submitted by search thread
+	private final List<PrefetchTask> tasks = new ArrayList<PrefetchTask>();
+	// copies of readers which are not used at the moment
+	private final Map<BinaryMapIndexReader, List<BinaryMapIndexReader>> freeReaders =
+			new LinkedHashMap<BinaryMapIndexReader, List<BinaryMapIndexReader>>();
+	private final List<BinaryMapIndexReader> openedReaders = new ArrayList<BinaryMapIndexReader>();
+	private volatile boolean stopped;
+
+	public RouteSubregionPrefetcher(RoutingContext ctx, ExecutorService executor, int queueSize) {
+		if (ctx.config.tileCache == null || ctx.nativeLib != null) {
+			throw new IllegalArgumentException("Prefetching requires tile cache and java routing");
+		}
+		this.ctx = ctx;
+		this.tileCache = ctx.config.tileCache;
+		this.executor = executor;
+		this.queueSize = Math.max(1, queueSize);
+	}
+
+	/**
+	 * Builds corridor and schedules first tiles from both ends. Should be called on search thread before search.
+	 * @param direction precalculated route direction (could be null)
+	 */
+	public void start(int startX, int startY, int targetX, int targetY, PrecalculatedRouteDirection direction) {
+		int px = startX;
+		int py = startY;
+		if (direction != null) {
+			for (int i = 0; i < direction.getPointsCount(); i++) {
+				addCorridorLine(px, py, direction.getPointX(i), direction.getPointY(i));
+				px = direction.getPointX(i);
+				py = direction.getPointY(i);
+			}
+		}
+		addCorridorLine(px, py, targetX, targetY);
+		scheduled = new boolean[corridor.size()];
+		forward = 0;
+		backward = corridor.size() - 1;
+		ctx.prefetcher = this;
+		schedule();
+	}
+
+	private void addCorridorLine(int x1, int y1, int x2, int y2) {
+		int zoom = ctx.config.ZOOM_TO_LOAD_TILES;
+		int shift = 31 - zoom;
+		double dx = x2 - (double) x1;
+		double dy = y2 - (double) y1;
+		// half tile steps don't skip tiles crossed by line
+		int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)) / (1 << (shift - 1))) + 1;
+		for (int s = 0; s <= steps; s++) {
+			int tx = (int) ((x1 + dx * s / steps)) >> shift;
+			int ty = (int) ((y1 + dy * s / steps)) >> shift;
+			for (int i = -CORRIDOR_WIDTH; i <= CORRIDOR_WIDTH; i++) {
+				for (int j = -CORRIDOR_WIDTH; j <= CORRIDOR_WIDTH; j++) {
+					int x = tx + i;
+					int y = ty + j;
+					if (x < 0 || y < 0 || x >= (1 << zoom) || y >= (1 << zoom)) {
+						continue;
+					}
+					long tileId = (((long) x) << zoom) + y;
+					if (!corridorIndexes.containsKey(tileId)) {
+						corridorIndexes.put(tileId, corridor.size());
+						corridor.add(tileId);
+					}
+				}
+			}
+		}
+	}
+
+	// called by search thread when data of tile is loaded
+	void tileRequested(long tileId) {
+		Integer ind = corridorIndexes.get(tileId);
+		if (ind == null || isCancelled()) {
+			return;
+		}
+		if (ind - forward < backward - ind) {
+			forward = Math.max(forward, ind);
+		} else {
+			backward = Math.min(backward, ind);
+		}
+		schedule();
+	}
+
+	private void schedule() {
+		for (int k = 0; k <= LOOKAHEAD; k++) {
+			if (!schedule(forward + k) || !schedule(backward - k)) {
+				break;
+			}
+		}
+		Iterator<PrefetchTask> it = tasks.iterator();
+		while (it.hasNext()) {
+			if (it.next().isFinished()) {
+				it.remove();
+			}
+		}
+	}
+
+	// returns false if queue is full
+	private boolean schedule(int ind) {
+		if (ind < 0 || ind >= corridor.size() || scheduled[ind]) {
+			return true;
+		}
+		if (queued.get() >= queueSize) {
+			return false;
+		}
+		scheduled[ind] = true;
+		int shift = 31 - ctx.config.ZOOM_TO_LOAD_TILES;
+		long tileId = corridor.get(ind);
+		int x31 = (int) (tileId >> ctx.config.ZOOM_TO_LOAD_TILES) << shift;
+		int y31 = (int) (tileId & ((1 << ctx.config.ZOOM_TO_LOAD_TILES) - 1)) << shift;
+		List<RoutingSubregionTile> tiles = ctx.loadTileHeadersIfNeeded(x31, y31);
+		if (tiles != null) {
+			for (RoutingSubregionTile ts : tiles) {
+				BinaryMapIndexReader reader = ctx.reverseMap.get(ts.subregion.routeReg);
+				if (!ts.isLoaded() && reader != null && reader.getFile() != null) {
+					submit(reader, ts.subregion);
+				}
+			}
+		}
+		return true;
+	}
+
+	void submit(BinaryMapIndexReader reader, RouteSubregion subregion) {
+		PrefetchTask task = new PrefetchTask(reader, subregion);
+		queued.incrementAndGet();
+		tasks.add(task);
+		executor.execute(task);
+	}
+
+	private class PrefetchTask implements Runnable {
+		private final BinaryMapIndexReader reader;
+		private final RouteSubregion subregion;
+		// task is claimed either by executor thread to run or by stop() to skip it
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		PrefetchTask(BinaryMapIndexReader reader, RouteSubregion subregion) {
+			this.reader = reader;
+			this.subregion = subregion;
+		}
+
+		boolean isFinished() {
+			return finished.getCount() == 0;
+		}
+
+		// returns false if task is running or finished
+		boolean skip() {
+			if (claimed.compareAndSet(false, true)) {
+				queued.decrementAndGet();
+				finished.countDown();
+				return true;
+			}
+			return false;
+		}
+
+		void awaitFinished() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					finished.await();
+					break;
+				} catch (InterruptedException e) {
+					// readers can't be closed while task reads them
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				if (isCancelled()) {
+					return;
+				}
+				BinaryMapIndexReader copy = acquireReader(reader);
+				try {
+					if (tileCache.prefetch(copy, subregion)) {
+						prefetchedTiles.incrementAndGet();
+					}
+				} finally {
+					releaseReader(reader, copy);
+				}
+			} catch (IOException e) {
+				log.warn("Prefetching of route tile failed: " + e.getMessage());
+			} catch (RuntimeException e) {
+				log.warn("Prefetching of route tile failed", e);
+			} finally {
+				queued.decrementAndGet();
+				finished.countDown();
+			}
+		}
+	}
+
+	private BinaryMapIndexReader acquireReader(BinaryMapIndexReader reader) throws IOException {
+		synchronized (freeReaders) {
+			List<BinaryMapIndexReader> free = freeReaders.get(reader);
+			if (free != null && !free.isEmpty()) {
+				return free.remove(free.size() - 1);
+			}
+		}
+		BinaryMapIndexReader copy;
+		if (reader.isMemoryMapped()) {
+			copy = reader.createCursor();
+		} else {
+			copy = new BinaryMapIndexReader(new RandomAccessFile(reader.getFile(), "r"), reader);
+		}
+		synchronized (freeReaders) {
+			openedReaders.add(copy);
+		}
+		return copy;
+	}
+
+	private void releaseReader(BinaryMapIndexReader reader, BinaryMapIndexReader copy) {
+		synchronized (freeReaders) {
+			List<BinaryMapIndexReader> free = freeReaders.get(reader);
+			if (free == null) {
+				free = new ArrayList<BinaryMapIndexReader>();
+				freeReaders.put(reader, free);
+			}
+			free.add(copy);
+		}
+	}
+
+	public boolean isCancelled() {
+		return stopped || (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled);
+	}
+
+	/**
+	 * Stops prefetching: skips tasks which are not started, waits for subregions which are being read
+	 * (even if thread is interrupted) and closes readers.
+	 */
+	public void stop() {
+		stopped = true;
+		if (ctx.prefetcher == this) {
+			ctx.prefetcher = null;
+		}
+		for (PrefetchTask task : tasks) {
+			if (!task.skip()) {
+				task.awaitFinished();
+			}
+		}
+		tasks.clear();
+		synchronized (freeReaders) {
+			for (BinaryMapIndexReader r : openedReaders) {
+				try {
+					r.close();
+				} catch (IOException e) {
+					log.warn("Closing reader failed: " + e.getMessage());
+				}
+			}
+			openedReaders.clear();
+			freeReaders.clear();
+		}
+	}
+
+	public int getCorridorSize() {
+		return corridor.size();
+	}
+
+	public int getPrefetchedTiles() {
+		return prefetchedTiles.get();
+	}
+}
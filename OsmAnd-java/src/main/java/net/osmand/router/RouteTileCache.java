@@ -0,0 +1,248 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Process wide cache of decoded route subregions shared by routing contexts (see {@link RoutingConfiguration#tileCache}).
+ * Subregions are keyed by file and data offset, total estimated size in bytes is bounded and least recently used
+ * subregions are evicted first. Cached objects are never modified: contexts use them as is or work with own copies
+ * when objects should be changed or belong to route region of another reader
+ * (see {@link #copyForContext(RouteDataObject, RouteRegion, boolean)}).
+ * Subregions are decoded outside of the cache lock, one thread at a time per subregion and holding lock of the reader
+ * (reader is not thread safe).
+ */
+public class RouteTileCache {
+
+	private final long maxSizeBytes;
+	private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(256, 0.75f, true);
+	private final Set<TileKey> loading = new HashSet<TileKey>();
+	private long sizeBytes;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public RouteTileCache(long maxSizeBytes) {
+		this.maxSizeBytes = maxSizeBytes;
+	}
+
+	private static class TileKey {
+		final File file;
+		final long dateCreated;
+		final long offset;
+
+		TileKey(File file, long dateCreated, long offset) {
+			this.file = file;
+			this.dateCreated = dateCreated;
+			this.offset = offset;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = file.hashCode();
+			result = 31 * result + (int) (dateCreated ^ (dateCreated >>> 32));
+			result = 31 * result + (int) (offset ^ (offset >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey other = (TileKey) obj;
+			return offset == other.offset && dateCreated == other.dateCreated && file.equals(other.file);
+		}
+	}
+
+	private static class CachedTile {
+		final List<RouteDataObject> objects;
+		final long size;
+
+		CachedTile(List<RouteDataObject> objects, long size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Returns decoded objects of subregion from cache or reads them from the reader and caches.
+	 * Returned list and objects are shared and must not be modified.
+	 */
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion) throws IOException {
+		return loadRouteIndexData(reader, subregion, null);
+	}
+
+	/**
+	 * Same as {@link #loadRouteIndexData(BinaryMapIndexReader, RouteSubregion)}, hits and misses are counted
+	 * in calculation progress as well (could be null).
+	 */
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion,
+			RouteCalculationProgress progress) throws IOException {
+		return loadRouteIndexData(reader, subregion, progress, false);
+	}
+
+	/**
+	 * Reads subregion into cache in advance (see {@link RouteSubregionPrefetcher}), does nothing if it is already
+	 * cached or being read. Hits and misses are not counted.
+	 * @return true if subregion was read
+	 */
+	public boolean prefetch(BinaryMapIndexReader reader, RouteSubregion subregion) throws IOException {
+		return reader.getFile() != null && loadRouteIndexData(reader, subregion, null, true) != null;
+	}
+
+	private List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion,
+			RouteCalculationProgress progress, boolean prefetch) throws IOException {
+		File file = reader.getFile();
+		if (file == null) {
+			return reader.loadRouteIndexData(subregion);
+		}
+		TileKey key = new TileKey(file, reader.getDateCreated(), (long) subregion.filePointer + subregion.shiftToData);
+		synchronized (this) {
+			while (true) {
+				CachedTile tile = tiles.get(key);
+				if (tile != null) {
+					if (prefetch) {
+						return null;
+					}
+					hits++;
+					if (progress != null) {
+						progress.tileCacheHits++;
+					}
+					return tile.objects;
+				}
+				if (!loading.contains(key)) {
+					break;
+				}
+				if (prefetch) {
+					return null;
+				}
+				// subregion is being read by another thread (prefetcher or parallel context),
+				// reading it twice at the same time is not safe as subregion is used as temporary storage
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			}
+			if (!prefetch) {
+				misses++;
+				if (progress != null) {
+					progress.tileCacheMisses++;
+				}
+			}
+			loading.add(key);
+		}
+		List<RouteDataObject> objects = null;
+		long size = 0;
+		try {
+			synchronized (reader) {
+				objects = Collections.unmodifiableList(reader.loadRouteIndexData(subregion));
+			}
+			for (RouteDataObject o : objects) {
+				if (o != null) {
+					size += RoutingContext.getEstimatedSize(o);
+				}
+			}
+		} finally {
+			synchronized (this) {
+				loading.remove(key);
+				notifyAll();
+				if (objects != null && size <= maxSizeBytes) {
+					tiles.put(key, new CachedTile(objects, size));
+					sizeBytes += size;
+					evict();
+				}
+			}
+		}
+		return objects;
+	}
+
+	private void evict() {
+		Iterator<Entry<TileKey, CachedTile>> it = tiles.entrySet().iterator();
+		while (sizeBytes > maxSizeBytes && it.hasNext()) {
+			CachedTile t = it.next().getValue();
+			sizeBytes -= t.size;
+			evictions++;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Copy of cached object which could be modified by context (points inserted, point types changed).
+	 * @param region route region of context reader (cached object keeps region of reader which decoded it)
+	 * @param conditionalTags types arrays are copied as well to process conditional tags in place
+	 */
+	public static RouteDataObject copyForContext(RouteDataObject o, RouteRegion region, boolean conditionalTags) {
+		RouteDataObject copy = new RouteDataObject(o, region);
+		if (o.pointTypes != null) {
+			copy.pointTypes = o.pointTypes.clone();
+		}
+		if (conditionalTags) {
+			if (o.types != null) {
+				copy.types = o.types.clone();
+			}
+			if (copy.pointTypes != null) {
+				for (int i = 0; i < copy.pointTypes.length; i++) {
+					if (copy.pointTypes[i] != null) {
+						copy.pointTypes[i] = copy.pointTypes[i].clone();
+					}
+				}
+			}
+		}
+		return copy;
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		sizeBytes = 0;
+	}
+
+	public synchronized long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public long getMaxSizeBytes() {
+		return maxSizeBytes;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Route tile cache %d tiles, %d / %d KB, hits %d, misses %d, evicted %d", tiles.size(),
+				sizeBytes >> 10, maxSizeBytes >> 10, hits, misses, evictions);
+	}
+}
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
 
 import gnu.trove.list.array.TIntArrayList;
 
@@ -42,10 +43,21 @@ public class RoutingConfiguration {
 	public int ZOOM_TO_LOAD_TILES = 16;
 	public long memoryLimitation;
 	public long nativeMemoryLimitation;
+	// decoded route tiles shared between contexts (null - every context decodes own tiles)
+	public RouteTileCache tileCache;
+	// receives metrics of every route calculation (null - metrics are not collected)
+	public RoutingMetrics.Sink metricsSink;
+	// loads tiles along expected route into tileCache ahead of search (null - tiles are loaded on demand)
+	public ExecutorService prefetchExecutor;
+	public int prefetchQueueSize = RouteSubregionPrefetcher.DEFAULT_QUEUE_SIZE;
 
 	// 1.2 Build A* graph in backward/forward direction (can affect results)
 	// 0 - 2 ways, 1 - direct way, -1 - reverse way
 	public int planRoadDirection = 0;
+	// expand direct and reverse A* graphs on 2 threads (only for planRoadDirection = 0 and with searchExecutor)
+	public boolean parallelBidirectionalSearch = false;
+	// runs reverse A* graph of parallel bidirectional search (null - search is not parallel)
+	public ExecutorService searchExecutor;
 
 	// 1.3 Router specific coefficients and restrictions
 	// use GeneralRouter and not interface to simplify native access !
@@ -136,6 +148,11 @@ public class RoutingConfiguration {
 		private Map<String, String> attributes = new LinkedHashMap<>();
 		private Set<Long> impassableRoadLocations = new HashSet<>();
 		private QuadTree<Node> directionPointsBuilder;
+		private RouteTileCache tileCache;
+		private RoutingMetrics.Sink metricsSink;
+		private ExecutorService prefetchExecutor;
+		private ExecutorService searchExecutor;
+		private int prefetchQueueSize = RouteSubregionPrefetcher.DEFAULT_QUEUE_SIZE;
 
 		public Builder() {
 		}
@@ -202,7 +219,14 @@ public class RoutingConfiguration {
 			} else {
 				i.nativeMemoryLimitation = memoryLimits.nativeMemoryLimitMb * (1l << 20);
 			}
+			i.tileCache = tileCache;
+			i.metricsSink = metricsSink;
+			i.prefetchExecutor = prefetchExecutor;
+			i.prefetchQueueSize = prefetchQueueSize;
+			i.searchExecutor = searchExecutor;
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.parallelBidirectionalSearch = parseSilentBoolean(getAttribute(i.router, "parallelBidirectionalSearch"),
+					i.parallelBidirectionalSearch);
 			if (directionPointsBuilder != null) {
 				QuadRect rect = new QuadRect(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
 				List<net.osmand.osm.edit.Node> lst = directionPointsBuilder.queryInBox(rect, new ArrayList<Node>());
@@ -223,6 +247,34 @@ public class RoutingConfiguration {
 			return this;
 		}
 
+		public Builder setTileCache(RouteTileCache tileCache) {
+			this.tileCache = tileCache;
+			return this;
+		}
+
+		public Builder setMetricsSink(RoutingMetrics.Sink metricsSink) {
+			this.metricsSink = metricsSink;
+			return this;
+		}
+
+		/**
+		 * Executor (owned by caller) to prefetch tiles of route corridor, works only together with tile cache.
+		 */
+		public Builder setPrefetchExecutor(ExecutorService prefetchExecutor, int queueSize) {
+			this.prefetchExecutor = prefetchExecutor;
+			this.prefetchQueueSize = queueSize;
+			return this;
+		}
+
+		/**
+		 * Executor (owned by caller) for reverse graph of parallel bidirectional search,
+		 * it should have free thread as direct graph waits for reverse graph to reach it.
+		 */
+		public Builder setSearchExecutor(ExecutorService searchExecutor) {
+			this.searchExecutor = searchExecutor;
+			return this;
+		}
+
 		public Set<Long> getImpassableRoadLocations() {
 			return impassableRoadLocations;
 		}
@@ -288,6 +340,13 @@ public class RoutingConfiguration {
 		return Float.parseFloat(t);
 	}
 
+	public static boolean parseSilentBoolean(String t, boolean v) {
+		if (t == null || t.length() == 0) {
+			return v;
+		}
+		return Boolean.parseBoolean(t);
+	}
+
 	
 	private static RoutingConfiguration.Builder DEFAULT;
 
@@ -84,16 +84,21 @@ public class RoutingContext {
 	
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
+	// loads tiles ahead of search into config.tileCache (null - not used)
+	RouteSubregionPrefetcher prefetcher;
 	
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	// separate caches for reverse search (it could run on its own thread)
+	ArrayList<RouteSegment> reverseSegmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> reverseSegmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	
 	
 	// 5. debug information (package accessor)
 	public TileStatistics global = new TileStatistics();
-	// updated by route planner in bytes
-	public int memoryOverhead = 0;
+	// updated by route planner in bytes (by both threads of parallel bidirectional search)
+	public volatile int memoryOverhead = 0;
 	public float routingTime = 0;
 
 	// callback of processing segments
@@ -137,6 +142,14 @@ public class RoutingContext {
 	}
 	
 	
+	ArrayList<RouteSegment> getSegmentsToVisitPrescripted(boolean reverseWaySearch) {
+		return reverseWaySearch ? reverseSegmentsToVisitPrescripted : segmentsToVisitPrescripted;
+	}
+
+	ArrayList<RouteSegment> getSegmentsToVisitNotForbidden(boolean reverseWaySearch) {
+		return reverseWaySearch ? reverseSegmentsToVisitNotForbidden : segmentsToVisitNotForbidden;
+	}
+
 	public RouteSegmentVisitor getVisitor() {
 		return visitor;
 	}
@@ -250,7 +263,8 @@ public class RoutingContext {
 		return loadRouteSegment(x31, y31, memoryLimit, false);
 	}
 	
-	public RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
+	// synchronized: direct and reverse graphs could be expanded in parallel and share loaded tiles
+	public synchronized RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
 		long tileId = getRoutingTile(x31, y31, memoryLimit);
 		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
 		RouteSegment original = null;
@@ -291,13 +305,25 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res;
+				boolean sharedObjects = config.tileCache != null;
+				if (sharedObjects) {
+					res = config.tileCache.loadRouteIndexData(reader, ts.subregion, calculationProgress);
+				} else {
+					res = reader.loadRouteIndexData(ts.subregion);
+				}
 				
 				if (toLoad != null) {
 					toLoad.addAll(res);
 				} else {
 					for (RouteDataObject ro : res) {
 						if (ro != null) {
+							// objects of shared cache are read-only, they are copied only to be changed
+							// or to be bound to region of this reader
+							if (sharedObjects && (config.routeCalculationTime != 0 || !points.isEmpty()
+									|| ro.region != ts.subregion.routeReg)) {
+								ro = RouteTileCache.copyForContext(ro, ts.subregion.routeReg, config.routeCalculationTime != 0);
+							}
 							if (config.routeCalculationTime != 0) {
 								ro.processConditionalTags(config.routeCalculationTime);
 							}
@@ -350,6 +376,7 @@ public class RoutingContext {
 		}
 		global.size += ts.tileStatistics.size;
 		if (calculationProgress != null) {
+			calculationProgress.maxEstimatedSize = Math.max(calculationProgress.maxEstimatedSize, global.size);
 			calculationProgress.timeToLoad += (System.nanoTime() - now);
 		}
 	}
@@ -450,6 +477,16 @@ public class RoutingContext {
 		}
 	}
 	
+	// headers of tile are loaded but data is not
+	List<RoutingSubregionTile> loadTileHeadersIfNeeded(int x31, int y31) {
+		int zmShift = 31 - config.ZOOM_TO_LOAD_TILES;
+		long tileId = (((long) (x31 >> zmShift)) << config.ZOOM_TO_LOAD_TILES) + (y31 >> zmShift);
+		if (!indexedSubregions.containsKey(tileId)) {
+			indexedSubregions.put(tileId, loadTileHeaders(x31, y31));
+		}
+		return indexedSubregions.get(tileId);
+	}
+
 	@SuppressWarnings("unused")
 	private long getRoutingTile(int x31, int y31, long memoryLimit) {
 		// long now = System.nanoTime();
@@ -499,6 +536,9 @@ public class RoutingContext {
 				}
 			}
 			if (load) {
+				if (prefetcher != null) {
+					prefetcher.tileRequested(tileId);
+				}
 				TLongHashSet excludeIds = new TLongHashSet();
 				for (RoutingSubregionTile ts : subregions) {
 					if (!ts.isLoaded()) {
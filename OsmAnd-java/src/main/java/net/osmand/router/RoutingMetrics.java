@@ -0,0 +1,231 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+
+import org.apache.commons.logging.Log;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of one route calculation (see {@link RoutePlannerFrontEnd#searchRoute}) collected from
+ * {@link RouteCalculationProgress} and {@link RoutingContext} and published to {@link RoutingConfiguration#metricsSink}.
+ * Times are in nanoseconds, sizes in bytes. Queue processing time is the calculation time
+ * which is not spent in tile loading, initial segments search and result preparation.
+ */
+public class RoutingMetrics {
+
+	private static final Log log = PlatformUtil.getLog(RoutingMetrics.class);
+
+	public interface Sink {
+
+		void routeCalculated(RoutingMetrics metrics);
+	}
+
+	public String router;
+	public String calculationMode;
+	public boolean routeFound;
+	public int resultSegments;
+	public float routingTime;
+
+	public long timeTotal;
+	public long timeLoadTiles;
+	public long timeLoadHeaders;
+	public long timeFindInitialSegments;
+	public long timeQueue;
+	public long timePrepareResult;
+
+	public int visitedSegments;
+	public int visitedDirectSegments;
+	public int visitedOppositeSegments;
+	public int directQueueSize;
+	public int oppositeQueueSize;
+
+	public int loadedTiles;
+	public int distinctLoadedTiles;
+	public int loadedPrevUnloadedTiles;
+	public int unloadedTiles;
+	public int maxLoadedTiles;
+	public int tileCacheHits;
+	public int tileCacheMisses;
+
+	public long estimatedSize;
+	public long maxEstimatedSize;
+	public long heapUsed;
+
+	private RouteCalculationProgress initial;
+	private long startTime;
+
+	/**
+	 * Starts measurement, progress values accumulated by previous calculations are subtracted in {@link #finish}.
+	 */
+	public static RoutingMetrics start(RoutingContext ctx) {
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		RoutingMetrics m = new RoutingMetrics();
+		m.initial = copy(ctx.calculationProgress);
+		m.startTime = System.nanoTime();
+		return m;
+	}
+
+	private static RouteCalculationProgress copy(RouteCalculationProgress cp) {
+		RouteCalculationProgress p = new RouteCalculationProgress();
+		p.timeToLoad = cp.timeToLoad;
+		p.timeToLoadHeaders = cp.timeToLoadHeaders;
+		p.timeToFindInitialSegments = cp.timeToFindInitialSegments;
+		p.timeToPrepareResult = cp.timeToPrepareResult;
+		p.visitedSegments = cp.visitedSegments;
+		p.visitedDirectSegments = cp.visitedDirectSegments;
+		p.visitedOppositeSegments = cp.visitedOppositeSegments;
+		p.loadedTiles = cp.loadedTiles;
+		p.distinctLoadedTiles = cp.distinctLoadedTiles;
+		p.loadedPrevUnloadedTiles = cp.loadedPrevUnloadedTiles;
+		p.unloadedTiles = cp.unloadedTiles;
+		p.tileCacheHits = cp.tileCacheHits;
+		p.tileCacheMisses = cp.tileCacheMisses;
+		return p;
+	}
+
+	public RoutingMetrics finish(RoutingContext ctx, List<RouteSegmentResult> result) {
+		RouteCalculationProgress cp = ctx.calculationProgress;
+		router = ctx.config.routerName;
+		calculationMode = ctx.calculationMode == null ? null : ctx.calculationMode.name();
+		routeFound = result != null;
+		resultSegments = result == null ? 0 : result.size();
+		routingTime = ctx.routingTime;
+
+		timeTotal = System.nanoTime() - startTime;
+		timeLoadTiles = cp.timeToLoad - initial.timeToLoad;
+		timeLoadHeaders = cp.timeToLoadHeaders - initial.timeToLoadHeaders;
+		timeFindInitialSegments = cp.timeToFindInitialSegments - initial.timeToFindInitialSegments;
+		timePrepareResult = cp.timeToPrepareResult - initial.timeToPrepareResult;
+		timeQueue = Math.max(0, timeTotal - timeLoadTiles - timeLoadHeaders - timeFindInitialSegments - timePrepareResult);
+
+		visitedSegments = cp.visitedSegments - initial.visitedSegments;
+		visitedDirectSegments = cp.visitedDirectSegments - initial.visitedDirectSegments;
+		visitedOppositeSegments = cp.visitedOppositeSegments - initial.visitedOppositeSegments;
+		directQueueSize = cp.directQueueSize;
+		oppositeQueueSize = cp.oppositeQueueSize;
+
+		loadedTiles = cp.loadedTiles - initial.loadedTiles;
+		distinctLoadedTiles = cp.distinctLoadedTiles - initial.distinctLoadedTiles;
+		loadedPrevUnloadedTiles = cp.loadedPrevUnloadedTiles - initial.loadedPrevUnloadedTiles;
+		unloadedTiles = cp.unloadedTiles - initial.unloadedTiles;
+		maxLoadedTiles = Math.max(cp.maxLoadedTiles, ctx.getCurrentlyLoadedTiles());
+		tileCacheHits = cp.tileCacheHits - initial.tileCacheHits;
+		tileCacheMisses = cp.tileCacheMisses - initial.tileCacheMisses;
+
+		estimatedSize = ctx.getCurrentEstimatedSize();
+		maxEstimatedSize = Math.max(cp.maxEstimatedSize, estimatedSize);
+		Runtime runtime = Runtime.getRuntime();
+		heapUsed = runtime.totalMemory() - runtime.freeMemory();
+		initial = null;
+		return this;
+	}
+
+	public float getTileCacheHitRatio() {
+		int total = tileCacheHits + tileCacheMisses;
+		return total == 0 ? 0 : tileCacheHits / (float) total;
+	}
+
+	// share of tile loads which read tile unloaded earlier by memory limit
+	public float getTileReloadRatio() {
+		return loadedTiles == 0 ? 0 : loadedPrevUnloadedTiles / (float) loadedTiles;
+	}
+
+	/**
+	 * Numeric metrics by name (in declaration order), used by sinks.
+	 */
+	public Map<String, Number> getValues() {
+		Map<String, Number> values = new LinkedHashMap<String, Number>();
+		values.put("routingTime", routingTime);
+		values.put("resultSegments", resultSegments);
+		values.put("timeTotal", timeTotal);
+		values.put("timeLoadTiles", timeLoadTiles);
+		values.put("timeLoadHeaders", timeLoadHeaders);
+		values.put("timeFindInitialSegments", timeFindInitialSegments);
+		values.put("timeQueue", timeQueue);
+		values.put("timePrepareResult", timePrepareResult);
+		values.put("visitedSegments", visitedSegments);
+		values.put("visitedDirectSegments", visitedDirectSegments);
+		values.put("visitedOppositeSegments", visitedOppositeSegments);
+		values.put("directQueueSize", directQueueSize);
+		values.put("oppositeQueueSize", oppositeQueueSize);
+		values.put("loadedTiles", loadedTiles);
+		values.put("distinctLoadedTiles", distinctLoadedTiles);
+		values.put("loadedPrevUnloadedTiles", loadedPrevUnloadedTiles);
+		values.put("unloadedTiles", unloadedTiles);
+		values.put("maxLoadedTiles", maxLoadedTiles);
+		values.put("tileCacheHits", tileCacheHits);
+		values.put("tileCacheMisses", tileCacheMisses);
+		values.put("tileCacheHitRatio", getTileCacheHitRatio());
+		values.put("tileReloadRatio", getTileReloadRatio());
+		values.put("estimatedSize", estimatedSize);
+		values.put("maxEstimatedSize", maxEstimatedSize);
+		values.put("heapUsed", heapUsed);
+		return values;
+	}
+
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("router", router);
+		json.put("calculationMode", calculationMode);
+		json.put("routeFound", routeFound);
+		for (Map.Entry<String, Number> e : getValues().entrySet()) {
+			json.put(e.getKey(), e.getValue());
+		}
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		return toJson().toString();
+	}
+
+	/**
+	 * Writes metrics of every calculation as one line JSON object.
+	 */
+	public static class JsonSink implements Sink {
+
+		private final Writer writer;
+
+		public JsonSink(Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public synchronized void routeCalculated(RoutingMetrics metrics) {
+			try {
+				writer.write(metrics.toJson().toString());
+				writer.write('\n');
+				writer.flush();
+			} catch (IOException e) {
+				log.error("Routing metrics are not written", e);
+			}
+		}
+	}
+
+	/**
+	 * Publishes metrics to several sinks.
+	 */
+	public static class CompositeSink implements Sink {
+
+		private final Sink[] sinks;
+
+		public CompositeSink(Sink... sinks) {
+			this.sinks = sinks;
+		}
+
+		@Override
+		public void routeCalculated(RoutingMetrics metrics) {
+			for (Sink s : sinks) {
+				s.routeCalculated(metrics);
+			}
+		}
+	}
+}
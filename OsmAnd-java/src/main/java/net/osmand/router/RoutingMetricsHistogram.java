@@ -0,0 +1,163 @@
+package net.osmand.router;
+
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In memory sink aggregating {@link RoutingMetrics} of all calculations into histograms by metric name.
+ * Values are counted in exponential buckets (4 buckets per power of 2, percentiles are accurate within 25%),
+ * count, sum, min and max are exact.
+ */
+public class RoutingMetricsHistogram implements RoutingMetrics.Sink {
+
+	private static final int SUB_BUCKETS_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKETS_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKETS_BITS + 1) * SUB_BUCKETS;
+
+	private final Map<String, Histogram> histograms = new LinkedHashMap<String, Histogram>();
+	private int calculations;
+	private int routesNotFound;
+
+	public static class Histogram {
+		private final long[] buckets = new long[BUCKETS];
+		private long count;
+		private double sum;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+
+		void add(double value) {
+			count++;
+			sum += value;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			buckets[bucket(value)]++;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return count == 0 ? 0 : sum / count;
+		}
+
+		public double getMin() {
+			return count == 0 ? 0 : min;
+		}
+
+		public double getMax() {
+			return count == 0 ? 0 : max;
+		}
+
+		/**
+		 * Upper bound of bucket containing percentile (0..100), limited by max value.
+		 */
+		public double getPercentile(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(percentile / 100 * count);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank && seen > 0) {
+					return Math.max(min, Math.min(max, bucketUpperBound(i)));
+				}
+			}
+			return max;
+		}
+
+		public JSONObject toJson() {
+			JSONObject json = new JSONObject();
+			json.put("count", count);
+			json.put("mean", getMean());
+			json.put("min", getMin());
+			json.put("max", getMax());
+			json.put("p50", getPercentile(50));
+			json.put("p90", getPercentile(90));
+			json.put("p99", getPercentile(99));
+			return json;
+		}
+	}
+
+	// values below 1 (ratios) are scaled to keep precision of buckets
+	private static final double SCALE = 1000;
+
+	static int bucket(double value) {
+		long v = (long) (value * SCALE);
+		if (v < SUB_BUCKETS) {
+			return (int) Math.max(v, 0);
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(v);
+		int sub = (int) (v >>> (exp - SUB_BUCKETS_BITS)) & (SUB_BUCKETS - 1);
+		return (exp - SUB_BUCKETS_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static double bucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return (bucket + 1) / SCALE;
+		}
+		int exp = bucket / SUB_BUCKETS + SUB_BUCKETS_BITS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		double upper = (double) (SUB_BUCKETS + sub + 1) * (1L << (exp - SUB_BUCKETS_BITS));
+		return upper / SCALE;
+	}
+
+	@Override
+	public synchronized void routeCalculated(RoutingMetrics metrics) {
+		calculations++;
+		if (!metrics.routeFound) {
+			routesNotFound++;
+		}
+		for (Map.Entry<String, Number> e : metrics.getValues().entrySet()) {
+			Histogram h = histograms.get(e.getKey());
+			if (h == null) {
+				h = new Histogram();
+				histograms.put(e.getKey(), h);
+			}
+			h.add(e.getValue().doubleValue());
+		}
+	}
+
+	public synchronized int getCalculations() {
+		return calculations;
+	}
+
+	public synchronized int getRoutesNotFound() {
+		return routesNotFound;
+	}
+
+	public synchronized Histogram getHistogram(String metric) {
+		return histograms.get(metric);
+	}
+
+	public synchronized double getPercentile(String metric, double percentile) {
+		Histogram h = histograms.get(metric);
+		return h == null ? 0 : h.getPercentile(percentile);
+	}
+
+	public synchronized void clear() {
+		histograms.clear();
+		calculations = 0;
+		routesNotFound = 0;
+	}
+
+	public synchronized JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("calculations", calculations);
+		json.put("routesNotFound", routesNotFound);
+		JSONObject metrics = new JSONObject();
+		for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+			metrics.put(e.getKey(), e.getValue().toJson());
+		}
+		json.put("metrics", metrics);
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		return toJson().toString();
+	}
+}
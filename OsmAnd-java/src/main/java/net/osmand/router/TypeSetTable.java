@@ -0,0 +1,105 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table from type set (encoded types of route object or point) to value.
+ * Reads don't lock and don't allocate: entries are immutable and never removed, the table array is replaced
+ * on resize only, so reader could miss just inserted entry and then falls back to {@link #putIfAbsent(int[], Object)}.
+ * Types arrays are compared by content, order of types is significant.
+ */
+public class TypeSetTable {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final class Entry {
+		final int[] types;
+		final int hash;
+		final Object value;
+
+		Entry(int[] types, int hash, Object value) {
+			this.types = types;
+			this.hash = hash;
+			this.value = value;
+		}
+	}
+
+	private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+	private int size;
+
+	public static int hash(int[] types) {
+		int h = 1;
+		for (int i = 0; i < types.length; i++) {
+			h = 31 * h + types[i];
+		}
+		// spread bits as types are small sequential numbers
+		return h ^ (h >>> 16) ^ (h * 0x9E3779B9);
+	}
+
+	/**
+	 * @return value or null if type set is not registered
+	 */
+	public Object get(int[] types) {
+		Entry[] t = table;
+		int h = hash(types);
+		int mask = t.length - 1;
+		for (int i = h & mask; ; i = (i + 1) & mask) {
+			Entry e = t[i];
+			if (e == null) {
+				return null;
+			}
+			if (e.hash == h && Arrays.equals(e.types, types)) {
+				return e.value;
+			}
+		}
+	}
+
+	/**
+	 * Registers value (not null) for copy of types.
+	 * @return value registered before or new value
+	 */
+	public synchronized Object putIfAbsent(int[] types, Object value) {
+		int h = hash(types);
+		Entry[] t = table;
+		int mask = t.length - 1;
+		int i = h & mask;
+		for (; t[i] != null; i = (i + 1) & mask) {
+			if (t[i].hash == h && Arrays.equals(t[i].types, types)) {
+				return t[i].value;
+			}
+		}
+		Entry e = new Entry(types.clone(), h, value);
+		if ((size + 1) * 2 > t.length) {
+			Entry[] nt = new Entry[t.length * 2];
+			for (Entry o : t) {
+				if (o != null) {
+					insert(nt, o);
+				}
+			}
+			insert(nt, e);
+			table = nt;
+		} else {
+			t[i] = e;
+		}
+		size++;
+		return value;
+	}
+
+	private static void insert(Entry[] t, Entry e) {
+		int mask = t.length - 1;
+		int i = e.hash & mask;
+		while (t[i] != null) {
+			i = (i + 1) & mask;
+		}
+		t[i] = e;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized void clear() {
+		table = new Entry[INITIAL_CAPACITY];
+		size = 0;
+	}
+}
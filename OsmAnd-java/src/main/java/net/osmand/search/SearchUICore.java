@@ -17,6 +17,7 @@ import net.osmand.search.core.SearchCoreAPI;
 import net.osmand.search.core.SearchCoreFactory;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityByTypeAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityTypesAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchBuildingAndIntersectionsByStreetAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchStreetByCityAPI;
 import net.osmand.search.core.SearchExportSettings;
@@ -43,7 +44,11 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -61,6 +66,8 @@ public class SearchUICore {
 
 	private ThreadPoolExecutor singleThreadedExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
+	// searches files of APIs in parallel (see setSearchThreads), null - sequential search
+	private ThreadPoolExecutor parallelSearchExecutor;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
@@ -85,6 +92,33 @@ public class SearchUICore {
 		singleThreadedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue);
 	}
 
+	/**
+	 * Enables parallel search: files of APIs supporting it ({@link SearchBaseAPI#isFileParallelSearchAvailable()})
+	 * are searched on pool of given size, results are published in the same order as by sequential search.
+	 * Other APIs run on search thread when previous tasks are finished, so every file is read by one thread at a time.
+	 * @param threads number of threads, 1 or less - sequential search
+	 */
+	public synchronized void setSearchThreads(int threads) {
+		if (parallelSearchExecutor != null) {
+			parallelSearchExecutor.shutdown();
+			parallelSearchExecutor = null;
+		}
+		if (threads > 1) {
+			parallelSearchExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Search file " + count.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+			parallelSearchExecutor.allowCoreThreadTimeOut(true);
+		}
+	}
+
 	public static void setDebugMode(boolean debugMode) {
 		SearchUICore.debugMode = debugMode;
 	}
@@ -632,6 +666,14 @@ public class SearchUICore {
 						o2.getSearchPriority(phrase));
 			}
 		});
+		ThreadPoolExecutor executor;
+		synchronized (this) {
+			executor = parallelSearchExecutor;
+		}
+		if (executor != null) {
+			searchInternalParallel(phrase, matcher, lst, executor);
+			return;
+		}
 		for (SearchCoreAPI api : lst) {
 			if (matcher.isCancelled()) {
 				break;
@@ -639,23 +681,147 @@ public class SearchUICore {
 			if (!api.isSearchAvailable(phrase) || api.getSearchPriority(phrase) == -1) {
 				continue;
 			}
-			try {
-				if (debugMode) {
-					LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+			searchApi(api, phrase, matcher);
+		}
+	}
+
+	private void searchApi(SearchCoreAPI api, SearchPhrase phrase, SearchResultMatcher matcher) {
+		try {
+			if (debugMode) {
+				LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+			}
+			api.search(phrase, matcher);
+			if (debugMode) {
+				LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
+			}
+			matcher.apiSearchFinished(api, phrase);
+			if (debugMode) {
+				LOG.info("API search done <" + phrase + "> API=<" + api + ">");
+			}
+		} catch (Throwable e) {
+			e.printStackTrace();
+			LOG.error(e.getMessage(), e);
+		}
+	}
+
+	private void searchInternalParallel(SearchPhrase phrase, SearchResultMatcher matcher, List<SearchCoreAPI> apis,
+			ThreadPoolExecutor executor) {
+		LinkedList<FileSearchTask> tasks = new LinkedList<>();
+		try {
+			for (SearchCoreAPI api : apis) {
+				if (matcher.isCancelled()) {
+					break;
 				}
-				api.search(phrase, matcher);
-				if (debugMode) {
-					LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
+				if (!api.isSearchAvailable(phrase) || api.getSearchPriority(phrase) == -1) {
+					continue;
+				}
+				if (api instanceof SearchBaseAPI && ((SearchBaseAPI) api).isFileParallelSearchAvailable()) {
+					if (debugMode) {
+						LOG.info("Run parallel API search <" + phrase + "> API=<" + api + ">");
+					}
+					// keys of published results of API search
+					Set<String> resultKeys = new HashSet<>();
+					// limit of API search is shared by files as it was for search of all files
+					AtomicInteger limitCounter = new AtomicInteger();
+					for (BinaryMapIndexReader file : phrase.getOfflineIndexes()) {
+						FileSearchTask task = new FileSearchTask(api, phrase, file, matcher, resultKeys, limitCounter);
+						task.future = executor.submit(task);
+						tasks.add(task);
+					}
+					// marks end of API search
+					tasks.add(new FileSearchTask(api, phrase, null, matcher, resultKeys, limitCounter));
+				} else {
+					publishFileSearchResults(tasks, phrase, matcher);
+					searchApi(api, phrase, matcher);
+				}
+			}
+			publishFileSearchResults(tasks, phrase, matcher);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			for (FileSearchTask task : tasks) {
+				if (task.future != null) {
+					task.future.cancel(false);
 				}
-				matcher.apiSearchFinished(api, phrase);
+			}
+		}
+	}
+
+	// waits for tasks in order of submission and publishes their results
+	private void publishFileSearchResults(LinkedList<FileSearchTask> tasks, SearchPhrase phrase,
+			SearchResultMatcher matcher) throws InterruptedException {
+		while (!tasks.isEmpty()) {
+			FileSearchTask task = tasks.peek();
+			if (matcher.isCancelled()) {
+				return;
+			}
+			if (task.future != null) {
+				try {
+					task.future.get();
+				} catch (CancellationException | ExecutionException e) {
+					// errors are logged by task
+				}
+			}
+			tasks.poll();
+			if (task.file == null) {
+				matcher.apiSearchFinished(task.api, phrase);
 				if (debugMode) {
-					LOG.info("API search done <" + phrase + "> API=<" + api + ">");
+					LOG.info("Parallel API search done <" + phrase + "> API=<" + task.api + ">");
+				}
+			} else {
+				matcher.publishFileSearchResults(task.api, task.fileMatcher, task.results, task.resultKeys, phrase);
+			}
+		}
+	}
+
+	private static class FileSearchTask implements Runnable, ResultMatcher<SearchResult> {
+		private final SearchCoreAPI api;
+		private final BinaryMapIndexReader file;
+		private final SearchPhrase filePhrase;
+		private final SearchResultMatcher matcher;
+		private final SearchResultMatcher fileMatcher;
+		// results and events in order of publishing, matcher is not thread safe
+		private final List<SearchResult> results = new ArrayList<>();
+		// shared by tasks of API search, used by publishing thread only
+		private final Set<String> resultKeys;
+		private Future<?> future;
+
+		FileSearchTask(SearchCoreAPI api, SearchPhrase phrase, BinaryMapIndexReader file, SearchResultMatcher matcher,
+				Set<String> resultKeys, AtomicInteger limitCounter) {
+			this.api = api;
+			this.file = file;
+			this.matcher = matcher;
+			this.resultKeys = resultKeys;
+			this.filePhrase = file == null ? null : phrase.copyWithFiles(Collections.singletonList(file));
+			this.fileMatcher = file == null ? null : matcher.createFileMatcher(this, filePhrase, limitCounter);
+		}
+
+		@Override
+		public void run() {
+			if (matcher.isCancelled()) {
+				return;
+			}
+			try {
+				// reader is not thread safe and could be searched by several APIs
+				synchronized (file) {
+					api.search(filePhrase, fileMatcher);
 				}
 			} catch (Throwable e) {
 				e.printStackTrace();
 				LOG.error(e.getMessage(), e);
 			}
 		}
+
+		@Override
+		public boolean publish(SearchResult object) {
+			results.add(object);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return matcher.isCancelled();
+		}
 	}
 
 	private void preparePhrase(final SearchPhrase phrase) {
@@ -680,6 +846,7 @@ public class SearchUICore {
 		private final int totalLimit;
 		private SearchResult parentSearchResult;
 		private final AtomicInteger requestNumber;
+		private AtomicInteger limitCounter;
 		int count = 0;
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
@@ -783,6 +950,10 @@ public class SearchUICore {
 				object.alternateName = null;
 			}
 			object.parentSearchResult = parentSearchResult;
+			return publishResult(object);
+		}
+
+		private boolean publishResult(SearchResult object) {
 			if (matcher == null || matcher.publish(object)) {
 				count++;
 				if (totalLimit == -1 || count < totalLimit) {
@@ -792,6 +963,52 @@ public class SearchUICore {
 			}
 			return false;
 		}
+
+		// matcher collecting results of one file search task, they are published by publishFileSearchResults
+		private SearchResultMatcher createFileMatcher(ResultMatcher<SearchResult> collector, SearchPhrase filePhrase,
+				AtomicInteger limitCounter) {
+			SearchResultMatcher fileMatcher = new SearchResultMatcher(collector, filePhrase, request, requestNumber, -1);
+			fileMatcher.parentSearchResult = parentSearchResult;
+			fileMatcher.limitCounter = limitCounter;
+			return fileMatcher;
+		}
+
+		/**
+		 * Counter of objects checked against limit of API search (like SearchAmenityByNameAPI.LIMIT).
+		 * It is new for every call except parallel search of files, where it is shared by all files of API search.
+		 */
+		public AtomicInteger getLimitCounter() {
+			return limitCounter != null ? limitCounter : new AtomicInteger();
+		}
+
+		// results are published in order of files as by search of all files, so first found duplicate is kept
+		private void publishFileSearchResults(SearchCoreAPI api, SearchResultMatcher fileMatcher,
+				List<SearchResult> results, Set<String> resultKeys, SearchPhrase phrase) {
+			for (SearchResult r : results) {
+				if (r.objectType == ObjectType.SEARCH_API_REGION_FINISHED) {
+					apiSearchRegionFinished(api, r.file, phrase);
+				} else {
+					String key = api instanceof SearchBaseAPI ? ((SearchBaseAPI) api).getFileParallelResultKey(r) : null;
+					if (key != null && !resultKeys.add(key)) {
+						continue;
+					}
+					if (r.requiredSearchPhrase == fileMatcher.phrase) {
+						r.requiredSearchPhrase = phrase;
+					}
+					publishResult(r);
+				}
+			}
+			if (fileMatcher.exportedObjects != null) {
+				for (MapObject o : fileMatcher.exportedObjects) {
+					exportObject(phrase, o);
+				}
+			}
+			if (fileMatcher.exportedCities != null) {
+				for (City c : fileMatcher.exportedCities) {
+					exportCity(phrase, c);
+				}
+			}
+		}
 		
 		@Override
 		public boolean isCancelled() {
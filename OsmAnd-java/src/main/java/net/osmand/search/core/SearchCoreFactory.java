@@ -54,6 +54,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class SearchCoreFactory {
@@ -146,6 +147,22 @@ public class SearchCoreFactory {
 			return 0;
 		}
 
+		/**
+		 * @return true if files could be searched separately and in parallel (see SearchUICore#setSearchThreads),
+		 * search is called then with phrase limited to one file and must not keep state between calls
+		 */
+		public boolean isFileParallelSearchAvailable() {
+			return false;
+		}
+
+		/**
+		 * @return key of result found by parallel search of one file (see isFileParallelSearchAvailable), results of
+		 * files with the same key are published once as by search of all files, null if results are not deduplicated
+		 */
+		public String getFileParallelResultKey(SearchResult r) {
+			return null;
+		}
+
 		protected void subSearchApiOrPublish(SearchPhrase phrase, SearchResultMatcher resultMatcher, SearchResult res, SearchBaseAPI api)
 				throws IOException {
 			subSearchApiOrPublish(phrase, resultMatcher, res, api, true);
@@ -268,6 +285,11 @@ public class SearchCoreFactory {
 			}
 			return SEARCH_REGION_API_PRIORITY;
 		}
+
+		@Override
+		public boolean isFileParallelSearchAvailable() {
+			return true;
+		}
 	}
 
 	public static class SearchAddressByNameAPI extends SearchBaseAPI {
@@ -378,7 +400,7 @@ public class SearchCoreFactory {
 					res.objectType = ObjectType.CITY;
 					if (phrase.isEmptyQueryAllowed() && phrase.isEmpty()) {
 						resultMatcher.publish(res);
-					} else if (nm.matches(res.localeName) || nm.matches(res.otherNames)) {
+					} else if (nm.matches(c, res.localeName) || nm.matches(c, res.otherNames)) {
 						subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
 					}
 					if (limit++ > LIMIT * phrase.getRadiusLevel()) {
@@ -570,6 +592,7 @@ public class SearchCoreFactory {
 			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
 			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
 			final Set<String> ids = new HashSet<String>();
+			final AtomicInteger limit = resultMatcher.getLimitCounter();
 
 			ResultMatcher<Amenity> rawDataCollector = null;
 			if (phrase.getSettings().isExportObjects()) {
@@ -589,17 +612,16 @@ public class SearchCoreFactory {
 			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
 					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
 					(int) bbox.bottom, new ResultMatcher<Amenity>() {
-						int limit = 0;
 
 						@Override
 						public boolean publish(Amenity object) {
 							if (phrase.getSettings().isExportObjects()) {
 								resultMatcher.exportObject(phrase, object);
 							}
-							if (limit++ > LIMIT) {
+							if (limit.getAndIncrement() > LIMIT) {
 								return false;
 							}
-							String poiID = object.getType().getKeyName() + "_" + object.getId();
+							String poiID = getAmenityKey(object);
 							if (ids.contains(poiID)) {
 								return false;
 							}
@@ -607,7 +629,7 @@ public class SearchCoreFactory {
 							sr.otherNames = object.getOtherNames(true);
 							sr.localeName = object.getName(phrase.getSettings().getLang(),
 									phrase.getSettings().isTransliterate());
-							if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
+							if (!nm.matches(object, sr.localeName) && !nm.matches(object, sr.otherNames)
 									&& !nm.matches(object.getAdditionalInfoValues(false))) {
 								return false;
 							}
@@ -633,7 +655,7 @@ public class SearchCoreFactory {
 
 						@Override
 						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT);
+							return resultMatcher.isCancelled() && (limit.get() < LIMIT);
 						}
 					}, rawDataCollector);
 
@@ -647,6 +669,10 @@ public class SearchCoreFactory {
 			return true;
 		}
 
+		private static String getAmenityKey(Amenity a) {
+			return a.getType().getKeyName() + "_" + a.getId();
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (p.hasObjectType(ObjectType.POI) ||
@@ -676,6 +702,16 @@ public class SearchCoreFactory {
 		public int getNextSearchRadius(SearchPhrase phrase) {
 			return phrase.getNextRadiusSearch(BBOX_RADIUS);
 		}
+
+		@Override
+		public boolean isFileParallelSearchAvailable() {
+			return true;
+		}
+
+		@Override
+		public String getFileParallelResultKey(SearchResult r) {
+			return r.object instanceof Amenity ? getAmenityKey((Amenity) r.object) : null;
+		}
 	}
 
 	protected static class PoiTypeResult {
@@ -1141,7 +1177,7 @@ public class SearchCoreFactory {
 						}
 					}
 					if (ns != null) {
-						if (ns.matches(res.localeName) || ns.matches(res.otherNames)) {
+						if (ns.matches(object, res.localeName) || ns.matches(object, res.otherNames)) {
 							phrase.countUnknownWordsMatchMainResult(res, countExtraWords);
 						} else {
 							String ref = object.getTagContent(Amenity.REF, null);
@@ -1265,7 +1301,7 @@ public class SearchCoreFactory {
 						// streets related to city
 						pub = false;
 					} else if (phrase.isUnknownSearchWordPresent()
-							&& !(nm.matches(res.localeName) || nm.matches(res.otherNames))) {
+							&& !(nm.matches(object, res.localeName) || nm.matches(object, res.otherNames))) {
 						continue;
 					}
 					res.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
@@ -13,6 +13,7 @@ import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.CommonWords;
 import net.osmand.data.LatLon;
+import net.osmand.data.MapObject;
 import net.osmand.data.QuadRect;
 import net.osmand.osm.AbstractPoiType;
 import net.osmand.util.Algorithms;
@@ -189,7 +190,27 @@ public class SearchPhrase {
 	public static SearchPhrase emptyPhrase(SearchSettings settings, Collator clt) {
 		return new SearchPhrase(settings, clt);
 	}
-	
+
+	// copy limited to given files to search them in parallel, name matchers are not copied:
+	// phrase lazily creates them and is not thread safe
+	public SearchPhrase copyWithFiles(List<BinaryMapIndexReader> files) {
+		SearchPhrase sp = new SearchPhrase(settings, clt);
+		sp.indexes = new ArrayList<>(files);
+		sp.fullTextSearchPhrase = fullTextSearchPhrase;
+		sp.unknownSearchPhrase = unknownSearchPhrase;
+		sp.words = new ArrayList<>(words);
+		sp.firstUnknownSearchWord = firstUnknownSearchWord;
+		sp.otherUnknownWords = new ArrayList<>(otherUnknownWords);
+		sp.lastUnknownSearchWordComplete = lastUnknownSearchWordComplete;
+		sp.mainUnknownWordToSearch = mainUnknownWordToSearch;
+		sp.mainUnknownSearchWordComplete = mainUnknownSearchWordComplete;
+		sp.unselectedPoiType = unselectedPoiType;
+		if (cache1kmRect != null) {
+			sp.cache1kmRect = new QuadRect(cache1kmRect);
+		}
+		return sp;
+	}
+
 	// init search phrase
 	private SearchPhrase createNewSearchPhrase(final SearchSettings settings, String fullText, List<SearchWord> foundWords,
 											   String textToSearch) {
@@ -781,6 +802,28 @@ public class SearchPhrase {
 		public boolean matches(String name) {
 			return sm.matches(name);
 		}
+
+		/**
+		 * Matches name of object using normalized names cached in object (if it is not null)
+		 */
+		public boolean matches(MapObject object, String name) {
+			if (object == null || name == null) {
+				return matches(name);
+			}
+			return sm.matches(object.getNormalizedName(name));
+		}
+
+		public boolean matches(MapObject object, Collection<String> names) {
+			if (names == null) {
+				return false;
+			}
+			for (String v : names) {
+				if (matches(object, v)) {
+					return true;
+				}
+			}
+			return false;
+		}
 		
 	}
 	
@@ -795,6 +838,7 @@ public class SearchPhrase {
 	
 	public int countUnknownWordsMatch(SearchResult sr, String localeName, Collection<String> otherNames, int amountMatchingWords) {
 		int r = 0;
+		MapObject object = sr.object instanceof MapObject ? (MapObject) sr.object : null;
 		if (otherUnknownWords.size() > 0) {
 			for (int i = 0; i < otherUnknownWords.size(); i++) {
 				boolean match = false;
@@ -802,7 +846,7 @@ public class SearchPhrase {
 					match = true;
 				} else {
 					NameStringMatcher ms = getUnknownNameStringMatcher(i);
-					if (ms.matches(localeName) || ms.matches(otherNames)) {
+					if (ms.matches(object, localeName) || ms.matches(object, otherNames)) {
 						match = true;
 					}
 				}
@@ -820,8 +864,8 @@ public class SearchPhrase {
 			r++;
 		} else {
 			boolean match = localeName.equals(getFirstUnknownSearchWord())
-					|| getFirstUnknownNameStringMatcher().matches(localeName)
-					|| getFirstUnknownNameStringMatcher().matches(otherNames);
+					|| getFirstUnknownNameStringMatcher().matches(object, localeName)
+					|| getFirstUnknownNameStringMatcher().matches(object, otherNames);
 			if(match) {
 				r++;
 			}
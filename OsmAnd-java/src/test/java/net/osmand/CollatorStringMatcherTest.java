@@ -0,0 +1,91 @@
+package net.osmand;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Locale;
+
+public class CollatorStringMatcherTest {
+
+	private static final String[] NAMES = {
+			"Auhofstraße", "Auhofstrasse", "Café de Flore", "CAFE DE FLORE", "Rue de l'Église", "Øresund Bridge",
+			"Moscow Ленинградский проспект", "Šumava", "sumava park", "Dvůr Králové", "123 Main St.", "", "a",
+			"Café", "Straße 2", "Mühle-Weg"
+	};
+
+	private static final String[] PARTS = {
+			"auhofstrasse", "auhof", "strasse", "cafe", "Café de", "de", "flore", "église", "eglise", "ленинград",
+			"проспект", "sumava", "Šum", "kralove", "main", "123 main", "st.", "a", "", "muhle", "weg", "2", "bridge"
+	};
+
+	private static final String[] DANISH_NAMES = {
+			"Aalborg", "Ålborg", "Haandværkervej", "Håndværkervej", "Vestergade", "Aarhus Å", "Ærø", "Kaas",
+			"Kås", "Baadehavn", "Maarup Kirke", "Fredrikstad", "Blåvand"
+	};
+
+	private static final String[] DANISH_PARTS = {
+			"aalborg", "ålborg", "aa", "å", "a", "haand", "hånd", "gade", "aarhus", "århus", "ærø", "kaas", "kås",
+			"ka", "baade", "båd", "blaa", "blå", "kirke", "stad"
+	};
+
+	@Test
+	public void testKeysMatchCollator() {
+		assertKeysMatchCollator(NAMES, PARTS);
+	}
+
+	@Test
+	public void testKeysMatchCollatorWithContractions() {
+		Locale defaultLocale = Locale.getDefault();
+		try {
+			for (String language : new String[] {"da", "nb"}) {
+				Locale.setDefault(new Locale(language));
+				assertKeysMatchCollator(NAMES, PARTS);
+				assertKeysMatchCollator(DANISH_NAMES, DANISH_PARTS);
+			}
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	private static void assertKeysMatchCollator(String[] names, String[] parts) {
+		Collator collator = OsmAndCollator.primaryCollator();
+		for (StringMatcherMode mode : StringMatcherMode.values()) {
+			for (String part : parts) {
+				CollatorStringMatcher matcher = new CollatorStringMatcher(part, mode);
+				for (String name : names) {
+					boolean expected = matchesByCollator(collator, name, part, mode);
+					String msg = Locale.getDefault() + " " + mode + " '" + part + "' in '" + name + "'";
+					Assert.assertEquals(msg, expected, matcher.matches(name));
+					Assert.assertEquals(msg, expected, matcher.matches(NormalizedName.of(name)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNormalizedKey() {
+		NormalizedName n1 = NormalizedName.of("Café Straße");
+		NormalizedName n2 = NormalizedName.of("CAFE STRASSE");
+		Assert.assertEquals("café strasse", n1.getText());
+		Assert.assertNotNull(n1.getKey());
+		Assert.assertArrayEquals(n1.getKey(), n2.getKey());
+		Assert.assertNotNull(NormalizedName.of("Moscow Ленинградский проспект").getKey());
+		Assert.assertNotNull(NormalizedName.of("Rue de l'Église").getKey());
+	}
+
+	// reproduces preparation of part done by CollatorStringMatcher constructor
+	private static boolean matchesByCollator(Collator collator, String name, String part, StringMatcherMode mode) {
+		part = CollatorStringMatcher.simplifyStringAndAlignChars(part);
+		if (part.length() > 0 && part.charAt(part.length() - 1) == '.') {
+			part = part.substring(0, part.length() - 1);
+			if (mode == StringMatcherMode.CHECK_EQUALS_FROM_SPACE) {
+				mode = StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+			} else if (mode == StringMatcherMode.CHECK_EQUALS) {
+				mode = StringMatcherMode.CHECK_ONLY_STARTS_WITH;
+			}
+		}
+		return CollatorStringMatcher.cmatches(collator, name, part, mode);
+	}
+}
@@ -0,0 +1,68 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+public class GPXBinaryCacheTest {
+
+	private static final String GPX = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<gpx version='1.1' creator='test' xmlns='http://www.topografix.com/GPX/1/1' xmlns:osmand='https://osmand.net'>"
+			+ "<metadata><name>Trip</name><desc>Über Berge</desc><author><name>a</name></author>"
+			+ "<bounds minlat='1' minlon='2' maxlat='3' maxlon='4'/></metadata>"
+			+ "<wpt lat='52.1' lon='4.3'><name>Café</name><extensions><osmand:icon>flag</osmand:icon></extensions></wpt>"
+			+ "<rte><name>r</name><rtept lat='52.2' lon='4.4'/></rte>"
+			+ "<trk><name>t1</name><trkseg>"
+			+ "<trkpt lat='52.1' lon='4.3'><ele>1.5</ele><time>2020-09-13T12:26:40Z</time></trkpt>"
+			+ "<trkpt lat='52.2' lon='4.4'><ele>2.5</ele><time>2020-09-13T12:26:41Z</time><hdop>3</hdop></trkpt>"
+			+ "</trkseg><trkseg><trkpt lat='10' lon='179.5'/><trkpt lat='11' lon='-179.5'/></trkseg></trk>"
+			+ "<extensions><osmand:color>#ff0000</osmand:color></extensions></gpx>";
+
+	private static File createGpx(String content) throws IOException {
+		File f = File.createTempFile("test", ".gpx");
+		Writer w = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+		try {
+			w.write(content);
+		} finally {
+			w.close();
+		}
+		return f;
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		File gpx = createGpx(GPX);
+		File cache = GPXBinaryCache.getDefaultFile(gpx);
+		try {
+			GPXFile parsed = GPXBinaryCache.loadGPXFile(gpx, cache, false);
+			Assert.assertNull(parsed.error);
+			Assert.assertTrue(cache.exists());
+			GPXFile cached = GPXBinaryCache.read(cache, gpx, false);
+			Assert.assertNotNull(cached);
+			Assert.assertEquals(GPXUtilities.asString(parsed), GPXUtilities.asString(cached));
+			Assert.assertEquals(parsed.tracks.size(), cached.tracks.size());
+			Assert.assertEquals(parsed.getAllSegmentsPoints().size(), cached.getAllSegmentsPoints().size());
+
+			GPXFile packed = GPXBinaryCache.loadGPXFile(gpx, cache, true);
+			Assert.assertTrue(packed.tracks.get(1).segments.get(0).isPacked());
+			Assert.assertEquals(GPXUtilities.asString(parsed), GPXUtilities.asString(packed));
+
+			// cache of other version of gpx is ignored
+			Assert.assertTrue(gpx.setLastModified(gpx.lastModified() - 10000));
+			Assert.assertNull(GPXBinaryCache.read(cache, gpx, false));
+			GPXFile reparsed = GPXBinaryCache.loadGPXFile(gpx, cache, false);
+			Assert.assertEquals(GPXUtilities.asString(parsed), GPXUtilities.asString(reparsed));
+			Assert.assertNotNull(GPXBinaryCache.read(cache, gpx, false));
+		} finally {
+			gpx.delete();
+			cache.delete();
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXStreamHandler;
+import net.osmand.GPXUtilities.GPXStreamWriter;
+import net.osmand.GPXUtilities.Route;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GPXStreamTest {
+
+	static final String GPX = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<gpx version='1.1' creator='test' xmlns='http://www.topografix.com/GPX/1/1' xmlns:osmand='https://osmand.net'>"
+			+ "<metadata><name>Trip</name><desc>Über Berge</desc><time>2020-09-13T12:00:00Z</time></metadata>"
+			+ "<wpt lat='52.1' lon='4.3'><name>Café</name><type>food</type>"
+			+ "<extensions><osmand:icon>flag</osmand:icon><osmand:color>#00ff00</osmand:color></extensions></wpt>"
+			+ "<wpt lat='52.3' lon='4.5'><name>Hut</name></wpt>"
+			+ "<rte><name>r</name><rtept lat='52.2' lon='4.4'><name>start</name></rtept><rtept lat='52.25' lon='4.45'/>"
+			+ "<extensions><osmand:line_3d_visualization_by_type>altitude</osmand:line_3d_visualization_by_type></extensions></rte>"
+			+ "<trk><name>t1</name><desc>first</desc><trkseg><name>s1</name>"
+			+ "<trkpt lat='52.1' lon='4.3'><ele>1.5</ele><time>2020-09-13T12:26:40Z</time>"
+			+ "<extensions><osmand:speed>2.5</osmand:speed><osmand:heading>90</osmand:heading></extensions></trkpt>"
+			+ "<trkpt lat='52.2' lon='4.4'><ele>2.5</ele><time>2020-09-13T12:26:41Z</time><hdop>3</hdop></trkpt>"
+			+ "<extensions><osmand:segment_color>#0000ff</osmand:segment_color></extensions>"
+			+ "</trkseg><trkseg><trkpt lat='10' lon='12'/><trkpt lat='11' lon='13'/><trkpt lat='12' lon='14'/></trkseg>"
+			+ "<extensions><osmand:width>thin</osmand:width></extensions></trk>"
+			+ "<trk><name>t2</name><trkseg><trkpt lat='1' lon='2'/></trkseg></trk>"
+			+ "<extensions><osmand:color>#ff0000</osmand:color></extensions></gpx>";
+
+	private static InputStream stream(String s) throws UnsupportedEncodingException {
+		return new ByteArrayInputStream(s.getBytes("UTF-8"));
+	}
+
+	private static class RecordingHandler extends GPXStreamHandler {
+		final StringBuilder events = new StringBuilder();
+		final List<WptPt> trackPoints = new ArrayList<>();
+		final List<WptPt> wayPoints = new ArrayList<>();
+		final List<WptPt> routePoints = new ArrayList<>();
+		int cancelAfterPoints = -1;
+
+		@Override
+		public void startTrack(Track track) {
+			events.append("trk ");
+		}
+
+		@Override
+		public void startSegment(Track track, TrkSegment segment) {
+			events.append("seg ");
+		}
+
+		@Override
+		public void trackPoint(Track track, TrkSegment segment, WptPt point) {
+			events.append("pt ");
+			trackPoints.add(point);
+		}
+
+		@Override
+		public void endSegment(Track track, TrkSegment segment) {
+			events.append("/seg(").append(segment.name).append(") ");
+		}
+
+		@Override
+		public void endTrack(Track track) {
+			events.append("/trk(").append(track.name).append(") ");
+		}
+
+		@Override
+		public void wayPoint(GPXFile file, WptPt point) {
+			wayPoints.add(point);
+		}
+
+		@Override
+		public void routePoint(Route route, WptPt point) {
+			routePoints.add(point);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelAfterPoints >= 0 && trackPoints.size() >= cancelAfterPoints;
+		}
+	}
+
+	private static void assertSamePoint(WptPt expected, WptPt actual) {
+		Assert.assertEquals(expected.lat, actual.lat, 0);
+		Assert.assertEquals(expected.lon, actual.lon, 0);
+		Assert.assertEquals(expected.ele, actual.ele, 0);
+		Assert.assertEquals(expected.time, actual.time);
+		Assert.assertEquals(expected.hdop, actual.hdop, 0);
+		Assert.assertEquals(expected.speed, actual.speed, 0);
+		Assert.assertEquals(expected.name, actual.name);
+		Assert.assertEquals(expected.getExtensionsToRead(), actual.getExtensionsToRead());
+	}
+
+	@Test
+	public void testLoadedFile() throws IOException {
+		GPXFile gpx = GPXUtilities.loadGPXFile(stream(GPX));
+		Assert.assertNull(gpx.error);
+		Assert.assertEquals("test", gpx.author);
+		Assert.assertEquals("Trip", gpx.metadata.name);
+		Assert.assertEquals("Über Berge", gpx.metadata.desc);
+		Assert.assertEquals("#ff0000", gpx.getExtensionsToRead().get("color"));
+
+		Assert.assertEquals(2, gpx.getPoints().size());
+		WptPt cafe = gpx.getPoints().get(0);
+		Assert.assertEquals("Café", cafe.name);
+		Assert.assertEquals("food", cafe.category);
+		Assert.assertEquals("flag", cafe.getIconName());
+		Assert.assertEquals("#00ff00", cafe.getExtensionsToRead().get("color"));
+
+		Assert.assertEquals(1, gpx.routes.size());
+		Route route = gpx.routes.get(0);
+		Assert.assertEquals("r", route.name);
+		Assert.assertEquals(2, route.points.size());
+		Assert.assertEquals("start", route.points.get(0).name);
+		Assert.assertEquals("altitude", route.getExtensionsToRead().get("line_3d_visualization_by_type"));
+
+		// general track goes first
+		Assert.assertEquals(3, gpx.tracks.size());
+		Assert.assertTrue(gpx.tracks.get(0).generalTrack);
+		Track t1 = gpx.tracks.get(1);
+		Assert.assertEquals("t1", t1.name);
+		Assert.assertEquals("first", t1.desc);
+		Assert.assertEquals("thin", t1.getExtensionsToRead().get("width"));
+		Assert.assertEquals(2, t1.segments.size());
+		TrkSegment s1 = t1.segments.get(0);
+		Assert.assertEquals("s1", s1.name);
+		Assert.assertEquals("#0000ff", s1.getExtensionsToRead().get("segment_color"));
+		Assert.assertEquals(2, s1.points.size());
+		WptPt p = s1.points.get(0);
+		Assert.assertEquals(1.5, p.ele, 0);
+		Assert.assertEquals(1600000000000L, p.time);
+		Assert.assertEquals(2.5, p.speed, 0);
+		Assert.assertEquals("90", p.getExtensionsToRead().get("heading"));
+		Assert.assertEquals(3, s1.points.get(1).hdop, 0);
+		Assert.assertEquals(3, t1.segments.get(1).points.size());
+		Assert.assertEquals("t2", gpx.tracks.get(2).name);
+		Assert.assertEquals(6, gpx.getAllSegmentsPoints().size());
+
+		// written file is read back the same
+		String written = GPXUtilities.asString(gpx);
+		Assert.assertEquals(written, GPXUtilities.asString(GPXUtilities.loadGPXFile(stream(written))));
+	}
+
+	@Test
+	public void testStreamedPointsAreLoadedPoints() throws IOException {
+		GPXFile loaded = GPXUtilities.loadGPXFile(stream(GPX));
+		RecordingHandler handler = new RecordingHandler();
+		GPXFile streamed = GPXUtilities.streamGPXFile(stream(GPX), handler);
+		Assert.assertNull(streamed.error);
+		Assert.assertEquals("trk seg pt pt /seg(s1) seg pt pt pt /seg(null) /trk(t1) trk seg pt /seg(null) /trk(t2) ",
+				handler.events.toString());
+
+		// containers are kept without points
+		Assert.assertEquals(loaded.metadata.name, streamed.metadata.name);
+		Assert.assertEquals(loaded.getExtensionsToRead(), streamed.getExtensionsToRead());
+		Assert.assertEquals(2, streamed.tracks.size());
+		Assert.assertEquals(2, streamed.tracks.get(0).segments.size());
+		Assert.assertEquals(loaded.tracks.get(1).segments.get(0).getExtensionsToRead(),
+				streamed.tracks.get(0).segments.get(0).getExtensionsToRead());
+		Assert.assertEquals(loaded.tracks.get(1).getExtensionsToRead(), streamed.tracks.get(0).getExtensionsToRead());
+		Assert.assertTrue(streamed.getPoints().isEmpty());
+		Assert.assertTrue(streamed.routes.get(0).points.isEmpty());
+		Assert.assertEquals(loaded.routes.get(0).getExtensionsToRead(), streamed.routes.get(0).getExtensionsToRead());
+		for (Track t : streamed.tracks) {
+			for (TrkSegment s : t.segments) {
+				Assert.assertTrue(s.points.isEmpty());
+			}
+		}
+
+		List<WptPt> loadedTrackPoints = new ArrayList<>();
+		for (Track t : loaded.tracks) {
+			if (!t.generalTrack) {
+				for (TrkSegment s : t.segments) {
+					loadedTrackPoints.addAll(s.points);
+				}
+			}
+		}
+		Assert.assertEquals(loadedTrackPoints.size(), handler.trackPoints.size());
+		for (int i = 0; i < loadedTrackPoints.size(); i++) {
+			assertSamePoint(loadedTrackPoints.get(i), handler.trackPoints.get(i));
+		}
+		Assert.assertEquals(loaded.getPoints().size(), handler.wayPoints.size());
+		for (int i = 0; i < handler.wayPoints.size(); i++) {
+			assertSamePoint(loaded.getPoints().get(i), handler.wayPoints.get(i));
+		}
+		Assert.assertEquals(loaded.routes.get(0).points.size(), handler.routePoints.size());
+		for (int i = 0; i < handler.routePoints.size(); i++) {
+			assertSamePoint(loaded.routes.get(0).points.get(i), handler.routePoints.get(i));
+		}
+	}
+
+	@Test
+	public void testCancelledStreamHasError() throws IOException {
+		RecordingHandler handler = new RecordingHandler();
+		handler.cancelAfterPoints = 3;
+		GPXFile streamed = GPXUtilities.streamGPXFile(stream(GPX), handler);
+		Assert.assertTrue(streamed.error instanceof InterruptedException);
+		Assert.assertEquals(3, handler.trackPoints.size());
+		Assert.assertFalse(handler.events.toString().contains("/trk"));
+	}
+
+	@Test
+	public void testStreamWriterWritesSameGpx() throws IOException {
+		GPXFile gpx = GPXUtilities.loadGPXFile(stream(GPX));
+		StringWriter out = new StringWriter();
+		GPXStreamWriter writer = new GPXStreamWriter(out, gpx, null);
+		for (Track t : gpx.tracks) {
+			if (t.generalTrack) {
+				continue;
+			}
+			writer.startTrack(t);
+			for (TrkSegment s : t.segments) {
+				writer.startSegment(s);
+				for (WptPt p : s.points) {
+					writer.writeTrackPoint(p);
+				}
+				writer.endSegment(s);
+			}
+			writer.endTrack(t);
+		}
+		writer.finish();
+		Assert.assertEquals(GPXUtilities.asString(gpx), out.toString());
+
+		// streamed file is written without keeping points,
+		// name of segment is read after its start so it is not written
+		String unnamed = GPX.replace("<name>s1</name>", "");
+		gpx = GPXUtilities.loadGPXFile(stream(unnamed));
+		final StringWriter streamOut = new StringWriter();
+		GPXFile header = GPXUtilities.loadGPXFile(stream(unnamed));
+		header.tracks.clear();
+		final GPXStreamWriter streamWriter = new GPXStreamWriter(streamOut, header, null);
+		GPXUtilities.streamGPXFile(stream(unnamed), new GPXStreamHandler() {
+			@Override
+			public void startTrack(Track track) {
+				write("trk", track, null, null);
+			}
+
+			@Override
+			public void startSegment(Track track, TrkSegment segment) {
+				write("seg", track, segment, null);
+			}
+
+			@Override
+			public void trackPoint(Track track, TrkSegment segment, WptPt point) {
+				write("pt", track, segment, point);
+			}
+
+			@Override
+			public void endSegment(Track track, TrkSegment segment) {
+				write("/seg", track, segment, null);
+			}
+
+			@Override
+			public void endTrack(Track track) {
+				write("/trk", track, null, null);
+			}
+
+			private void write(String event, Track track, TrkSegment segment, WptPt point) {
+				try {
+					switch (event) {
+						case "trk":
+							// name of track is known at its end
+							break;
+						case "seg":
+							if (track.segments.get(0) == segment) {
+								streamWriter.startTrack(track);
+							}
+							streamWriter.startSegment(segment);
+							break;
+						case "pt":
+							streamWriter.writeTrackPoint(point);
+							break;
+						case "/seg":
+							streamWriter.endSegment(segment);
+							break;
+						case "/trk":
+							streamWriter.endTrack(track);
+							break;
+					}
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		streamWriter.finish();
+		Assert.assertEquals(GPXUtilities.asString(gpx), streamOut.toString());
+	}
+}
@@ -0,0 +1,180 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.IncrementalTrackAnalysis;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class GPXTrackAnalysisTest {
+
+	private static final long TIME = 1600000000000L;
+
+	private static GPXFile createGpx(boolean withTime, boolean withSpeed) {
+		GPXFile gpx = new GPXFile("test");
+		Track track = new Track();
+		int[] sizes = {120, 1, 300, 45, 200};
+		long time = TIME;
+		int k = 0;
+		for (int size : sizes) {
+			TrkSegment segment = new TrkSegment();
+			for (int i = 0; i < size; i++, k++) {
+				double ele = k % 11 == 0 ? Double.NaN : 100 + 20 * Math.sin(k / 15.0);
+				double speed = withSpeed && k > 200 ? 1 + (k % 4) : 0;
+				time += 1000 + (k % 3) * 500;
+				WptPt p = new WptPt(48.1 + k * 0.0002, 11.5 + Math.cos(k / 30.0) * 0.001, withTime ? time : 0,
+						ele, speed, k % 5 == 0 ? Double.NaN : 3 + k % 7);
+				segment.points.add(p);
+			}
+			track.segments.add(segment);
+		}
+		gpx.tracks.add(track);
+		return gpx;
+	}
+
+	private static void assertAnalysisEquals(GPXTrackAnalysis a, GPXTrackAnalysis b, boolean checkElevationDiffs) {
+		Assert.assertEquals(a.totalTracks, b.totalTracks);
+		Assert.assertEquals(a.points, b.points);
+		Assert.assertEquals(a.totalDistance, b.totalDistance, 0.01);
+		Assert.assertEquals(a.startTime, b.startTime);
+		Assert.assertEquals(a.endTime, b.endTime);
+		Assert.assertEquals(a.timeSpan, b.timeSpan);
+		Assert.assertEquals(a.timeMoving, b.timeMoving);
+		Assert.assertEquals(a.totalDistanceMoving, b.totalDistanceMoving, 0.01);
+		// sums are float, partial sums of parallel analysis are rounded differently
+		Assert.assertEquals(a.avgElevation, b.avgElevation, 1e-3);
+		Assert.assertEquals(a.minElevation, b.minElevation, 0);
+		Assert.assertEquals(a.maxElevation, b.maxElevation, 0);
+		Assert.assertEquals(a.minSpeed, b.minSpeed, 0);
+		Assert.assertEquals(a.maxSpeed, b.maxSpeed, 0);
+		Assert.assertEquals(a.avgSpeed, b.avgSpeed, 1e-4);
+		Assert.assertEquals(a.minHdop, b.minHdop, 0);
+		Assert.assertEquals(a.maxHdop, b.maxHdop, 0);
+		Assert.assertEquals(a.left, b.left, 0);
+		Assert.assertEquals(a.right, b.right, 0);
+		Assert.assertEquals(a.top, b.top, 0);
+		Assert.assertEquals(a.bottom, b.bottom, 0);
+		Assert.assertEquals(a.hasElevationData, b.hasElevationData);
+		Assert.assertEquals(a.hasSpeedData, b.hasSpeedData);
+		Assert.assertEquals(a.hasSpeedInTrack, b.hasSpeedInTrack);
+		Assert.assertEquals(a.locationStart.lat, b.locationStart.lat, 0);
+		Assert.assertEquals(a.locationEnd.lat, b.locationEnd.lat, 0);
+		Assert.assertEquals(a.elevationData.size(), b.elevationData.size());
+		for (int i = 0; i < a.speedData.size(); i++) {
+			Assert.assertEquals(a.speedData.get(i).speed, b.speedData.get(i).speed, 0);
+			Assert.assertEquals(a.speedData.get(i).time, b.speedData.get(i).time);
+		}
+		if (checkElevationDiffs) {
+			Assert.assertEquals(a.diffElevationUp, b.diffElevationUp, 1e-6);
+			Assert.assertEquals(a.diffElevationDown, b.diffElevationDown, 1e-6);
+		}
+	}
+
+	@Test
+	public void testParallel() {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (boolean withSpeed : new boolean[] {false, true}) {
+				GPXFile gpx = createGpx(true, withSpeed);
+				GPXTrackAnalysis serial = gpx.getAnalysis(0);
+				GPXTrackAnalysis parallel = gpx.getAnalysis(0, null, null, executor);
+				assertAnalysisEquals(serial, parallel, true);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testParallelSegmentsStartingWithoutSpeed() {
+		GPXFile gpx = createGpx(true, true);
+		// speed of first points is derived from distance only if previous segments have no speed
+		for (TrkSegment segment : gpx.tracks.get(0).segments) {
+			for (int i = 0; i < Math.min(3, segment.points.size()); i++) {
+				segment.points.get(i).speed = 0;
+			}
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			assertAnalysisEquals(gpx.getAnalysis(0), gpx.getAnalysis(0, null, null, executor), true);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testIncremental() {
+		for (boolean withTime : new boolean[] {false, true}) {
+			GPXFile gpx = createGpx(withTime, true);
+			IncrementalTrackAnalysis incremental = new IncrementalTrackAnalysis();
+			for (TrkSegment segment : gpx.tracks.get(0).segments) {
+				incremental.startSegment();
+				for (WptPt p : segment.points) {
+					incremental.addPoint(new WptPt(p));
+				}
+			}
+			GPXTrackAnalysis full = gpx.getAnalysis(0);
+			// window of elevation averaging is fixed for points without time
+			assertAnalysisEquals(full, incremental.getAnalysis(0), !withTime);
+			if (withTime) {
+				Assert.assertEquals(full.diffElevationUp, incremental.getAnalysis(0).diffElevationUp,
+						full.diffElevationUp * 0.2);
+			}
+		}
+	}
+
+	@Test
+	public void testIncrementalPartiallyTimed() {
+		GPXFile gpx = createGpx(true, true);
+		GPXTrackAnalysis timed = analyseIncrementally(gpx);
+		for (TrkSegment segment : gpx.tracks.get(0).segments) {
+			for (int i = 1; i < segment.points.size() - 1; i += 3) {
+				segment.points.get(i).time = 0;
+			}
+		}
+		GPXTrackAnalysis partiallyTimed = analyseIncrementally(gpx);
+		// window of elevation averaging doesn't depend on time of points after first one of segment
+		Assert.assertEquals(timed.diffElevationUp, partiallyTimed.diffElevationUp, 1e-6);
+		Assert.assertEquals(timed.diffElevationDown, partiallyTimed.diffElevationDown, 1e-6);
+		// full analysis averages by window known for whole segment, so up to 5% difference is expected
+		GPXTrackAnalysis full = gpx.getAnalysis(0);
+		Assert.assertEquals(full.diffElevationUp, partiallyTimed.diffElevationUp, full.diffElevationUp * 0.05);
+		Assert.assertEquals(full.diffElevationDown, partiallyTimed.diffElevationDown, full.diffElevationDown * 0.05);
+	}
+
+	private static GPXTrackAnalysis analyseIncrementally(GPXFile gpx) {
+		IncrementalTrackAnalysis incremental = new IncrementalTrackAnalysis();
+		for (TrkSegment segment : gpx.tracks.get(0).segments) {
+			incremental.startSegment();
+			for (WptPt p : segment.points) {
+				incremental.addPoint(new WptPt(p));
+			}
+		}
+		return incremental.getAnalysis(0);
+	}
+
+	@Test
+	public void testIncrementalSnapshotIsNotChanged() {
+		GPXFile gpx = createGpx(true, true);
+		TrkSegment segment = gpx.tracks.get(0).segments.get(0);
+		IncrementalTrackAnalysis incremental = new IncrementalTrackAnalysis();
+		for (int i = 0; i < 50; i++) {
+			incremental.addPoint(new WptPt(segment.points.get(i)));
+		}
+		GPXTrackAnalysis snapshot = incremental.getAnalysis(0);
+		int points = snapshot.elevationData.size();
+		for (int i = 50; i < segment.points.size(); i++) {
+			incremental.addPoint(new WptPt(segment.points.get(i)));
+		}
+		Assert.assertEquals(points, snapshot.elevationData.size());
+		Assert.assertEquals(points, snapshot.speedData.size());
+		Assert.assertEquals(segment.points.size(), incremental.getAnalysis(0).elevationData.size());
+	}
+}
@@ -0,0 +1,122 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.PackedTrkPoints;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PackedTrkPointsTest {
+
+	private static final long TIME = 1600000000000L;
+
+	private static List<WptPt> createPoints(int count) {
+		List<WptPt> points = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			double ele = i % 7 == 0 ? Double.NaN : 100 + (i % 13) * 1.5;
+			points.add(new WptPt(52.1 + i * 0.0001, 4.3 + i * 0.00015, TIME + i * 1000L, ele, (i % 5) * 0.5, Double.NaN));
+		}
+		return points;
+	}
+
+	@Test
+	public void testValues() {
+		List<WptPt> points = createPoints(100);
+		WptPt named = points.get(10);
+		named.name = "Start";
+		named.getExtensionsToWrite().put("icon", "flag");
+		points.get(20).heading = 90f;
+		points.get(30).time = 0;
+		PackedTrkPoints packed = new PackedTrkPoints(points);
+		Assert.assertEquals(points.size(), packed.size());
+		for (int i = 0; i < points.size(); i++) {
+			WptPt p = points.get(i);
+			WptPt v = packed.get(i);
+			Assert.assertEquals(p.lat, v.lat, 1e-7);
+			Assert.assertEquals(p.lon, v.lon, 1e-7);
+			Assert.assertEquals(p.time, v.time);
+			Assert.assertEquals(p.ele, v.ele, 1e-4);
+			Assert.assertEquals(p.speed, v.speed, 1e-6);
+			Assert.assertTrue(Double.isNaN(v.hdop));
+			Assert.assertEquals(p.time, packed.getTime(i));
+		}
+		Assert.assertEquals("Start", packed.get(10).name);
+		Assert.assertEquals("flag", packed.get(10).getExtensionsToRead().get("icon"));
+		Assert.assertNull(packed.get(11).name);
+		Assert.assertEquals(90f, packed.get(20).heading, 0);
+		Assert.assertTrue(Float.isNaN(packed.get(21).heading));
+	}
+
+	@Test
+	public void testModification() {
+		List<WptPt> points = createPoints(10);
+		PackedTrkPoints packed = new PackedTrkPoints(points);
+		WptPt artificial = new WptPt(0, GPXUtilities.PRIME_MERIDIAN, 0, Double.NaN, 0, Double.NaN);
+		artificial.name = "inserted";
+		packed.add(3, artificial);
+		points.add(3, artificial);
+		packed.remove(7);
+		points.remove(7);
+		Assert.assertEquals(points.size(), packed.size());
+		for (int i = 0; i < points.size(); i++) {
+			Assert.assertEquals(points.get(i).time, packed.getTime(i));
+			Assert.assertEquals(points.get(i).name, packed.get(i).name);
+		}
+		Assert.assertEquals(GPXUtilities.PRIME_MERIDIAN, packed.get(3).lon, 0);
+
+		// offset which doesn't fit int
+		WptPt late = new WptPt(1, 1, TIME + 100L * 24 * 60 * 60 * 1000, Double.NaN, 0, Double.NaN);
+		packed.add(late);
+		Assert.assertEquals(late.time, packed.getTime(packed.size() - 1));
+		Assert.assertEquals(TIME, packed.getTime(0));
+		Assert.assertEquals(0, packed.getTime(3));
+	}
+
+	@Test
+	public void testAnalysis() {
+		TrkSegment segment = new TrkSegment();
+		segment.points = createPoints(500);
+		TrkSegment packedSegment = new TrkSegment();
+		packedSegment.points = createPoints(500);
+		packedSegment.packPoints();
+		GPXTrackAnalysis a = GPXTrackAnalysis.segment(0, segment);
+		GPXTrackAnalysis b = GPXTrackAnalysis.segment(0, packedSegment);
+		Assert.assertEquals(a.totalDistance, b.totalDistance, 0.1);
+		Assert.assertEquals(a.timeSpan, b.timeSpan);
+		Assert.assertEquals(a.timeMoving, b.timeMoving);
+		Assert.assertEquals(a.diffElevationUp, b.diffElevationUp, 0.01);
+		Assert.assertEquals(a.diffElevationDown, b.diffElevationDown, 0.01);
+		Assert.assertEquals(a.maxSpeed, b.maxSpeed, 1e-6);
+		Assert.assertEquals(segment.points.get(499).distance, packedSegment.points.get(499).distance, 0.1);
+		Assert.assertEquals(a.locationStart.lat, b.locationStart.lat, 1e-7);
+		Assert.assertEquals(a.locationEnd.distance, b.locationEnd.distance, 0.1);
+		Assert.assertEquals(a.elevationData.size(), b.elevationData.size());
+
+		// split segments start and end with approximated points
+		List<GPXTrackAnalysis> splits = segment.splitByDistance(300, false);
+		List<GPXTrackAnalysis> packedSplits = packedSegment.splitByDistance(300, false);
+		Assert.assertEquals(splits.size(), packedSplits.size());
+		for (int i = 0; i < splits.size(); i++) {
+			Assert.assertEquals(splits.get(i).totalDistance, packedSplits.get(i).totalDistance, 0.1);
+			Assert.assertEquals(splits.get(i).locationEnd.lat, packedSplits.get(i).locationEnd.lat, 1e-7);
+			Assert.assertEquals(splits.get(i).diffElevationUp, packedSplits.get(i).diffElevationUp, 0.01);
+		}
+	}
+
+	@Test
+	public void testFlags() {
+		List<WptPt> points = createPoints(3);
+		points.get(0).firstPoint = true;
+		points.get(2).lastPoint = true;
+		PackedTrkPoints packed = new PackedTrkPoints(points);
+		Assert.assertTrue(packed.isFirstPoint(0));
+		Assert.assertFalse(packed.isLastPoint(0));
+		Assert.assertFalse(packed.isFirstPoint(1));
+		Assert.assertTrue(packed.isLastPoint(2));
+	}
+}
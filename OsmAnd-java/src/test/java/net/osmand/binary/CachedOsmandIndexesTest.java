@@ -0,0 +1,156 @@
+package net.osmand.binary;
+
+import net.osmand.binary.CachedOsmandIndexes.ReaderLoadResult;
+import net.osmand.binary.OsmandIndex.FileIndex;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CachedOsmandIndexesTest {
+
+	private final List<File> files = new ArrayList<File>();
+
+	// opens readers without reading structure, fails and blocks on files with special names
+	private static class TestIndexes extends CachedOsmandIndexes {
+		final List<BinaryMapIndexReader> opened = new ArrayList<BinaryMapIndexReader>();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		protected BinaryMapIndexReader getReader(File f, FileIndex found) throws IOException {
+			if (f.getName().startsWith("failing")) {
+				throw new IllegalArgumentException("Unsupported " + f.getName());
+			}
+			if (f.getName().startsWith("blocking")) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(f, "r"), f, false);
+			synchronized (opened) {
+				opened.add(reader);
+			}
+			return reader;
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		for (String prefix : new String[] {"opened", "failing", "blocking", "opened"}) {
+			files.add(File.createTempFile(prefix, ".obf"));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMissingFiles() {
+		List<File> files = new ArrayList<File>();
+		File dir = new File(System.getProperty("java.io.tmpdir"));
+		for (int i = 0; i < 10; i++) {
+			files.add(new File(dir, "missing-" + i + ".obf"));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			CachedOsmandIndexes cache = new CachedOsmandIndexes();
+			List<ReaderLoadResult> results = cache.getReaders(files, true, executor);
+			Assert.assertEquals(files.size(), results.size());
+			for (int i = 0; i < files.size(); i++) {
+				ReaderLoadResult res = results.get(i);
+				Assert.assertSame(files.get(i), res.file);
+				Assert.assertNull(res.reader);
+				Assert.assertNotNull(res.error);
+				Assert.assertFalse(res.fromStoredIndex);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailuresAreKeptPerFile() throws IOException {
+		List<File> failing = new ArrayList<File>();
+		failing.add(files.get(0));
+		failing.add(files.get(1));
+		failing.add(new File(System.getProperty("java.io.tmpdir"), "missing.obf"));
+		failing.add(files.get(3));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (ExecutorService e : new ExecutorService[] {null, executor}) {
+				TestIndexes cache = new TestIndexes();
+				List<ReaderLoadResult> results = cache.getReaders(failing, false, e);
+				Assert.assertNotNull(results.get(0).reader);
+				Assert.assertNull(results.get(0).error);
+				Assert.assertNull(results.get(1).reader);
+				Assert.assertTrue(results.get(1).error instanceof IllegalArgumentException);
+				Assert.assertNull(results.get(2).reader);
+				Assert.assertTrue(results.get(2).error instanceof IOException);
+				Assert.assertNotNull(results.get(3).reader);
+				for (ReaderLoadResult res : results) {
+					if (res.reader != null) {
+						res.reader.close();
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testInterruptedOpeningClosesReaders() throws Exception {
+		final TestIndexes cache = new TestIndexes();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final AtomicReference<RuntimeException> thrown = new AtomicReference<RuntimeException>();
+		try {
+			Thread opening = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						cache.getReaders(files, false, executor);
+					} catch (RuntimeException e) {
+						thrown.set(e);
+					}
+				}
+			});
+			opening.start();
+			Assert.assertTrue(cache.blocked.await(5, TimeUnit.SECONDS));
+			opening.interrupt();
+			opening.join(5000);
+			Assert.assertFalse(opening.isAlive());
+			Assert.assertTrue(thrown.get() instanceof IllegalStateException);
+			// blocked file is opened after abort
+			cache.release.countDown();
+			executor.shutdown();
+			Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+		// last file is not opened as its task is cancelled
+		Assert.assertEquals(2, cache.opened.size());
+		for (BinaryMapIndexReader reader : cache.opened) {
+			Assert.assertFalse(reader.getRaf().getChannel().isOpen());
+		}
+	}
+}
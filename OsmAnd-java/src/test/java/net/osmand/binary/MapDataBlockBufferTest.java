@@ -0,0 +1,74 @@
+package net.osmand.binary;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MapDataBlockBufferTest {
+
+	private static void addPoints(MapDataBlockBuffer buffer, int... xy) {
+		for (int v : xy) {
+			buffer.getCoordinatesBuffer().add(v);
+		}
+	}
+
+	@Test
+	public void testObjects() {
+		MapDataBlockBuffer buffer = new MapDataBlockBuffer();
+		buffer.clear(null);
+		addPoints(buffer, 10, 20, 30, 40, 50, 60);
+		buffer.addInnerPolygonPoint(11, 21);
+		buffer.addInnerPolygonPoint(12, 22);
+		buffer.finishInnerPolygon();
+		buffer.getTypesBuffer().add(5);
+		buffer.getAdditionalTypesBuffer().add(7);
+		buffer.addName(1, 1);
+		buffer.finishObject(100, true, 3, 4);
+
+		// rejected object with data of all kinds
+		addPoints(buffer, 1, 2);
+		buffer.addInnerPolygonPoint(1, 1);
+		buffer.finishInnerPolygon();
+		buffer.getTypesBuffer().add(9);
+		buffer.addName(2, 0);
+		buffer.discardObject();
+
+		addPoints(buffer, 70, 80);
+		buffer.getTypesBuffer().add(6);
+		buffer.getTypesBuffer().add(8);
+		buffer.finishObject(101, false, 0, 0);
+		buffer.discardObject();
+		buffer.addString("a");
+		buffer.addString("b");
+
+		Assert.assertEquals(2, buffer.size());
+		Assert.assertEquals(100, buffer.getId(0));
+		Assert.assertTrue(buffer.isArea(0));
+		Assert.assertEquals(3, buffer.getPointsLength(0));
+		Assert.assertEquals(50, buffer.getPoint31XTile(0, 2));
+		Assert.assertEquals(60, buffer.getPoint31YTile(0, 2));
+		Assert.assertEquals(1, buffer.getInnerPolygonsCount(0));
+		Assert.assertEquals(2, buffer.getInnerPolygonPointsLength(0, 0));
+		Assert.assertEquals(22, buffer.getInnerPolygonPoint31YTile(0, 0, 1));
+		Assert.assertEquals("b", buffer.getName(0, 0));
+		Assert.assertEquals(3, buffer.getLabelX(0));
+
+		Assert.assertFalse(buffer.isArea(1));
+		Assert.assertEquals(1, buffer.getPointsLength(1));
+		Assert.assertEquals(70, buffer.getPoint31XTile(1, 0));
+		Assert.assertEquals(0, buffer.getInnerPolygonsCount(1));
+		Assert.assertEquals(2, buffer.getTypesLength(1));
+		Assert.assertEquals(8, buffer.getType(1, 1));
+		Assert.assertEquals(0, buffer.getAdditionalTypesLength(1));
+		Assert.assertEquals(0, buffer.getNamesLength(1));
+
+		BinaryMapDataObject o = buffer.toObject(0);
+		Assert.assertArrayEquals(new int[] {10, 20, 30, 40, 50, 60}, o.getCoordinates());
+		Assert.assertArrayEquals(new int[] {11, 21, 12, 22}, o.getPolygonInnerCoordinates()[0]);
+		Assert.assertArrayEquals(new int[] {5}, o.getTypes());
+		Assert.assertArrayEquals(new int[] {7}, o.getAdditionalTypes());
+		Assert.assertEquals("b", o.getObjectNames().get(1));
+
+		buffer.clear(null);
+		Assert.assertEquals(0, buffer.size());
+	}
+}
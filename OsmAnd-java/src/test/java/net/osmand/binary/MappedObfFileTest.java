@@ -0,0 +1,190 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBox;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MappedObfFileTest {
+
+	private static final int COUNT = 5000;
+
+	@Test
+	public void testMappedStreamMatchesRandomAccessFile() throws IOException {
+		File file = writeTestFile();
+		try {
+			MappedObfFile mapped = new MappedObfFile(file);
+			Assert.assertEquals(file.length(), mapped.getLength());
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				CodedInputStream rafIS = CodedInputStream.newInstance(raf);
+				rafIS.setSizeLimit(Integer.MAX_VALUE);
+				CodedInputStream mappedIS = mapped.newCodedInputStream();
+				for (int i = 0; i < COUNT; i++) {
+					Assert.assertEquals(rafIS.readTag(), mappedIS.readTag());
+					Assert.assertEquals(rafIS.readString(), mappedIS.readString());
+					Assert.assertEquals(rafIS.getTotalBytesRead(), mappedIS.getTotalBytesRead());
+				}
+				Assert.assertTrue(mappedIS.isAtEnd());
+			} finally {
+				raf.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testIndependentCursors() throws IOException {
+		File file = writeTestFile();
+		try {
+			MappedObfFile mapped = new MappedObfFile(file);
+			CodedInputStream first = mapped.newCodedInputStream();
+			CodedInputStream second = mapped.newCodedInputStream();
+			first.readTag();
+			Assert.assertEquals(value(0), first.readString());
+			int pointer = first.getTotalBytesRead();
+			second.seek(file.length() / 2);
+			second.skipRawBytes(10);
+			first.readTag();
+			Assert.assertEquals(value(1), first.readString());
+			second.seek(pointer);
+			second.readTag();
+			Assert.assertEquals(value(1), second.readString());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testCursorsReadSharedRouteTree() throws Exception {
+		File file = File.createTempFile("mapped", ".obf");
+		try {
+			FileOutputStream fout = new FileOutputStream(file);
+			fout.write(writeRouteBox(4));
+			fout.close();
+			MappedObfFile mapped = new MappedObfFile(file);
+			final BinaryMapIndexReader reader = new BinaryMapIndexReader(mapped, false);
+			List<Integer> expected = searchRouteTree(reader, newRouteTree(file));
+			Assert.assertEquals(4 * 4 * 4 * 4, expected.size());
+
+			int threads = 8;
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				for (int round = 0; round < 50; round++) {
+					final RouteSubregion root = newRouteTree(file);
+					final CountDownLatch start = new CountDownLatch(1);
+					List<Future<List<Integer>>> futures = new ArrayList<Future<List<Integer>>>();
+					for (int t = 0; t < threads; t++) {
+						final BinaryMapIndexReader cursor = reader.createCursor();
+						futures.add(executor.submit(new Callable<List<Integer>>() {
+							@Override
+							public List<Integer> call() throws Exception {
+								start.await();
+								return searchRouteTree(cursor, root);
+							}
+						}));
+					}
+					start.countDown();
+					for (Future<List<Integer>> f : futures) {
+						Assert.assertEquals(expected, f.get());
+					}
+				}
+			} finally {
+				executor.shutdown();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static RouteSubregion newRouteTree(File file) {
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(1, "highway", "primary");
+		RouteSubregion root = new RouteSubregion(region);
+		root.filePointer = 0;
+		root.length = (int) file.length();
+		root.left = 0;
+		root.top = 0;
+		root.right = 1 << 20;
+		root.bottom = 1 << 20;
+		return root;
+	}
+
+	// file pointers of boxes with data, every box is read lazily by one of the cursors
+	private static List<Integer> searchRouteTree(BinaryMapIndexReader reader, RouteSubregion root) throws IOException {
+		SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(1, 1 << 20, 1, 1 << 20, null);
+		List<Integer> pointers = new ArrayList<Integer>();
+		for (RouteSubregion rs : reader.searchRouteIndexTree(req, Collections.singletonList(root))) {
+			pointers.add(rs.filePointer);
+		}
+		Collections.sort(pointers);
+		return pointers;
+	}
+
+	// box with 4 children on each level (all with the same bounds), boxes of the last level have data
+	private static byte[] writeRouteBox(int depth) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		out.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, 0);
+		out.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, 0);
+		out.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, 0);
+		out.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, 0);
+		if (depth == 0) {
+			out.writeTag(RouteDataBox.SHIFTTODATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+			writeRawInt(out, 1);
+		}
+		for (int i = 0; depth > 0 && i < 4; i++) {
+			byte[] child = writeRouteBox(depth - 1);
+			out.writeTag(RouteDataBox.BOXES_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+			writeRawInt(out, child.length);
+			out.writeRawBytes(child);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeRawInt(CodedOutputStream out, int v) throws IOException {
+		out.writeRawByte((v >>> 24) & 0xff);
+		out.writeRawByte((v >>> 16) & 0xff);
+		out.writeRawByte((v >>> 8) & 0xff);
+		out.writeRawByte(v & 0xff);
+	}
+
+	private static String value(int i) {
+		return "value " + i + " " + Integer.toHexString(i * 31);
+	}
+
+	private static File writeTestFile() throws IOException {
+		File file = File.createTempFile("mapped", ".obf");
+		FileOutputStream fout = new FileOutputStream(file);
+		CodedOutputStream out = CodedOutputStream.newInstance(fout);
+		for (int i = 0; i < COUNT; i++) {
+			out.writeString(1, value(i));
+		}
+		out.flush();
+		fout.close();
+		return file;
+	}
+}
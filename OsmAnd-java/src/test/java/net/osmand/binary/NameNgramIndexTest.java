@@ -0,0 +1,227 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.StringMatcher;
+import net.osmand.data.Amenity;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NameNgramIndexTest {
+
+	private static final String[] NAMES = {
+			"Hauptstraße", "Bahnhofstraße", "Café Müller", "Marktplatz", "Rue de la Paix", "Nieuwe Markt"
+	};
+
+	private NameNgramIndex.Section buildSection() {
+		NameNgramIndex.SectionBuilder builder = new NameNgramIndex.SectionBuilder(NameNgramIndex.POI_SECTION, 100);
+		for (int i = 0; i < NAMES.length; i++) {
+			int entry = builder.addEntry(i * 10, i, -i, i % 3);
+			builder.addName(entry, NAMES[i]);
+		}
+		return builder.build();
+	}
+
+	private int[] query(NameNgramIndex.Section s, String query, int typos) {
+		int[] entries = s.query(query, typos);
+		if (entries == null) {
+			return null;
+		}
+		StringMatcher matcher = NameNgramIndex.createMatcher(query, typos);
+		ArrayList<Integer> res = new ArrayList<Integer>();
+		for (int e : entries) {
+			if (matcher.matches(NAMES[e])) {
+				res.add(e);
+			}
+		}
+		int[] r = new int[res.size()];
+		for (int i = 0; i < r.length; i++) {
+			r[i] = res.get(i);
+		}
+		return r;
+	}
+
+	@Test
+	public void testNormalize() {
+		Assert.assertEquals("cafe muller", NameNgramIndex.normalize(" Café  Müller! "));
+		Assert.assertEquals("rue de la paix", NameNgramIndex.normalize("Rue-de-la-Paix"));
+		Assert.assertEquals("hauptstrasse", NameNgramIndex.normalize("Hauptstraße"));
+	}
+
+	@Test
+	public void testSubstring() {
+		NameNgramIndex.Section s = buildSection();
+		Assert.assertArrayEquals(new int[] { 0, 1 }, query(s, "strasse", 0));
+		Assert.assertArrayEquals(new int[] { 3, 5 }, query(s, "mark", 0));
+		Assert.assertArrayEquals(new int[] { 2 }, query(s, "muller cafe", 0));
+		Assert.assertArrayEquals(new int[0], query(s, "bahnhof markt", 0));
+		// too short to be resolved by index
+		Assert.assertNull(s.query("de", 0));
+	}
+
+	@Test
+	public void testTypos() {
+		NameNgramIndex.Section s = buildSection();
+		Assert.assertArrayEquals(new int[0], query(s, "bahnhfstrasse", 0));
+		Assert.assertArrayEquals(new int[] { 1 }, query(s, "bahnhfstrasse", 1));
+		Assert.assertArrayEquals(new int[] { 3 }, query(s, "marktplaz", 1));
+	}
+
+	@Test
+	public void testSubstringDistance() {
+		Assert.assertEquals(0, NameNgramIndex.substringDistance("haupt", "die hauptstrasse", 0));
+		Assert.assertEquals(1, NameNgramIndex.substringDistance("hapt", "die hauptstrasse", 0));
+		Assert.assertTrue(NameNgramIndex.substringDistance("hpt", "xyz", 2) > 2);
+	}
+
+	@Test
+	public void testWriteRead() throws IOException {
+		NameNgramIndex.Section s = buildSection();
+		NameNgramIndex index = new NameNgramIndex(12345, 678, Arrays.asList(s));
+		File f = File.createTempFile("test", NameNgramIndex.FILE_EXT);
+		try {
+			NameNgramIndex.write(index, f);
+			NameNgramIndex read = NameNgramIndex.read(f);
+			Assert.assertEquals(12345, read.getObfSize());
+			Assert.assertEquals(678, read.getObfDate());
+			NameNgramIndex.Section rs = read.getSection(NameNgramIndex.POI_SECTION, 100);
+			Assert.assertNotNull(rs);
+			Assert.assertNull(read.getSection(NameNgramIndex.ADDRESS_SECTION, 100));
+			Assert.assertEquals(s.getEntriesCount(), rs.getEntriesCount());
+			for (int i = 0; i < s.getEntriesCount(); i++) {
+				Assert.assertEquals(s.getOffset(i), rs.getOffset(i));
+				Assert.assertEquals(s.getA(i), rs.getA(i));
+				Assert.assertEquals(s.getB(i), rs.getB(i));
+				Assert.assertEquals(s.getC(i), rs.getC(i));
+			}
+			Assert.assertArrayEquals(query(s, "platz", 0), query(rs, "platz", 0));
+			Assert.assertArrayEquals(query(s, "strase", 1), query(rs, "strase", 1));
+		} finally {
+			f.delete();
+		}
+	}
+
+	private static final int BOX_ZOOM = 12;
+	private static final int POI_ZOOM = 24;
+	private static final int BOX_SIZE = 1 << (31 - BOX_ZOOM);
+
+	private static void writeFixed32Delimited(CodedOutputStream out, int field, byte[] data) throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+		out.writeRawByte(data.length >>> 24);
+		out.writeRawByte(data.length >>> 16);
+		out.writeRawByte(data.length >>> 8);
+		out.writeRawByte(data.length);
+		out.writeRawBytes(data);
+	}
+
+	// box of zoom 12 with pois in the middle (by their names)
+	private static byte[] poiBox(int x, int y, long firstId, String... names) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		out.writeUInt32(OsmandOdb.OsmAndPoiBoxData.ZOOM_FIELD_NUMBER, BOX_ZOOM);
+		out.writeUInt32(OsmandOdb.OsmAndPoiBoxData.X_FIELD_NUMBER, x);
+		out.writeUInt32(OsmandOdb.OsmAndPoiBoxData.Y_FIELD_NUMBER, y);
+		for (int i = 0; i < names.length; i++) {
+			ByteArrayOutputStream atomBytes = new ByteArrayOutputStream();
+			CodedOutputStream atom = CodedOutputStream.newInstance(atomBytes);
+			atom.writeSInt32(OsmandOdb.OsmAndPoiBoxDataAtom.DX_FIELD_NUMBER, 1 << (POI_ZOOM - BOX_ZOOM - 1));
+			atom.writeSInt32(OsmandOdb.OsmAndPoiBoxDataAtom.DY_FIELD_NUMBER, 1 << (POI_ZOOM - BOX_ZOOM - 1));
+			atom.writeUInt32(OsmandOdb.OsmAndPoiBoxDataAtom.CATEGORIES_FIELD_NUMBER, 0);
+			atom.writeString(OsmandOdb.OsmAndPoiBoxDataAtom.NAME_FIELD_NUMBER, names[i]);
+			atom.writeUInt64(OsmandOdb.OsmAndPoiBoxDataAtom.ID_FIELD_NUMBER, firstId + i);
+			atom.flush();
+			out.writeBytes(OsmandOdb.OsmAndPoiBoxData.POIDATA_FIELD_NUMBER,
+					ByteString.copyFrom(atomBytes.toByteArray()));
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static File writePoiObf(byte[]... boxes) throws IOException {
+		ByteArrayOutputStream poiBytes = new ByteArrayOutputStream();
+		CodedOutputStream poi = CodedOutputStream.newInstance(poiBytes);
+		poi.writeString(OsmandOdb.OsmAndPoiIndex.NAME_FIELD_NUMBER, "test");
+		ByteArrayOutputStream categories = new ByteArrayOutputStream();
+		CodedOutputStream cat = CodedOutputStream.newInstance(categories);
+		cat.writeString(OsmandOdb.OsmAndCategoryTable.CATEGORY_FIELD_NUMBER, "shop");
+		cat.flush();
+		poi.writeBytes(OsmandOdb.OsmAndPoiIndex.CATEGORIESTABLE_FIELD_NUMBER,
+				ByteString.copyFrom(categories.toByteArray()));
+		for (byte[] box : boxes) {
+			writeFixed32Delimited(poi, OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER, box);
+		}
+		poi.flush();
+
+		File file = File.createTempFile("poi", ".obf");
+		FileOutputStream fout = new FileOutputStream(file);
+		CodedOutputStream out = CodedOutputStream.newInstance(fout);
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSION_FIELD_NUMBER, 2);
+		out.writeInt64(OsmandOdb.OsmAndStructure.DATECREATED_FIELD_NUMBER, 1000);
+		writeFixed32Delimited(out, OsmandOdb.OsmAndStructure.POIINDEX_FIELD_NUMBER, poiBytes.toByteArray());
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, 2);
+		out.flush();
+		fout.close();
+		return file;
+	}
+
+	@Test
+	public void testCollectPoiBoxNames() throws IOException {
+		File file = writePoiObf(poiBox(2000, 1500, 1, "Central Market", "Bakery"), poiBox(2100, 1500, 3, "Fish market"));
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		try {
+			NameNgramIndex index = NameNgramIndex.build(reader);
+			Assert.assertTrue(index.isValid(file, 1000));
+			NameNgramIndex.Section s = index.getSection(NameNgramIndex.POI_SECTION,
+					reader.getPoiIndexes().get(0).getFilePointer());
+			Assert.assertEquals(2, s.getEntriesCount());
+			// entry is box: top left corner and zoom
+			Assert.assertEquals(2000 * BOX_SIZE, s.getA(0));
+			Assert.assertEquals(1500 * BOX_SIZE, s.getB(0));
+			Assert.assertEquals(BOX_ZOOM, s.getC(0));
+			Assert.assertEquals(2100 * BOX_SIZE, s.getA(1));
+			Assert.assertArrayEquals(new int[] { 0, 1 }, s.query("market", 0));
+			Assert.assertArrayEquals(new int[] { 0 }, s.query("bakery", 0));
+			Assert.assertArrayEquals(new int[0], s.query("pharmacy", 0));
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testSearchPoiByNgramsInsideBox() throws IOException {
+		File file = writePoiObf(poiBox(2000, 1500, 1, "Central Market", "Bakery"), poiBox(2100, 1500, 3, "Fish market"));
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		try {
+			reader.setNameNgramIndex(NameNgramIndex.build(reader));
+			// area around pois of first box which doesn't contain corners of the box
+			int x = 2000 * BOX_SIZE + BOX_SIZE / 2;
+			int y = 1500 * BOX_SIZE + BOX_SIZE / 2;
+			int d = BOX_SIZE / 8;
+			BinaryMapIndexReader.SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(x, y,
+					"market", x - d, x + d, y - d, y + d, null);
+			req.setSubstringSearch(0);
+			List<Amenity> res = reader.searchPoiByName(req);
+			Assert.assertEquals(1, res.size());
+			Assert.assertEquals("Central Market", res.get(0).getName());
+			Assert.assertEquals(1, res.get(0).getId().longValue());
+			Assert.assertEquals(MapUtils.get31LongitudeX(x), res.get(0).getLocation().getLongitude(), 1e-5);
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package net.osmand.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentDataTileManagerTest {
+
+	private static final int ZOOM = 14;
+	private static final int SHIFT = 31 - ZOOM;
+
+	private static List<Integer> sorted(List<Integer> l) {
+		Collections.sort(l);
+		return l;
+	}
+
+	@Test
+	public void testRangeQueries() {
+		Random rnd = new Random(5);
+		ConcurrentDataTileManager<Integer> manager = new ConcurrentDataTileManager<Integer>(ZOOM);
+		int n = 5000;
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		for (int i = 0; i < n; i++) {
+			// clustered points
+			xs[i] = (1 << 30) + rnd.nextInt(1 << 24) * (i % 2 == 0 ? 1 : 32);
+			ys[i] = (1 << 30) + rnd.nextInt(1 << 24) * (i % 3 == 0 ? 1 : 16);
+			manager.registerObjectXY(xs[i], ys[i], i);
+		}
+		for (int i = 0; i < n; i += 3) {
+			Assert.assertTrue(manager.unregisterObjectXY(xs[i], ys[i], i));
+		}
+		Assert.assertFalse(manager.unregisterObjectXY(xs[0], ys[0], 0));
+		Assert.assertEquals(n - (n + 2) / 3, manager.getObjectsCount());
+
+		for (int q = 0; q < 300; q++) {
+			int left = (1 << 30) + rnd.nextInt(1 << 29) - (1 << 26);
+			int top = (1 << 30) + rnd.nextInt(1 << 28) - (1 << 26);
+			int right = left + rnd.nextInt(1 << (q % 2 == 0 ? 22 : 28));
+			int bottom = top + rnd.nextInt(1 << (q % 2 == 0 ? 22 : 28));
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < n; i++) {
+				if (i % 3 != 0 && xs[i] >> SHIFT >= left >> SHIFT && xs[i] >> SHIFT <= right >> SHIFT
+						&& ys[i] >> SHIFT >= top >> SHIFT && ys[i] >> SHIFT <= bottom >> SHIFT) {
+					expected.add(i);
+				}
+			}
+			Assert.assertEquals(expected, sorted(manager.getObjects(left, top, right, bottom)));
+			List<Integer> iterated = new ArrayList<Integer>();
+			Iterator<Integer> it = manager.iterateObjects(left, top, right, bottom);
+			while (it.hasNext()) {
+				iterated.add(it.next());
+			}
+			Assert.assertEquals(expected, sorted(iterated));
+		}
+		manager.clear();
+		Assert.assertTrue(manager.isEmpty());
+		Assert.assertTrue(manager.getObjects(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE).isEmpty());
+	}
+
+	@Test
+	public void testEviction() {
+		ConcurrentDataTileManager<Integer> manager = new ConcurrentDataTileManager<Integer>(ZOOM, 1000, 50000,
+				new ConcurrentDataTileManager.ObjectWeigher<Integer>() {
+					@Override
+					public long getBytes(Integer object) {
+						return 100;
+					}
+				});
+		// 10 objects in every tile
+		for (int i = 0; i < 2000; i++) {
+			manager.registerObjectXY((i / 10) << SHIFT, 0, i);
+			// first tile is used
+			manager.getObjects(0, 0, 0, 0);
+		}
+		Assert.assertTrue(manager.getObjectsCount() <= 500);
+		Assert.assertEquals(manager.getObjectsCount() * 100L, manager.getBytes());
+		Assert.assertTrue(manager.getEvictedTilesCount() > 0);
+		Assert.assertEquals(10, manager.getObjects(0, 0, 0, 0).size());
+		List<Integer> all = manager.getObjects(0, 0, Integer.MAX_VALUE, 0);
+		Assert.assertEquals(manager.getObjectsCount(), all.size());
+		// last tile is not evicted
+		Assert.assertTrue(all.contains(1999));
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception {
+		final ConcurrentDataTileManager<Integer> manager = new ConcurrentDataTileManager<Integer>(ZOOM);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < 4; t++) {
+				final int thread = t;
+				futures.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						Random rnd = new Random(thread);
+						int kept = 0;
+						for (int i = 0; i < 5000; i++) {
+							int x = rnd.nextInt(1 << 20) << 8;
+							int y = rnd.nextInt(1 << 20) << 8;
+							int id = thread * 5000 + i;
+							manager.registerObjectXY(x, y, id);
+							if (i % 2 == 0) {
+								Assert.assertTrue(manager.unregisterObjectXY(x, y, id));
+							} else {
+								kept++;
+							}
+							manager.getObjects(x - (1 << 22), y - (1 << 22), x + (1 << 22), y + (1 << 22));
+						}
+						return kept;
+					}
+				}));
+			}
+			int kept = 0;
+			for (Future<Integer> f : futures) {
+				kept += f.get();
+			}
+			Assert.assertEquals(kept, manager.getObjectsCount());
+			Assert.assertEquals(kept, manager.getObjects(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE).size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrentEvictionAndQueries() throws Exception {
+		final ConcurrentDataTileManager<Integer> manager = new ConcurrentDataTileManager<Integer>(ZOOM, 2000, 150000,
+				new ConcurrentDataTileManager.ObjectWeigher<Integer>() {
+					@Override
+					public long getBytes(Integer object) {
+						return 100;
+					}
+				});
+		ExecutorService executor = Executors.newFixedThreadPool(6);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < 6; t++) {
+				final int thread = t;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						Random rnd = new Random(thread);
+						for (int i = 0; i < 20000; i++) {
+							int x = rnd.nextInt(1 << 12) << SHIFT;
+							int y = rnd.nextInt(1 << 6) << SHIFT;
+							if (thread % 2 == 0) {
+								// writers evict tiles
+								manager.registerObjectXY(x, y, thread * 20000 + i);
+							} else {
+								// readers change access of tiles being sorted by eviction
+								manager.getObjects(x, y, x + (rnd.nextInt(64) << SHIFT), y + (rnd.nextInt(8) << SHIFT));
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		Assert.assertTrue(manager.getEvictedTilesCount() > 0);
+		Assert.assertTrue(manager.getObjectsCount() <= 1500);
+		Assert.assertEquals(manager.getObjectsCount() * 100L, manager.getBytes());
+		Assert.assertEquals(manager.getObjectsCount(),
+				manager.getObjects(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE).size());
+	}
+}
@@ -0,0 +1,115 @@
+package net.osmand.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PackedQuadTreeTest {
+
+	private static final int SIZE = 1 << 20;
+
+	private static void assertSameQueries(Random rnd, QuadTree<Integer> expected, PackedQuadTree<Integer> tree,
+										  final List<QuadRect> boxes) {
+		List<Integer> exp = new ArrayList<Integer>();
+		List<Integer> res = new ArrayList<Integer>();
+		for (int i = 0; i < 200; i++) {
+			int x = rnd.nextInt(SIZE);
+			int y = rnd.nextInt(SIZE);
+			final QuadRect q = new QuadRect(x, y, x + rnd.nextInt(SIZE / 8), y + rnd.nextInt(SIZE / 8));
+			Assert.assertEquals(expected.queryInBox(q, exp), tree.queryInBox(q, res));
+
+			final List<Integer> visited = new ArrayList<Integer>();
+			tree.query(q.left, q.top, q.right, q.bottom, new PackedQuadTree.ItemVisitor<Integer>() {
+				@Override
+				public boolean visit(Integer item) {
+					visited.add(item);
+					return true;
+				}
+			});
+			List<Integer> intersecting = new ArrayList<Integer>();
+			for (Integer item : exp) {
+				if (QuadRect.intersects(q, boxes.get(item))) {
+					intersecting.add(item);
+				}
+			}
+			Assert.assertEquals(intersecting, visited);
+		}
+	}
+
+	@Test
+	public void testSameAsQuadTree() {
+		Random rnd = new Random(11);
+		QuadRect bounds = new QuadRect(0, 0, SIZE, SIZE);
+		QuadTree<Integer> expected = new QuadTree<Integer>(bounds, 8, 0.55f);
+		FloatQuadTree<Integer> tree = new FloatQuadTree<Integer>(bounds, 8, 0.55f);
+		List<QuadRect> boxes = new ArrayList<QuadRect>();
+		for (int i = 0; i < 3000; i++) {
+			float x = rnd.nextFloat() * SIZE;
+			float y = rnd.nextFloat() * SIZE;
+			if (i % 3 == 0) {
+				boxes.add(new QuadRect(x, y, x, y));
+				expected.insert(i, x, y);
+				tree.insert(i, x, y);
+			} else {
+				float r = x + rnd.nextFloat() * SIZE / 16;
+				float b = y + rnd.nextFloat() * SIZE / 16;
+				QuadRect box = new QuadRect(x, y, r, b);
+				boxes.add(box);
+				expected.insert(i, box);
+				tree.insert(i, x, y, r, b);
+			}
+			if (i % 500 == 0) {
+				assertSameQueries(rnd, expected, tree, boxes);
+			}
+		}
+		Assert.assertEquals(3000, tree.size());
+		assertSameQueries(rnd, expected, tree, boxes);
+		tree.pack();
+		assertSameQueries(rnd, expected, tree, boxes);
+
+		tree.clear();
+		Assert.assertEquals(0, tree.size());
+		Assert.assertTrue(tree.queryInBox(bounds, new ArrayList<Integer>()).isEmpty());
+	}
+
+	@Test
+	public void testBulkLoad() {
+		Random rnd = new Random(12);
+		QuadRect bounds = new QuadRect(0, 0, SIZE, SIZE);
+		QuadTree<Integer> expected = new QuadTree<Integer>(bounds, 10, 0.5f);
+		IntQuadTree<Integer> tree = new IntQuadTree<Integer>(bounds, 10, 0.5f);
+		List<QuadRect> boxes = new ArrayList<QuadRect>();
+		List<Integer> items = new ArrayList<Integer>();
+		int[] coords = new int[4 * 5000];
+		for (int i = 0; i < 5000; i++) {
+			int x = rnd.nextInt(SIZE);
+			int y = rnd.nextInt(SIZE);
+			int r = x + rnd.nextInt(SIZE / 32);
+			int b = y + rnd.nextInt(SIZE / 32);
+			QuadRect box = new QuadRect(x, y, r, b);
+			boxes.add(box);
+			expected.insert(i, box);
+			items.add(i);
+			coords[4 * i] = x;
+			coords[4 * i + 1] = y;
+			coords[4 * i + 2] = r;
+			coords[4 * i + 3] = b;
+		}
+		tree.insertAll(items, coords);
+		assertSameQueries(rnd, expected, tree, boxes);
+
+		// stops on first item
+		final int[] count = new int[1];
+		Assert.assertFalse(tree.query(0, 0, SIZE, SIZE, new PackedQuadTree.ItemVisitor<Integer>() {
+			@Override
+			public boolean visit(Integer item) {
+				count[0]++;
+				return false;
+			}
+		}));
+		Assert.assertEquals(1, count[0]);
+	}
+}
@@ -0,0 +1,72 @@
+package net.osmand.map;
+
+import net.osmand.binary.BinaryMapDataObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RegionBoundariesIndexTest {
+
+	// closed star shaped polygon around center
+	private static BinaryMapDataObject createPolygon(Random rnd, int id, int cx, int cy, int radius, int points) {
+		int[] coordinates = new int[(points + 1) * 2];
+		for (int i = 0; i < points; i++) {
+			double angle = 2 * Math.PI * i / points;
+			double r = radius * (0.3 + 0.7 * rnd.nextDouble());
+			coordinates[2 * i] = cx + (int) (r * Math.cos(angle));
+			coordinates[2 * i + 1] = cy + (int) (r * Math.sin(angle));
+		}
+		coordinates[2 * points] = coordinates[0];
+		coordinates[2 * points + 1] = coordinates[1];
+		return new BinaryMapDataObject(id, coordinates, null, 0, true, new int[0], new int[0], 0, 0);
+	}
+
+	@Test
+	public void testSameAsContain() {
+		Random rnd = new Random(7);
+		List<BinaryMapDataObject> polygons = new ArrayList<BinaryMapDataObject>();
+		for (int i = 0; i < 60; i++) {
+			int radius = 1 << (18 + rnd.nextInt(11));
+			int cx = radius + rnd.nextInt(Integer.MAX_VALUE - 2 * radius);
+			int cy = radius + rnd.nextInt(Integer.MAX_VALUE - 2 * radius);
+			polygons.add(createPolygon(rnd, i, cx, cy, radius, 3 + rnd.nextInt(400)));
+		}
+		polygons.add(new BinaryMapDataObject(100, new int[0], null, 0, true, new int[0], new int[0], 0, 0));
+		RegionBoundariesIndex index = new RegionBoundariesIndex(polygons);
+		Assert.assertEquals(60, index.getPolygonsCount());
+
+		OsmandRegions regions = new OsmandRegions();
+		int n = 20000;
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		for (int j = 0; j < n; j++) {
+			// half of points near polygons
+			BinaryMapDataObject o = polygons.get(rnd.nextInt(60));
+			if (j % 2 == 0) {
+				xs[j] = o.getPoint31XTile(0) + rnd.nextInt(1 << 20) - (1 << 19);
+				ys[j] = o.getPoint31YTile(0) + rnd.nextInt(1 << 20) - (1 << 19);
+			} else {
+				xs[j] = rnd.nextInt(Integer.MAX_VALUE);
+				ys[j] = rnd.nextInt(Integer.MAX_VALUE);
+			}
+		}
+		List<List<BinaryMapDataObject>> batch = index.query(xs, ys);
+		int found = 0;
+		for (int j = 0; j < n; j++) {
+			List<BinaryMapDataObject> expected = new ArrayList<BinaryMapDataObject>();
+			for (BinaryMapDataObject o : polygons) {
+				if (regions.contain(o, xs[j], ys[j])) {
+					expected.add(o);
+				}
+			}
+			Assert.assertEquals(expected, index.query(xs[j], ys[j], new ArrayList<BinaryMapDataObject>()));
+			Assert.assertEquals(expected, batch.get(j));
+			found += expected.size();
+		}
+		Assert.assertTrue(found > n / 10);
+	}
+}
@@ -0,0 +1,89 @@
+package net.osmand.render;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+public class CompiledRenderingRulesTest {
+
+	private static final String[][] TAG_VALUES = {{"highway", "primary"}, {"highway", "residential"},
+			{"highway", "track"}, {"highway", "unknown"}, {"railway", "rail"}, {"natural", "wood"}};
+	private static final int[] STATES = {RenderingRulesStorage.LINE_RULES, RenderingRulesStorage.ORDER_RULES,
+			RenderingRulesStorage.POINT_RULES};
+
+	private RenderingRulesStorage storage;
+
+	@Before
+	public void setUp() throws XmlPullParserException, IOException {
+		storage = TestRenderingStyle.createStorage();
+	}
+
+	private RenderingRuleSearchRequest createRequest(boolean night) {
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		req.setBooleanFilter(storage.PROPS.getCustomRule("nightMode"), night);
+		req.saveState();
+		return req;
+	}
+
+	private static void assertSameState(RenderingRuleSearchRequest expected, RenderingRuleSearchRequest actual) {
+		Assert.assertEquals(expected.isFound(), actual.isFound());
+		for (RenderingRuleProperty p : expected.getProperties()) {
+			Assert.assertEquals(p.getAttrName(), expected.getIntPropertyValue(p), actual.getIntPropertyValue(p));
+			Assert.assertEquals(p.getAttrName(), expected.getFloatPropertyValue(p), actual.getFloatPropertyValue(p), 0);
+		}
+	}
+
+	private void assertSameResults(CompiledRenderingRules compiled) {
+		for (int pass = 0; pass < 2; pass++) {
+			for (boolean night : new boolean[] {false, true}) {
+				RenderingRuleSearchRequest plain = createRequest(night);
+				RenderingRuleSearchRequest fast = createRequest(night);
+				fast.setCompiledRules(compiled);
+				for (String[] tv : TAG_VALUES) {
+					for (int zoom = 8; zoom <= 17; zoom++) {
+						for (int layer = -1; layer <= 1; layer++) {
+							for (int state : STATES) {
+								for (RenderingRuleSearchRequest r : new RenderingRuleSearchRequest[] {plain, fast}) {
+									r.setInitialTagValueZoom(tv[0], tv[1], zoom, null);
+									r.setIntFilter(storage.PROPS.R_LAYER, layer);
+									r.search(state);
+								}
+								assertSameState(plain, fast);
+								// second search without clearing state
+								plain.search(RenderingRulesStorage.ORDER_RULES);
+								fast.search(RenderingRulesStorage.ORDER_RULES);
+								assertSameState(plain, fast);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSameResults() {
+		CompiledRenderingRules compiled = new CompiledRenderingRules(storage);
+		assertSameResults(compiled);
+		Assert.assertTrue(compiled.getCachedResultsCount() > 0);
+	}
+
+	@Test
+	public void testEvictedResults() {
+		// 2 results in each of 16 maps
+		CompiledRenderingRules compiled = new CompiledRenderingRules(storage, 32);
+		assertSameResults(compiled);
+		Assert.assertTrue(compiled.getCachedResultsCount() > 0);
+		Assert.assertTrue(compiled.getCachedResultsCount() <= 32);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOtherStorage() throws XmlPullParserException, IOException {
+		CompiledRenderingRules compiled = new CompiledRenderingRules(storage);
+		setUp();
+		createRequest(false).setCompiledRules(compiled);
+	}
+}
@@ -0,0 +1,108 @@
+package net.osmand.render;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RenderingRuleSearchRequestPoolTest {
+
+	private static final String[][] TAG_VALUES = {{"highway", "primary"}, {"highway", "residential"},
+			{"railway", "rail"}, {"natural", "wood"}};
+
+	private static final int TILES = 20;
+
+	private RenderingRulesStorage storage;
+
+	@Before
+	public void setUp() throws XmlPullParserException, IOException {
+		storage = TestRenderingStyle.createStorage();
+	}
+
+	// colors of line rules for every tag/value and zoom
+	private static void renderTile(RenderingRuleSearchRequest req, List<Integer> res) {
+		for (String[] tv : TAG_VALUES) {
+			for (int zoom = 8; zoom <= 17; zoom++) {
+				req.setInitialTagValueZoom(tv[0], tv[1], zoom, null);
+				req.search(RenderingRulesStorage.LINE_RULES);
+				res.add(req.getIntPropertyValue(req.ALL.R_COLOR));
+			}
+		}
+	}
+
+	private static List<Integer> render(RenderingRuleSearchRequestPool pool, int thread, boolean threadRequest) {
+		List<Integer> res = new ArrayList<Integer>();
+		for (int tile = 0; tile < TILES; tile++) {
+			RenderingRuleSearchRequest req = threadRequest ? pool.getThreadRequest() : pool.acquire();
+			renderTile(req, res);
+			// unknown tags are unique for thread
+			req.setInitialTagValueZoom("tag" + thread, "value" + tile, 15, null);
+			Assert.assertEquals("tag" + thread, req.getStringPropertyValue(req.ALL.R_TAG));
+			Assert.assertEquals("value" + tile, req.getStringPropertyValue(req.ALL.R_VALUE));
+			if (!threadRequest) {
+				pool.release(req);
+			}
+		}
+		return res;
+	}
+
+	@Test
+	public void testConcurrentRendering() throws InterruptedException, ExecutionException {
+		RenderingRulesStorage snapshot = storage.snapshot();
+		Assert.assertSame(snapshot, snapshot.snapshot());
+		RenderingRuleSearchRequest template = new RenderingRuleSearchRequest(snapshot);
+		template.setBooleanFilter(snapshot.PROPS.getCustomRule("nightMode"), true);
+		template.setCompiledRules(new CompiledRenderingRules(snapshot));
+		final RenderingRuleSearchRequestPool pool = new RenderingRuleSearchRequestPool(template, 2);
+		// template changes after pool is created are ignored
+		template.setBooleanFilter(snapshot.PROPS.getCustomRule("nightMode"), false);
+
+		RenderingRuleSearchRequest plain = new RenderingRuleSearchRequest(storage);
+		plain.setBooleanFilter(storage.PROPS.getCustomRule("nightMode"), true);
+		plain.saveState();
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int tile = 0; tile < TILES; tile++) {
+			renderTile(plain, expected);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<Integer>>> futures = new ArrayList<Future<List<Integer>>>();
+			for (int i = 0; i < 8; i++) {
+				final int thread = i;
+				futures.add(executor.submit(new Callable<List<Integer>>() {
+					@Override
+					public List<Integer> call() {
+						return render(pool, thread, thread % 2 == 0);
+					}
+				}));
+			}
+			for (Future<List<Integer>> f : futures) {
+				Assert.assertEquals(expected, f.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		// 4 thread requests and at most 4 requests acquired at the same time
+		Assert.assertTrue(pool.getCreatedRequestsCount() <= 8);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSnapshotIsImmutable() throws XmlPullParserException, IOException {
+		TestRenderingStyle.parse(storage.snapshot());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPoolRequiresSnapshot() {
+		new RenderingRuleSearchRequestPool(new RenderingRuleSearchRequest(storage));
+	}
+}
@@ -0,0 +1,46 @@
+package net.osmand.render;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+// small rendering style shared by rendering tests
+class TestRenderingStyle {
+
+	private static final String STYLE = "<?xml version='1.0' encoding='utf-8'?>"
+			+ "<renderingStyle name='test' depends='' version='1'>"
+			+ "<renderingProperty attr='nightMode' name='Night' type='boolean' possibleValues=''/>"
+			+ "<renderingAttribute name='roadColor'>"
+			+ "  <case nightMode='true' attrColorValue='#000044'/>"
+			+ "  <case attrColorValue='#ffffff'/>"
+			+ "</renderingAttribute>"
+			+ "<order>"
+			+ "  <switch><case tag='highway' value='primary' order='20'/><case tag='highway' value='' order='10'/></switch>"
+			+ "  <case tag='' value='' order='1'/>"
+			+ "</order>"
+			+ "<line>"
+			+ "  <switch tag='highway' value='primary'>"
+			+ "    <case minzoom='15' strokeWidth='6' color='$roadColor'/>"
+			+ "    <case minzoom='10' strokeWidth='3' color='#ff0000'>"
+			+ "      <apply layer='-1' color='#880000'/>"
+			+ "    </case>"
+			+ "  </switch>"
+			+ "  <case tag='highway' value='residential' minzoom='14' maxzoom='16' strokeWidth='2' color='#aaaaaa'/>"
+			+ "  <case tag='highway' value='track' disable='true'/>"
+			+ "  <case tag='railway' value='rail' additional='service=yard' color='#333333'/>"
+			+ "  <case tag='railway' value='rail' color='#444444'/>"
+			+ "</line>"
+			+ "</renderingStyle>";
+
+	static RenderingRulesStorage createStorage() throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = new RenderingRulesStorage("test", new LinkedHashMap<String, String>());
+		parse(storage);
+		return storage;
+	}
+
+	static void parse(RenderingRulesStorage storage) throws XmlPullParserException, IOException {
+		storage.parseRulesFromXmlInputStream(new ByteArrayInputStream(STYLE.getBytes("UTF-8")), null);
+	}
+}
@@ -0,0 +1,227 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+public class ContractionHierarchyTest {
+
+	// line 0 - 1 - 2 - 3, node 1 contracted first, then node 2
+	private static ContractionHierarchy buildLine() {
+		return buildLine(1, 2, "car");
+	}
+
+	private static ContractionHierarchy buildLine(long obfLength, long obfDateCreated, String profileKey) {
+		long[] nodeKeys = new long[4];
+		for (int i = 0; i < nodeKeys.length; i++) {
+			nodeKeys[i] = ContractionHierarchy.pointKey(i * 100, 0);
+		}
+		int[] rank = {2, 0, 1, 3};
+		int[] from = {0, 1, 1, 2, 2, 3, 0, 2, 0, 3};
+		int[] to = {1, 0, 2, 1, 3, 2, 2, 0, 3, 0};
+		float[] cost = {1, 1, 1, 1, 1, 1, 2, 2, 3, 3};
+		int[] first = {-1, -1, -1, -1, -1, -1, 0, 3, 6, 5};
+		int[] second = {-1, -1, -1, -1, -1, -1, 2, 1, 4, 7};
+		long[] roadId = {10, 10, 11, 11, 12, 12, 0, 0, 0, 0};
+		int[] segStart = {0, 1, 0, 1, 0, 1, 0, 0, 0, 0};
+		int[] segEnd = {1, 0, 1, 0, 1, 0, 0, 0, 0, 0};
+		return new ContractionHierarchy(obfLength, obfDateCreated, profileKey, nodeKeys, rank, new int[] {2}, from, to, cost, first, second,
+				roadId, segStart, segEnd);
+	}
+
+	@Test
+	public void testPathIsUnpacked() {
+		ContractionHierarchy ch = buildLine();
+		ContractionHierarchy.HierarchyPath path = ch.searchPath(new int[] {0}, new float[] {0},
+				new int[] {3}, new float[] {0});
+		Assert.assertNotNull(path);
+		Assert.assertEquals(3, path.cost, 1e-6);
+		Assert.assertArrayEquals(new int[] {0, 2, 4}, path.edges.toArray());
+
+		path = ch.searchPath(new int[] {3}, new float[] {0}, new int[] {1}, new float[] {0});
+		Assert.assertNotNull(path);
+		Assert.assertEquals(2, path.cost, 1e-6);
+		Assert.assertArrayEquals(new int[] {5, 3}, path.edges.toArray());
+	}
+
+	@Test
+	public void testBestSourceAndTargetChosen() {
+		ContractionHierarchy ch = buildLine();
+		ContractionHierarchy.HierarchyPath path = ch.searchPath(new int[] {0, 1}, new float[] {0.5f, 2},
+				new int[] {3, 2}, new float[] {5, 0.5f});
+		Assert.assertNotNull(path);
+		Assert.assertEquals(0, path.source);
+		Assert.assertEquals(1, path.target);
+		Assert.assertEquals(3, path.cost, 1e-6);
+		Assert.assertArrayEquals(new int[] {0, 2}, path.edges.toArray());
+	}
+
+	@Test
+	public void testWriteRead() throws IOException {
+		ContractionHierarchy ch = buildLine();
+		File file = File.createTempFile("hierarchy", ".route.ch");
+		try {
+			ch.write(file);
+			ContractionHierarchy read = ContractionHierarchy.read(file);
+			Assert.assertEquals(ch.getNodesCount(), read.getNodesCount());
+			Assert.assertEquals(ch.getEdgesCount(), read.getEdgesCount());
+			Assert.assertEquals("car", read.getProfileKey());
+			Assert.assertEquals(2, read.getNode(200, 0));
+			Assert.assertEquals(-1, read.getNode(250, 0));
+			Assert.assertTrue(read.isRestricted(2));
+			Assert.assertFalse(read.isRestricted(1));
+			ContractionHierarchy.HierarchyPath path = read.searchPath(new int[] {0}, new float[] {0},
+					new int[] {3}, new float[] {0});
+			Assert.assertArrayEquals(new int[] {0, 2, 4}, path.edges.toArray());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testNotUsedWithAvoidedRoad() throws IOException {
+		RoutingConfiguration config = new RoutingConfiguration();
+		config.routerName = "car";
+		config.router = new GeneralRouter(GeneralRouterProfile.CAR, Collections.<String, String>emptyMap());
+		File obf = File.createTempFile("hierarchy", ".obf");
+		FileOutputStream out = new FileOutputStream(obf);
+		out.write(new byte[16]);
+		out.close();
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf, false);
+		File sidecar = ContractionHierarchy.getSidecarFile(obf, config.routerName);
+		try {
+			buildLine(obf.length(), reader.getDateCreated(), ContractionHierarchy.getProfileKey(config)).write(sidecar);
+			Assert.assertTrue(ContractionHierarchy.isApplicable(config));
+			Assert.assertNotNull(ContractionHierarchy.getHierarchy(reader, config));
+
+			// road 11 is on the hierarchy path 0 - 3
+			config.router.addImpassableRoads(Collections.singleton(11L));
+			Assert.assertFalse(ContractionHierarchy.isApplicable(config));
+			Assert.assertNull(ContractionHierarchy.getHierarchy(reader, config));
+
+			config.router = new GeneralRouter(GeneralRouterProfile.CAR, Collections.<String, String>emptyMap());
+			config.routeCalculationTime = System.currentTimeMillis();
+			Assert.assertFalse(ContractionHierarchy.isApplicable(config));
+			Assert.assertNull(ContractionHierarchy.getHierarchy(reader, config));
+		} finally {
+			reader.close();
+			sidecar.delete();
+			obf.delete();
+		}
+	}
+
+	@Test
+	public void testRestrictedNodeOnPath() {
+		ContractionHierarchy ch = buildLine();
+		Assert.assertTrue(ch.isRestricted(ch.searchPath(new int[] {0}, new float[] {0}, new int[] {3}, new float[] {0})));
+		Assert.assertFalse(ch.isRestricted(ch.searchPath(new int[] {0}, new float[] {0}, new int[] {1}, new float[] {0})));
+	}
+
+	@Test
+	public void testContractedDistancesMatchDijkstra() {
+		Random rnd = new Random(17);
+		int size = 6;
+		int nodes = size * size;
+		// grid with random costs and some one way edges, node keys are sorted as node ids
+		int[] from = new int[4 * nodes];
+		int[] to = new int[4 * nodes];
+		float[] cost = new float[4 * nodes];
+		int edges = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				int v = x * size + y;
+				int[] neighbours = {x + 1 < size ? v + size : -1, y + 1 < size ? v + 1 : -1};
+				for (int w : neighbours) {
+					if (w < 0) {
+						continue;
+					}
+					int oneway = rnd.nextInt(5);
+					if (oneway != 1) {
+						from[edges] = v;
+						to[edges] = w;
+						cost[edges++] = 1 + rnd.nextInt(10);
+					}
+					if (oneway != 2) {
+						from[edges] = w;
+						to[edges] = v;
+						cost[edges++] = 1 + rnd.nextInt(10);
+					}
+				}
+			}
+		}
+		for (int limit : new int[] {500, 1}) {
+			ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder(new RoutingConfiguration());
+			builder.witnessSettledLimit = limit;
+			long[] nodeKeys = new long[nodes];
+			for (int v = 0; v < nodes; v++) {
+				nodeKeys[v] = ContractionHierarchy.pointKey(v / size, v % size);
+			}
+			builder.initNodes(nodeKeys);
+			for (int e = 0; e < edges; e++) {
+				builder.addEdge(from[e], to[e], cost[e], -1, -1, e, 0, 1);
+			}
+			builder.contract();
+			ContractionHierarchy ch = builder.createHierarchy(1, 2, "test");
+			for (int s = 0; s < nodes; s++) {
+				float[] dist = dijkstra(nodes, from, to, cost, edges, s);
+				for (int t = 0; t < nodes; t++) {
+					ContractionHierarchy.HierarchyPath path = ch.searchPath(new int[] {s}, new float[] {0},
+							new int[] {t}, new float[] {0});
+					if (dist[t] == Float.POSITIVE_INFINITY) {
+						Assert.assertNull(path);
+						continue;
+					}
+					Assert.assertNotNull(path);
+					Assert.assertEquals(dist[t], path.cost, 1e-4);
+					// unpacked path is chain of original edges with the same cost
+					int node = s;
+					float sum = 0;
+					for (int i = 0; i < path.edges.size(); i++) {
+						int e = path.edges.get(i);
+						Assert.assertTrue(ch.edgeFirst[e] < 0);
+						Assert.assertEquals(node, ch.edgeFrom[e]);
+						node = ch.edgeTo[e];
+						sum += ch.edgeCost[e];
+					}
+					Assert.assertEquals(t, node);
+					Assert.assertEquals(dist[t], sum, 1e-4);
+				}
+			}
+		}
+	}
+
+	private static float[] dijkstra(int nodes, int[] from, int[] to, float[] cost, int edges, int source) {
+		float[] dist = new float[nodes];
+		Arrays.fill(dist, Float.POSITIVE_INFINITY);
+		boolean[] settled = new boolean[nodes];
+		dist[source] = 0;
+		for (int k = 0; k < nodes; k++) {
+			int v = -1;
+			for (int i = 0; i < nodes; i++) {
+				if (!settled[i] && dist[i] != Float.POSITIVE_INFINITY && (v == -1 || dist[i] < dist[v])) {
+					v = i;
+				}
+			}
+			if (v == -1) {
+				break;
+			}
+			settled[v] = true;
+			for (int e = 0; e < edges; e++) {
+				if (from[e] == v && dist[v] + cost[e] < dist[to[e]]) {
+					dist[to[e]] = dist[v] + cost[e];
+				}
+			}
+		}
+		return dist;
+	}
+}
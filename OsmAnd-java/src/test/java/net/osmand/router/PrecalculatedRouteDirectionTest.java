@@ -0,0 +1,69 @@
+package net.osmand.router;
+
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PrecalculatedRouteDirectionTest {
+
+	private static final int THREADS = 4;
+
+	@Test
+	public void testParallelLookupsMatchSerial() throws Exception {
+		LatLon[] route = new LatLon[200];
+		for (int i = 0; i < route.length; i++) {
+			route[i] = new LatLon(52.0 + i * 0.0005, 4.0 + (i % 20) * 0.0003);
+		}
+		final PrecalculatedRouteDirection direction = PrecalculatedRouteDirection.build(route, 20);
+		Random rnd = new Random(7);
+		final int[] xs = new int[2000];
+		final int[] ys = new int[xs.length];
+		for (int i = 0; i < xs.length; i++) {
+			LatLon l = route[rnd.nextInt(route.length)];
+			xs[i] = MapUtils.get31TileNumberX(l.getLongitude() + (rnd.nextDouble() - 0.5) * 0.001);
+			ys[i] = MapUtils.get31TileNumberY(l.getLatitude() + (rnd.nextDouble() - 0.5) * 0.001);
+		}
+		final int[] serial = new int[xs.length];
+		for (int i = 0; i < xs.length; i++) {
+			serial[i] = direction.getIndex(xs[i], ys[i]);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(new Callable<int[]>() {
+					@Override
+					public int[] call() throws Exception {
+						start.await();
+						int[] res = new int[xs.length];
+						for (int k = 0; k < 20; k++) {
+							for (int i = 0; i < xs.length; i++) {
+								res[i] = direction.getIndex(xs[i], ys[i]);
+							}
+						}
+						return res;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<int[]> f : futures) {
+				Assert.assertArrayEquals(serial, f.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package net.osmand.router;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+public class RouteMatrixSearchTest {
+
+	private static final String MAP = "src/test/resources/Routing_test.obf";
+	private static final int POINTS = 3;
+	// matrix ignores via restrictions and is not refined by route preparation
+	private static final double TOLERANCE = 0.1;
+
+	private RandomAccessFile raf;
+	private BinaryMapIndexReader reader;
+	private final List<LatLon> origins = new ArrayList<LatLon>();
+	private final List<LatLon> destinations = new ArrayList<LatLon>();
+
+	@Before
+	public void setUp() throws IOException {
+		raf = new RandomAccessFile(MAP, "r");
+		reader = new BinaryMapIndexReader(raf, new File(MAP));
+		Reader json = new InputStreamReader(Objects.requireNonNull(
+				RouteMatrixSearchTest.class.getResourceAsStream("/test_routing.json")));
+		Gson gson = new GsonBuilder().create();
+		TestEntry[] entries = gson.fromJson(json, TestEntry[].class);
+		json.close();
+		for (TestEntry te : entries) {
+			if (te.isIgnore() || (te.getParams() != null && !te.getParams().isEmpty()) || origins.size() == POINTS) {
+				continue;
+			}
+			origins.add(te.getStartPoint());
+			destinations.add(te.getEndPoint());
+		}
+		Assert.assertFalse(origins.isEmpty());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (raf != null) {
+			raf.close();
+		}
+	}
+
+	private RoutingContext createContext(RoutePlannerFrontEnd fe) {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits);
+		return fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] {reader}, RouteCalculationMode.NORMAL);
+	}
+
+	@Test
+	public void testMatrixMatchesPairwiseRoutes() throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RouteMatrix matrix = fe.searchRouteMatrix(createContext(fe), origins, destinations, 1);
+		for (int i = 0; i < origins.size(); i++) {
+			for (int j = 0; j < destinations.size(); j++) {
+				List<RouteSegmentResult> route = fe.searchRoute(createContext(fe), origins.get(i), destinations.get(j),
+						Collections.<LatLon>emptyList());
+				if (route == null || route.isEmpty()) {
+					continue;
+				}
+				float time = 0;
+				float distance = 0;
+				for (RouteSegmentResult r : route) {
+					time += r.getSegmentTime();
+					distance += r.getDistance();
+				}
+				String pair = origins.get(i) + " -> " + destinations.get(j);
+				Assert.assertTrue(pair, matrix.isReachable(i, j));
+				Assert.assertEquals(pair, time, matrix.getTime(i, j), time * TOLERANCE);
+				Assert.assertEquals(pair, distance, matrix.getDistance(i, j), distance * TOLERANCE);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelMatrixIsSameAsSequential() throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RouteMatrix sequential = fe.searchRouteMatrix(createContext(fe), origins, destinations, 1);
+		// threads share routing context and its loaded segments
+		RouteMatrix parallel = fe.searchRouteMatrix(createContext(fe), origins, destinations, origins.size());
+		for (int i = 0; i < origins.size(); i++) {
+			for (int j = 0; j < destinations.size(); j++) {
+				Assert.assertEquals(sequential.getTime(i, j), parallel.getTime(i, j), 1e-3);
+				Assert.assertEquals(sequential.getDistance(i, j), parallel.getDistance(i, j), 1e-3);
+			}
+		}
+	}
+
+	@Test(expected = InterruptedException.class)
+	public void testCancelledSearchThrows() throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RoutingContext ctx = createContext(fe);
+		ctx.calculationProgress = new RouteCalculationProgress();
+		ctx.calculationProgress.isCancelled = true;
+		fe.searchRouteMatrix(ctx, origins, destinations, 2);
+	}
+}
@@ -0,0 +1,115 @@
+package net.osmand.router;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RouteSegmentQueueTest {
+
+	private static RouteSegment segment(float distanceFromStart, float distanceToEnd) {
+		RouteSegment s = new RouteSegment(null, 0, 1);
+		s.distanceFromStart = distanceFromStart;
+		s.distanceToEnd = distanceToEnd;
+		return s;
+	}
+
+	@Test
+	public void testPollOrder() {
+		RouteSegmentQueue queue = new RouteSegmentQueue(1, 4);
+		Random rnd = new Random(7);
+		for (int i = 0; i < 1000; i++) {
+			queue.add(segment(rnd.nextFloat() * 100, rnd.nextFloat() * 100));
+		}
+		Assert.assertEquals(1000, queue.size());
+		double last = -1;
+		while (!queue.isEmpty()) {
+			RouteSegment s = queue.poll();
+			double f = s.distanceFromStart + s.distanceToEnd;
+			Assert.assertTrue(f >= last);
+			last = f;
+		}
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testUpdateQueuedSegment() {
+		RouteSegmentQueue queue = new RouteSegmentQueue(0.5);
+		RouteSegment a = segment(10, 0);
+		RouteSegment b = segment(20, 0);
+		RouteSegment c = segment(30, 0);
+		queue.add(a);
+		queue.add(b);
+		queue.add(c);
+		// decrease key of c, segment is not duplicated
+		c.distanceFromStart = 5;
+		queue.add(c);
+		Assert.assertEquals(3, queue.size());
+		// increase key of a
+		a.distanceFromStart = 25;
+		queue.add(a);
+		Assert.assertSame(c, queue.poll());
+		Assert.assertSame(b, queue.poll());
+		Assert.assertSame(a, queue.poll());
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testPolledSegmentCanBeQueuedAgain() {
+		RouteSegmentQueue queue = new RouteSegmentQueue(1);
+		List<RouteSegment> segments = new ArrayList<RouteSegment>();
+		for (int i = 0; i < 10; i++) {
+			RouteSegment s = segment(i, 0);
+			segments.add(s);
+			queue.add(s);
+		}
+		RouteSegment first = queue.poll();
+		Assert.assertSame(segments.get(0), first);
+		RouteSegment other = segment(100, 0);
+		queue.add(other);
+		// slot of first is reused by other, first must be added as new entry
+		first.distanceFromStart = 50;
+		queue.add(first);
+		Assert.assertEquals(11, queue.size());
+		for (int i = 1; i < 10; i++) {
+			Assert.assertSame(segments.get(i), queue.poll());
+		}
+		Assert.assertSame(first, queue.poll());
+		Assert.assertSame(other, queue.poll());
+	}
+
+	@Test
+	public void testSegmentInTwoQueues() {
+		RouteSegmentQueue direct = new RouteSegmentQueue(1, 4);
+		RouteSegmentQueue reverse = new RouteSegmentQueue(1, 4);
+		Random rnd = new Random(11);
+		List<RouteSegment> segments = new ArrayList<RouteSegment>();
+		for (int i = 0; i < 200; i++) {
+			RouteSegment s = segment(rnd.nextFloat() * 100, 0);
+			segments.add(s);
+			direct.add(s);
+			if (i % 2 == 0) {
+				reverse.add(s);
+			}
+		}
+		// polling and re-adding in one queue doesn't affect entries of the other
+		for (int i = 0; i < 50; i++) {
+			reverse.poll();
+		}
+		for (RouteSegment s : segments) {
+			direct.add(s);
+		}
+		Assert.assertEquals(200, direct.size());
+		Assert.assertEquals(50, reverse.size());
+		double last = -1;
+		while (!direct.isEmpty()) {
+			RouteSegment s = direct.poll();
+			Assert.assertTrue(s.distanceFromStart >= last);
+			last = s.distanceFromStart;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.MappedObfFile;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class RouteSubregionPrefetcherTest {
+
+	// cache which blocks prefetching till it is released
+	private static class BlockingTileCache extends RouteTileCache {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+
+		BlockingTileCache() {
+			super(1 << 20);
+		}
+
+		@Override
+		public boolean prefetch(BinaryMapIndexReader reader, RouteSubregion subregion) throws IOException {
+			synchronized (readers) {
+				readers.add(reader);
+			}
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			return true;
+		}
+	}
+
+	@Test
+	public void testStopWaitsForRunningTasks() throws Exception {
+		File file = File.createTempFile("prefetch", ".obf");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[16]);
+		out.close();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new MappedObfFile(file), false);
+			final BlockingTileCache cache = new BlockingTileCache();
+			RoutingConfiguration config = new RoutingConfiguration();
+			config.tileCache = cache;
+			RoutingContext ctx = new RoutingContext(config, null, new BinaryMapIndexReader[0], RouteCalculationMode.NORMAL);
+			final RouteSubregionPrefetcher prefetcher = new RouteSubregionPrefetcher(ctx, executor, 4);
+			RouteRegion region = new RouteRegion();
+			prefetcher.submit(reader, new RouteSubregion(region));
+			// not started before stop as the only executor thread is busy
+			prefetcher.submit(reader, new RouteSubregion(region));
+			Assert.assertTrue(cache.started.await(5, TimeUnit.SECONDS));
+
+			Thread stopThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					prefetcher.stop();
+				}
+			});
+			stopThread.start();
+			stopThread.join(200);
+			Assert.assertTrue("stop() returned while subregion is being read", stopThread.isAlive());
+			cache.release.countDown();
+			stopThread.join(5000);
+			Assert.assertFalse(stopThread.isAlive());
+
+			Assert.assertEquals(1, cache.readers.size());
+			Assert.assertEquals(1, prefetcher.getPrefetchedTiles());
+			// subregion is read by cursor of memory mapped reader, no file is opened
+			BinaryMapIndexReader copy = cache.readers.get(0);
+			Assert.assertNotSame(reader, copy);
+			Assert.assertTrue(copy.isMemoryMapped());
+			Assert.assertNull(copy.getRaf());
+		} finally {
+			executor.shutdownNow();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RouteTileCacheTest {
+
+	private File file;
+
+	// reader which "decodes" objects of subregion without reading file
+	private static class TestReader extends BinaryMapIndexReader {
+		final RouteRegion region = new RouteRegion();
+		final AtomicInteger loads = new AtomicInteger();
+		final AtomicInteger concurrentLoads = new AtomicInteger();
+		volatile int maxConcurrentLoads;
+
+		TestReader(File file) throws IOException {
+			super(new RandomAccessFile(file, "r"), file, false);
+		}
+
+		@Override
+		public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs) throws IOException {
+			loads.incrementAndGet();
+			maxConcurrentLoads = Math.max(maxConcurrentLoads, concurrentLoads.incrementAndGet());
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			List<RouteDataObject> res = new ArrayList<RouteDataObject>();
+			for (int i = 0; i < 10; i++) {
+				RouteDataObject o = new RouteDataObject(rs.routeReg);
+				o.id = rs.filePointer * 100 + i;
+				o.pointsX = new int[] {i, i + 1};
+				o.pointsY = new int[] {i, i + 1};
+				o.types = new int[] {1};
+				res.add(o);
+			}
+			concurrentLoads.decrementAndGet();
+			return res;
+		}
+	}
+
+	private static RouteSubregion subregion(RouteRegion region, int filePointer) {
+		RouteSubregion rs = new RouteSubregion(region);
+		rs.filePointer = filePointer;
+		return rs;
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("route_cache", ".obf");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testHitsAndMisses() throws IOException {
+		TestReader reader = new TestReader(file);
+		RouteTileCache cache = new RouteTileCache(1 << 20);
+		RouteCalculationProgress progress = new RouteCalculationProgress();
+		List<RouteDataObject> first = cache.loadRouteIndexData(reader, subregion(reader.region, 1), progress);
+		List<RouteDataObject> second = cache.loadRouteIndexData(reader, subregion(reader.region, 1), progress);
+		cache.loadRouteIndexData(reader, subregion(reader.region, 2), progress);
+		Assert.assertSame(first, second);
+		Assert.assertEquals(2, reader.loads.get());
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(1, progress.tileCacheHits);
+		Assert.assertEquals(2, progress.tileCacheMisses);
+		Assert.assertEquals(2, cache.getTilesCount());
+		Assert.assertTrue(cache.getSizeBytes() > 0);
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		TestReader reader = new TestReader(file);
+		RouteTileCache probe = new RouteTileCache(1 << 20);
+		probe.loadRouteIndexData(reader, subregion(reader.region, 1));
+		long tileSize = probe.getSizeBytes();
+		RouteTileCache cache = new RouteTileCache(tileSize * 2);
+		cache.loadRouteIndexData(reader, subregion(reader.region, 1));
+		cache.loadRouteIndexData(reader, subregion(reader.region, 2));
+		// access 1, so 2 is least recently used
+		cache.loadRouteIndexData(reader, subregion(reader.region, 1));
+		cache.loadRouteIndexData(reader, subregion(reader.region, 3));
+		Assert.assertEquals(2, cache.getTilesCount());
+		Assert.assertEquals(1, cache.getEvictions());
+		int loads = reader.loads.get();
+		cache.loadRouteIndexData(reader, subregion(reader.region, 1));
+		Assert.assertEquals(loads, reader.loads.get());
+		cache.loadRouteIndexData(reader, subregion(reader.region, 2));
+		Assert.assertEquals(loads + 1, reader.loads.get());
+	}
+
+	@Test
+	public void testConcurrentLoadsDecodeOnce() throws Exception {
+		final TestReader reader = new TestReader(file);
+		final RouteTileCache cache = new RouteTileCache(1 << 20);
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			List<Future<List<RouteDataObject>>> futures = new ArrayList<Future<List<RouteDataObject>>>();
+			for (int t = 0; t < threads * 4; t++) {
+				final int pointer = t % 4;
+				futures.add(executor.submit(new Callable<List<RouteDataObject>>() {
+					@Override
+					public List<RouteDataObject> call() throws Exception {
+						start.await();
+						return cache.loadRouteIndexData(reader, subregion(reader.region, pointer));
+					}
+				}));
+			}
+			start.countDown();
+			for (int t = 0; t < futures.size(); t++) {
+				List<RouteDataObject> res = futures.get(t).get();
+				Assert.assertSame(futures.get(t % 4).get(), res);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		// every subregion is decoded once and reader is not used by 2 threads at the same time
+		Assert.assertEquals(4, reader.loads.get());
+		Assert.assertEquals(1, reader.maxConcurrentLoads);
+		Assert.assertEquals(4, cache.getMisses());
+		Assert.assertEquals(threads * 4 - 4, cache.getHits());
+	}
+
+	@Test
+	public void testCopyForContext() throws IOException {
+		TestReader reader = new TestReader(file);
+		RouteTileCache cache = new RouteTileCache(1 << 20);
+		RouteDataObject cached = cache.loadRouteIndexData(reader, subregion(reader.region, 1)).get(0);
+		RouteRegion other = new RouteRegion();
+		RouteDataObject copy = RouteTileCache.copyForContext(cached, other, true);
+		Assert.assertSame(other, copy.region);
+		Assert.assertSame(reader.region, cached.region);
+		Assert.assertEquals(cached.id, copy.id);
+		Assert.assertNotSame(cached.types, copy.types);
+		copy.types[0] = 2;
+		Assert.assertEquals(1, cached.types[0]);
+	}
+
+	@Test
+	public void testStopSignsOfCachedObjectsAreNotModified() throws IOException {
+		TestReader reader = new TestReader(file) {
+			@Override
+			public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs) throws IOException {
+				List<RouteDataObject> res = super.loadRouteIndexData(rs);
+				for (RouteDataObject o : res) {
+					o.pointTypes = new int[][] {{3, 4}, null};
+				}
+				return res;
+			}
+		};
+		reader.region.initRouteEncodingRule(1, "highway", "primary");
+		reader.region.initRouteEncodingRule(2, "highway", "residential");
+		reader.region.initRouteEncodingRule(3, "stop", "minor");
+		reader.region.initRouteEncodingRule(4, "highway", "stop");
+		RouteDataObject minorRoad = new RouteDataObject(reader.region);
+		minorRoad.pointsX = new int[] {0, -1};
+		minorRoad.pointsY = new int[] {0, -1};
+		minorRoad.types = new int[] {2};
+		RouteTileCache cache = new RouteTileCache(1 << 20);
+		RouteDataObject previous = null;
+		// 2 routes over the same cached tile
+		for (int route = 0; route < 2; route++) {
+			RouteDataObject cached = cache.loadRouteIndexData(reader, subregion(reader.region, 1)).get(0);
+			if (previous != null) {
+				Assert.assertSame(previous, cached);
+			}
+			previous = cached;
+			RouteSegmentResult seg = new RouteSegmentResult(cached, 0, 1);
+			seg.attachRoute(0, new RouteSegmentResult(minorRoad, 0, 1));
+			new RouteResultPreparation().filterMinorStops(seg);
+			Assert.assertNotSame(cached, seg.getObject());
+			Assert.assertArrayEquals(new int[] {3}, seg.getObject().getPointTypes(0));
+			Assert.assertArrayEquals(new int[] {3, 4}, cached.getPointTypes(0));
+		}
+		Assert.assertEquals(1, reader.loads.get());
+	}
+}
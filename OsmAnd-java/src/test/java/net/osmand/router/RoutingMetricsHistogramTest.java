@@ -0,0 +1,62 @@
+package net.osmand.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+public class RoutingMetricsHistogramTest {
+
+	private static RoutingMetrics metrics(long timeTotal, int visitedSegments, boolean routeFound) {
+		RoutingMetrics m = new RoutingMetrics();
+		m.timeTotal = timeTotal;
+		m.visitedSegments = visitedSegments;
+		m.routeFound = routeFound;
+		return m;
+	}
+
+	@Test
+	public void testBucketBounds() {
+		double[] values = {0, 0.001, 0.5, 1, 3, 17, 1000, 123456789, 5e12};
+		for (double v : values) {
+			int b = RoutingMetricsHistogram.bucket(v);
+			double upper = RoutingMetricsHistogram.bucketUpperBound(b);
+			Assert.assertTrue(v + " < " + upper, v < upper);
+			Assert.assertTrue(v + " within 25% of " + upper, upper <= Math.max(v * 1.25, 0.004) + 1e-9);
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		RoutingMetricsHistogram histogram = new RoutingMetricsHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.routeCalculated(metrics(i * 1000000L, i, i % 10 != 0));
+		}
+		Assert.assertEquals(100, histogram.getCalculations());
+		Assert.assertEquals(10, histogram.getRoutesNotFound());
+		RoutingMetricsHistogram.Histogram h = histogram.getHistogram("visitedSegments");
+		Assert.assertEquals(100, h.getCount());
+		Assert.assertEquals(1, h.getMin(), 0);
+		Assert.assertEquals(100, h.getMax(), 0);
+		Assert.assertEquals(50.5, h.getMean(), 1e-9);
+		double p50 = h.getPercentile(50);
+		Assert.assertTrue(p50 > 50 && p50 <= 50 * 1.25);
+		Assert.assertEquals(100, h.getPercentile(100), 0);
+		double time90 = histogram.getPercentile("timeTotal", 90);
+		Assert.assertTrue(time90 > 90e6 && time90 <= 90e6 * 1.25);
+		Assert.assertTrue(histogram.toJson().getJSONObject("metrics").has("timeQueue"));
+	}
+
+	@Test
+	public void testJsonSink() {
+		StringWriter writer = new StringWriter();
+		RoutingMetrics.Sink sink = new RoutingMetrics.CompositeSink(new RoutingMetrics.JsonSink(writer),
+				new RoutingMetricsHistogram());
+		sink.routeCalculated(metrics(5, 2, true));
+		sink.routeCalculated(metrics(7, 3, false));
+		String[] lines = writer.toString().split("\n");
+		Assert.assertEquals(2, lines.length);
+		Assert.assertTrue(lines[0].contains("\"visitedSegments\":2"));
+		Assert.assertTrue(lines[1].contains("\"routeFound\":false"));
+	}
+}
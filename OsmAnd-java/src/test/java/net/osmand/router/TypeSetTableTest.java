@@ -0,0 +1,118 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+import net.osmand.router.GeneralRouter.RouteAttributeContext;
+import net.osmand.router.GeneralRouter.RouteAttributeEvalRule;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TypeSetTableTest {
+
+	@Test
+	public void testPutAndGet() {
+		TypeSetTable table = new TypeSetTable();
+		for (int i = 0; i < 1000; i++) {
+			int[] types = {i % 7, i, i / 3};
+			Assert.assertNull(table.get(types));
+			Assert.assertEquals(i, table.putIfAbsent(types, i));
+			// key is copied
+			types[1] = -1;
+		}
+		Assert.assertEquals(1000, table.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i, table.get(new int[] {i % 7, i, i / 3}));
+			Assert.assertEquals(i, table.putIfAbsent(new int[] {i % 7, i, i / 3}, -5));
+		}
+		Assert.assertNull(table.get(new int[] {0, 1}));
+		Assert.assertNull(table.get(new int[0]));
+		Assert.assertEquals("empty", table.putIfAbsent(new int[0], "empty"));
+		Assert.assertEquals("empty", table.get(new int[0]));
+	}
+
+	@Test
+	public void testConcurrentReaders() throws InterruptedException {
+		final TypeSetTable table = new TypeSetTable();
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						int[] types = {i, i + 1};
+						Object o = table.get(types);
+						if (o == null) {
+							o = table.putIfAbsent(types, i);
+						}
+						if (!Integer.valueOf(i).equals(o)) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		Assert.assertEquals(0, errors.get());
+		Assert.assertEquals(20000, table.size());
+	}
+
+	@Test
+	public void testCompiledRouterRules() {
+		GeneralRouter router = new GeneralRouter(GeneralRouterProfile.CAR, Collections.<String, String>emptyMap());
+		RouteAttributeContext speed = router.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+		RouteAttributeEvalRule rule = speed.registerNewRule("$maxspeed", "speed");
+		rule.registerAndTagValueCondition("maxspeed", null, false);
+		rule = speed.registerNewRule("50", "speed");
+		rule.registerAndTagValueCondition("highway", "primary", false);
+		rule.registerAndTagValueCondition("access", "no", true);
+
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(0, "highway", "primary");
+		region.initRouteEncodingRule(1, "maxspeed", "30");
+		region.initRouteEncodingRule(2, "access", "no");
+		region.initRouteEncodingRule(3, "highway", "residential");
+		for (int k = 0; k < 2; k++) {
+			Assert.assertEquals(50 / 3.6f, speed.evaluateFloat(region, new int[] {0}, -1), 1e-3);
+			Assert.assertEquals(30 / 3.6f, speed.evaluateFloat(region, new int[] {0, 1}, -1), 1e-3);
+			Assert.assertEquals(-1, speed.evaluateFloat(region, new int[] {0, 2}, -1), 1e-3);
+			Assert.assertEquals(-1, speed.evaluateFloat(region, new int[] {3}, -1), 1e-3);
+		}
+		// same result for other region with different encoding
+		RouteRegion other = new RouteRegion();
+		other.initRouteEncodingRule(0, "access", "no");
+		other.initRouteEncodingRule(1, "highway", "primary");
+		Assert.assertEquals(50 / 3.6f, speed.evaluateFloat(other, new int[] {1}, -1), 1e-3);
+		Assert.assertEquals(-1, speed.evaluateFloat(other, new int[] {1, 0}, -1), 1e-3);
+	}
+
+	@Test
+	public void testParameterValueNotSharedBetweenRouters() {
+		GeneralRouter parent = new GeneralRouter(GeneralRouterProfile.CAR, Collections.<String, String>emptyMap());
+		RouteAttributeEvalRule rule = parent.getObjContext(RouteDataObjectAttribute.ROAD_SPEED)
+				.registerNewRule(":limit", "speed");
+		rule.registerAndTagValueCondition("highway", "primary", false);
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(0, "highway", "primary");
+		Map<String, String> params36 = new HashMap<String, String>();
+		params36.put("limit", "36");
+		GeneralRouter r36 = parent.build(params36);
+		Map<String, String> params72 = new HashMap<String, String>();
+		params72.put("limit", "72");
+		GeneralRouter r72 = parent.build(params72);
+		Assert.assertEquals(10, r36.getObjContext(RouteDataObjectAttribute.ROAD_SPEED)
+				.evaluateFloat(region, new int[] {0}, -1), 1e-3);
+		Assert.assertEquals(20, r72.getObjContext(RouteDataObjectAttribute.ROAD_SPEED)
+				.evaluateFloat(region, new int[] {0}, -1), 1e-3);
+	}
+}
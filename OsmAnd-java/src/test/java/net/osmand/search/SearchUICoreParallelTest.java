@@ -0,0 +1,179 @@
+package net.osmand.search;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearchUICoreParallelTest {
+
+	private final List<File> files = new ArrayList<>();
+	private final List<BinaryMapIndexReader> readers = new ArrayList<>();
+
+	// publishes ids of file objects once (same as search of amenities by name)
+	private static class FileObjectsAPI extends SearchBaseAPI {
+		final Map<BinaryMapIndexReader, List<String>> objects = new ConcurrentHashMap<>();
+		final Map<BinaryMapIndexReader, SearchPhrase> phrases = new ConcurrentHashMap<>();
+		int limit = Integer.MAX_VALUE;
+
+		FileObjectsAPI() {
+			super(ObjectType.POI);
+		}
+
+		@Override
+		public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+			Set<String> ids = new HashSet<>();
+			AtomicInteger checked = resultMatcher.getLimitCounter();
+			for (BinaryMapIndexReader r : phrase.getOfflineIndexes()) {
+				phrases.put(r, phrase);
+				for (String id : objects.get(r)) {
+					if (checked.getAndIncrement() >= limit) {
+						break;
+					}
+					if (ids.add(id)) {
+						SearchResult sr = new SearchResult(phrase);
+						sr.object = id;
+						sr.file = r;
+						sr.objectType = ObjectType.POI;
+						resultMatcher.publish(sr);
+					}
+				}
+				resultMatcher.apiSearchRegionFinished(this, r, phrase);
+			}
+			return true;
+		}
+
+		@Override
+		public int getSearchPriority(SearchPhrase p) {
+			return 1;
+		}
+
+		@Override
+		public boolean isFileParallelSearchAvailable() {
+			return true;
+		}
+
+		@Override
+		public String getFileParallelResultKey(SearchResult r) {
+			return (String) r.object;
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			File file = File.createTempFile("search", ".obf");
+			files.add(file);
+			readers.add(new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, false));
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	private List<String> search(int threads, FileObjectsAPI api, SearchPhrase phrase) {
+		SearchUICore core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		core.registerAPI(api);
+		core.setSearchThreads(threads);
+		ResultMatcher<SearchResult> rm = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		SearchResultMatcher matcher = new SearchResultMatcher(rm, phrase, 1, new AtomicInteger(1), -1);
+		core.searchInternal(phrase, matcher);
+		core.setSearchThreads(1);
+		List<String> ids = new ArrayList<>();
+		for (SearchResult r : matcher.getRequestResults()) {
+			ids.add((String) r.object);
+		}
+		return ids;
+	}
+
+	@Test
+	public void testDuplicatesOfFilesArePublishedOnce() {
+		FileObjectsAPI api = new FileObjectsAPI();
+		api.objects.put(readers.get(0), Arrays.asList("1", "2"));
+		api.objects.put(readers.get(1), Arrays.asList("2", "3"));
+		api.objects.put(readers.get(2), Arrays.asList("3", "1", "4"));
+		SearchSettings settings = new SearchSettings(readers);
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings).generateNewPhrase("cafe", settings);
+		List<String> sequential = search(1, api, phrase);
+		Assert.assertEquals(Arrays.asList("1", "2", "3", "4"), sequential);
+		Assert.assertEquals(sequential, search(4, api, phrase));
+	}
+
+	@Test
+	public void testLimitIsSharedByFiles() {
+		FileObjectsAPI api = new FileObjectsAPI();
+		api.limit = 3;
+		api.objects.put(readers.get(0), Arrays.asList("1", "2"));
+		api.objects.put(readers.get(1), Arrays.asList("3", "4"));
+		api.objects.put(readers.get(2), Arrays.asList("5", "6", "7"));
+		SearchSettings settings = new SearchSettings(readers);
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings).generateNewPhrase("cafe", settings);
+		Assert.assertEquals(Arrays.asList("1", "2", "3"), search(1, api, phrase));
+		// files are searched in any order, but the limit is for all of them
+		Assert.assertEquals(3, search(4, api, phrase).size());
+	}
+
+	@Test
+	public void testFilePhraseIsCopyOfPhrase() {
+		FileObjectsAPI api = new FileObjectsAPI();
+		for (BinaryMapIndexReader r : readers) {
+			api.objects.put(r, Arrays.asList("1"));
+		}
+		SearchSettings settings = new SearchSettings(readers);
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings).generateNewPhrase("Central cafe", settings);
+		search(4, api, phrase);
+		Assert.assertEquals(readers.size(), api.phrases.size());
+		for (BinaryMapIndexReader r : readers) {
+			SearchPhrase p = api.phrases.get(r);
+			Assert.assertNotSame(phrase, p);
+			Assert.assertEquals(Arrays.asList(r), p.getOfflineIndexes());
+			Assert.assertEquals(phrase.getFullSearchPhrase(), p.getFullSearchPhrase());
+			Assert.assertEquals(phrase.getUnknownSearchPhrase(), p.getUnknownSearchPhrase());
+			Assert.assertEquals(phrase.getFirstUnknownSearchWord(), p.getFirstUnknownSearchWord());
+			Assert.assertEquals(phrase.getUnknownSearchWords(), p.getUnknownSearchWords());
+			Assert.assertEquals(phrase.getUnknownWordToSearch(), p.getUnknownWordToSearch());
+			Assert.assertEquals(phrase.isMainUnknownSearchWordComplete(), p.isMainUnknownSearchWordComplete());
+			Assert.assertEquals(phrase.isLastUnknownSearchWordComplete(), p.isLastUnknownSearchWordComplete());
+			Assert.assertEquals(phrase.getWords().size(), p.getWords().size());
+		}
+	}
+}